@@ -0,0 +1,10 @@
+-- Atualização do esquema 001: impressão digital dos voluntários (pesquisa de fichas duplicadas).
+--
+-- Aplicar uma única vez, com a aplicação parada, antes de instalar a versão que usa a coluna Impressao
+-- (p.e. mysql -u <utilizador> -p <base de dados> < sql/001_voluntarios_impressao.sql).
+-- Os voluntários já registados ficam com Impressao a NULL; a aplicação preenche-a na primeira leitura do
+-- índice de impressões (VoluntarioDAO.loadFingerprints), já que a impressão é calculada em Java.
+
+ALTER TABLE Voluntarios
+    ADD COLUMN Impressao CHAR(40) NULL,
+    ADD INDEX (Impressao);
@@ -0,0 +1,8 @@
+-- Atualização do esquema 002: credencial (hash da password) dos funcionários.
+--
+-- Aplicar uma única vez, com a aplicação parada, antes de instalar a versão que usa a coluna Credencial.
+-- As passwords em claro são substituídas pela credencial no primeiro login de cada funcionário
+-- (Autenticador), já que o hash é calculado em Java.
+
+ALTER TABLE Funcionarios
+    ADD COLUMN Credencial VARCHAR(128) NULL;
@@ -0,0 +1,25 @@
+-- Atualização do esquema 003: totais de horas de voluntariado (por voluntário e por projeto).
+--
+-- Aplicar uma única vez, com a aplicação parada, depois de 001 e antes de instalar a versão que usa a
+-- coluna Horas e a tabela HorasProjetos. A partir daí, os totais são mantidos pela aplicação (VoluntarioDAO)
+-- na mesma transação que altera ProjetosVoluntarios.
+
+ALTER TABLE Voluntarios
+    ADD COLUMN Horas INT NOT NULL DEFAULT 0,
+    ADD INDEX (Horas);
+
+CREATE TABLE HorasProjetos (
+    Projeto INT NOT NULL PRIMARY KEY,
+    Horas INT NOT NULL DEFAULT 0
+);
+
+-- Totais iniciais, a partir das horas já registadas
+START TRANSACTION;
+
+UPDATE Voluntarios SET Horas=(SELECT COALESCE(SUM(pv.HorasVoluntariado),0)
+                              FROM ProjetosVoluntarios pv WHERE pv.Voluntario=Voluntarios.Nr);
+
+INSERT INTO HorasProjetos (Projeto, Horas)
+    SELECT Projeto, SUM(HorasVoluntariado) FROM ProjetosVoluntarios GROUP BY Projeto;
+
+COMMIT;
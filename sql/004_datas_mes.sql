@@ -0,0 +1,88 @@
+-- Atualização 004: correção das datas guardadas com o mês a começar em 0.
+--
+-- As versões anteriores a business.Data escreviam as datas com o mês de GregorianCalendar (0 = janeiro),
+-- pelo que ficavam um mês atrasadas na base de dados (janeiro com mês 0). As versões atuais escrevem e leem
+-- o mês de 1 a 12, e uma linha não indica com que versão foi escrita: a correção só pode ser aplicada a uma
+-- base de dados escrita apenas pelas versões anteriores, com a aplicação parada, ANTES de instalar a nova.
+--
+-- Este script não altera dados. Cria dois procedimentos e corre o diagnóstico:
+--   1. mysql -u <utilizador> -p <base de dados> < sql/004_datas_mes.sql
+--   2. Rever o diagnóstico (uma linha por coluna DATE): MesZero conta as datas com mês 0, que só as versões
+--      anteriores escrevem; MesDoze conta as datas com mês 12, que essas versões nunca escrevem. Dados com
+--      mês a começar em 0 têm MesDoze=0 em todas as colunas (e, normalmente, algum MesZero>0).
+--   3. Depois de uma cópia de segurança, corrigir explicitamente com: CALL datas_corrigir();
+--      O procedimento recusa-se a corrigir (e não altera nada) se alguma coluna tiver datas com mês 12.
+--   4. Apagar os procedimentos: DROP PROCEDURE datas_diagnostico; DROP PROCEDURE datas_corrigir;
+--
+-- As datas zero (0000-00-00) e as datas com dia 0 ficam como estão.
+
+DROP PROCEDURE IF EXISTS datas_diagnostico;
+DROP PROCEDURE IF EXISTS datas_corrigir;
+
+DELIMITER //
+
+-- Diagnóstico das colunas DATE das tabelas das entidades (resultado em DatasDiagnostico)
+CREATE PROCEDURE datas_diagnostico()
+BEGIN
+    DECLARE fim INT DEFAULT 0;
+    DECLARE t, c VARCHAR(64);
+    DECLARE colunas CURSOR FOR
+        SELECT TABLE_NAME, COLUMN_NAME FROM information_schema.COLUMNS
+        WHERE TABLE_SCHEMA=DATABASE() AND DATA_TYPE='date'
+          AND LOWER(TABLE_NAME) IN ('voluntarios', 'projetos', 'tarefas', 'candidaturas', 'membros',
+                                    'representante', 'donativo', 'eventos');
+    DECLARE CONTINUE HANDLER FOR NOT FOUND SET fim = 1;
+
+    DROP TEMPORARY TABLE IF EXISTS DatasDiagnostico;
+    CREATE TEMPORARY TABLE DatasDiagnostico (Tabela VARCHAR(64), Coluna VARCHAR(64),
+                                             MesZero INT, MesDoze INT, Datas INT);
+    OPEN colunas;
+    ler: LOOP
+        FETCH colunas INTO t, c;
+        IF fim THEN LEAVE ler; END IF;
+        SET @sql = CONCAT('INSERT INTO DatasDiagnostico SELECT ''', t, ''', ''', c, ''',',
+                          ' COALESCE(SUM(MONTH(`', c, '`)=0 AND YEAR(`', c, '`)>0), 0),',
+                          ' COALESCE(SUM(MONTH(`', c, '`)=12), 0),',
+                          ' COUNT(`', c, '`) FROM `', t, '`');
+        PREPARE ps FROM @sql;
+        EXECUTE ps;
+        DEALLOCATE PREPARE ps;
+    END LOOP;
+    CLOSE colunas;
+
+    SELECT * FROM DatasDiagnostico;
+END //
+
+-- Avança um mês todas as datas (ano-01-01 + mês guardado (0-11) meses + (dia-1) dias), numa só transação
+CREATE PROCEDURE datas_corrigir()
+BEGIN
+    DECLARE fim INT DEFAULT 0;
+    DECLARE t, c VARCHAR(64);
+    DECLARE colunas CURSOR FOR SELECT Tabela, Coluna FROM DatasDiagnostico;
+    DECLARE CONTINUE HANDLER FOR NOT FOUND SET fim = 1;
+
+    CALL datas_diagnostico();
+    IF (SELECT COUNT(*) FROM DatasDiagnostico WHERE MesDoze>0) > 0 THEN
+        SELECT 'Há datas com mês 12: a base de dados não tem o mês a começar em 0. Nada foi alterado.' AS Resultado;
+    ELSE
+        START TRANSACTION;
+        OPEN colunas;
+        corrigir: LOOP
+            FETCH colunas INTO t, c;
+            IF fim THEN LEAVE corrigir; END IF;
+            SET @sql = CONCAT('UPDATE `', t, '` SET `', c, '`=MAKEDATE(YEAR(`', c, '`),1)',
+                              ' + INTERVAL MONTH(`', c, '`) MONTH + INTERVAL DAY(`', c, '`)-1 DAY',
+                              ' WHERE YEAR(`', c, '`)>0 AND DAY(`', c, '`)>0');
+            PREPARE ps FROM @sql;
+            EXECUTE ps;
+            DEALLOCATE PREPARE ps;
+        END LOOP;
+        CLOSE colunas;
+        COMMIT;
+        SELECT 'Datas corrigidas.' AS Resultado;
+    END IF;
+END //
+
+DELIMITER ;
+
+CALL datas_diagnostico();
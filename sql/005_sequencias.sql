@@ -0,0 +1,10 @@
+-- Atualização do esquema 005: sequências de chaves (KeyAllocator).
+--
+-- Aplicar uma única vez, com a aplicação parada, antes de instalar a versão que atribui as chaves por
+-- blocos. Cada tabela tem uma linha com a próxima chave livre, criada pela aplicação na primeira reserva
+-- (a sequência avança sempre para lá da maior chave já existente na tabela).
+
+CREATE TABLE Sequencias (
+    Nome VARCHAR(64) NOT NULL PRIMARY KEY,
+    Proxima INT NOT NULL
+) ENGINE=InnoDB;
@@ -0,0 +1,160 @@
+package business;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+/**
+ * Data (dia, sem hora nem fuso horário) imutável, guardada como nº de dias desde 1970-01-01.
+ *
+ * Substitui GregorianCalendar nas entidades: ocupa 16 bytes em vez de cerca de 450, pode ser partilhada
+ * pelas cópias (clone) sem ser copiada e os meses vão de 1 a 12, como em SQL. Só é convertida para
+ * Calendar/Date na fronteira com a interface gráfica (JDateChooser) e com o JDBC.
+ * @author Jorge Caldas, José Cortez, Marcelo Gonçalves, Ricardo Silva
+ * @version 2015.01.17
+ */
+
+public final class Data implements Comparable<Data> {
+
+    private static final long MS_DIA = 24L*60*60*1000;
+    private static final int DIAS_400_ANOS = 146097;
+    private static final int DIAS_ATE_1970 = 719468;    // dias de 0000-03-01 a 1970-01-01
+
+    // Variáveis de instância
+    private final int dia;                              // dias desde 1970-01-01
+
+    private Data(int dia){this.dia=dia;}
+
+    /**
+     * Data a partir do nº de dias desde 1970-01-01.
+     * @param dia, nº de dias (negativo antes de 1970).
+     * @return data.
+     */
+    public static Data deDiaEpoch(int dia){return new Data(dia);}
+
+    /**
+     * Data a partir do ano, mês e dia. Valores fora do intervalo são normalizados, como em GregorianCalendar
+     * (p.e. 31 de fevereiro é 3 ou 2 de março).
+     * @param ano
+     * @param mes, mês de 1 (janeiro) a 12 (dezembro).
+     * @param dia, dia do mês.
+     * @return data.
+     */
+    public static Data de(int ano, int mes, int dia){
+        int m0 = mes-1;
+        int anos = (int) divInteira(m0, 12);
+        ano += anos;
+        mes = m0-anos*12+1;
+        // dias desde 1970-01-01, contando os anos a partir de março (fevereiro fica no fim do ano)
+        int a = mes<=2 ? ano-1 : ano;
+        int era = (a>=0 ? a : a-399)/400;
+        int anoEra = a-era*400;
+        int diaAno = (153*(mes>2 ? mes-3 : mes+9)+2)/5;
+        int diaEra = anoEra*365 + anoEra/4 - anoEra/100 + diaAno;
+        return new Data(era*DIAS_400_ANOS + diaEra - DIAS_ATE_1970 + dia-1);
+    }
+
+    /**
+     * Data de um Calendar (p.e. o de um JDateChooser), no fuso horário do próprio Calendar.
+     * @param c, calendário (pode ser null).
+     * @return data, ou null caso c seja null.
+     */
+    public static Data de(Calendar c){
+        return c==null ? null : de(c.get(Calendar.YEAR), c.get(Calendar.MONTH)+1, c.get(Calendar.DAY_OF_MONTH));
+    }
+
+    /**
+     * Data de um instante (p.e. um java.sql.Date lido com ResultSet.getDate), no fuso horário local.
+     * @param d, instante (pode ser null).
+     * @return data, ou null caso d seja null.
+     */
+    public static Data de(Date d){
+        if(d==null) return null;
+        long t = d.getTime();
+        return new Data((int) divInteira(t+TimeZone.getDefault().getOffset(t), MS_DIA));
+    }
+
+    /**
+     * Data de hoje, no fuso horário local.
+     * @return data.
+     */
+    public static Data hoje(){return de(new Date());}
+
+    /*gets*/
+    public int getDiaEpoch(){return this.dia;}
+    public int getAno(){return this.campos()[0];}
+    /** @return mês, de 1 (janeiro) a 12 (dezembro). */
+    public int getMes(){return this.campos()[1];}
+    public int getDia(){return this.campos()[2];}
+
+    /**
+     * Data a uma distância de n dias.
+     * @param n, nº de dias (negativo para trás).
+     * @return nova data.
+     */
+    public Data maisDias(int n){return n==0 ? this : new Data(this.dia+n);}
+
+    /**
+     * Nº de anos completos entre esta data e outra (p.e. a idade de quem nasceu nesta data).
+     * @param fim, data final.
+     * @return anos completos (negativo caso fim seja anterior).
+     */
+    public int anosAte(Data fim){
+        int[] a = this.campos(), b = fim.campos();
+        int anos = b[0]-a[0];
+        if(b[1]<a[1] || (b[1]==a[1] && b[2]<a[2])) anos--;
+        return anos;
+    }
+
+    /**
+     * Calendário nesta data (à meia-noite, no fuso horário local), p.e. para um JDateChooser.
+     * @return novo GregorianCalendar.
+     */
+    public GregorianCalendar toCalendar(){
+        int[] c = this.campos();
+        return new GregorianCalendar(c[0], c[1]-1, c[2]);
+    }
+
+    /*Ano, mês (1-12) e dia do mês*/
+    private int[] campos(){
+        int z = this.dia+DIAS_ATE_1970;
+        int era = (z>=0 ? z : z-DIAS_400_ANOS+1)/DIAS_400_ANOS;
+        int diaEra = z-era*DIAS_400_ANOS;
+        int anoEra = (diaEra - diaEra/1460 + diaEra/36524 - diaEra/146096)/365;
+        int diaAno = diaEra - (365*anoEra + anoEra/4 - anoEra/100);
+        int mp = (5*diaAno+2)/153;
+        int d = diaAno - (153*mp+2)/5 + 1;
+        int m = mp<10 ? mp+3 : mp-9;
+        return new int[] {anoEra + era*400 + (m<=2 ? 1 : 0), m, d};
+    }
+
+    /*Divisão arredondada para baixo (também nos negativos)*/
+    private static long divInteira(long a, long b){
+        long q = a/b;
+        return (a%b!=0 && (a<0)!=(b<0)) ? q-1 : q;
+    }
+
+    /*compareTo, equals, hashCode e toString*/
+    @Override
+    public int compareTo(Data d){return this.dia<d.dia ? -1 : (this.dia==d.dia ? 0 : 1);}
+
+    @Override
+    public boolean equals(Object o){
+        if(this==o) return true;
+        return o instanceof Data && ((Data) o).dia==this.dia;
+    }
+
+    @Override
+    public int hashCode(){return this.dia;}
+
+    /**
+     * Data no formato ISO (aaaa-mm-dd), que é também o de um DATE em MySQL.
+     * @return String com a data.
+     */
+    @Override
+    public String toString(){
+        int[] c = this.campos();
+        return String.format("%04d-%02d-%02d", c[0], c[1], c[2]);
+    }
+}
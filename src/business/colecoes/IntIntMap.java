@@ -0,0 +1,199 @@
+package business.colecoes;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Mapa int→int sem boxing (endereçamento aberto), usado p.e. nas horas de voluntariado por projeto e no
+ * material gasto por tarefa.
+ *
+ * Implementa Map&lt;Integer,Integer&gt;, mas as operações com int (get, put, containsKey, remove, somar,
+ * somaValores, chaves) não criam objetos; só a iteração pelas entradas cria objetos. Um mapa vazio não aloca
+ * arrays. A soma dos valores é mantida a cada alteração, qualquer que seja a operação (put, somar, remove,
+ * setValue de uma entrada, remoção pelo iterador), e não é recalculada. Não aceita null e não é sincronizado.
+ * @author Jorge Caldas, José Cortez, Marcelo Gonçalves, Ricardo Silva
+ * @version 2015.01.17
+ */
+
+public final class IntIntMap extends AbstractMap<Integer,Integer> {
+
+    // Variáveis de instância
+    private final Tabela tabela;
+    private Set<Map.Entry<Integer,Integer>> entradas;
+
+    /**
+     * Construtor vazio.
+     */
+    public IntIntMap(){this.tabela=new Tabela(true, 0);}
+
+    /**
+     * Construtor parameterizado.
+     * @param esperados, nº de entradas esperado.
+     */
+    public IntIntMap(int esperados){this.tabela=new Tabela(true, esperados);}
+
+    /**
+     * Construtor de cópia.
+     * @param m, mapa de inteiros.
+     */
+    public IntIntMap(Map<Integer,Integer> m){
+        if(m instanceof IntIntMap) this.tabela=new Tabela(((IntIntMap) m).tabela);
+        else{
+            this.tabela=new Tabela(true, m.size());
+            for(Map.Entry<Integer,Integer> e : m.entrySet()) this.put(e.getKey().intValue(), e.getValue().intValue());
+        }
+    }
+
+    /**
+     * Mapa com as entradas de um mapa; um IntIntMap é devolvido tal como está (sem cópia), como acontecia
+     * com os setters das entidades antes de usarem IntIntMap.
+     * @param m, mapa de inteiros (null é tratado como vazio).
+     * @return IntIntMap.
+     */
+    public static IntIntMap de(Map<Integer,Integer> m){
+        if(m instanceof IntIntMap) return (IntIntMap) m;
+        return m==null ? new IntIntMap() : new IntIntMap(m);
+    }
+
+    /**
+     * Valor associado a uma chave.
+     * @param k, chave.
+     * @param omissao, valor devolvido caso a chave não exista.
+     * @return valor associado, ou omissao.
+     */
+    public int get(int k, int omissao){
+        int i = this.tabela.posicao(k);
+        return i<0 ? omissao : this.tabela.valor(i);
+    }
+
+    public void put(int k, int v){
+        int i = this.tabela.inserir(k);
+        this.tabela.setValor(i<0 ? -i-1 : i, v);
+    }
+
+    public boolean containsKey(int k){return this.tabela.posicao(k)>=0;}
+
+    public boolean remove(int k){
+        int i = this.tabela.posicao(k);
+        if(i<0) return false;
+        this.tabela.remover(i);
+        return true;
+    }
+
+    /**
+     * Soma uma quantidade ao valor de uma chave (que começa em 0 caso não exista).
+     * @param k, chave.
+     * @param delta, quantidade a somar.
+     * @return novo valor.
+     */
+    public int somar(int k, int delta){
+        int i = this.tabela.inserir(k);
+        if(i<0) i=-i-1;
+        int v = this.tabela.valor(i)+delta;
+        this.tabela.setValor(i, v);
+        return v;
+    }
+
+    /**
+     * Soma de todos os valores, mantida a cada alteração do mapa (tempo constante).
+     * @return soma dos valores.
+     */
+    public int somaValores(){return this.tabela.soma();}
+
+    /**
+     * Chaves do mapa, sem boxing.
+     * @return array com as chaves (sem ordem definida).
+     */
+    public int[] chaves(){return this.tabela.chaves();}
+
+    @Override
+    public Integer get(Object o){
+        if(!(o instanceof Integer)) return null;
+        int i = this.tabela.posicao(((Integer) o).intValue());
+        return i<0 ? null : this.tabela.valor(i);
+    }
+
+    @Override
+    public Integer put(Integer k, Integer v){
+        int i = this.tabela.inserir(k.intValue());
+        Integer antigo = null;
+        if(i<0){
+            i=-i-1;
+            antigo=this.tabela.valor(i);
+        }
+        this.tabela.setValor(i, v.intValue());
+        return antigo;
+    }
+
+    @Override
+    public Integer remove(Object o){
+        if(!(o instanceof Integer)) return null;
+        int i = this.tabela.posicao(((Integer) o).intValue());
+        if(i<0) return null;
+        int antigo = this.tabela.valor(i);
+        this.tabela.remover(i);
+        return antigo;
+    }
+
+    @Override
+    public boolean containsKey(Object o){return o instanceof Integer && this.containsKey(((Integer) o).intValue());}
+
+    @Override
+    public boolean containsValue(Object o){
+        if(!(o instanceof Integer)) return false;
+        int v = ((Integer) o).intValue();
+        for(int i=this.tabela.seguinte(0); i>=0; i=this.tabela.seguinte(i+1)) if(this.tabela.valor(i)==v) return true;
+        return false;
+    }
+
+    @Override
+    public int size(){return this.tabela.tamanho();}
+
+    @Override
+    public void clear(){this.tabela.limpar();}
+
+    @Override
+    public Set<Map.Entry<Integer,Integer>> entrySet(){
+        if(this.entradas==null){
+            this.entradas=new AbstractSet<Map.Entry<Integer,Integer>>() {
+                @Override
+                public Iterator<Map.Entry<Integer,Integer>> iterator(){
+                    return tabela.new Percurso<Map.Entry<Integer,Integer>>() {
+                        @Override
+                        public Map.Entry<Integer,Integer> next(){
+                            int i = this.avancar();
+                            return new Entrada(tabela.chave(i), tabela.valor(i));
+                        }
+                    };
+                }
+                @Override
+                public int size(){return tabela.tamanho();}
+                @Override
+                public void clear(){tabela.limpar();}
+            };
+        }
+        return this.entradas;
+    }
+
+    @Override
+    public int hashCode(){
+        int h = 0;
+        for(int i=this.tabela.seguinte(0); i>=0; i=this.tabela.seguinte(i+1)) h+=this.tabela.chave(i)^this.tabela.valor(i);
+        return h; // igual ao de Map<Integer,Integer>
+    }
+
+
+    /*Entrada devolvida pela iteração; setValue altera o mapa*/
+    private final class Entrada extends AbstractMap.SimpleEntry<Integer,Integer> {
+        private Entrada(int k, int v){super(k, v);}
+
+        @Override
+        public Integer setValue(Integer v){
+            IntIntMap.this.put(this.getKey().intValue(), v.intValue());
+            return super.setValue(v);
+        }
+    }
+}
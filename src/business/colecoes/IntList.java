@@ -0,0 +1,157 @@
+package business.colecoes;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Lista de int sem boxing, sobre um int[] que cresce conforme necessário.
+ *
+ * Implementa List&lt;Integer&gt;, mas as operações com int (add, getInt, setInt, contains, indexOf,
+ * toIntArray) não criam objetos. Uma lista vazia não aloca arrays. Não aceita null e não é sincronizada.
+ * @author Jorge Caldas, José Cortez, Marcelo Gonçalves, Ricardo Silva
+ * @version 2015.01.17
+ */
+
+public final class IntList extends AbstractList<Integer> implements RandomAccess {
+
+    private static final int[] VAZIO = new int[0];
+    private static final int CAPACIDADE_MINIMA = 4;
+
+    // Variáveis de instância
+    private int[] elementos;
+    private int tamanho;
+
+    /**
+     * Construtor vazio.
+     */
+    public IntList(){this.elementos=VAZIO;}
+
+    /**
+     * Construtor parameterizado.
+     * @param esperados, nº de elementos esperado.
+     */
+    public IntList(int esperados){this.elementos=esperados>0 ? new int[esperados] : VAZIO;}
+
+    /**
+     * Construtor de cópia.
+     * @param c, coleção de inteiros.
+     */
+    public IntList(Collection<Integer> c){
+        if(c instanceof IntList){
+            IntList l = (IntList) c;
+            this.elementos=l.tamanho==0 ? VAZIO : Arrays.copyOf(l.elementos, l.tamanho);
+            this.tamanho=l.tamanho;
+        }
+        else{
+            this.elementos=c.isEmpty() ? VAZIO : new int[c.size()];
+            for(Integer n : c) this.add(n.intValue());
+        }
+    }
+
+    /**
+     * Lista com os elementos de uma lista; uma IntList é devolvida tal como está (sem cópia), como
+     * acontecia com os setters das entidades antes de usarem IntList.
+     * @param l, lista de inteiros (null é tratada como vazia).
+     * @return IntList.
+     */
+    public static IntList de(List<Integer> l){
+        if(l instanceof IntList) return (IntList) l;
+        return l==null ? new IntList() : new IntList(l);
+    }
+
+    public boolean add(int n){
+        this.garantir(this.tamanho+1);
+        this.elementos[this.tamanho++]=n;
+        this.modCount++;
+        return true;
+    }
+
+    public int getInt(int i){
+        this.verificar(i);
+        return this.elementos[i];
+    }
+
+    public int setInt(int i, int n){
+        this.verificar(i);
+        int antigo = this.elementos[i];
+        this.elementos[i]=n;
+        return antigo;
+    }
+
+    public boolean contains(int n){return this.indexOf(n)>=0;}
+
+    public int indexOf(int n){
+        for(int i=0; i<this.tamanho; i++) if(this.elementos[i]==n) return i;
+        return -1;
+    }
+
+    /**
+     * Elementos da lista, sem boxing.
+     * @return cópia dos elementos, pela ordem da lista.
+     */
+    public int[] toIntArray(){return Arrays.copyOf(this.elementos, this.tamanho);}
+
+    @Override
+    public Integer get(int i){return this.getInt(i);}
+
+    @Override
+    public Integer set(int i, Integer n){return this.setInt(i, n.intValue());}
+
+    @Override
+    public boolean add(Integer n){return this.add(n.intValue());}
+
+    @Override
+    public void add(int i, Integer n){
+        if(i<0 || i>this.tamanho) throw new IndexOutOfBoundsException("Index: "+i+", Size: "+this.tamanho);
+        this.garantir(this.tamanho+1);
+        System.arraycopy(this.elementos, i, this.elementos, i+1, this.tamanho-i);
+        this.elementos[i]=n.intValue();
+        this.tamanho++;
+        this.modCount++;
+    }
+
+    @Override
+    public Integer remove(int i){
+        this.verificar(i);
+        int antigo = this.elementos[i];
+        System.arraycopy(this.elementos, i+1, this.elementos, i, this.tamanho-i-1);
+        this.tamanho--;
+        this.modCount++;
+        return antigo;
+    }
+
+    @Override
+    public boolean contains(Object o){return o instanceof Integer && this.contains(((Integer) o).intValue());}
+
+    @Override
+    public int indexOf(Object o){return o instanceof Integer ? this.indexOf(((Integer) o).intValue()) : -1;}
+
+    @Override
+    public int size(){return this.tamanho;}
+
+    @Override
+    public void clear(){
+        this.elementos=VAZIO;
+        this.tamanho=0;
+        this.modCount++;
+    }
+
+    @Override
+    public int hashCode(){
+        int h = 1;
+        for(int i=0; i<this.tamanho; i++) h=31*h+this.elementos[i];
+        return h; // igual ao de List<Integer>
+    }
+
+    private void garantir(int n){
+        if(n>this.elementos.length)
+            this.elementos=Arrays.copyOf(this.elementos, Math.max(n, Math.max(CAPACIDADE_MINIMA, this.elementos.length*2)));
+    }
+
+    private void verificar(int i){
+        if(i<0 || i>=this.tamanho) throw new IndexOutOfBoundsException("Index: "+i+", Size: "+this.tamanho);
+    }
+}
@@ -0,0 +1,113 @@
+package business.colecoes;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * Conjunto de int sem boxing (endereçamento aberto), usado nas referências das entidades em cache
+ * (nºs de tarefas, voluntários, donativos, ...).
+ *
+ * Implementa Set&lt;Integer&gt;, mas as operações com int (add, contains, remove, toIntArray) não criam
+ * objetos; só a iteração como Set&lt;Integer&gt; cria um Integer por elemento. Um conjunto vazio não aloca
+ * arrays. Não aceita null e não é sincronizado.
+ * @author Jorge Caldas, José Cortez, Marcelo Gonçalves, Ricardo Silva
+ * @version 2015.01.17
+ */
+
+public final class IntSet extends AbstractSet<Integer> {
+
+    // Variáveis de instância
+    private final Tabela tabela;
+
+    /**
+     * Construtor vazio.
+     */
+    public IntSet(){this.tabela=new Tabela(false, 0);}
+
+    /**
+     * Construtor parameterizado.
+     * @param esperados, nº de elementos esperado.
+     */
+    public IntSet(int esperados){this.tabela=new Tabela(false, esperados);}
+
+    /**
+     * Construtor de cópia.
+     * @param c, coleção de inteiros.
+     */
+    public IntSet(Collection<Integer> c){
+        if(c instanceof IntSet) this.tabela=new Tabela(((IntSet) c).tabela);
+        else{
+            this.tabela=new Tabela(false, c.size());
+            for(Integer n : c) this.add(n.intValue());
+        }
+    }
+
+    /**
+     * Conjunto com os elementos de uma coleção; um IntSet é devolvido tal como está (sem cópia), como
+     * acontecia com os setters das entidades antes de usarem IntSet.
+     * @param c, coleção de inteiros (null é tratado como vazia).
+     * @return IntSet.
+     */
+    public static IntSet de(Collection<Integer> c){
+        if(c instanceof IntSet) return (IntSet) c;
+        return c==null ? new IntSet() : new IntSet(c);
+    }
+
+    public boolean add(int n){return this.tabela.inserir(n)>=0;}
+
+    public boolean contains(int n){return this.tabela.posicao(n)>=0;}
+
+    public boolean remove(int n){
+        int i = this.tabela.posicao(n);
+        if(i<0) return false;
+        this.tabela.remover(i);
+        return true;
+    }
+
+    /**
+     * Elementos do conjunto, sem boxing.
+     * @return array com os elementos (sem ordem definida).
+     */
+    public int[] toIntArray(){return this.tabela.chaves();}
+
+    @Override
+    public boolean add(Integer n){return this.add(n.intValue());}
+
+    @Override
+    public boolean contains(Object o){return o instanceof Integer && this.contains(((Integer) o).intValue());}
+
+    @Override
+    public boolean remove(Object o){return o instanceof Integer && this.remove(((Integer) o).intValue());}
+
+    @Override
+    public int size(){return this.tabela.tamanho();}
+
+    @Override
+    public void clear(){this.tabela.limpar();}
+
+    @Override
+    public Iterator<Integer> iterator(){
+        return this.tabela.new Percurso<Integer>() {
+            @Override
+            public Integer next(){return tabela.chave(this.avancar());}
+        };
+    }
+
+    @Override
+    public boolean equals(Object o){
+        if(this==o) return true;
+        if(!(o instanceof IntSet)) return super.equals(o);
+        IntSet s = (IntSet) o;
+        if(s.size()!=this.size()) return false;
+        for(int n : s.toIntArray()) if(!this.contains(n)) return false;
+        return true;
+    }
+
+    @Override
+    public int hashCode(){
+        int h = 0;
+        for(int i=this.tabela.seguinte(0); i>=0; i=this.tabela.seguinte(i+1)) h+=this.tabela.chave(i);
+        return h; // igual ao de Set<Integer>: soma dos hashCode (o próprio valor) dos elementos
+    }
+}
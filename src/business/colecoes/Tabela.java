@@ -0,0 +1,251 @@
+package business.colecoes;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Tabela de dispersão de chaves int com endereçamento aberto (sondagem linear), partilhada por IntSet e
+ * IntIntMap.
+ *
+ * As chaves ficam num int[] cujo tamanho é uma potência de 2, mais uma posição final reservada à chave 0
+ * (0 marca as posições livres); nos mapas, os valores ficam num int[] paralelo. Uma tabela vazia não aloca
+ * arrays. A remoção desloca as chaves seguintes (backward shift), pelo que não há marcas de remoção.
+ * Nos mapas, a soma dos valores é mantida a cada alteração (setValor, remover, limpar), pelo que não é
+ * preciso percorrer a tabela para a obter.
+ * @author Jorge Caldas, José Cortez, Marcelo Gonçalves, Ricardo Silva
+ * @version 2015.01.17
+ */
+
+final class Tabela {
+
+    private static final int[] VAZIO = new int[0];
+    private static final int CAPACIDADE_MINIMA = 4;
+
+    // Variáveis de instância
+    private final boolean comValores;
+    private int[] chaves;       // posições 0..n-1 por dispersão (0 = livre); posição n reservada à chave 0
+    private int[] valores;      // valor de cada posição (null num conjunto)
+    private boolean temZero;
+    private int tamanho;
+    private int soma;           // soma dos valores (0 num conjunto)
+
+    /**
+     * Construtor parameterizado.
+     * @param comValores, true caso a tabela guarde um valor por chave.
+     * @param esperados, nº de chaves esperado (evita redimensionamentos).
+     */
+    Tabela(boolean comValores, int esperados){
+        this.comValores=comValores;
+        if(esperados>0) this.alocar(capacidade(esperados));
+        else{
+            this.chaves=VAZIO;
+            this.valores=comValores ? VAZIO : null;
+        }
+    }
+
+    /**
+     * Construtor de cópia.
+     * @param t, tabela a copiar.
+     */
+    Tabela(Tabela t){
+        this.comValores=t.comValores;
+        this.chaves=t.chaves.length==0 ? VAZIO : t.chaves.clone();
+        this.valores=t.valores==null || t.valores.length==0 ? t.valores : t.valores.clone();
+        this.temZero=t.temZero;
+        this.tamanho=t.tamanho;
+        this.soma=t.soma;
+    }
+
+    int tamanho(){return this.tamanho;}
+    int soma(){return this.soma;}
+
+    /**
+     * Posição de uma chave.
+     * @param k, chave.
+     * @return posição, ou -1 caso a chave não exista.
+     */
+    int posicao(int k){
+        int n = this.chaves.length-1;
+        if(n<0) return -1;
+        if(k==0) return this.temZero ? n : -1;
+        int m = n-1;
+        for(int i=espalhar(k)&m; ; i=(i+1)&m){
+            int c = this.chaves[i];
+            if(c==k) return i;
+            if(c==0) return -1;
+        }
+    }
+
+    /**
+     * Insere uma chave.
+     * @param k, chave.
+     * @return posição da chave caso seja nova, ou -(posição+1) caso já existisse.
+     */
+    int inserir(int k){
+        if(this.chaves.length==0) this.alocar(CAPACIDADE_MINIMA);
+        int n = this.chaves.length-1;
+        if(k==0){
+            if(this.temZero) return -n-1;
+            this.temZero=true;
+            this.tamanho++;
+            return n;
+        }
+        int m = n-1, i = espalhar(k)&m;
+        for(; this.chaves[i]!=0; i=(i+1)&m){
+            if(this.chaves[i]==k) return -i-1;
+        }
+        this.chaves[i]=k;
+        this.tamanho++;
+        if((this.tamanho-(this.temZero ? 1 : 0))*4 > n*3){
+            this.redimensionar(n*2);
+            return this.posicao(k);
+        }
+        return i;
+    }
+
+    /**
+     * Remove a chave de uma posição, deslocando as chaves seguintes da mesma sequência de sondagem.
+     * @param i, posição ocupada.
+     */
+    void remover(int i){
+        int n = this.chaves.length-1;
+        this.tamanho--;
+        if(this.comValores) this.soma-=this.valores[i];
+        if(i==n){
+            this.temZero=false;
+            if(this.comValores) this.valores[n]=0;
+            return;
+        }
+        int m = n-1;
+        for(int j=(i+1)&m; this.chaves[j]!=0; j=(j+1)&m){
+            int h = espalhar(this.chaves[j])&m;
+            // a chave em j passa para o buraco i caso a sua posição de origem não esteja (ciclicamente) em ]i, j]
+            if(i<=j ? (h<=i || h>j) : (h<=i && h>j)){
+                this.chaves[i]=this.chaves[j];
+                if(this.comValores) this.valores[i]=this.valores[j];
+                i=j;
+            }
+        }
+        this.chaves[i]=0;
+        if(this.comValores) this.valores[i]=0;
+    }
+
+    /**
+     * Primeira posição ocupada a partir de uma posição.
+     * @param i, posição inicial.
+     * @return posição ocupada, ou -1 caso não haja mais.
+     */
+    int seguinte(int i){
+        int n = this.chaves.length-1;
+        for(; i<n; i++) if(this.chaves[i]!=0) return i;
+        return i==n && this.temZero ? n : -1;
+    }
+
+    int chave(int i){return i==this.chaves.length-1 ? 0 : this.chaves[i];}
+    int valor(int i){return this.valores[i];}
+    void setValor(int i, int v){
+        this.soma+=v-this.valores[i];
+        this.valores[i]=v;
+    }
+
+    /**
+     * Chaves da tabela, pela ordem das posições.
+     * @return array com as chaves.
+     */
+    int[] chaves(){
+        int[] res = new int[this.tamanho];
+        int r = 0;
+        for(int i=this.seguinte(0); i>=0; i=this.seguinte(i+1)) res[r++]=this.chave(i);
+        return res;
+    }
+
+    void limpar(){
+        this.chaves=VAZIO;
+        this.valores=this.comValores ? VAZIO : null;
+        this.temZero=false;
+        this.tamanho=0;
+        this.soma=0;
+    }
+
+    private void alocar(int n){
+        this.chaves=new int[n+1];
+        if(this.comValores) this.valores=new int[n+1];
+    }
+
+    private void redimensionar(int n){
+        int[] cs = this.chaves, vs = this.valores;
+        int antigo = cs.length-1, m = n-1;
+        this.alocar(n);
+        for(int i=0; i<antigo; i++){
+            int k = cs[i];
+            if(k==0) continue;
+            int j = espalhar(k)&m;
+            while(this.chaves[j]!=0) j=(j+1)&m;
+            this.chaves[j]=k;
+            if(this.comValores) this.valores[j]=vs[i];
+        }
+        if(this.comValores) this.valores[n]=vs[antigo]; // valor da chave 0
+    }
+
+    /*Menor potência de 2 (>= CAPACIDADE_MINIMA) que guarda o nº de chaves com ocupação até 3/4*/
+    private static int capacidade(int esperados){
+        int n = CAPACIDADE_MINIMA;
+        while(n<(1<<30) && (long)esperados*4 > (long)n*3) n<<=1;
+        return n;
+    }
+
+    /*Dispersão de Fibonacci: nºs consecutivos (os ids da base de dados) ficam espalhados pela tabela*/
+    private static int espalhar(int k){
+        int h = k*0x9E3779B9;
+        return h^(h>>>16);
+    }
+
+
+    /**
+     * Iterador sobre as posições ocupadas. Uma remoção pode deslocar chaves já visitadas para posições por
+     * visitar (e vice-versa), pelo que, depois da primeira remoção, o percurso continua sobre uma cópia das
+     * chaves que faltavam visitar.
+     * @param <E> tipo dos elementos devolvidos.
+     */
+    abstract class Percurso<E> implements Iterator<E> {
+        private int proxima = Tabela.this.seguinte(0);
+        private int[] resto;
+        private int r;
+        private int ultima;
+        private boolean removivel;
+
+        @Override
+        public boolean hasNext(){return this.resto==null ? this.proxima>=0 : this.r<this.resto.length;}
+
+        /**
+         * Avança para o próximo elemento.
+         * @return posição do elemento na tabela.
+         */
+        protected int avancar(){
+            if(!this.hasNext()) throw new NoSuchElementException();
+            int i;
+            if(this.resto==null){
+                i=this.proxima;
+                this.proxima=Tabela.this.seguinte(i+1);
+            }
+            else i=Tabela.this.posicao(this.resto[this.r++]);
+            this.ultima=Tabela.this.chave(i);
+            this.removivel=true;
+            return i;
+        }
+
+        @Override
+        public void remove(){
+            if(!this.removivel) throw new IllegalStateException();
+            this.removivel=false;
+            if(this.resto==null){
+                int c = 0;
+                for(int i=this.proxima; i>=0; i=Tabela.this.seguinte(i+1)) c++;
+                this.resto=new int[c];
+                c=0;
+                for(int i=this.proxima; i>=0; i=Tabela.this.seguinte(i+1)) this.resto[c++]=Tabela.this.chave(i);
+            }
+            Tabela.this.remover(Tabela.this.posicao(this.ultima));
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package business.doacoes;
 
+import business.colecoes.IntSet;
 import java.util.Arrays;
 import java.util.Set;
 import java.util.HashSet;
@@ -24,7 +25,7 @@ class Doador implements IDoador {
     private String email;
     private String site;
     private String tipo;
-    private Set<Integer> donativos;
+    private IntSet donativos;
     
     
     /**
@@ -44,7 +45,7 @@ class Doador implements IDoador {
         this.telefone="";
         this.site="";
         this.email="";
-        this.donativos = new HashSet();
+        this.donativos = new IntSet();
         
         
     }
@@ -81,7 +82,7 @@ class Doador implements IDoador {
         this.telefone = tlf;
         this.site = site;
         this.email = em;
-        this.donativos = donativos;
+        this.donativos = IntSet.de(donativos);
     }
     /**Construtor de cópia
      * 
@@ -101,7 +102,7 @@ class Doador implements IDoador {
         this.telefone = d.getTelefone();
         this.site = d.getSite();
         this.email = d.getEmail();
-        this.donativos = d.getDonativos();
+        this.donativos = new IntSet(d.getDonativos());
     }
     /*Métodos Get*/
     @Override
@@ -129,7 +130,7 @@ class Doador implements IDoador {
     @Override
     public String getEmail() {return this.pessoaContato;}
     @Override
-    public Set getDonativos () {return this.donativos;}
+    public IntSet getDonativos () {return this.donativos;}
     /*Métodos Set*/
     @Override
     public void setPessoaContato (String pc) { this.pessoaContato = pc;}
@@ -156,7 +157,7 @@ class Doador implements IDoador {
     @Override
     public void setEmail (String em) { this.email = em;}
     @Override
-    public void setDonativos (Set<Integer> d) {this.donativos = d;}
+    public void setDonativos (Set<Integer> d) {this.donativos = IntSet.de(d);}
     
     /*Método equals(), clone(), hashCode()*/
     @Override
@@ -166,7 +167,7 @@ class Doador implements IDoador {
         if (o==null || this.getClass()!=o.getClass()) return false;
         Doador d = (Doador) o;
      
-        for (Integer i: donativos)
+        for (int i: donativos.toIntArray())
             if (!d.getDonativos().contains(i)) return false;
         
         return (this.pessoaContato.equals(d.getPessoaContato()) && this.nif.equals(d.getNIF()) && this.tipo.equals(d.getTipo())
@@ -1,8 +1,8 @@
 package business.doacoes;
 
-import java.util.GregorianCalendar;
+import business.Data;
+import business.colecoes.IntSet;
 import java.util.Set;
-import java.util.HashSet;
 
 /** Classe que agrega todos os campos comuns a um donativo
  *
@@ -13,19 +13,19 @@ import java.util.HashSet;
 abstract class Donativo implements IDonativo {
     //Variáveis de instância
     private int nRecibo;
-    private GregorianCalendar data;
+    private Data data;
     private String obs;
-    private Set<Integer> projetos;
+    private IntSet projetos;
     
     /**
      * Construtor vazio 
      */
     public Donativo ()
     {
-        this.data = new GregorianCalendar();
+        this.data = Data.hoje();
         this.nRecibo = 0;
         this.obs="";
-        this.projetos = new HashSet<Integer>();
+        this.projetos = new IntSet();
     }
     
     /**Construtor parametrizado
@@ -35,12 +35,12 @@ abstract class Donativo implements IDonativo {
      * @param obs Observações adicionais
      * @param proj Lista de projetos para as quais este donativo foi aplicado
      */
-    public Donativo (GregorianCalendar data, int nrecibo, String obs, Set<Integer> proj)
+    public Donativo (Data data, int nrecibo, String obs, Set<Integer> proj)
     {
         this.data = data;
         this.nRecibo = nrecibo;
         this.obs = obs;
-        this.projetos = proj;
+        this.projetos = IntSet.de(proj);
     }
     
     /**Construtor de cópia
@@ -52,27 +52,27 @@ abstract class Donativo implements IDonativo {
         this.data = d.getData();
         this.nRecibo = d.getNRecibo();
         this.obs = d.getObs();
-        this.projetos = d.getProjetos();
+        this.projetos = new IntSet(d.getProjetos());
     }
     
     /*gets*/
     @Override
-    public GregorianCalendar getData() { return this.data;}
+    public Data getData() { return this.data;}
     @Override
     public int getNRecibo() {return this.nRecibo;}
     @Override
     public String getObs() { return this.obs;}
     @Override
-    public Set<Integer> getProjetos() { return this.projetos;}
+    public IntSet getProjetos() { return this.projetos;}
     /*sets*/
     @Override
-    public void setData (GregorianCalendar data) {this.data = data;}
+    public void setData (Data data) {this.data = data;}
     @Override
     public void setNRecibo (int nRecibo) {this.nRecibo = nRecibo;}
     @Override
     public void setObs (String obs) {this.obs = obs;}
     @Override
-    public void setProjetos (Set<Integer> proj) {this.projetos = proj;}
+    public void setProjetos (Set<Integer> proj) {this.projetos = IntSet.de(proj);}
     
     /*Equals, clone e hashcode*/
     @Override
@@ -82,7 +82,7 @@ abstract class Donativo implements IDonativo {
         if (o==null || this.getClass()!= o.getClass()) return false;
         Donativo d = (Donativo) o;
         
-        for (Integer i: projetos)
+        for (int i: projetos.toIntArray())
             if(!d.getProjetos().contains(i)) return false;
         return (this.data.equals(d.getData()) && this.nRecibo == d.getNRecibo() && this.obs.equals(d.getObs()));
     }
@@ -1,6 +1,7 @@
 package business.doacoes;
 
-import java.util.GregorianCalendar;
+import business.Data;
+import business.colecoes.IntSet;
 import java.util.Arrays;
 import java.util.Set;
 
@@ -35,7 +36,7 @@ class DonativoMaterial extends Donativo implements IDonativoMaterial {
      * @param nome Nome do material a ser doado
      * @param quant Quantidade
      */
-    public DonativoMaterial (GregorianCalendar data, int nRecibo, String obs, Set<Integer> proj, String nome, int quant)
+    public DonativoMaterial (Data data, int nRecibo, String obs, Set<Integer> proj, String nome, int quant)
     {
         super (data,nRecibo,obs,proj);
         this.nomeMaterial = nome;
@@ -44,7 +45,7 @@ class DonativoMaterial extends Donativo implements IDonativoMaterial {
     
     public DonativoMaterial (DonativoMaterial d)
     {
-        super (d.getData(), d.getNRecibo(), d.getObs(), d.getProjetos());
+        super (d.getData(), d.getNRecibo(), d.getObs(), new IntSet(d.getProjetos()));
         this.nomeMaterial = d.getNomeMaterial();
         this.quantidade = d.getQuantidade();
     }
@@ -1,6 +1,7 @@
 package business.doacoes;
 
-import java.util.GregorianCalendar;
+import business.Data;
+import business.colecoes.IntSet;
 import java.util.Arrays;
 import java.util.Set;
 
@@ -31,7 +32,7 @@ class DonativoMonetario extends Donativo implements IDonativoMonetario {
      * @param proj Lista de projetos para os quais este donativo foi aplicado
      * @param valor  
      */
-    public DonativoMonetario (GregorianCalendar data, int nRecibo, String obs, Set<Integer> proj, float valor)
+    public DonativoMonetario (Data data, int nRecibo, String obs, Set<Integer> proj, float valor)
     {
         super (data, nRecibo, obs, proj);
         this.valor = valor;
@@ -43,7 +44,7 @@ class DonativoMonetario extends Donativo implements IDonativoMonetario {
      */
     public DonativoMonetario (DonativoMonetario d)
     {
-        super (d.getData(), d.getNRecibo(), d.getObs(), d.getProjetos());
+        super (d.getData(), d.getNRecibo(), d.getObs(), new IntSet(d.getProjetos()));
         this.valor = d.getValor();
     }
     
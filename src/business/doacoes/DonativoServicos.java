@@ -1,7 +1,8 @@
 package business.doacoes;
 
+import business.Data;
+import business.colecoes.IntSet;
 import java.util.Arrays;
-import java.util.GregorianCalendar;
 import java.util.Set;
 
 /** Classe que agrega a informação sobre os donativos de serviços
@@ -32,7 +33,7 @@ class DonativoServicos extends Donativo implements IDonativoServicos {
      * @param proj Lista de projetos para os quais este donativo foi aplicado
      * @param tipo  Tipo de serviço
      */
-    public DonativoServicos (GregorianCalendar data, int nRecibo, String obs, Set<Integer> proj, String tipo)
+    public DonativoServicos (Data data, int nRecibo, String obs, Set<Integer> proj, String tipo)
     {
         super (data,nRecibo,obs,proj);
         this.tipo = tipo;
@@ -44,7 +45,7 @@ class DonativoServicos extends Donativo implements IDonativoServicos {
      */
     public DonativoServicos (DonativoServicos d)
     {
-        super (d.getData(), d.getNRecibo(), d.getObs(), d.getProjetos());
+        super (d.getData(), d.getNRecibo(), d.getObs(), new IntSet(d.getProjetos()));
         this.tipo = d.getTipo();
     }
     
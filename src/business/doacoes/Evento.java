@@ -1,9 +1,9 @@
 package business.doacoes;
 
-import java.util.GregorianCalendar;
+import business.Data;
+import business.colecoes.IntSet;
 import java.util.Arrays;
 import java.util.Set;
-import java.util.HashSet;
 
 /** Classe que agrega informação sobre um evento de angariação.
  *
@@ -15,10 +15,10 @@ class Evento implements IEvento {
     private int nr;
     private String designacao;
     private int nrPessoas;
-    private GregorianCalendar dataRealizacao;
+    private Data dataRealizacao;
     private float totalAngariado;
     private String notas;
-    private Set<Integer> donativos;
+    private IntSet donativos;
     
     /**
      * Construtor vazio
@@ -28,11 +28,11 @@ class Evento implements IEvento {
         //Variáveis de instância
         this.nr = 0;
         this.nrPessoas = 0;
-        this.dataRealizacao = new GregorianCalendar();
+        this.dataRealizacao = Data.hoje();
         this.totalAngariado = 0;
         this.designacao = "";
         this.notas = "";
-        this.donativos = new HashSet();
+        this.donativos = new IntSet();
     }
         /**Construtor parametrizado
          * 
@@ -44,7 +44,7 @@ class Evento implements IEvento {
          * @param notas Notas adicionais 
          * @don Donativos angariados 
          */
-        public Evento (int nr, int nrP, GregorianCalendar dataR, float total, String designacao, String notas,
+        public Evento (int nr, int nrP, Data dataR, float total, String designacao, String notas,
                 Set<Integer> don)
         {
             this.nr = nr;
@@ -53,7 +53,7 @@ class Evento implements IEvento {
             this.totalAngariado = total;
             this.designacao = designacao;
             this.notas = notas;
-            this.donativos = don;
+            this.donativos = IntSet.de(don);
         }
         
         /**Construtor parametrizado
@@ -68,7 +68,7 @@ class Evento implements IEvento {
             this.totalAngariado = e.getTotalAngariado();
             this.designacao = e.getDesignacao();
             this.notas = e.getNotas();
-            this.donativos = e.getDonativos();
+            this.donativos = new IntSet(e.getDonativos());
         }
         
         /*Métodos get*/
@@ -77,7 +77,7 @@ class Evento implements IEvento {
         @Override
         public int getNrPessoas () { return this.nrPessoas;}
         @Override
-        public GregorianCalendar getDataRealizacao() { return this.dataRealizacao;}
+        public Data getDataRealizacao() { return this.dataRealizacao;}
         @Override
         public float getTotalAngariado() { return this.totalAngariado;}
         @Override
@@ -85,14 +85,14 @@ class Evento implements IEvento {
         @Override
         public String getNotas () { return this.notas;}
         @Override
-        public Set<Integer> getDonativos () {return this.donativos;}
+        public IntSet getDonativos () {return this.donativos;}
         /*Métodos set*/
         @Override
         public void setNr (int nr) { this.nr = nr;}
         @Override
         public void setNrPessoas (int nrP) {this.nrPessoas = nrP;}
         @Override
-        public void setDataRealizacao(GregorianCalendar data) { this.dataRealizacao = data;}
+        public void setDataRealizacao(Data data) { this.dataRealizacao = data;}
         @Override
         public void setTotalAngariado (float total) { this.totalAngariado = total;}
         @Override
@@ -100,7 +100,7 @@ class Evento implements IEvento {
         @Override
         public void setNotas (String notas) {this.notas = notas;}
         @Override
-        public void setDonativos (Set<Integer> don) {this.donativos = don;}
+        public void setDonativos (Set<Integer> don) {this.donativos = IntSet.de(don);}
         
         
         @Override
@@ -110,7 +110,7 @@ class Evento implements IEvento {
             if (o==this || this.getClass()!=o.getClass()) return true;
             Evento e = (Evento) o;
             
-            for (Integer i : donativos)
+            for (int i : donativos.toIntArray())
                 if (!e.getDonativos().contains(i)) return false;
             return (this.nr == e.getNr() && this.nrPessoas == e.getNrPessoas()
                     && this.dataRealizacao.equals(e.getDataRealizacao()) && this.totalAngariado == e.getTotalAngariado()
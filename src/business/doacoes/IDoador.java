@@ -1,5 +1,6 @@
 package business.doacoes;
 
+import business.colecoes.IntSet;
 import java.util.Set;
 
 /***Interface que torna classe Doador acessível fora do package doacoes
@@ -21,7 +22,7 @@ public interface IDoador {
     public String getTelefone();
     public String getSite();
     public String getEmail();
-    public Set<Integer> getDonativos ();
+    public IntSet getDonativos ();
     /*sets*/
     public void setPessoaContato (String pc);
     public void setNIF (String nif);
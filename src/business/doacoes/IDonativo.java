@@ -1,7 +1,8 @@
 package business.doacoes;
 
+import business.Data;
+import business.colecoes.IntSet;
 import business.doacoes.Donativo;
-import java.util.GregorianCalendar;
 import java.util.Set;
 
 /**Interface que torna classe Donativo acessível fora do package doacoes
@@ -12,12 +13,12 @@ import java.util.Set;
 public interface IDonativo {
     
     /*gets*/
-    public GregorianCalendar getData ();
+    public Data getData ();
     public int getNRecibo ();
     public String getObs();
-    public Set<Integer> getProjetos();
+    public IntSet getProjetos();
     /*sets*/
-    public void setData (GregorianCalendar data);
+    public void setData (Data data);
     public void setNRecibo (int nRecibo);
     public void setObs (String obs);
     public void setProjetos (Set<Integer> proj);
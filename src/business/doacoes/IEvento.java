@@ -1,6 +1,7 @@
 package business.doacoes;
 
-import java.util.GregorianCalendar;
+import business.Data;
+import business.colecoes.IntSet;
 import java.util.Set;
 
 /***Interface que torna classe Evento acessível fora do package doações
@@ -12,15 +13,15 @@ public interface IEvento {
     /*gets*/
     public int getNr();
     public int getNrPessoas();
-    public GregorianCalendar getDataRealizacao();
+    public Data getDataRealizacao();
     public float getTotalAngariado();
     public String getDesignacao();
     public String getNotas();
-    public Set<Integer> getDonativos ();
+    public IntSet getDonativos ();
     /*sets*/
     public void setNr(int nr);
     public void setNrPessoas (int nrP);
-    public void setDataRealizacao (GregorianCalendar data);
+    public void setDataRealizacao (Data data);
     public void setTotalAngariado (float total);
     public void setDesignacao (String des);
     public void setNotas (String notas);
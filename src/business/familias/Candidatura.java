@@ -1,7 +1,7 @@
 package business.familias;
 
-import java.util.ArrayList;
-import java.util.GregorianCalendar;
+import business.Data;
+import business.colecoes.IntList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -14,12 +14,12 @@ import java.util.List;
 class Candidatura implements ICandidatura{
  
     private int nr;
-    private GregorianCalendar dataSubmissao;
+    private Data dataSubmissao;
     private String estado; // "Em análise", "Aprovada", "Reprovada"
-    private GregorianCalendar dataDecisao;
+    private Data dataDecisao;
     private int funcionarioRegistou; // id do fucionário
     private int funcionarioAprovou;  // id do fucionário
-    private List<Integer> membros;
+    private IntList membros;
     private int representante;
     private String descricao;
     
@@ -36,26 +36,26 @@ class Candidatura implements ICandidatura{
      * @param representante
      * @param descricao 
      */   
-    public Candidatura(int nr, GregorianCalendar dataSub, String estado, GregorianCalendar dataDecisao, int funcionarioRegistou, int funcionarioAprovou, List<Integer> membros, int representante, String descricao) {
+    public Candidatura(int nr, Data dataSub, String estado, Data dataDecisao, int funcionarioRegistou, int funcionarioAprovou, List<Integer> membros, int representante, String descricao) {
        this.nr = nr;
        this.dataSubmissao=dataSub;
        this.dataDecisao=dataDecisao;
        this.estado = estado;
        this.funcionarioRegistou = funcionarioRegistou;
        this.funcionarioAprovou = funcionarioAprovou;
-       this.membros = membros;
+       this.membros = IntList.de(membros);
        this.representante = representante;
        this.descricao = descricao;
     }
 
     public Candidatura() {
        this.nr =0;
-       this.dataSubmissao = new GregorianCalendar();
-       this.dataDecisao = new GregorianCalendar();
+       this.dataSubmissao = Data.hoje();
+       this.dataDecisao = Data.hoje();
        this.estado ="";
        this.funcionarioRegistou =-1;
        this.funcionarioAprovou =-1;
-       this.membros = new ArrayList<>();
+       this.membros = new IntList();
        this.representante = -1;
        this.descricao="";
     }
@@ -67,19 +67,19 @@ class Candidatura implements ICandidatura{
        this.estado=c.getEstado();
        this.funcionarioRegistou =c.getFuncionarioRegistou();
        this.funcionarioAprovou =c.getFuncionarioAprovou();
-       this.membros = c.getMembros();
+       this.membros = new IntList(c.getMembros());
        this.representante = c.getRepresentante();
        this.descricao=c.getDescricao();
     }
 
     // Get`s e Set`s
     @Override
-    public GregorianCalendar getDataSubmissao() {    
+    public Data getDataSubmissao() {    
         return dataSubmissao;
     }
 
     @Override
-    public void setDataSubmissao(GregorianCalendar dataSubmissao) {
+    public void setDataSubmissao(Data dataSubmissao) {
         this.dataSubmissao = dataSubmissao;
     }
 
@@ -94,12 +94,12 @@ class Candidatura implements ICandidatura{
     }
     
     @Override
-    public GregorianCalendar getDataDecisao() {
+    public Data getDataDecisao() {
         return dataDecisao;
     }
 
     @Override
-    public void setDataDecisao(GregorianCalendar dataDecisao) {
+    public void setDataDecisao(Data dataDecisao) {
         this.dataDecisao = dataDecisao;
     }
 
@@ -134,13 +134,13 @@ class Candidatura implements ICandidatura{
     }
 
     @Override
-    public List<Integer> getMembros() {
+    public IntList getMembros() {
         return membros;
     }
 
     @Override
     public void setMembros(List<Integer> membros) {
-        this.membros = membros;
+        this.membros = IntList.de(membros);
     }
 
     @Override
@@ -180,7 +180,7 @@ class Candidatura implements ICandidatura{
         else{
             Candidatura r = (Candidatura) obj; 
              
-             for(int f : this.membros){
+             for(int f : this.membros.toIntArray()){
                 if(!r.getMembros().contains(f)) return false;
             }
         return( this.nr == r.getNr()&&
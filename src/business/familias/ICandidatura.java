@@ -1,6 +1,7 @@
 package business.familias;
 
-import java.util.GregorianCalendar;
+import business.Data;
+import business.colecoes.IntList;
 import java.util.List;
 
 /**
@@ -15,17 +16,17 @@ public interface ICandidatura {
    // Get`s e Set`s
     public int getNr();
     public void setNr(int nr);
-    public GregorianCalendar getDataSubmissao();
-    public void setDataSubmissao(GregorianCalendar dataSubmissao);
-    public GregorianCalendar getDataDecisao();
-    public void setDataDecisao(GregorianCalendar dataDecisao);
+    public Data getDataSubmissao();
+    public void setDataSubmissao(Data dataSubmissao);
+    public Data getDataDecisao();
+    public void setDataDecisao(Data dataDecisao);
     public String getEstado();
     public void setEstado(String estado);
     public int getFuncionarioRegistou();
     public void setFuncionarioRegistou(int funcionarioRegistou);
     public int getFuncionarioAprovou();
     public void setFuncionarioAprovou(int funcionarioAprovou);
-    public List<Integer> getMembros();
+    public IntList getMembros();
     public void setMembros(List<Integer> membros);
     public int getRepresentante();
     public void setRepresentante(int representante);
@@ -5,7 +5,7 @@
  */
 package business.familias;
 
-import java.util.GregorianCalendar;
+import business.Data;
 import java.util.List;
 /**
  *
@@ -22,8 +22,8 @@ public interface IMembro {
     public void setNome(String nome);
     public String getParentesco();
     public void setParentesco(String parentesco);
-    public GregorianCalendar getDataNasc();
-    public void setDataNasc(GregorianCalendar dataNasc) ;
+    public Data getDataNasc();
+    public void setDataNasc(Data dataNasc) ;
     public String getEstadoCivil();
     public void setEstadoCivil(String estadoCivil) ;
     public String getEscolaridade();
@@ -4,7 +4,7 @@
  * and open the template in the editor.
  */
 package business.familias;
-import java.util.GregorianCalendar;
+import business.Data;
 import java.util.HashMap;
 import java.util.List;
 /**
@@ -24,9 +24,9 @@ public interface IRepresentante {
 
     public void setNome(String nome);
 
-    public GregorianCalendar getDataNasc();
+    public Data getDataNasc();
 
-    public void setDataNasc(GregorianCalendar dataNasc);
+    public void setDataNasc(Data dataNasc);
 
     public String getEstadoCivil();
 
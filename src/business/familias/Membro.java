@@ -1,6 +1,6 @@
 package business.familias;
 
-import java.util.GregorianCalendar;
+import business.Data;
 import java.util.Arrays;
 
 /**
@@ -15,7 +15,7 @@ class Membro implements IMembro{
     private int id; //não esta no Diagrama de classe
     private String nome;
     private String parentesco;
-    private GregorianCalendar dataNasc;
+    private Data dataNasc;
     private String estadoCivil;
     private String escolaridade;
     private String ocupacao;
@@ -31,7 +31,7 @@ class Membro implements IMembro{
      * @param escolaridade
      * @param ocupacao 
      */
-    public Membro(int id, String nome, String parentesco, GregorianCalendar dataNasc, 
+    public Membro(int id, String nome, String parentesco, Data dataNasc, 
             String estadoCivil, String escolaridade, String ocupacao) {
         this.id = id;
         this.nome = nome;
@@ -45,7 +45,7 @@ class Membro implements IMembro{
         this.id = 0;
         this.nome = "";
         this.parentesco = "";
-        this.dataNasc = new GregorianCalendar();
+        this.dataNasc = Data.hoje();
         this.estadoCivil = "";
         this.escolaridade = "";
         this.ocupacao = "";
@@ -92,12 +92,12 @@ class Membro implements IMembro{
     }
 
     @Override
-    public GregorianCalendar getDataNasc() {
+    public Data getDataNasc() {
         return dataNasc;
     }
 
     @Override
-    public void setDataNasc(GregorianCalendar dataNasc) {
+    public void setDataNasc(Data dataNasc) {
         this.dataNasc = dataNasc;
     }
 
@@ -1,6 +1,6 @@
 package business.familias;
 
-import java.util.GregorianCalendar;
+import business.Data;
 import java.util.Arrays;
 
 /**
@@ -13,7 +13,7 @@ class Representante implements IRepresentante {
 
     private int nr;
     private String nome;
-    private GregorianCalendar dataNasc;
+    private Data dataNasc;
     private String estadoCivil;
     private String profissao;
     private String rua;
@@ -30,7 +30,7 @@ class Representante implements IRepresentante {
     public Representante(){
         this.nr=0; 
         this.nome="";
-        this.dataNasc=new GregorianCalendar();
+        this.dataNasc=Data.hoje();
         this.estadoCivil="";
         this.profissao="";
         this.rua="";
@@ -61,7 +61,7 @@ class Representante implements IRepresentante {
   * @param telemovel
   * @param rendimentoAgregado 
   */
-     public Representante(int nr, String nome, GregorianCalendar dataNasc, String estadoCivil,
+     public Representante(int nr, String nome, Data dataNasc, String estadoCivil,
              String profissao, String rua, String localidade, String codPostal,
              String naturalidade, String nacionalidade, String escolaridade, String telefone,
              String telemovel, float rendimentoAgregado) {
@@ -117,11 +117,11 @@ class Representante implements IRepresentante {
         this.nome = nome;
     }
 
-    public GregorianCalendar getDataNasc() {
+    public Data getDataNasc() {
         return dataNasc;
     }
 
-    public void setDataNasc(GregorianCalendar dataNasc) {
+    public void setDataNasc(Data dataNasc) {
         this.dataNasc = dataNasc;
     }
 
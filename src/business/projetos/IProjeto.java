@@ -1,5 +1,8 @@
 package business.projetos;
 
+import business.Data;
+import business.colecoes.IntList;
+import business.colecoes.IntSet;
 import business.familias.ICandidatura;
 import java.util.*;
 
@@ -22,21 +25,21 @@ public interface IProjeto {
     public void setCustoFinal(float custoFinal);
     public float getPrestacao();
     public void setPrestacao(float prestacao);
-    public GregorianCalendar getDataInicial();
-    public void setDataInicial(GregorianCalendar dataInicial);
-    public GregorianCalendar getDataFinal();
-    public void setDataFinal(GregorianCalendar dataFinal);
+    public Data getDataInicial();
+    public void setDataInicial(Data dataInicial);
+    public Data getDataFinal();
+    public void setDataFinal(Data dataFinal);
     public int getFuncionarioReg();
     public void setFuncionarioReg(int fr);
     public int getFuncionarioEnc();
     public void setFuncionarioEnc(int fr);
-    public Set<Integer> getTarefa();
+    public IntSet getTarefa();
     public void setTarefa(Set<Integer> t);
-    public Set<Integer> getVoluntarios();
+    public IntSet getVoluntarios();
     public void setVoluntarios(Set<Integer> voluntarios);
     public ICandidatura getCandidatura();
     public void setCandidatura(ICandidatura candidatura);
-    public List<Integer> getNRecibo();
+    public IntList getNRecibo();
     public void setNRecibo(List<Integer> e);
 
     /* Equals e Clone */
@@ -1,5 +1,7 @@
 package business.projetos;
 
+import business.Data;
+import business.colecoes.IntIntMap;
 import java.util.*;
 
 /**
@@ -10,14 +12,14 @@ import java.util.*;
 public interface ITarefa {
     public int getId();
     public void setId(int id);
-    public GregorianCalendar getDataInicioT();
-    public void setDataInicioT(GregorianCalendar data);
-    public GregorianCalendar getDataFinalT();
-    public void setDataFinalT(GregorianCalendar data);
+    public Data getDataInicioT();
+    public void setDataInicioT(Data data);
+    public Data getDataFinalT();
+    public void setDataFinalT(Data data);
     public String getDesig();
     public void setDesig(String designacao);
-    public HashMap<Integer, Integer> getMaterial();
-    public void setMaterial(HashMap<Integer,Integer> r);
+    public IntIntMap getMaterial();
+    public void setMaterial(Map<Integer,Integer> r);
     public String getDesc();
     public void setDesc(String desc);   
 
@@ -1,5 +1,8 @@
 package business.projetos;
 
+import business.Data;
+import business.colecoes.IntList;
+import business.colecoes.IntSet;
 import business.familias.CandidaturaFactory;
 import business.familias.ICandidatura;
 import java.util.*;
@@ -14,18 +17,18 @@ class Projeto implements IProjeto{
     private float orcamento;
     private float custoFinal;
     private float prestacao; 
-    private GregorianCalendar dataInicial;
-    private GregorianCalendar dataFinal;
+    private Data dataInicial;
+    private Data dataFinal;
     private String obs;    
     private String estado;
     private int funcionarioEncerrou;    
     private int funcionarioRegistou; 
     // private TarefaDAO tarefas; 
-    private Set<Integer> tarefa;
+    private IntSet tarefa;
     // Referências de voluntários que trabalha no projeto
-    private Set<Integer> voluntarios; 
+    private IntSet voluntarios;
     // Referências da donativos feitos para o projeto -- MUDAR DIAGRAMA!! NÂO ESTÁ DEFINIDO
-    private List<Integer> nrecibos; /* Numeros dos recibos de donativos deste projeto */  
+    private IntList nrecibos; /* Numeros dos recibos de donativos deste projeto */  
     // Referência para a candidatura
     private ICandidatura candidatura;
 
@@ -34,9 +37,9 @@ class Projeto implements IProjeto{
      */
     public Projeto() {
         this.nr = 0; this.estado = ""; this.obs = ""; this.orcamento = 0; this.custoFinal = 0;
-        this.prestacao = 0; this.dataInicial = new GregorianCalendar(); this.dataFinal = new GregorianCalendar();
-        this.funcionarioRegistou = 0; this.funcionarioEncerrou = 0; this.tarefa = new TreeSet<>();
-        this.voluntarios = new TreeSet<>(); this.nrecibos = new ArrayList<>();
+        this.prestacao = 0; this.dataInicial = Data.hoje(); this.dataFinal = Data.hoje();
+        this.funcionarioRegistou = 0; this.funcionarioEncerrou = 0; this.tarefa = new IntSet();
+        this.voluntarios = new IntSet(); this.nrecibos = new IntList();
         this.candidatura = new CandidaturaFactory().createCandidatura();
     }
     
@@ -59,7 +62,7 @@ class Projeto implements IProjeto{
      * @param candidatura, candidatura que originou o projeto
      */
     public Projeto(int nr, String estado, String obs, int orcamento, float custoFinal,
-            float prestacao, GregorianCalendar dataInicial, GregorianCalendar dataFinal,
+            float prestacao, Data dataInicial, Data dataFinal,
             int funcionarioRegistou, int funcionarioEncerrou, Set<Integer> tarefa,
             Set<Integer> voluntarios, List<Integer> ids, List<Integer> nrecibos,
             ICandidatura candidatura) {
@@ -73,9 +76,9 @@ class Projeto implements IProjeto{
         this.dataFinal = dataFinal;
         this.funcionarioRegistou = funcionarioRegistou;
         this.funcionarioEncerrou = funcionarioEncerrou;
-        this.tarefa = tarefa;
-        this.voluntarios = voluntarios;
-        this.nrecibos = nrecibos;
+        this.tarefa = IntSet.de(tarefa);
+        this.voluntarios = IntSet.de(voluntarios);
+        this.nrecibos = IntList.de(nrecibos);
         this.candidatura = candidatura;
     }
     
@@ -88,8 +91,9 @@ class Projeto implements IProjeto{
         this.custoFinal = p.getCustoFinal(); this.prestacao = p.getPrestacao(); 
         this.dataInicial = p.getDataInicial(); this.dataFinal = p.getDataFinal();
         this.funcionarioRegistou = p.getFuncionarioReg(); this.funcionarioEncerrou = p.getFuncionarioEnc();
-        this.tarefa = p.getTarefa(); this.voluntarios = p.getVoluntarios(); 
-        this.nrecibos = p.getNRecibo(); this.candidatura =  p.getCandidatura();
+        this.tarefa = new IntSet(p.getTarefa()); this.voluntarios = new IntSet(p.getVoluntarios()); 
+        this.nrecibos = new IntList(p.getNRecibo());
+        this.candidatura = p.getCandidatura()==null ? null : p.getCandidatura().clone();
     }
 
     /* Gets & Sets */
@@ -118,13 +122,13 @@ class Projeto implements IProjeto{
     @Override
     public void setPrestacao(float prestacao) { this.prestacao = prestacao; }
     @Override
-    public GregorianCalendar getDataInicial() { return dataInicial; }
+    public Data getDataInicial() { return dataInicial; }
     @Override
-    public void setDataInicial(GregorianCalendar dataInicial) { this.dataInicial = dataInicial; }
+    public void setDataInicial(Data dataInicial) { this.dataInicial = dataInicial; }
     @Override
-    public GregorianCalendar getDataFinal() { return dataFinal; }
+    public Data getDataFinal() { return dataFinal; }
     @Override
-    public void setDataFinal(GregorianCalendar dataFinal) { this.dataFinal = dataFinal; }
+    public void setDataFinal(Data dataFinal) { this.dataFinal = dataFinal; }
     @Override
     public int getFuncionarioReg() { return funcionarioRegistou; }
     @Override
@@ -134,21 +138,21 @@ class Projeto implements IProjeto{
     @Override
     public void setFuncionarioEnc(int fr) { this.funcionarioEncerrou = fr; }
     @Override
-    public Set<Integer> getTarefa() { return tarefa;}
+    public IntSet getTarefa() { return tarefa;}
     @Override
-    public void setTarefa(Set<Integer> t) {this.tarefa = t; }
+    public void setTarefa(Set<Integer> t) {this.tarefa = IntSet.de(t); }
     @Override
-    public Set<Integer> getVoluntarios() { return voluntarios; }
+    public IntSet getVoluntarios() { return voluntarios; }
     @Override
-    public void setVoluntarios(Set<Integer> voluntarios) { this.voluntarios = voluntarios; }
+    public void setVoluntarios(Set<Integer> voluntarios) { this.voluntarios = IntSet.de(voluntarios); }
     @Override
     public ICandidatura getCandidatura() { return candidatura; }
     @Override
     public void setCandidatura(ICandidatura candidatura) { this.candidatura = candidatura; }
     @Override
-    public List<Integer> getNRecibo(){return nrecibos;}
+    public IntList getNRecibo(){return nrecibos;}
     @Override
-    public void setNRecibo(List<Integer> e){this.nrecibos = e;}
+    public void setNRecibo(List<Integer> e){this.nrecibos = IntList.de(e);}
 
     /* Equals e Clone */
     @Override
@@ -158,13 +162,13 @@ class Projeto implements IProjeto{
         else{
             Projeto t = (Projeto) o;
             
-            for(int f : this.tarefa){
+            for(int f : this.tarefa.toIntArray()){
                 if(!t.getTarefa().contains(f)) return false;
             }
-            for(int v : this.voluntarios){
+            for(int v : this.voluntarios.toIntArray()){
                 if(!t.getVoluntarios().contains(v)) return false;
             }
-            for(int n : this.nrecibos){
+            for(int n : this.nrecibos.toIntArray()){
                 if(!t.getNRecibo().contains(n)) return false;
             }
             
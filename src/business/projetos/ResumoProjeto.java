@@ -0,0 +1,75 @@
+package business.projetos;
+
+import business.Data;
+
+/**
+ * Linha de uma listagem de projetos: apenas as colunas da tabela Projetos mostradas na lista, sem a
+ * candidatura, tarefas, voluntários ou donativos (o projeto completo é lido quando a linha é aberta).
+ * Os resumos são imutáveis.
+ * @author Jorge Caldas, José Cortez, Marcelo Gonçalves, Ricardo Silva
+ * @version 2015.01.17
+ */
+public final class ResumoProjeto {
+
+    // Variáveis de instância
+    private final int nr;
+    private final String estado;
+    private final float orcamento;
+    private final Data dataInicial;
+    private final Data dataFinal;
+    private final int candidatura;
+
+    /**
+     * Construtor parameterizado.
+     * @param nr, nº do projeto.
+     * @param estado, estado do projeto.
+     * @param orcamento, orçamento.
+     * @param dataInicial, data de início.
+     * @param dataFinal, data de fim.
+     * @param candidatura, nº da candidatura do projeto.
+     */
+    public ResumoProjeto(int nr, String estado, float orcamento, Data dataInicial,
+            Data dataFinal, int candidatura){
+        this.nr=nr;
+        this.estado=estado;
+        this.orcamento=orcamento;
+        this.dataInicial=dataInicial;
+        this.dataFinal=dataFinal;
+        this.candidatura=candidatura;
+    }
+
+    /**
+     * Resumo de um projeto já carregado.
+     * @param p, projeto.
+     * @return resumo com os dados da lista.
+     */
+    public static ResumoProjeto de(IProjeto p){
+        int c = p.getCandidatura()==null ? 0 : p.getCandidatura().getNr();
+        return new ResumoProjeto(p.getNr(), p.getEstado(), p.getOrcamento(), p.getDataInicial(), p.getDataFinal(), c);
+    }
+
+    /*gets*/
+    public int getNr(){return this.nr;}
+    public String getEstado(){return this.estado;}
+    public float getOrcamento(){return this.orcamento;}
+    public Data getDataInicial(){return this.dataInicial;}
+    public Data getDataFinal(){return this.dataFinal;}
+    public int getCandidatura(){return this.candidatura;}
+
+    @Override
+    public boolean equals(Object o){
+        if(this==o) return true;
+        if(o==null || this.getClass()!=o.getClass()) return false;
+        ResumoProjeto r = (ResumoProjeto) o;
+        return this.nr==r.nr && this.candidatura==r.candidatura && Float.compare(this.orcamento, r.orcamento)==0
+                && (this.estado==null ? r.estado==null : this.estado.equals(r.estado))
+                && (this.dataInicial==null ? r.dataInicial==null : this.dataInicial.equals(r.dataInicial))
+                && (this.dataFinal==null ? r.dataFinal==null : this.dataFinal.equals(r.dataFinal));
+    }
+
+    @Override
+    public int hashCode(){return this.nr;}
+
+    @Override
+    public String toString(){return "ResumoProjeto[" + this.nr + ", " + this.estado + "]";}
+}
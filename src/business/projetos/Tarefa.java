@@ -1,5 +1,7 @@
 package business.projetos;
 
+import business.Data;
+import business.colecoes.IntIntMap;
 import java.util.*;
 
 /**
@@ -11,20 +13,20 @@ class Tarefa implements ITarefa{
     private int id;
     private String designacao;
     private String descricao;
-    private GregorianCalendar dataInicial;
-    private GregorianCalendar dataFinal;
-    private HashMap<Integer, Integer> materialgasto; 
+    private Data dataInicial;
+    private Data dataFinal;
+    private IntIntMap materialgasto;
     
     /**
      * Construtor vazio.
      */
     public Tarefa(){
         this.id = 0; 
-        this.dataInicial = new GregorianCalendar();
-        this.dataFinal = new GregorianCalendar(); 
+        this.dataInicial = Data.hoje();
+        this.dataFinal = Data.hoje(); 
         this.designacao = ""; 
         this.descricao = ""; 
-        this.materialgasto = new HashMap<>();
+        this.materialgasto = new IntIntMap();
     }
 
     /**
@@ -35,17 +37,14 @@ class Tarefa implements ITarefa{
      * @param designacao, designação da tarefa a desenvolver
      * @param materialgasto, material gasto na tarefa 
      */
-    public Tarefa (int id, GregorianCalendar dataInicial, GregorianCalendar dataFinal, 
+    public Tarefa (int id, Data dataInicial, Data dataFinal, 
             String designacao, String descricao, Map<Integer, Integer> materialgasto){
         this.id = id; 
         this.dataInicial = dataInicial; 
         this.dataFinal = dataFinal; 
         this.designacao = designacao;
         this.descricao = descricao; 
-        this.materialgasto = new HashMap<>();
-        for(Map.Entry<Integer,Integer> entry : materialgasto.entrySet()){
-            this.materialgasto.put(entry.getKey(),entry.getValue());
-        }  
+        this.materialgasto = new IntIntMap(materialgasto);
     }
     
     /**
@@ -57,7 +56,7 @@ class Tarefa implements ITarefa{
         this.dataInicial = t.getDataInicioT(); 
         this.dataFinal = t.getDataFinalT(); 
         this.designacao = t.getDesig();
-        this.materialgasto = t.getMaterial();
+        this.materialgasto = new IntIntMap(t.getMaterial());
         this.descricao = t.getDesc(); 
     }
     
@@ -67,21 +66,21 @@ class Tarefa implements ITarefa{
     @Override
     public void setId(int id) {this.id = id;}
     @Override
-    public GregorianCalendar getDataInicioT(){return this.dataInicial;}
+    public Data getDataInicioT(){return this.dataInicial;}
     @Override
-    public void setDataInicioT(GregorianCalendar data){this.dataInicial = data;}
+    public void setDataInicioT(Data data){this.dataInicial = data;}
     @Override
-    public GregorianCalendar getDataFinalT(){return this.dataFinal;}
+    public Data getDataFinalT(){return this.dataFinal;}
     @Override
-    public void setDataFinalT(GregorianCalendar data){this.dataFinal = data;}
+    public void setDataFinalT(Data data){this.dataFinal = data;}
     @Override
     public String getDesig(){return this.designacao;}
     @Override
     public void setDesig(String designacao){this.designacao = designacao;}
     @Override
-    public HashMap<Integer, Integer> getMaterial() { return this.materialgasto; }
+    public IntIntMap getMaterial() { return this.materialgasto; }
     @Override
-    public void setMaterial(HashMap<Integer,Integer> r) { this.materialgasto = r; }
+    public void setMaterial(Map<Integer,Integer> r) { this.materialgasto = IntIntMap.de(r); }
     @Override
     public String getDesc() {return this.descricao; }  
     @Override
@@ -97,8 +96,8 @@ class Tarefa implements ITarefa{
         else{
             Tarefa t = (Tarefa) o;
 
-            for(Map.Entry<Integer,Integer> h : t.getMaterial().entrySet()){
-                if(!this.materialgasto.containsKey(h.getKey())) return false;
+            for(int m : t.getMaterial().chaves()){
+                if(!this.materialgasto.containsKey(m)) return false;
             }
             
             return( this.id == t.getId()
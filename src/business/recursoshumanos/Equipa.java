@@ -1,7 +1,7 @@
 package business.recursoshumanos;
 
+import business.colecoes.IntSet;
 import java.util.Arrays;
-import java.util.HashSet;
 import java.util.Set;
 
 /**Classe que representa uma equipa, agregado de voluntários da instituição.
@@ -18,7 +18,7 @@ class Equipa implements IEquipa{
     private String pOrigem;
     private String obs;
     private int chefe; // nº do voluntário chefe de equipa   
-    private Set<Integer> voluntarios; // nº's dos voluntários que trabalham na equipa
+    private IntSet voluntarios; // nº's dos voluntários que trabalham na equipa
     
     /**
      * Construtor vazio
@@ -26,7 +26,7 @@ class Equipa implements IEquipa{
     public Equipa(){
         this.id=0; this.nome="";
         this.pOrigem=""; this.obs="";
-        this.chefe=0; this.voluntarios = new HashSet<>();
+        this.chefe=0; this.voluntarios = new IntSet();
     }
     
     /**
@@ -41,13 +41,13 @@ class Equipa implements IEquipa{
     public Equipa(int id, String nome, String pOrgigem, String obs, int chefe, Set<Integer> vols){
         this.id=id; this.nome=nome;
         this.pOrigem=pOrigem; this.obs=obs;
-        this.chefe=chefe; this.voluntarios = vols;
+        this.chefe=chefe; this.voluntarios = IntSet.de(vols);
     }
     
     public Equipa(Equipa e){
         this.id=e.getId(); this.nome=e.getDesignacao();
         this.pOrigem=e.getpOrigem(); this.obs=e.getObs();
-        this.chefe=e.getChefe(); this.voluntarios = e.getVoluntarios();
+        this.chefe=e.getChefe(); this.voluntarios = new IntSet(e.getVoluntarios());
     }
     
     /*gets & sets*/
@@ -73,9 +73,9 @@ class Equipa implements IEquipa{
     @Override
     public void setChefe(int chefe){this.chefe = chefe;}
     @Override
-    public Set<Integer> getVoluntarios(){return voluntarios;}
+    public IntSet getVoluntarios(){return voluntarios;}
     @Override
-    public void setVoluntarios(Set<Integer> voluntarios){this.voluntarios = voluntarios;}
+    public void setVoluntarios(Set<Integer> voluntarios){this.voluntarios = IntSet.de(voluntarios);}
     
     /*equals, clone e hashcode*/
     @Override
@@ -87,7 +87,7 @@ class Equipa implements IEquipa{
         else{
             Equipa e = (Equipa) o;
             
-            for(Integer nr : this.voluntarios)
+            for(int nr : this.voluntarios.toIntArray())
                 if(!e.getVoluntarios().contains(nr)) return false;
             
             return( this.id==e.getId() && this.nome.equals(e.getDesignacao()) &&
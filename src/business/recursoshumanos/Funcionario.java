@@ -2,6 +2,7 @@ package business.recursoshumanos;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 /**A presente classe representa um funcionário da instituição, a entidade que interage com o sistema.
@@ -19,6 +20,7 @@ class Funcionario implements IFuncionario {
     private String username;
     private String password;
     private List<String> permissions;
+    private int mascara; // permissões compiladas (ver Permissao)
     
     /**
      * Construtor vazio.
@@ -30,6 +32,7 @@ class Funcionario implements IFuncionario {
         this.username="";
         this.password="";
         this.permissions = new ArrayList<>();
+        this.mascara = 0;
     }
     
     /**
@@ -45,7 +48,7 @@ class Funcionario implements IFuncionario {
         this.id=id;
         this.nome=n; this.comissao=com;
         this.username=un; this.password=pass;
-        this.permissions= new ArrayList<>(permissions);
+        this.setPermissions(permissions);
     }
     
     /**
@@ -57,6 +60,7 @@ class Funcionario implements IFuncionario {
         this.nome=f.getNome(); this.comissao=f.getComissao();
         this.username=f.getUsername(); this.password=f.getPassword();
         this.permissions = new ArrayList<>(f.getPermissions());
+        this.mascara = f.getPermissionsMask();
     }
     
     /*gets & sets*/
@@ -80,10 +84,19 @@ class Funcionario implements IFuncionario {
     public String getPassword(){return password;}
     @Override
     public void setPassword(String password){this.password = password;}
+    /**
+     * Nomes das permissões do funcionário (só de leitura: alterar com setPermissions ou add*Permissions).
+     * @return lista com os nomes das permissões.
+     */
+    @Override
+    public List<String> getPermissions(){return Collections.unmodifiableList(this.permissions);}
     @Override
-    public List<String> getPermissions(){return permissions;}
+    public void setPermissions(List<String> permissions){
+        this.permissions = new ArrayList<>(permissions);
+        this.mascara = Permissao.mascara(permissions);
+    }
     @Override
-    public void setPermissions(List<String> permissions){this.permissions = permissions;}
+    public int getPermissionsMask(){return this.mascara;}
     
     /*equals e clone*/
     @Override
@@ -137,11 +150,20 @@ class Funcionario implements IFuncionario {
 
     public boolean hasPermissions(List<String> permissionsToAsk){
         for(String p : permissionsToAsk){
-            if(!this.permissions.contains(p)) return false;
+            Permissao perm = Permissao.deNome(p);
+            if(perm==null ? !this.permissions.contains(p) : (this.mascara & perm.getBit())==0) return false;
         }
         return true;
     }
     
+    /**
+     * Método que verifica se um funcionário possuí determinadas permissões, dadas por uma máscara.
+     * @param pedidas, máscara das permissões a verificar (Permissao.mascara).
+     * @return true caso funcionário tenha todas as permissões da máscara, false em caso contrário.
+     */
+    @Override
+    public boolean hasPermissions(int pedidas){return (this.mascara & pedidas)==pedidas;}
+    
     /**
      * Método para confirmar username de um determinado funcionário.
      * @param user, username que um utilizador inseriu.
@@ -162,61 +184,66 @@ class Funcionario implements IFuncionario {
     
     /*Adicionar permissões específicas ao funcionário*/
     @Override
-    public void addVCreatePermissions(){this.permissions.add(new Permissions().getVcreate());}
+    public void addVCreatePermissions(){this.add(Permissao.CREATE_VOLUNTARIOS);}
     @Override
-    public void addVEditPermissions(){this.permissions.add(new Permissions().getVedit());}
+    public void addVEditPermissions(){this.add(Permissao.EDIT_VOLUNTARIOS);}
     @Override
 
-    public void addVConsultPermissions(){this.permissions.add(new Permissions().getVconsult());}
+    public void addVConsultPermissions(){this.add(Permissao.CONSULT_VOLUNTARIOS);}
     @Override
-    public void addVDeletePermissions(){this.permissions.add(new Permissions().getVdelete());}
+    public void addVDeletePermissions(){this.add(Permissao.DELETE_VOLUNTARIOS);}
     
     @Override
-    public void addFCreatePermissions(){this.permissions.add(new Permissions().getFcreate());}
+    public void addFCreatePermissions(){this.add(Permissao.CREATE_FAMILIAS);}
     @Override
-    public void addFEditPermissions(){this.permissions.add(new Permissions().getFedit());}
+    public void addFEditPermissions(){this.add(Permissao.EDIT_FAMILIAS);}
     @Override
-    public void addFConsultPermissions(){this.permissions.add(new Permissions().getFconsult());}
+    public void addFConsultPermissions(){this.add(Permissao.CONSULT_FAMILIAS);}
     @Override
-    public void addFDeletePermissions(){this.permissions.add(new Permissions().getFdelete());}
+    public void addFDeletePermissions(){this.add(Permissao.DELETE_FAMILIAS);}
     
     @Override
 
-    public void addDCreatePermissions(){this.permissions.add(new Permissions().getDcreate());}
+    public void addDCreatePermissions(){this.add(Permissao.CREATE_DOACOES);}
     @Override
-    public void addDEditPermissions(){this.permissions.add(new Permissions().getDedit());}
+    public void addDEditPermissions(){this.add(Permissao.EDIT_DOACOES);}
     @Override
-    public void addDConsultPermissions(){this.permissions.add(new Permissions().getDconsult());}
+    public void addDConsultPermissions(){this.add(Permissao.CONSULT_DOACOES);}
     @Override
 
-    public void addDDeletePermissions(){this.permissions.add(new Permissions().getDdelete());}
+    public void addDDeletePermissions(){this.add(Permissao.DELETE_DOACOES);}
     
     @Override
-    public void addOCreatePermissions(){this.permissions.add(new Permissions().getOcreate());}
+    public void addOCreatePermissions(){this.add(Permissao.CREATE_OBRAS);}
     @Override
-    public void addOEditPermissions(){this.permissions.add(new Permissions().getOedit());}
+    public void addOEditPermissions(){this.add(Permissao.EDIT_OBRAS);}
     @Override
-    public void addOConsultPermissions(){this.permissions.add(new Permissions().getOconsult());}
+    public void addOConsultPermissions(){this.add(Permissao.CONSULT_OBRAS);}
     @Override
-    public void addODeletePermissions(){this.permissions.add(new Permissions().getOdelete());}
+    public void addODeletePermissions(){this.add(Permissao.DELETE_OBRAS);}
     
     @Override
-    public void addSCreatePermissions(){this.permissions.add(new Permissions().getScreate());}
+    public void addSCreatePermissions(){this.add(Permissao.CREATE_STOCK);}
     @Override
-    public void addSEditPermissions(){this.permissions.add(new Permissions().getSedit());}
+    public void addSEditPermissions(){this.add(Permissao.EDIT_STOCK);}
     @Override
-    public void addSConsultPermissions(){this.permissions.add(new Permissions().getSconsult());}
+    public void addSConsultPermissions(){this.add(Permissao.CONSULT_STOCK);}
     @Override
-    public void addSDeletePermissions(){this.permissions.add(new Permissions().getSdelete());}
+    public void addSDeletePermissions(){this.add(Permissao.DELETE_STOCK);}
     
     @Override
-    public void addECreatePermissions(){this.permissions.add(new Permissions().getEcreate());}
+    public void addECreatePermissions(){this.add(Permissao.CREATE_EVENTOS);}
     @Override
-    public void addEEditPermissions(){this.permissions.add(new Permissions().getEedit());}
+    public void addEEditPermissions(){this.add(Permissao.EDIT_EVENTOS);}
     @Override
-    public void addEConsultPermissions(){this.permissions.add(new Permissions().getEconsult());}
+    public void addEConsultPermissions(){this.add(Permissao.CONSULT_EVENTOS);}
     @Override
-    public void addEDeletePermissions(){this.permissions.add(new Permissions().getEdelete());}
+    public void addEDeletePermissions(){this.add(Permissao.DELETE_EVENTOS);}
+    
+    /*Acrescenta uma permissão (nome e bit), caso o funcionário ainda não a tenha*/
+    private void add(Permissao p){
+        if((this.mascara & p.getBit())!=0) return;
+        this.permissions.add(p.getNome());
+        this.mascara |= p.getBit();
+    }
 }
-
-         
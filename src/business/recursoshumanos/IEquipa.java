@@ -1,5 +1,6 @@
 package business.recursoshumanos;
 
+import business.colecoes.IntSet;
 import java.util.Set;
 
 /**Interface da classe equipa.
@@ -20,7 +21,7 @@ public interface IEquipa {
     public void setObs(String obs);
     public int getChefe();
     public void setChefe(int chefe);
-    public Set<Integer> getVoluntarios();
+    public IntSet getVoluntarios();
     public void setVoluntarios(Set<Integer> voluntarios);
     
     /*equals, clone, hashCode*/
@@ -22,6 +22,7 @@ public interface IFuncionario {
     public void setPassword(String password);
     public List<String> getPermissions();
     public void setPermissions(List<String> permissions);
+    public int getPermissionsMask();
     
     /*equals, clone, hashCode*/
     @Override
@@ -32,6 +33,7 @@ public interface IFuncionario {
     
     public String getFirstAndLastName();
     public boolean hasPermissions(List<String> permissionsToAsk);
+    public boolean hasPermissions(int pedidas);
     public boolean isUsernameCorrect(String user);
     public boolean isPasswordCorrect(String pass);
     public void addVCreatePermissions();
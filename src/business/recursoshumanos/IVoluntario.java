@@ -1,6 +1,7 @@
 package business.recursoshumanos;
 
-import java.util.GregorianCalendar;
+import business.Data;
+import business.colecoes.IntIntMap;
 import java.util.List;
 import java.util.Map;
 
@@ -16,8 +17,8 @@ public interface IVoluntario {
     public void setNr(int nr);
     public String getNome();
     public void setNome(String nome);
-    public GregorianCalendar getDatanasc();
-    public void setDatanasc(GregorianCalendar datanasc);
+    public Data getDatanasc();
+    public void setDatanasc(Data datanasc);
     public String getHabilitacoes();
     public void setHabilitacoes(String habilitacoes);
     public String getTelef();
@@ -28,8 +29,8 @@ public interface IVoluntario {
     public void setProfissao(String profissao);
     public String getEmail();
     public void setEmail(String email);
-    public GregorianCalendar getDataInicioVol();
-    public void setDataInicioVol(GregorianCalendar dataInicioVol);
+    public Data getDataInicioVol();
+    public void setDataInicioVol(Data dataInicioVol);
     public String getLocalidade();
     public void setLocalidade(String localidade);
     public String getRua();
@@ -41,7 +42,7 @@ public interface IVoluntario {
     public int getHorasVoluntariado();
     public String getObs();
     public void setObs(String obs);
-    public Map<Integer,Integer> getHorasProjetos();
+    public IntIntMap getHorasProjetos();
     public void setHorasProjetos (Map<Integer,Integer> hp);
     
     /*equals e clone*/
@@ -55,4 +56,5 @@ public interface IVoluntario {
     public String getFirstAndLastName();
     public void addHorasProjeto(int proj,int horas);
     public boolean equalsParse (Object o);
+    public String getImpressao();
 }
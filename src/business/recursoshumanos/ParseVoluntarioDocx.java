@@ -1,19 +1,33 @@
 package business.recursoshumanos;
 
+import business.Data;
 import data_access.SGHabitat;
+import exceptions.VoluntarioDuplicadoException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import javax.swing.JFileChooser;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import org.apache.poi.hwpf.HWPFDocument;
 import org.apache.poi.hwpf.usermodel.Paragraph;
 import org.apache.poi.hwpf.usermodel.Range;
 import org.apache.poi.poifs.filesystem.POIFSFileSystem;
 
 /**Parse de uma ficha (ou mais) de voluntários permitindo carregar os dados da mesma na base de dados da aplicação.
+ * Fichas .doc são lidas com HWPF (posição dos parágrafos); fichas .docx com ParseVoluntarioOoxml (etiquetas dos campos).
  *
  * @author Jorge Caldas, José Cortez, Marcelo Gonçalves, Ricardo Silva
  * @version 2014.12.21
@@ -21,53 +35,202 @@ import org.apache.poi.poifs.filesystem.POIFSFileSystem;
 
 public class ParseVoluntarioDocx {
 
-    private static int NR_VOL; // Permite gerar chaves únicas parciais, que não existem verdadeiramente na base
-    
+    private static final int THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static final int LOTE = 25; // voluntários guardados por transação na importação
+    // Parágrafos da ficha que contêm dados (os restantes não são lidos)
+    private static final int[] PARAGRAFOS = {7, 10, 12, 15, 18, 20, 23, 25, 28, 31, 34, 37, 40, 62, 64, 67};
+
+    /**
+     * Acompanhamento de uma importação (ver ler e guardar). Os métodos são chamados na thread que invocou
+     * ler ou guardar.
+     */
+    public interface Progresso {
+        /**
+         * Uma ficha foi lida (ler) ou o voluntário lido foi guardado (guardar).
+         * @param ficheiro, ficha tratada.
+         * @param v, voluntário lido ou guardado.
+         * @param feitos, nº de fichas já tratadas nesta fase (com ou sem sucesso).
+         * @param total, nº total de fichas da fase.
+         */
+        void tratado(File ficheiro, IVoluntario v, int feitos, int total);
+
+        /**
+         * Uma ficha não pôde ser lida ou guardada.
+         * @param ficheiro, ficha não importada.
+         * @param erro, causa.
+         * @param feitos, nº de fichas já tratadas nesta fase (com ou sem sucesso).
+         * @param total, nº total de fichas da fase.
+         */
+        void falhou(File ficheiro, Exception erro, int feitos, int total);
+
+        /**
+         * @return true para interromper a fase em curso (ler devolve as fichas já lidas; guardar mantém os
+         * lotes já guardados).
+         */
+        boolean cancelado();
+    }
+
     public static List<IVoluntario> parse(SGHabitat facade) throws Exception {
         ArrayList<IVoluntario> voluntarios = new ArrayList<>();
-        IVoluntario v = new VoluntarioFactory().createVoluntario();
-        v.setNome("null");
-        NR_VOL = facade.rh_generateVoluntarioKey();
-         
+        File[] files = escolherFicheiros();
+        if(files.length==0) return voluntarios; // Diálogo cancelado
+        
+        int nr = facade.rh_reserveVoluntarioKeys(files.length); // Uma chave reservada por ficha
+        for(File f : files){
+            voluntarios.add(parse(facade, f, nr++)); // Parse de uma ficha de voluntario
+        }
+        return voluntarios;
+     }
+    
+    /**
+     * Diálogo de escolha das fichas a carregar (a chamar na Event Dispatch Thread).
+     * @return ficheiros escolhidos, vazio caso o diálogo seja cancelado.
+     */
+    public static File[] escolherFicheiros() {
         JFileChooser chooser = new JFileChooser();
         chooser.setMultiSelectionEnabled(true);
+        chooser.setFileFilter(new FileNameExtensionFilter("Fichas de voluntário (.doc, .docx)", "doc", "docx"));
         int returnValue = chooser.showOpenDialog(null);
         
-        if(returnValue == JFileChooser.APPROVE_OPTION){
-            File[] files = chooser.getSelectedFiles();
-            ArrayList<String> filePaths = new ArrayList<>();
-            
-            for(File f : files){filePaths.add(f.getAbsolutePath());} // Buscar caminhos dos diversos ficheiros
+        if(returnValue == JFileChooser.APPROVE_OPTION) return chooser.getSelectedFiles();
+        return new File[0];
+    }
+    
+    /**
+     * Parse de uma ficha, sem interação com o utilizador (pode correr fora da Event Dispatch Thread).
+     * Fichas .docx são lidas por ParseVoluntarioOoxml; as restantes como documentos Word 97-2003 (.doc).
+     * @param facade, facade da camada de negócio.
+     * @param ficheiro, ficha de voluntário.
+     * @param nr, nº (já reservado, ver SGHabitat.rh_reserveVoluntarioKeys) a atribuir ao voluntário.
+     * @return voluntário lido da ficha.
+     * @throws Exception
+     */
+    public static IVoluntario parse(SGHabitat facade, File ficheiro, int nr) throws Exception {
+        if(ficheiro.getName().toLowerCase().endsWith(".docx")) return ParseVoluntarioOoxml.parse(ficheiro, nr);
+        return readTables(ficheiro.getAbsolutePath(), facade, nr);
+    }
+     
+    /**
+     * Leitura em massa de fichas, sem guardar nada: as fichas são lidas em paralelo (no máximo THREADS de cada
+     * vez) e os nºs de voluntário são reservados de uma só vez antes de começar. Uma ficha que falhe não impede
+     * as restantes; fichas de voluntários já registados (mesma impressão digital), ou repetidas nesta leitura,
+     * falham com VoluntarioDuplicadoException. Os voluntários lidos devem ser revistos pelo utilizador antes
+     * de serem guardados (ver guardar).
+     * @param facade, facade da camada de negócio.
+     * @param ficheiros, fichas a ler.
+     * @param progresso, recebe o resultado de cada ficha.
+     * @return voluntários lidos, por ficha (pela ordem de chegada).
+     * @throws InterruptedException
+     */
+    public static Map<File,IVoluntario> ler(final SGHabitat facade, File[] ficheiros, Progresso progresso) throws InterruptedException {
+        Map<File,IVoluntario> lidos = new LinkedHashMap<>();
+        final int total = ficheiros.length;
+        if(total==0) return lidos;
+        
+        final int nr = facade.rh_reserveVoluntarioKeys(total); // Uma chave reservada por ficha
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(THREADS, total), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r){
+                Thread t = new Thread(r, "ParseVoluntarioDocx");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        CompletionService<IVoluntario> leituras = new ExecutorCompletionService<>(pool);
+        Map<Future<IVoluntario>,File> pedidos = new HashMap<>();
+        int feitos = 0;
+        try {
+            for(int i=0; i<total; i++){
+                final File f = ficheiros[i];
+                final int nrf = nr+i;
+                pedidos.put(leituras.submit(new Callable<IVoluntario>() {
+                    @Override
+                    public IVoluntario call() throws Exception {return parse(facade, f, nrf);}
+                }), f);
+            }
             
-            for(String fileName : filePaths){
-                v = readTables(fileName, facade); // Parse de uma ficha de voluntario
-                voluntarios.add(v); // Adicionar nova instância de voluntários ao ArrayList
-            }                
+            Map<String,Integer> impressoes = new HashMap<>(); // impressões das fichas desta leitura
+            for(int i=0; i<total && !progresso.cancelado(); i++){
+                Future<IVoluntario> lida = leituras.take();
+                File f = pedidos.remove(lida);
+                try {
+                    IVoluntario v = lida.get();
+                    // Ficha já registada, ou repetida nesta leitura
+                    Integer dup = facade.rh_findDuplicadoVoluntario(v);
+                    if(dup==null) dup = impressoes.get(v.getImpressao());
+                    if(dup!=null){
+                        progresso.falhou(f, new VoluntarioDuplicadoException(dup), ++feitos, total);
+                        continue;
+                    }
+                    impressoes.put(v.getImpressao(), v.getNr());
+                    lidos.put(f, v);
+                    progresso.tratado(f, v, ++feitos, total);
+                } catch (ExecutionException e) {
+                    Exception causa = e.getCause() instanceof Exception ? (Exception)e.getCause() : e;
+                    progresso.falhou(f, causa, ++feitos, total);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
         }
-        return voluntarios;
-     }
+        return lidos;
+    }
+    
+    /**
+     * Guarda voluntários lidos por ler (e já revistos pelo utilizador), em transações de LOTE voluntários.
+     * Um lote que falhe não impede os seguintes.
+     * @param facade, facade da camada de negócio.
+     * @param voluntarios, voluntários a guardar, por ficha.
+     * @param progresso, recebe o resultado de cada ficha.
+     * @return voluntários guardados.
+     */
+    public static List<IVoluntario> guardar(SGHabitat facade, Map<File,IVoluntario> voluntarios, Progresso progresso) {
+        List<IVoluntario> guardados = new ArrayList<>();
+        int total = voluntarios.size(), feitos = 0;
+        Map<File,IVoluntario> lote = new LinkedHashMap<>();
+        for(Map.Entry<File,IVoluntario> e : voluntarios.entrySet()){
+            if(progresso.cancelado()) break;
+            lote.put(e.getKey(), e.getValue());
+            if(lote.size()==LOTE) feitos = guardar(facade, lote, guardados, progresso, feitos, total);
+        }
+        guardar(facade, lote, guardados, progresso, feitos, total);
+        return guardados;
+    }
+    
+    /*Guarda um lote de voluntários numa só transação e esvazia o lote; devolve o nº de fichas tratadas*/
+    private static int guardar(SGHabitat facade, Map<File,IVoluntario> lote, List<IVoluntario> guardados,
+                               Progresso progresso, int feitos, int total){
+        if(lote.isEmpty()) return feitos;
+        try {
+            facade.rh_saveVoluntarios(lote.values());
+            guardados.addAll(lote.values());
+            for(Map.Entry<File,IVoluntario> e : lote.entrySet()) progresso.tratado(e.getKey(), e.getValue(), ++feitos, total);
+        } catch (RuntimeException e) {
+            for(File f : lote.keySet()) progresso.falhou(f, e, ++feitos, total);
+        }
+        lote.clear();
+        return feitos;
+    }
      
-    private static IVoluntario readTables (String fileName, SGHabitat facade) throws Exception {         
+    private static IVoluntario readTables (String fileName, SGHabitat facade, int nr) throws Exception {         
         
-        InputStream fis = new FileInputStream(fileName);  
-        POIFSFileSystem fs = new POIFSFileSystem(fis);  
-        HWPFDocument doc = new HWPFDocument(fs);  
+        HWPFDocument doc;
+        try (InputStream fis = new FileInputStream(fileName)) {
+            doc = new HWPFDocument(new POIFSFileSystem(fis));
+        }
   
         Range range = doc.getRange();
         
         // Parametros do voluntário
         List<String> params = new ArrayList<>();
-        GregorianCalendar datanasc = new GregorianCalendar();
+        Data datanasc = Data.hoje();
         List<String> linguas = new ArrayList<>();
         
-        Paragraph par = null;
-        for (int i=0; i<range.numParagraphs(); i++) {
-            
-            try{
-                par = range.getParagraph(i);
-            } catch(Exception e){
-                System.out.println("Ocorreu um erro ao ler o ficheiro. Por favor tente mais tarde.");
-            }
+        int n = range.numParagraphs();
+        for (int i : PARAGRAFOS) {
+            // Um campo que falte numa ficha mais curta fica com o valor por omissão; um erro de leitura
+            // propaga-se e a ficha é dada como falhada
+            Paragraph par = i<n ? range.getParagraph(i) : null;
 
             String[] toks=null;
             switch(i){
@@ -89,12 +252,12 @@ public class ParseVoluntarioDocx {
                         }
                         
                         if(toks.length==3){
-                            datanasc=new GregorianCalendar(Integer.parseInt(toks[2].trim()),
-                                   (Integer.parseInt(toks[1].trim()) - 1),Integer.parseInt(toks[0].trim()));
+                            datanasc=Data.de(Integer.parseInt(toks[2].trim()),
+                                   Integer.parseInt(toks[1].trim()),Integer.parseInt(toks[0].trim()));
                         }
-                        else datanasc = new GregorianCalendar();
+                        else datanasc = Data.hoje();
                         
-                    } else datanasc = new GregorianCalendar();
+                    } else datanasc = Data.hoje();
                     break;
                 case 12: // Profissão (params(1))
                     if(par!=null && par.text()!=null && !par.text().equals("")){
@@ -144,7 +307,7 @@ public class ParseVoluntarioDocx {
                         toks=par.text().split(", ");
                         linguas=new ArrayList<>();
                         for(int j=0; j<toks.length; j++){linguas.add(toks[j].trim());}
-                    } else params.add("desconhecido");
+                    }
                     break;
                 case 37: // Formação complementar (params(9))
                     if(par!=null && par.text()!=null && !par.text().equals("")){
@@ -157,7 +320,7 @@ public class ParseVoluntarioDocx {
                     } else params.add("desconhecida");
                     break;
                 case 62: // Conhecimentos de construção (params(11))
-                    if(par.text()!=null && !par.text().equals("")){
+                    if(par!=null && par.text()!=null && !par.text().equals("")){
                         params.add(par.text().trim());
                     } else params.add("desconhecida");
                     break;
@@ -173,6 +336,20 @@ public class ParseVoluntarioDocx {
                     break;                   
             }
         }
+        return criarVoluntario(nr, params, datanasc, linguas);
+    }
+    
+    /**
+     * Cria o voluntário a partir dos campos lidos de uma ficha (comum aos formatos .doc e .docx).
+     * @param nr, nº do voluntário.
+     * @param params, campos de texto pela ordem da ficha: nome, profissão, rua, código postal, localidade,
+     * telefone, telemóvel, e-mail, habilitações, formação complementar, experiência de voluntariado,
+     * conhecimentos de construção, vontade de trabalhar com outros voluntários e disponibilidade.
+     * @param datanasc, data de nascimento.
+     * @param linguas, línguas faladas.
+     * @return voluntário.
+     */
+    static IVoluntario criarVoluntario(int nr, List<String> params, Data datanasc, List<String> linguas) {
         StringBuilder obs = new StringBuilder();
         obs.append("Formação complementar: ").append(params.get(9)).append("\n");
         obs.append("Experiência Voluntariado: ").append(params.get(10)).append("\n");
@@ -182,10 +359,10 @@ public class ParseVoluntarioDocx {
         
         IVoluntario v = new VoluntarioFactory().createVoluntario();
              
-        v.setNr(NR_VOL);
+        v.setNr(nr);
         v.setNome(params.get(0));
         v.setDatanasc(datanasc);
-        v.setDataInicioVol(new GregorianCalendar());
+        v.setDataInicioVol(Data.hoje());
         v.setProfissao(params.get(1));
         v.setRua(params.get(2));
         v.setCodPostal(params.get(3));
@@ -196,7 +373,6 @@ public class ParseVoluntarioDocx {
         v.setHabilitacoes(params.get(8));
         v.setObs(obs.toString());
         v.setLinguas(linguas);
-        NR_VOL++;
         
         return v;
     }
@@ -0,0 +1,171 @@
+package business.recursoshumanos;
+
+import business.Data;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**Parse de uma ficha de voluntário no formato Word 2007+ (.docx).
+ *
+ * O XML do documento (word/document.xml) é lido em streaming (StAX) diretamente do ficheiro zip, parágrafo a
+ * parágrafo, sem construir o modelo do documento. Os campos são encontrados pela etiqueta e não pela posição:
+ * o valor de um campo é o texto a seguir a ':' no parágrafo da etiqueta ou, caso não exista, o parágrafo
+ * não vazio seguinte (p.e. a célula ao lado numa tabela). A leitura pára logo que todos os campos são lidos.
+ *
+ * @author Jorge Caldas, José Cortez, Marcelo Gonçalves, Ricardo Silva
+ * @version 2015.01.17
+ */
+
+final class ParseVoluntarioOoxml {
+
+    private static final String DOCUMENTO = "word/document.xml";
+
+    /*Campos da ficha: etiquetas aceites (normalizadas) e valor por omissão. Os 14 primeiros seguem a ordem
+      dos campos de texto de ParseVoluntarioDocx.criarVoluntario; seguem-se data de nascimento e línguas.*/
+    private static final String[][] ETIQUETAS = {
+        {"nome"},
+        {"profissao"},
+        {"morada", "rua"},
+        {"codigo postal", "cod. postal", "cod postal"},
+        {"localidade"},
+        {"telefone"},
+        {"telemovel"},
+        {"e-mail", "email", "correio eletronico"},
+        {"habilitacoes"},
+        {"formacao complementar"},
+        {"experiencia"},
+        {"conhecimentos"},
+        {"gostaria de trabalhar", "trabalhar com outros"},
+        {"disponibilidade"},
+        {"data de nascimento"},
+        {"linguas", "idiomas"}
+    };
+    private static final String[] OMISSAO = {"sem nome", "desconhecida", "desconhecida", "desc", "desconhecida",
+        "desconhecido", "desconhecido", "desconhecido", "desconhecido", "desconhecida", "desconhecida", "desconhecida",
+        "desconhecido", "desconhecido", null, null};
+    private static final int DATANASC = 14;
+    private static final int LINGUAS = 15;
+
+    private static final XMLInputFactory XML = XMLInputFactory.newInstance();
+    static {
+        XML.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        XML.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private ParseVoluntarioOoxml(){}
+
+    /**
+     * Parse de uma ficha .docx.
+     * @param ficheiro, ficha de voluntário.
+     * @param nr, nº a atribuir ao voluntário.
+     * @return voluntário lido da ficha.
+     * @throws IOException caso o ficheiro não seja um documento .docx válido.
+     */
+    static IVoluntario parse(File ficheiro, int nr) throws IOException {
+        String[] valores = new String[ETIQUETAS.length];
+        try (ZipFile zip = new ZipFile(ficheiro)) {
+            ZipEntry entrada = zip.getEntry(DOCUMENTO);
+            if(entrada==null) throw new IOException(ficheiro.getName()+": não é um documento .docx");
+            try (InputStream in = zip.getInputStream(entrada)) {
+                lerCampos(in, valores);
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException(ficheiro.getName()+": "+e.getMessage(), e);
+        }
+
+        List<String> params = new ArrayList<>();
+        for(int i=0; i<DATANASC; i++) params.add(valores[i]!=null ? valores[i] : OMISSAO[i]);
+        List<String> linguas = new ArrayList<>();
+        if(valores[LINGUAS]!=null){
+            for(String l : valores[LINGUAS].split("\\s*[,;]\\s*")) if(!l.isEmpty()) linguas.add(l);
+        }
+        return ParseVoluntarioDocx.criarVoluntario(nr, params, parseData(valores[DATANASC]), linguas);
+    }
+
+    /*Percorre os parágrafos do documento e preenche os valores dos campos encontrados*/
+    private static void lerCampos(InputStream in, String[] valores) throws XMLStreamException {
+        XMLStreamReader r = XML.createXMLStreamReader(in);
+        try {
+            StringBuilder texto = new StringBuilder();
+            int pendente = -1; // campo cuja etiqueta já foi lida e ainda sem valor
+            int lidos = 0;
+            while(r.hasNext() && lidos<valores.length){
+                int evento = r.next();
+                if(evento==XMLStreamConstants.START_ELEMENT){
+                    String nome = r.getLocalName();
+                    if(nome.equals("t")) texto.append(r.getElementText());
+                    else if(nome.equals("tab") || nome.equals("br") || nome.equals("cr")) texto.append(' ');
+                } else if(evento==XMLStreamConstants.END_ELEMENT && r.getLocalName().equals("p")){
+                    String par = texto.toString().trim();
+                    texto.setLength(0);
+                    if(par.isEmpty()) continue;
+
+                    int campo = campo(par);
+                    if(campo<0){
+                        if(pendente>=0){
+                            valores[pendente] = par;
+                            lidos++;
+                            pendente = -1;
+                        }
+                        continue;
+                    }
+                    if(pendente>=0){ // etiqueta seguida de outra etiqueta: campo por preencher
+                        valores[pendente] = "";
+                        lidos++;
+                        pendente = -1;
+                    }
+                    if(valores[campo]!=null) continue; // só conta a primeira ocorrência de cada campo
+                    int dp = par.indexOf(':');
+                    String valor = dp<0 ? "" : par.substring(dp+1).trim();
+                    if(valor.isEmpty()) pendente = campo;
+                    else {
+                        valores[campo] = valor;
+                        lidos++;
+                    }
+                }
+            }
+        } finally {
+            r.close();
+        }
+        // Campos deixados vazios na ficha ficam com o valor por omissão
+        for(int i=0; i<valores.length; i++) if(valores[i]!=null && valores[i].isEmpty()) valores[i] = null;
+    }
+
+    /*Campo cuja etiqueta inicia o parágrafo, ou -1 caso o parágrafo não seja uma etiqueta*/
+    private static int campo(String par){
+        String t = fold(par);
+        for(int i=0; i<ETIQUETAS.length; i++){
+            for(String e : ETIQUETAS[i]){
+                if(t.startsWith(e) && (t.length()==e.length() || !Character.isLetterOrDigit(t.charAt(e.length())))) return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String fold(String s){
+        return Normalizer.normalize(s, Normalizer.Form.NFD).replaceAll("\\p{M}+", "").toLowerCase().trim();
+    }
+
+    /*Data no formato dia/mês/ano (separada por '/', '.', '-' ou espaços); data atual caso não seja válida*/
+    private static Data parseData(String s){
+        if(s==null) return Data.hoje();
+        String[] toks = s.trim().split("[/.\\-\\s]+");
+        if(toks.length!=3) return Data.hoje();
+        try {
+            int dia = Integer.parseInt(toks[0]), mes = Integer.parseInt(toks[1]), ano = Integer.parseInt(toks[2]);
+            if(mes<1 || mes>12 || dia<1 || dia>31) return Data.hoje();
+            return Data.de(ano, mes, dia);
+        } catch (NumberFormatException e) {
+            return Data.hoje();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package business.recursoshumanos;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**Permissões de interação com a aplicação, cada uma associada a um bit de uma máscara (int).
+ *
+ * As permissões de um funcionário são lidas da tabela Permissoes (pelo nome) e compiladas numa máscara uma
+ * única vez; verificar um conjunto de permissões é então uma só operação sobre a máscara:
+ * (mascaraDoFuncionario & pedidas) == pedidas. As máscaras a verificar devem ser calculadas uma vez
+ * (p.e. em constantes static final) com mascara(...).
+ * @author Jorge Caldas, José Cortez, Marcelo Gonçalves, Ricardo Silva
+ * @version 2015.01.17
+ */
+
+public enum Permissao {
+    EDIT_VOLUNTARIOS("EDIT_VOLUNTARIOS_PERMISSIONS"),
+    CREATE_VOLUNTARIOS("CREATE_VOLUNTARIOS_PERMISSIONS"),
+    DELETE_VOLUNTARIOS("DELETE_VOLUNTARIOS_PERMISSIONS"),
+    CONSULT_VOLUNTARIOS("CONSULT_VOLUNTARIOS_PERMISSIONS"),
+
+    EDIT_FAMILIAS("EDIT_FAMILIAS_PERMISSIONS"),
+    CREATE_FAMILIAS("CREATE_FAMILIAS_PERMISSIONS"),
+    DELETE_FAMILIAS("DELETE_FAMILIAS_PERMISSIONS"),
+    CONSULT_FAMILIAS("CONSULT_FAMILIAS_PERMISSIONS"),
+
+    EDIT_DOACOES("EDIT_DOACOES_PERMISSIONS"),
+    CREATE_DOACOES("CREATE_DOACOES_PERMISSIONS"),
+    DELETE_DOACOES("DELETE_DOACOES_PERMISSIONS"),
+    CONSULT_DOACOES("CONSULT_DOACOES_PERMISSIONS"),
+
+    EDIT_OBRAS("EDIT_OBRAS_PERMISSIONS"),
+    CREATE_OBRAS("CREATE_OBRAS_PERMISSIONS"),
+    DELETE_OBRAS("DELETE_OBRAS_PERMISSIONS"),
+    CONSULT_OBRAS("CONSULT_OBRAS_PERMISSIONS"),
+
+    EDIT_STOCK("EDIT_STOCK_PERMISSIONS"),
+    CREATE_STOCK("CREATE_STOCK_PERMISSIONS"),
+    DELETE_STOCK("DELETE_STOCK_PERMISSIONS"),
+    CONSULT_STOCK("CONSULT_STOCK_PERMISSIONS"),
+
+    EDIT_EVENTOS("EDIT_EVETOS_PERMISSIONS"),
+    CREATE_EVENTOS("CREATE_EVETOS_PERMISSIONS"),
+    DELETE_EVENTOS("DELETE_EVETOS_PERMISSIONS"),
+    CONSULT_EVENTOS("CONSULT_EVETOS_PERMISSIONS");
+
+    private static final Map<String,Permissao> POR_NOME = new HashMap<>();
+    static {
+        for(Permissao p : values()) POR_NOME.put(p.nome, p);
+    }
+
+    // Variáveis de instância
+    private final String nome;
+    private final int bit;
+
+    private Permissao(String nome){
+        this.nome=nome;
+        this.bit=1 << this.ordinal();
+    }
+
+    /*gets*/
+    /**
+     * Nome da permissão na tabela Permissoes.
+     * @return String com o nome da permissão.
+     */
+    public String getNome(){return this.nome;}
+
+    /**
+     * Bit da permissão na máscara.
+     * @return máscara só com esta permissão.
+     */
+    public int getBit(){return this.bit;}
+
+    /**
+     * Permissão com um dado nome (tabela Permissoes).
+     * @param nome, nome da permissão.
+     * @return permissão, ou null caso o nome não seja conhecido.
+     */
+    public static Permissao deNome(String nome){return POR_NOME.get(nome);}
+
+    /**
+     * Máscara de um conjunto de permissões.
+     * @param perms, permissões.
+     * @return máscara com o bit de cada permissão.
+     */
+    public static int mascara(Permissao... perms){
+        int m = 0;
+        for(Permissao p : perms) m |= p.bit;
+        return m;
+    }
+
+    /**
+     * Máscara de um conjunto de permissões dadas pelo nome; nomes desconhecidos são ignorados.
+     * @param nomes, nomes das permissões (tabela Permissoes).
+     * @return máscara com o bit de cada permissão conhecida.
+     */
+    public static int mascara(Collection<String> nomes){
+        int m = 0;
+        for(String n : nomes){
+            Permissao p = POR_NOME.get(n);
+            if(p!=null) m |= p.bit;
+        }
+        return m;
+    }
+}
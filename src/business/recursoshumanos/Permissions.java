@@ -1,6 +1,7 @@
 package business.recursoshumanos;
 
 /**Classe que agrupa permissões de interação com a aplicação e de acesso ao dados.
+ * Os nomes são os de Permissao, que associa a cada permissão um bit para verificações por máscara.
  *
  * @author Jorge Caldas, José Cortez, Marcelo Gonçalves, Ricardo Silva
  * @version 2015.01.05
@@ -17,35 +18,35 @@ class Permissions implements IPermissions{
     private final String eedit, ecreate, edelete, econsult;
     
     public Permissions(){
-        this.vedit="EDIT_VOLUNTARIOS_PERMISSIONS";
-        this.vcreate="CREATE_VOLUNTARIOS_PERMISSIONS";
-        this.vdelete="DELETE_VOLUNTARIOS_PERMISSIONS";
-        this.vconsult="CONSULT_VOLUNTARIOS_PERMISSIONS";
+        this.vedit=Permissao.EDIT_VOLUNTARIOS.getNome();
+        this.vcreate=Permissao.CREATE_VOLUNTARIOS.getNome();
+        this.vdelete=Permissao.DELETE_VOLUNTARIOS.getNome();
+        this.vconsult=Permissao.CONSULT_VOLUNTARIOS.getNome();
         
-        this.fedit="EDIT_FAMILIAS_PERMISSIONS";
-        this.fcreate="CREATE_FAMILIAS_PERMISSIONS";
-        this.fdelete="DELETE_FAMILIAS_PERMISSIONS";
-        this.fconsult="CONSULT_FAMILIAS_PERMISSIONS";
+        this.fedit=Permissao.EDIT_FAMILIAS.getNome();
+        this.fcreate=Permissao.CREATE_FAMILIAS.getNome();
+        this.fdelete=Permissao.DELETE_FAMILIAS.getNome();
+        this.fconsult=Permissao.CONSULT_FAMILIAS.getNome();
         
-        this.dedit="EDIT_DOACOES_PERMISSIONS";
-        this.dcreate="CREATE_DOACOES_PERMISSIONS";
-        this.ddelete="DELETE_DOACOES_PERMISSIONS";
-        this.dconsult="CONSULT_DOACOES_PERMISSIONS";
+        this.dedit=Permissao.EDIT_DOACOES.getNome();
+        this.dcreate=Permissao.CREATE_DOACOES.getNome();
+        this.ddelete=Permissao.DELETE_DOACOES.getNome();
+        this.dconsult=Permissao.CONSULT_DOACOES.getNome();
         
-        this.oedit="EDIT_OBRAS_PERMISSIONS";
-        this.ocreate="CREATE_OBRAS_PERMISSIONS";
-        this.odelete="DELETE_OBRAS_PERMISSIONS";
-        this.oconsult="CONSULT_OBRAS_PERMISSIONS";
+        this.oedit=Permissao.EDIT_OBRAS.getNome();
+        this.ocreate=Permissao.CREATE_OBRAS.getNome();
+        this.odelete=Permissao.DELETE_OBRAS.getNome();
+        this.oconsult=Permissao.CONSULT_OBRAS.getNome();
         
-        this.sedit="EDIT_STOCK_PERMISSIONS";
-        this.screate="CREATE_STOCK_PERMISSIONS";
-        this.sdelete="DELETE_STOCK_PERMISSIONS";
-        this.sconsult="CONSULT_STOCK_PERMISSIONS";
+        this.sedit=Permissao.EDIT_STOCK.getNome();
+        this.screate=Permissao.CREATE_STOCK.getNome();
+        this.sdelete=Permissao.DELETE_STOCK.getNome();
+        this.sconsult=Permissao.CONSULT_STOCK.getNome();
         
-        this.eedit="EDIT_EVETOS_PERMISSIONS";
-        this.ecreate="CREATE_EVETOS_PERMISSIONS";
-        this.edelete="DELETE_EVETOS_PERMISSIONS";
-        this.econsult="CONSULT_EVETOS_PERMISSIONS";       
+        this.eedit=Permissao.EDIT_EVENTOS.getNome();
+        this.ecreate=Permissao.CREATE_EVENTOS.getNome();
+        this.edelete=Permissao.DELETE_EVENTOS.getNome();
+        this.econsult=Permissao.CONSULT_EVENTOS.getNome();       
     }
     
     /*gets*/
@@ -0,0 +1,72 @@
+package business.recursoshumanos;
+
+/**Linha de uma listagem de voluntários: apenas os dados mostrados na lista, sem línguas nem horas por projeto.
+ *
+ * Os resumos são imutáveis e lidos com uma só query; o voluntário completo só é carregado quando a linha
+ * é aberta (SGHabitat.rh_getVoluntario).
+ * @author Jorge Caldas, José Cortez, Marcelo Gonçalves, Ricardo Silva
+ * @version 2015.01.17
+ */
+
+public final class ResumoVoluntario {
+
+    // Variáveis de instância
+    private final int nr;
+    private final String nome;
+    private final String localidade;
+    private final int horas;
+
+    /**
+     * Construtor parameterizado.
+     * @param nr, nº do voluntário.
+     * @param nome, nome completo.
+     * @param localidade, localidade.
+     * @param horas, total de horas de voluntariado.
+     */
+    public ResumoVoluntario(int nr, String nome, String localidade, int horas){
+        this.nr=nr;
+        this.nome=nome==null ? "" : nome;
+        this.localidade=localidade;
+        this.horas=horas;
+    }
+
+    /**
+     * Resumo de um voluntário já carregado (p.e. resultados de uma pesquisa).
+     * @param v, voluntário.
+     * @return resumo com os dados da lista.
+     */
+    public static ResumoVoluntario de(IVoluntario v){
+        return new ResumoVoluntario(v.getNr(), v.getNome(), v.getLocalidade(), v.getHorasVoluntariado());
+    }
+
+    /*gets*/
+    public int getNr(){return this.nr;}
+    public String getNome(){return this.nome;}
+    public String getLocalidade(){return this.localidade;}
+    public int getHorasVoluntariado(){return this.horas;}
+
+    /**
+     * Primeiro e último nome do voluntário.
+     * @return String com o primeiro e último nome.
+     */
+    public String getFirstAndLastName(){
+        String[] names = this.nome.split(" ");
+        if(names.length==1) return this.nome;
+        return names[0]+" "+names[names.length-1];
+    }
+
+    @Override
+    public boolean equals(Object o){
+        if(this==o) return true;
+        if(o==null || this.getClass()!=o.getClass()) return false;
+        ResumoVoluntario r = (ResumoVoluntario) o;
+        return this.nr==r.nr && this.horas==r.horas && this.nome.equals(r.nome)
+                && (this.localidade==null ? r.localidade==null : this.localidade.equals(r.localidade));
+    }
+
+    @Override
+    public int hashCode(){return this.nr;}
+
+    @Override
+    public String toString(){return "ResumoVoluntario[" + this.nr + ", " + this.nome + ", " + this.horas + "h]";}
+}
@@ -1,13 +1,15 @@
 package business.recursoshumanos;
 
+import business.Data;
+import business.colecoes.IntIntMap;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Calendar;
-import java.util.GregorianCalendar;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
 
 /**Classe que agrega toda a informação relativa a um funcionário da instituição.
  *
@@ -20,7 +22,7 @@ class Voluntario implements IVoluntario {
     // Variáveis de instância
     private int nr;
     private String nome;    
-    private GregorianCalendar datanasc;
+    private Data datanasc;
     private String localidade;
     private String rua;
     private String codPostal;
@@ -30,19 +32,19 @@ class Voluntario implements IVoluntario {
     private String profissao;
     private String email;
     private String obs; // e.g.: Complementos, experiência em obras, voluntariado, disponibilidade...
-    private GregorianCalendar dataInicioVol;   
+    private Data dataInicioVol;   
     private List<String> linguas;    
-    private Map<Integer,Integer> horasprojetos; //Key: nr do projeto, Value: horas de voluntariado nesse projeto
+    private IntIntMap horasprojetos; //Key: nr do projeto, Value: horas de voluntariado nesse projeto
     
     /**
      * Construtor vazio.
      */
     public Voluntario(){
-        this.nr=0; this.nome=""; this.datanasc=new GregorianCalendar();
+        this.nr=0; this.nome=""; this.datanasc=Data.hoje();
         this.habilitacoes=""; this.telef=""; this.telem="";
         this.profissao=""; this.email="";
-        this.dataInicioVol=new GregorianCalendar(); this.localidade=""; this.rua="";
-        this.codPostal=""; this.linguas=new ArrayList<>(); this.obs=""; this.horasprojetos=new HashMap<>();
+        this.dataInicioVol=Data.hoje(); this.localidade=""; this.rua="";
+        this.codPostal=""; this.linguas=new ArrayList<>(); this.obs=""; this.horasprojetos=new IntIntMap();
     }
     
     /**
@@ -64,14 +66,14 @@ class Voluntario implements IVoluntario {
      * @param obs, observações acerca do Voluntário.
      * @param hp, mapa que contém horas de voluntariado associadas a cada chave projeto
      */
-    public Voluntario (int nr, String nome, GregorianCalendar datanasc, String habl, String tf, String tl, String prof,
-            String email, GregorianCalendar dataInicio, String loc, String rua, String codp,
+    public Voluntario (int nr, String nome, Data datanasc, String habl, String tf, String tl, String prof,
+            String email, Data dataInicio, String loc, String rua, String codp,
             List<String> linguas, int horas, String obs, Map<Integer,Integer> horasprojetos){
         this.nr=nr; this.nome=nome; this.datanasc=datanasc;
         this.habilitacoes=habl; this.telef=tf; this.telem=tl;
         this.profissao=prof; this.email=email;
         this.dataInicioVol=dataInicio; this.localidade=loc; this.rua=rua;
-        this.codPostal=codp; this.linguas=linguas; this.obs=obs; this.horasprojetos=horasprojetos;
+        this.codPostal=codp; this.linguas=linguas; this.obs=obs; this.horasprojetos=IntIntMap.de(horasprojetos);
     }
     
     /**
@@ -83,8 +85,8 @@ class Voluntario implements IVoluntario {
         this.habilitacoes=v.getHabilitacoes(); this.telef=v.getTelef(); this.telem=v.getTelem();
         this.profissao=v.getProfissao(); this.email=v.getEmail();
         this.dataInicioVol=v.getDataInicioVol(); this.localidade=v.getLocalidade(); this.rua=v.getRua();
-        this.codPostal=v.getCodPostal(); this.linguas=v.getLinguas(); this.obs=v.getObs();
-        this.horasprojetos=v.getHorasProjetos();
+        this.codPostal=v.getCodPostal(); this.linguas=new ArrayList<>(v.getLinguas()); this.obs=v.getObs();
+        this.horasprojetos=new IntIntMap(v.getHorasProjetos());
     }
     
     /*gets & sets*/
@@ -97,9 +99,9 @@ class Voluntario implements IVoluntario {
     @Override
     public void setNome(String nome){this.nome=nome;}
     @Override
-    public GregorianCalendar getDatanasc(){return datanasc;}
+    public Data getDatanasc(){return datanasc;}
     @Override
-    public void setDatanasc(GregorianCalendar datanasc){this.datanasc = datanasc;}
+    public void setDatanasc(Data datanasc){this.datanasc = datanasc;}
     @Override
     public String getHabilitacoes(){return habilitacoes;}
     @Override
@@ -121,9 +123,9 @@ class Voluntario implements IVoluntario {
     @Override
     public void setEmail(String email){this.email=email;}
     @Override
-    public GregorianCalendar getDataInicioVol(){return dataInicioVol;}
+    public Data getDataInicioVol(){return dataInicioVol;}
     @Override
-    public void setDataInicioVol(GregorianCalendar dataInicioVol){this.dataInicioVol = dataInicioVol;}
+    public void setDataInicioVol(Data dataInicioVol){this.dataInicioVol = dataInicioVol;}
     @Override
     public String getLocalidade(){return localidade;}
     @Override
@@ -140,20 +142,23 @@ class Voluntario implements IVoluntario {
     public List<String> getLinguas(){return linguas;}
     @Override
     public void setLinguas(List<String> linguas){this.linguas = linguas;}
+    /**
+     * Total de horas de voluntariado, em tempo constante: o mapa de horas por projeto mantém a soma a cada
+     * alteração (addHorasProjeto, setHorasProjetos ou alterações diretas ao mapa).
+     * @return nº total de horas de voluntariado.
+     */
     @Override
     public int getHorasVoluntariado(){
-        int horasvoluntariado=0;
-        for(int h : this.horasprojetos.values()) horasvoluntariado+=h;
-        return horasvoluntariado;
+        return this.horasprojetos.somaValores();
     }
     @Override
     public String getObs(){return obs;}
     @Override
     public void setObs(String obs) {this.obs = obs;}
     @Override
-    public Map<Integer,Integer> getHorasProjetos(){return this.horasprojetos;}
+    public IntIntMap getHorasProjetos(){return this.horasprojetos;}
     @Override
-    public void setHorasProjetos (Map<Integer,Integer> hp){this.horasprojetos=hp;}
+    public void setHorasProjetos (Map<Integer,Integer> hp){this.horasprojetos=IntIntMap.de(hp);}
     
     /*equals e clone*/
     @Override
@@ -202,15 +207,7 @@ class Voluntario implements IVoluntario {
      */
     @Override
     public int getIdadeVol(){
-        GregorianCalendar today = new GregorianCalendar();
-        int age = (today.get(Calendar.YEAR) - this.datanasc.get(Calendar.YEAR));
-        
-        // Verificar se data dia e mes atual são posteriores ao dia e mês de nascimento do Voluntário
-        if(today.get(Calendar.MONTH) > this.datanasc.get(Calendar.MONTH)) age++;
-        else if(today.get(Calendar.MONTH)==this.datanasc.get(Calendar.MONTH)
-                && today.get(Calendar.DAY_OF_MONTH)>=this.datanasc.get(Calendar.DAY_OF_MONTH)) age++;
-        
-        return age;
+        return this.datanasc.anosAte(Data.hoje());
     }
     
     /**
@@ -233,20 +230,51 @@ class Voluntario implements IVoluntario {
      */
     @Override
     public void addHorasProjeto(int proj, int horas) {
-        if(this.horasprojetos!=null){
-            if(this.horasprojetos.containsKey(proj)){
-                int h = this.horasprojetos.get(proj);
-                h+=horas;
-                this.horasprojetos.put(proj,h);
-            }
-            else this.horasprojetos.put(proj,horas);
+        if(this.horasprojetos==null) this.horasprojetos = new IntIntMap();
+        this.horasprojetos.somar(proj,horas);
+    }
+    
+    /**
+     * Impressão digital do voluntário, para deteção de duplicados (p.e. a mesma ficha carregada duas vezes):
+     * SHA-1 do nome normalizado (minúsculas, sem acentos nem pontuação), da data de nascimento e do contacto
+     * (e-mail ou, na falta deste, telemóvel ou telefone). Não depende do nº nem dos restantes campos.
+     * @return String, 40 dígitos hexadecimais.
+     */
+    @Override
+    public String getImpressao(){
+        StringBuilder sb = new StringBuilder();
+        sb.append(normalizar(this.nome)).append('|');
+        if(this.datanasc!=null){
+            // mês de 0 a 11, como nas impressões já guardadas (calculadas sobre GregorianCalendar)
+            sb.append(this.datanasc.getAno()).append('-').append(this.datanasc.getMes()-1)
+              .append('-').append(this.datanasc.getDia());
         }
-        else{
-            this.horasprojetos = new TreeMap<Integer,Integer>();
-            this.horasprojetos.put(proj,horas);
+        sb.append('|').append(this.contacto());
+        try {
+            byte[] h = MessageDigest.getInstance("SHA-1").digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for(byte b : h) hex.append(String.format("%02x", b));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // SHA-1 existe em todas as JVM
         }
     }
     
+    /*Contacto usado na impressão: e-mail, senão telemóvel, senão telefone (só dígitos)*/
+    private String contacto(){
+        if(this.email!=null && this.email.contains("@")) return this.email.trim().toLowerCase();
+        String t = this.telem==null ? "" : this.telem.replaceAll("\\D", "");
+        if(t.isEmpty() && this.telef!=null) t = this.telef.replaceAll("\\D", "");
+        return t;
+    }
+    
+    /*Nome em minúsculas, sem acentos nem pontuação e com os espaços colapsados*/
+    private static String normalizar(String nome){
+        if(nome==null) return "";
+        String s = Normalizer.normalize(nome, Normalizer.Form.NFD).replaceAll("\\p{M}+", "");
+        return s.toLowerCase().replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+    }
+    
     /**
      * Compara voluntários sem incluir o nº na comparação.
      * @param o, um voluntário
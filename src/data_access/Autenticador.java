@@ -0,0 +1,174 @@
+package data_access;
+
+import business.recursoshumanos.IFuncionario;
+import exceptions.FuncionarioNaoExisteException;
+import exceptions.PasswordIncorretaException;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Autenticação dos funcionários e gestão das sessões.
+ *
+ * As passwords são verificadas contra credenciais com hash lento (Credencial); passwords ainda guardadas
+ * em claro são convertidas no primeiro log in bem sucedido. As contas autenticadas recentemente ficam numa
+ * cache limitada (MAX_CONTAS, LRU, com tempo de vida TTL), de modo que um novo log in ou o desbloqueio do
+ * ecrã não acedem à base de dados. Caso a password não corresponda à credencial em cache, a conta é relida
+ * (a password pode ter sido alterada noutro posto); uma password antiga continua assim válida neste posto
+ * durante, no máximo, TTL.
+ *
+ * As verificações são feitas fora do lock da cache, pelo que vários log in em simultâneo (p.e. numa mudança
+ * de turno) calculam os hashes em paralelo. Os métodos devem ser chamados fora da EDT.
+ * @author Jorge Caldas, José Cortez, Marcelo Gonçalves, Ricardo Silva
+ * @version 2015.01.17
+ */
+
+class Autenticador {
+
+    private static final int MAX_CONTAS = 64;               // nº máximo de contas em cache
+    private static final long TTL = 30 * 60 * 1000;         // tempo de vida de uma conta em cache (ms)
+    private static final int BYTES_TOKEN = 16;
+
+    private static final SecureRandom ALEATORIO = new SecureRandom();
+
+    // Variáveis de instância
+    private final FuncionarioDAO funcionarios;
+    private final Map<String,Conta> contas;                 // username -> conta autenticada recentemente
+    private final Map<String,Sessao> sessoes;               // token -> sessão aberta
+
+    /**
+     * Construtor parameterizado.
+     * @param funcionarios, DAO de onde são lidas as contas.
+     */
+    public Autenticador(FuncionarioDAO funcionarios){
+        this.funcionarios=funcionarios;
+        this.contas = new LinkedHashMap<String,Conta>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String,Conta> e){return this.size()>MAX_CONTAS;}
+        };
+        this.sessoes = new HashMap<>();
+    }
+
+    /**
+     * Autentica um funcionário e abre uma sessão.
+     * @param user, username.
+     * @param password, password introduzida.
+     * @return sessão aberta, com as permissões do funcionário.
+     * @throws FuncionarioNaoExisteException caso o username não exista.
+     * @throws PasswordIncorretaException caso a password não corresponda.
+     */
+    public Sessao autenticar(String user, String password) throws FuncionarioNaoExisteException, PasswordIncorretaException {
+        Conta c = this.emCache(user);
+        if(c==null || !Credencial.verificar(password, c.credencial)) c = this.lerConta(user, password);
+        return this.abrir(c);
+    }
+
+    /**
+     * Desbloqueia o ecrã de uma sessão aberta, verificando a password sem aceder à base de dados
+     * (exceto se a conta já tiver saído da cache).
+     * @param sessao, sessão bloqueada.
+     * @param password, password introduzida.
+     * @return true caso a sessão esteja aberta e a password corresponda, false caso contrário.
+     */
+    public boolean desbloquear(Sessao sessao, String password) {
+        synchronized(this) {
+            if(!this.sessoes.containsKey(sessao.getToken())) return false;
+        }
+        Conta c = this.emCache(sessao.getUsername());
+        if(c!=null && Credencial.verificar(password, c.credencial)) return true;
+        try {
+            this.lerConta(sessao.getUsername(), password);
+            return true;
+        } catch (FuncionarioNaoExisteException | PasswordIncorretaException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Funcionário de uma sessão (cópia da conta em cache, ou relida caso já tenha saído da cache).
+     * @param sessao, sessão aberta.
+     * @return funcionário, ou null caso já não exista.
+     */
+    public IFuncionario getFuncionario(Sessao sessao) {
+        Conta c = this.emCache(sessao.getUsername());
+        if(c!=null) return c.funcionario.clone();
+        FuncionarioDAO.Conta lida = this.funcionarios.getConta(sessao.getUsername());
+        return lida==null ? null : lida.funcionario;
+    }
+
+    /**
+     * Termina uma sessão. A conta mantém-se em cache, para que um novo log in não aceda à base de dados.
+     * @param sessao, sessão a terminar.
+     */
+    public synchronized void terminar(Sessao sessao){this.sessoes.remove(sessao.getToken());}
+
+    /**
+     * Retira uma conta da cache (p.e. depois de alteradas a password ou as permissões do funcionário).
+     * @param user, username do funcionário.
+     */
+    public synchronized void invalidar(String user){this.contas.remove(user);}
+
+    /*Conta em cache ainda dentro do tempo de vida, ou null*/
+    private synchronized Conta emCache(String user){
+        Conta c = this.contas.get(user);
+        if(c!=null && System.currentTimeMillis()-c.lida > TTL){
+            this.contas.remove(user);
+            return null;
+        }
+        return c;
+    }
+
+    /*Lê a conta da base de dados e verifica a password; converte passwords em claro ou credenciais antigas*/
+    private Conta lerConta(String user, String password) throws FuncionarioNaoExisteException, PasswordIncorretaException {
+        FuncionarioDAO.Conta lida = this.funcionarios.getConta(user);
+        if(lida==null){
+            this.invalidar(user);
+            throw new FuncionarioNaoExisteException(user);
+        }
+
+        String credencial = lida.credencial;
+        boolean valida = credencial!=null ? Credencial.verificar(password, credencial)
+                                          : Credencial.verificarLegado(password, lida.funcionario.getPassword());
+        if(!valida){
+            this.invalidar(user);
+            throw new PasswordIncorretaException(user);
+        }
+        if(Credencial.precisaAtualizar(credencial)){
+            credencial = Credencial.criar(password);
+            this.funcionarios.setCredencial(lida.funcionario.getId(), credencial);
+        }
+        lida.funcionario.setPassword(""); // a password em claro não fica em memória
+
+        Conta c = new Conta(lida.funcionario, credencial, System.currentTimeMillis());
+        synchronized(this) {
+            this.contas.put(user, c);
+        }
+        return c;
+    }
+
+    private Sessao abrir(Conta c){
+        byte[] token = new byte[BYTES_TOKEN];
+        ALEATORIO.nextBytes(token);
+        IFuncionario f = c.funcionario;
+        Sessao s = new Sessao(Credencial.hex(token), f.getId(), f.getUsername(), f.getPermissionsMask(), System.currentTimeMillis());
+        synchronized(this) {
+            this.sessoes.put(s.getToken(), s);
+        }
+        return s;
+    }
+
+
+    /*Conta autenticada: funcionário (com permissões), credencial e instante em que foi lida*/
+    private static final class Conta {
+        private final IFuncionario funcionario;
+        private final String credencial;
+        private final long lida;
+
+        private Conta(IFuncionario funcionario, String credencial, long lida){
+            this.funcionario=funcionario;
+            this.credencial=credencial;
+            this.lida=lida;
+        }
+    }
+}
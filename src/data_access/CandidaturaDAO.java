@@ -1,15 +1,16 @@
 package data_access;
+import business.Data;
+import business.colecoes.IntList;
 import business.familias.ICandidatura;
 import business.familias.CandidaturaFactory;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
-import java.util.GregorianCalendar;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -26,27 +27,22 @@ import java.util.logging.Logger;
 
 class CandidaturaDAO implements Map<Integer,ICandidatura> {
 
-    public Connection conn;
+    private final MySQLManager manager;
+    private final MySQLTable table;
+    private final KeyAllocator keys;
     public MySQLParseTools parseTools;    
 
     public CandidaturaDAO() throws ConnectionErrorException{
-        try {
-            this.conn = (new MySQLManager()).getConnection();
-            this.parseTools = new MySQLParseTools();
-            } 
-        catch (SQLException ex) {System.out.println("error_ICandidatura_bd");
-            }    
+        this.manager = MySQLManager.getInstance();
+        this.table = new MySQLTable(this.manager, "Candidaturas", "Nr");
+        this.keys = KeyAllocator.forTable(this.manager, "Candidaturas", "Nr");
+        this.parseTools = new MySQLParseTools();    
     }
 
     @Override
-    @SuppressWarnings("empty-statement")
     public int size() {
         try {
-            int i = 0;
-            Statement stm = conn.createStatement();
-            ResultSet rs = stm.executeQuery("SELECT Nr FROM Candidaturas");
-            for (;rs.next();i++);
-            return i;
+            return this.table.count();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -54,20 +50,15 @@ class CandidaturaDAO implements Map<Integer,ICandidatura> {
     @Override
     public boolean isEmpty() {
         try {
-            Statement stm = conn.createStatement();
-            ResultSet rs = stm.executeQuery("SELECT Nr FROM Candidaturas");
-            return rs.next();
+            return this.table.isEmpty();
         }
-        catch (Exception e) {throw new NullPointerException(e.getMessage());}    
+        catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
 
     @Override
     public boolean containsKey(Object o) {
-         try {
-            Statement stm = conn.createStatement();
-            String sql = "SELECT Nr FROM Candidaturas WHERE Nr='"+(int)o+"'";
-            ResultSet rs = stm.executeQuery(sql);
-            return rs.next();
+        try {
+            return this.table.containsKey((int)o);
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -79,7 +70,6 @@ class CandidaturaDAO implements Map<Integer,ICandidatura> {
             if(o instanceof ICandidatura) {
             
                 ICandidatura v = (ICandidatura)o;
-                Statement stm = conn.createStatement();
                 
                 int N=this.size();
                 for(int key=1; key<N; key++){
@@ -94,44 +84,64 @@ class CandidaturaDAO implements Map<Integer,ICandidatura> {
  
     @Override
     public ICandidatura get(Object o) {
-        ICandidatura cand = new CandidaturaFactory().createCandidatura();
-        try {
-            Statement stm = conn.createStatement();
-            String sql = "SELECT * FROM Candidaturas WHERE Nr='"+(int)o+"'";
-            ResultSet rs = stm.executeQuery(sql);
-            if (rs.next()){
+        ICandidatura cand = this.getAll(Arrays.asList((int)o)).get((int)o);
+        return cand!=null ? cand : new CandidaturaFactory().createCandidatura();
+    }
+    
+    /**
+     * Carrega várias candidaturas (p.e. as dos projetos de uma página) com uma query sobre Candidaturas e
+     * uma query sobre Membros para todo o lote, em vez de duas queries por candidatura.
+     * @param nrs, nºs das candidaturas a carregar.
+     * @return mapa nº de candidatura -> candidatura (só as candidaturas existentes).
+     */
+    public Map<Integer,ICandidatura> getAll(Collection<Integer> nrs) {
+        Map<Integer,ICandidatura> cands = new HashMap<>();
+        if(nrs.isEmpty()) return cands;
+        List<Object> params = new ArrayList<Object>(new HashSet<>(nrs));
+        String filtro = parseTools.inParams(params.size());
+        try (Connection conn = this.manager.getConnection()) {
+            PreparedStatement ps = conn.prepareStatement("SELECT * FROM Candidaturas WHERE Nr IN "+filtro);
+            parseTools.bind(ps, parseTools.inValores(params));
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()){
+                ICandidatura cand = new CandidaturaFactory().createCandidatura();
                 cand.setNr(rs.getInt("Nr"));
                 cand.setEstado(rs.getString("Estado"));
-                cand.setDataDecisao(parseTools.parseSQLDate(rs.getString("DataDecisao")));
+                cand.setDataDecisao(parseTools.getData(rs, "DataDecisao"));
                 cand.setFuncionarioRegistou(rs.getInt("FuncionarioRegistou"));
                 cand.setFuncionarioAprovou(rs.getInt("FuncionarioAprovou"));
-                cand.setDataSubmissao(parseTools.parseSQLDate(rs.getString("DataSubmissao")));
+                cand.setDataSubmissao(parseTools.getData(rs, "DataSubmissao"));
                 cand.setDescricao(rs.getString("Descricao"));
-                
-                List<Integer> membros = new ArrayList<>();
-                sql = "SELECT Candidatura FROM Membros WHERE Candidatura='"+cand.getNr()+"'";
-                rs = stm.executeQuery(sql);
-                for(;rs.next();)
-                    membros.add(rs.getInt(1));
-                cand.setMembros(membros);
-                
-                cand.setRepresentante(rs.getInt("Representante"));         
+                cand.setRepresentante(rs.getInt("Representante"));
+                cand.setMembros(new IntList());
+                cands.put(cand.getNr(), cand);
+            }
             
-                return cand;
-        }
-        } catch (NullPointerException e) {throw new NullPointerException(e.getMessage());} catch (SQLException ex) {
+            if(!cands.isEmpty()){
+                ps = conn.prepareStatement("SELECT Candidatura, Id FROM Membros WHERE Candidatura IN "+filtro);
+                parseTools.bind(ps, params);
+                rs = ps.executeQuery();
+                while(rs.next()){
+                    ICandidatura cand = cands.get(rs.getInt(1));
+                    if(cand!=null) cand.getMembros().add(rs.getInt(2));
+                }
+            }
+        } catch (SQLException | ConnectionErrorException ex) {
             Logger.getLogger(CandidaturaDAO.class.getName()).log(Level.SEVERE, null, ex);
         }
-        return cand;
+        return cands;
     }
     
 
     @Override
     public ICandidatura put(Integer k, ICandidatura cd) {
-        try {
-            Statement stm = conn.createStatement();
-            stm.executeUpdate("DELETE FROM Candidaturas WHERE Nr='"+k+"'");
-            int i  = stm.executeUpdate(insert(k,cd));
+        try (Connection conn = this.manager.getConnection()) {
+            conn.setAutoCommit(false); // DELETE e INSERT numa só transação
+            PreparedStatement ps = conn.prepareStatement("DELETE FROM Candidaturas WHERE Nr=?");
+            ps.setInt(1, k);
+            ps.executeUpdate();
+            int i  = insert(conn,k,cd).executeUpdate();
+            conn.commit();
             ICandidatura c = new CandidaturaFactory().createCandidatura();
             c.setNr(cd.getNr());
             c.setEstado(cd.getEstado());
@@ -146,34 +156,37 @@ class CandidaturaDAO implements Map<Integer,ICandidatura> {
             
             return c;
         }
-        catch (NullPointerException e) {throw new NullPointerException(e.getMessage());} catch (SQLException ex) {
+        catch (NullPointerException e) {throw new NullPointerException(e.getMessage());} catch (SQLException | ConnectionErrorException ex) {
             Logger.getLogger(CandidaturaDAO.class.getName()).log(Level.SEVERE, null, ex);
         }
         return null;
     }
     
-    private String insert(Integer key, ICandidatura value) {
+    private PreparedStatement insert(Connection conn, Integer key, ICandidatura value) throws SQLException {
         List<Object> obj = new ArrayList<>();
         obj.add(value.getNr());
         obj.add(value.getDescricao());
-        obj.add(parseTools.parseCalendar(value.getDataSubmissao()));
-        obj.add(parseTools.parseCalendar(value.getDataDecisao()));
+        obj.add(value.getDataSubmissao());
+        obj.add(value.getDataDecisao());
         obj.add(value.getFuncionarioAprovou());
         obj.add(value.getFuncionarioRegistou());
         obj.add(value.getEstado());
         obj.add(value.getRepresentante());
         
-        return parseTools.createInsert("Candidaturas", obj);
+        PreparedStatement ps = conn.prepareStatement(parseTools.createInsert("Candidaturas", obj.size()));
+        parseTools.bind(ps, obj);
+        return ps;
     }
 
 
     @Override
     public ICandidatura remove(Object key) {
-        try {            
-            Statement stm = conn.createStatement();
-            ICandidatura c = this.get(key);
+        ICandidatura c = this.get(key); // lido antes de pedir a conexão: get pede a sua ao pool
+        try (Connection conn = this.manager.getConnection()) {            
             if(c!=null){
-                stm.executeUpdate("DELETE FROM Candidaturas WHERE Nr='"+key+"'");
+                PreparedStatement ps = conn.prepareStatement("DELETE FROM Candidaturas WHERE Nr=?");
+                ps.setInt(1, (int)key);
+                ps.executeUpdate();
             }
             return c;
         }
@@ -188,43 +201,29 @@ class CandidaturaDAO implements Map<Integer,ICandidatura> {
 
     @Override
      public void clear () {
-        try {
-            Statement stm = conn.createStatement();
-            stm.executeUpdate("DELETE FROM Candidaturas WHERE Candidaturas.Nr>=0;");
+        try (Connection conn = this.manager.getConnection()) {
+            conn.prepareStatement("DELETE FROM Candidaturas WHERE Candidaturas.Nr>=0").executeUpdate();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
     
     @Override
-    public int hashCode() {return Arrays.hashCode(new Object[]{conn, parseTools});}
+    public int hashCode() {return Arrays.hashCode(new Object[]{manager, parseTools});}
 
     @Override
     public Set<Integer> keySet() {
         try {
-            Set<Integer> set = new HashSet<>();
-            int n = this.generateCandidaturaKey();
-            for(int i=0; i<n; i++){
-                if(this.containsKey(i)){
-                    set.add(i);
-                }
-            }
-            return set;
+            return this.table.intKeys();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
 
      @Override
-    public Set<Entry<Integer, ICandidatura>> entrySet() {
+    public Set<Entry<Integer,ICandidatura>> entrySet() {
         try {
-            Set<Entry<Integer,ICandidatura>> set;
-            Set<Integer> keys = new HashSet<>(this.keySet());            
-            
             HashMap<Integer,ICandidatura> map = new HashMap<>();
-            for(Integer key : keys){
-                if(this.containsKey(key)){
-                    map.put(key,this.get(key));
-                }
-            }
+            for(Integer key : this.keySet())
+                map.put(key,this.get(key));
             return map.entrySet();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
@@ -252,36 +251,22 @@ class CandidaturaDAO implements Map<Integer,ICandidatura> {
     @Override
     public Collection<ICandidatura> values() {
         try {
-            Set<ICandidatura> set = new HashSet<>();
-            Set<Integer> keys = new HashSet<>(this.keySet());
-            for(Integer key : keys)
-                set.add(this.get(key));
-            return set;
+            Collection<ICandidatura> col = new ArrayList<>();
+            for(Integer key : this.keySet())
+                col.add(this.get(key));
+            return col;
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
     
-    public int generateCandidaturaKey(){
-       try {
-            if(!this.isEmpty()){
-                Statement stm = conn.createStatement();
-                ResultSet rs = stm.executeQuery("SELECT MAX(Nr) FROM Candidaturas;");
-                if(rs.next()){
-                    return(rs.getInt(1) + 1);
-                }
-            } else return 1;
-        } catch (Exception e) {return 1;}
-        
-        return -1;
-    }
-     /**
-     * Fechar a ligação à base de dados.
+    /**
+     * Atribui uma nova chave, a partir do bloco de chaves reservado para esta tabela (ver KeyAllocator).
+     * @return Chave que identificará univocamente no sistema uma candidatura.
      */
-    public void close(){
+    public int generateCandidaturaKey(){
         try {
-            this.conn.close();
-        } catch (SQLException ex) {
-            Logger.getLogger(CandidaturaDAO.class.getName()).log(Level.SEVERE, null, ex);
+            return this.keys.next();
         }
-    }   
+        catch (Exception e) {throw new NullPointerException(e.getMessage());}
+    }
 }
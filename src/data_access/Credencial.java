@@ -0,0 +1,114 @@
+package data_access;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Credenciais dos funcionários guardadas como hash lento com sal (PBKDF2-HMAC-SHA1), nunca em claro.
+ *
+ * Uma credencial tem o formato pbkdf2$iterações$sal$hash (sal e hash em hexadecimal), pelo que o nº de
+ * iterações pode ser aumentado sem invalidar as credenciais já guardadas (ver precisaAtualizar).
+ * Cada verificação custa dezenas de milissegundos de CPU de propósito: deve ser feita fora da EDT.
+ * @author Jorge Caldas, José Cortez, Marcelo Gonçalves, Ricardo Silva
+ * @version 2015.01.17
+ */
+
+final class Credencial {
+
+    private static final String PREFIXO = "pbkdf2";
+    private static final int ITERACOES = 20000;
+    private static final int BYTES_SAL = 16;
+    private static final int BITS_HASH = 160;
+
+    private static final SecureRandom ALEATORIO = new SecureRandom();
+
+    private Credencial(){}
+
+    /**
+     * Gera a credencial de uma password, com um sal novo.
+     * @param password, password em claro.
+     * @return credencial a guardar.
+     */
+    static String criar(String password){
+        byte[] sal = new byte[BYTES_SAL];
+        ALEATORIO.nextBytes(sal);
+        return PREFIXO+"$"+ITERACOES+"$"+hex(sal)+"$"+hex(pbkdf2(password, sal, ITERACOES));
+    }
+
+    /**
+     * Verifica uma password contra uma credencial guardada (comparação em tempo constante).
+     * @param password, password introduzida.
+     * @param credencial, credencial guardada.
+     * @return true caso a password corresponda à credencial, false caso contrário (ou credencial inválida).
+     */
+    static boolean verificar(String password, String credencial){
+        if(password==null || credencial==null) return false;
+        String[] partes = credencial.split("\\$");
+        if(partes.length!=4 || !partes[0].equals(PREFIXO)) return false;
+        try {
+            int iteracoes = Integer.parseInt(partes[1]);
+            byte[] esperado = unhex(partes[3]);
+            return MessageDigest.isEqual(esperado, pbkdf2(password, unhex(partes[2]), iteracoes));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Verifica uma password guardada em claro (registos anteriores às credenciais), em tempo constante.
+     * @param password, password introduzida.
+     * @param guardada, password em claro guardada.
+     * @return true caso sejam iguais.
+     */
+    static boolean verificarLegado(String password, String guardada){
+        if(password==null || guardada==null || guardada.isEmpty()) return false;
+        return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8), guardada.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Indica se uma credencial deve ser regenerada no próximo log in (inexistente ou com menos iterações).
+     * @param credencial, credencial guardada (null caso não exista).
+     * @return true caso deva ser substituída.
+     */
+    static boolean precisaAtualizar(String credencial){
+        if(credencial==null) return true;
+        String[] partes = credencial.split("\\$");
+        try {
+            return partes.length!=4 || !partes[0].equals(PREFIXO) || Integer.parseInt(partes[1])<ITERACOES;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    private static byte[] pbkdf2(String password, byte[] sal, int iteracoes){
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), sal, iteracoes, BITS_HASH);
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA1").generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e); // PBKDF2WithHmacSHA1 existe em todas as JVM Java 7+
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    static String hex(byte[] bs){
+        StringBuilder sb = new StringBuilder(bs.length*2);
+        for(byte b : bs) sb.append(Character.forDigit((b>>4)&0xF, 16)).append(Character.forDigit(b&0xF, 16));
+        return sb.toString();
+    }
+
+    private static byte[] unhex(String s){
+        if(s.length()%2!=0) throw new IllegalArgumentException("hexadecimal inválido");
+        byte[] bs = new byte[s.length()/2];
+        for(int i=0; i<bs.length; i++){
+            int hi = Character.digit(s.charAt(2*i), 16), lo = Character.digit(s.charAt(2*i+1), 16);
+            if(hi<0 || lo<0) throw new IllegalArgumentException("hexadecimal inválido");
+            bs[i] = (byte)((hi<<4) | lo);
+        }
+        return bs;
+    }
+}
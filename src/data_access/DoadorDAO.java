@@ -1,15 +1,14 @@
 package data_access;
 
 
+import business.colecoes.IntSet;
 import business.doacoes.IDoador;
 import business.doacoes.DoadorFactory;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.*;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
 
 /**
@@ -19,7 +18,18 @@ import java.util.logging.Logger;
  */
 class DoadorDAO implements Map<String,IDoador>{
     
-    public Connection conn;
+    /*Colunas pelas quais as páginas de doadores podem ser ordenadas (nome -> expressão SQL)*/
+    private static final Map<String,String> ORDENS = new LinkedHashMap<>();
+    static {
+        ORDENS.put("NIF", "NIF");
+        ORDENS.put("Nome", "COALESCE(#3,'')");
+        ORDENS.put("Localidade", "COALESCE(Localidade,'')");
+        ORDENS.put("Tipo", "COALESCE(Tipo,'')");
+    }
+    
+    private final MySQLManager manager;
+    private final MySQLTable table;
+    private final KeyAllocator keys;
     public MySQLParseTools parseTools;
     
     /**
@@ -27,17 +37,16 @@ class DoadorDAO implements Map<String,IDoador>{
      * @throws ConnectionErrorException 
      */
     public DoadorDAO () throws ConnectionErrorException {
-        try {
-            parseTools = new MySQLParseTools();
-            this.conn = (new MySQLManager()).getConnection();
-        } catch (SQLException e) {System.out.println ("error_doador_bd");}
+        parseTools = new MySQLParseTools();
+        this.manager = MySQLManager.getInstance();
+        this.table = new MySQLTable(this.manager, "Doadores", "NIF");
+        this.keys = KeyAllocator.forTable(this.manager, "Doadores", "Id");
     }
     
     @Override
     public void clear() {
-        try {
-            Statement stm = conn.createStatement();
-            stm.executeUpdate("DELETE FROM Doadores WHERE Id>0;");
+        try (Connection conn = this.manager.getConnection()) {
+            conn.prepareStatement("DELETE FROM Doadores WHERE Id>0").executeUpdate();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -45,11 +54,8 @@ class DoadorDAO implements Map<String,IDoador>{
     @Override
     public boolean containsKey(Object key) {
         try {
-            Integer chave = Integer.parseInt ((String)key);
-            Statement stm = conn.createStatement();
-            String sql = "SELECT Nome FROM Doadores WHERE NIF='"+key+"'";
-            ResultSet rs = stm.executeQuery(sql);
-            return rs.next();
+            Integer chave = Integer.parseInt((String)key);
+            return this.table.containsKey(chave);
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -60,7 +66,6 @@ class DoadorDAO implements Map<String,IDoador>{
             if(value instanceof IDoador) {
             
                 IDoador d = (IDoador)value;
-                Statement stm = conn.createStatement();
                 
                 Set<String> chaves = this.keySet();
                 // Percorrer tabela de doadores e verificar se existe doador
@@ -96,33 +101,21 @@ class DoadorDAO implements Map<String,IDoador>{
     public IDoador get(Object key) {
         IDoador d = new DoadorFactory().createDoador();
         
-        try {
+        try (Connection conn = this.manager.getConnection()) {
             Integer chave = Integer.parseInt((String)key);
-            Statement stm = conn.createStatement();
             int nrDoador;
-            String sql = "SELECT * FROM Doadores WHERE NIF='"+chave+"'";
-            ResultSet rs = stm.executeQuery(sql);
+            PreparedStatement ps = conn.prepareStatement("SELECT * FROM Doadores WHERE NIF=?");
+            ps.setInt(1, chave);
+            ResultSet rs = ps.executeQuery();
             if (rs.next()){
-                d = new DoadorFactory().createDoador();
                 nrDoador = (rs.getInt("Id"));
-                d.setNIF(Integer.toString(rs.getInt("NIF")));
-                d.setTelefone(rs.getString("Telefone"));
-                d.setTelemovel(rs.getString("Telemovel"));
-                d.setLocalidade(rs.getString("Localidade"));
-                d.setRua(rs.getString("Rua"));
-                d.setCodPostal(rs.getString("CodigoPostal"));
-                d.setNotas(rs.getString("Obs"));
-                d.setPessoaContato(rs.getString("PessoaContato"));
-                d.setEmail(rs.getString("Email"));
-                d.setSite(rs.getString("Website"));
-                d.setTipo(rs.getString("Tipo"));
+                d = this.fromRow(rs);
                 
-                Set<Integer> donativos = new HashSet<>();
-                sql = "Select Donativo from ProjetoDoadoresDonativos WHERE Doador='"+nrDoador+"'";
-                rs = stm.executeQuery(sql);
+                ps = conn.prepareStatement("Select Donativo from ProjetoDoadoresDonativos WHERE Doador=?");
+                ps.setInt(1, nrDoador);
+                rs = ps.executeQuery();
                 while (rs.next())
-                    donativos.add(rs.getInt("Donativo"));
-                d.setDonativos(donativos);
+                    d.getDonativos().add(rs.getInt("Donativo"));
                 
                 return d;
             }
@@ -131,12 +124,67 @@ class DoadorDAO implements Map<String,IDoador>{
         return d;
     }
     
+    /*Constrói um doador a partir da linha corrente de um ResultSet sobre a tabela Doadores (sem donativos)*/
+    private IDoador fromRow(ResultSet rs) throws SQLException {
+        IDoador d = new DoadorFactory().createDoador();
+        d.setNIF(Integer.toString(rs.getInt("NIF")));
+        d.setNome(rs.getString(3)); // Id, NIF, Nome, ...
+        d.setTelefone(rs.getString("Telefone"));
+        d.setTelemovel(rs.getString("Telemovel"));
+        d.setLocalidade(rs.getString("Localidade"));
+        d.setRua(rs.getString("Rua"));
+        d.setCodPostal(rs.getString("CodigoPostal"));
+        d.setNotas(rs.getString("Obs"));
+        d.setPessoaContato(rs.getString("PessoaContato"));
+        d.setEmail(rs.getString("Email"));
+        d.setSite(rs.getString("Website"));
+        d.setTipo(rs.getString("Tipo"));
+        d.setDonativos(new IntSet());
+        return d;
+    }
+    
+    /**
+     * Lê uma página de doadores (com os respetivos donativos), ordenada pelo servidor.
+     * @param tamanho, nº de doadores por página (no máximo MySQLTable.MAX_PAGINA).
+     * @param ordem, coluna de ordenação: NIF, Nome, Localidade ou Tipo.
+     * @param ascendente, sentido da ordenação.
+     * @param depois, cursor da página anterior (null para a primeira página).
+     * @return página de doadores.
+     */
+    public Pagina<IDoador> pagina(int tamanho, String ordem, boolean ascendente, Pagina.Cursor depois) {
+        String expr = ORDENS.get(ordem);
+        if(expr==null) throw new IllegalArgumentException("Ordenação desconhecida: "+ordem);
+        
+        try (Connection conn = this.manager.getConnection()) {
+            Map<Integer,IDoador> doadores = new LinkedHashMap<>(); // Id -> doador
+            Pagina.Cursor ultimo = null;
+            boolean mais = false;
+            
+            ResultSet rs = this.table.preparePage(conn, expr, ascendente, depois, tamanho).executeQuery();
+            while(rs.next()){
+                if(doadores.size()==MySQLTable.tamanhoPagina(tamanho)){mais=true; break;}
+                IDoador d = this.fromRow(rs);
+                doadores.put(rs.getInt("Id"), d);
+                ultimo = new Pagina.Cursor(rs.getObject("Ordem"), rs.getObject("NIF"));
+            }
+            
+            if(!doadores.isEmpty()){
+                List<Object> ids = parseTools.inValores(new ArrayList<Object>(doadores.keySet()));
+                PreparedStatement ps = conn.prepareStatement(
+                        "SELECT Doador, Donativo FROM ProjetoDoadoresDonativos WHERE Doador IN "+parseTools.inParams(ids.size()));
+                parseTools.bind(ps, ids);
+                rs = ps.executeQuery();
+                while(rs.next()) doadores.get(rs.getInt(1)).getDonativos().add(rs.getInt(2));
+            }
+            return new Pagina<>(new ArrayList<>(doadores.values()), ultimo, mais);
+        }
+        catch (Exception e) {throw new NullPointerException(e.getMessage());}
+    }
+    
     @Override
     public boolean isEmpty() {
         try {
-            Statement stm = conn.createStatement();
-            ResultSet rs = stm.executeQuery("SELECT Nome FROM Doadores");
-            return !rs.next();
+            return this.table.isEmpty();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -144,10 +192,9 @@ class DoadorDAO implements Map<String,IDoador>{
     
     @Override
     public Set<String> keySet() {
-        try {
+        try (Connection conn = this.manager.getConnection()) {
             Set<String> set = new HashSet<>();
-            Statement stm = conn.createStatement();
-            ResultSet rs = stm  .executeQuery ("Select NIF From Doadores");
+            ResultSet rs = conn.prepareStatement("Select NIF From Doadores").executeQuery();
             while (rs.next())
                 set.add(String.valueOf(rs.getInt(1)));
             return set;
@@ -157,11 +204,14 @@ class DoadorDAO implements Map<String,IDoador>{
     
     @Override
     public IDoador put(String key, IDoador value) {
-        try {            
+        try (Connection conn = this.manager.getConnection()) {            
             Integer chave = Integer.parseInt((String)key);
-            Statement stm = conn.createStatement();
-            stm.executeUpdate("DELETE FROM Doadores WHERE NIF='"+chave+"'");
-            int i  = stm.executeUpdate(insert(key,value));
+            conn.setAutoCommit(false); // DELETE e INSERT numa só transação
+            PreparedStatement ps = conn.prepareStatement("DELETE FROM Doadores WHERE NIF=?");
+            ps.setInt(1, chave);
+            ps.executeUpdate();
+            int i  = insert(conn,key,value).executeUpdate();
+            conn.commit();
             IDoador d = new DoadorFactory().createDoador();
             d.setNIF(value.getNIF());
             d.setNome(value.getNome());
@@ -181,7 +231,7 @@ class DoadorDAO implements Map<String,IDoador>{
     }
     
     /*Método auxiliar de inserção na base de dados*/
-    private String insert(String key, IDoador value){       
+    private PreparedStatement insert(Connection conn, String key, IDoador value) throws SQLException {       
         
         
         ArrayList<Object> valores = new ArrayList<>();
@@ -199,8 +249,9 @@ class DoadorDAO implements Map<String,IDoador>{
         valores.add(value.getSite());
         valores.add(value.getTipo());
         
-        String sql = parseTools.createInsert("Doadores", valores);
-        return sql;
+        PreparedStatement ps = conn.prepareStatement(parseTools.createInsert("Doadores", valores.size()));
+        parseTools.bind(ps, valores);
+        return ps;
     }
     
 
@@ -212,27 +263,22 @@ class DoadorDAO implements Map<String,IDoador>{
     
     @Override 
     public IDoador remove(Object key) {
-        try {
-            IDoador d = this.get((String)key);
+        IDoador d = this.get((String)key); // lido antes de pedir a conexão: get pede a sua ao pool
+        try (Connection conn = this.manager.getConnection()) {
             Integer chave = Integer.parseInt((String)key);
             
-            Statement stm = conn.createStatement();
-            String sql = "DELETE '"+chave+"' FROM Doadores";
-            int i  = stm.executeUpdate(sql);
+            PreparedStatement ps = conn.prepareStatement("DELETE FROM Doadores WHERE NIF=?");
+            ps.setInt(1, chave);
+            int i  = ps.executeUpdate();
             return d;
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
     
     @Override
-    @SuppressWarnings("empty-statement")
     public int size() {
         try {
-            int i = 0;
-            Statement stm = conn.createStatement();
-            ResultSet rs = stm.executeQuery("SELECT Id FROM Doadores");
-            for (;rs.next();i++);
-            return i;
+            return this.table.count();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -271,39 +317,20 @@ class DoadorDAO implements Map<String,IDoador>{
 
     @Override
     public int hashCode() {
-        int hash = Arrays.hashCode(new Object[]{conn, parseTools});
+        int hash = Arrays.hashCode(new Object[]{manager, parseTools});
         for(IDoador d : this.values())
             hash+=d.hashCode();
         return hash;
     }
     
     /**
-     * Procura a maior chave de doador existente na base de dados e retorna
-     * esse valor incrementado em uma unidade
+     * Atribui uma nova chave, a partir do bloco de chaves reservado para esta tabela (ver KeyAllocator).
      * @return Chave que identificará univocamente no sistema um doador. 
      */
     public int generateDoadorKey(){
-       try {
-            if(!this.isEmpty()){
-                Statement stm = conn.createStatement();
-                ResultSet rs = stm.executeQuery("SELECT MAX(Id) FROM Doadores;");
-                if(rs.next()){
-                    return(rs.getInt(1) + 1);
-                }
-            } else return 1;
-        } catch (Exception e) {return 1;}
-        
-        return -1;
-    }
-    
-    /**
-     * Fechar a ligação à base de dados.
-     */
-    public void close(){
         try {
-            this.conn.close();
-        } catch (SQLException ex) {
-            Logger.getLogger(DoadorDAO.class.getName()).log(Level.SEVERE, null, ex);
+            return this.keys.next();
         }
-    }    
+        catch (Exception e) {throw new NullPointerException(e.getMessage());}
+    }
 }
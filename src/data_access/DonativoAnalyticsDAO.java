@@ -0,0 +1,138 @@
+package data_access;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Consultas agregadas sobre os donativos.
+ *
+ * Todas as somas e contagens são calculadas pelo servidor (SUM, COUNT, GROUP BY): cada relatório
+ * é uma única query e nenhuma instância de donativo ou doador é construída.
+ * Os montantes referem-se apenas a donativos monetários (Valor > 0).
+ * @author Jorge Caldas, José Cortez, Marcelo Gonçalves, Ricardo Silva
+ * @version 2015.01.13
+ */
+class DonativoAnalyticsDAO {
+
+    /*Um donativo pode estar associado a vários projetos: as ligações doador-donativo são contadas uma só vez.
+      ProjetoDoadoresDonativos guarda o Id do doador, convertido aqui no respetivo NIF.*/
+    private static final String DOADOR_DONATIVO =
+            "(SELECT DISTINCT o.NIF, pdd.Donativo FROM ProjetoDoadoresDonativos pdd JOIN Doadores o ON o.Id=pdd.Doador)";
+    private static final String TIPO =
+            "CASE WHEN Valor>0 THEN 'Monetario' WHEN Quantidade>0 THEN 'Material' "
+            + "WHEN NomeServico IS NOT NULL AND NomeServico<>'' THEN 'Servicos' ELSE 'Outro' END";
+
+    private final MySQLManager manager;
+
+    /**
+     * Construtor que fornece conexão às tabelas de donativos na base de dados da Habitat
+     * @throws ConnectionErrorException
+     */
+    public DonativoAnalyticsDAO() throws ConnectionErrorException {
+        this.manager = MySQLManager.getInstance();
+    }
+
+    /**
+     * Montante total doado por um doador.
+     * @param nif, NIF do doador.
+     * @return soma dos donativos monetários do doador (0 caso não exista ou não tenha donativos).
+     */
+    public float totalPorDoador(String nif) {
+        try (Connection conn = this.manager.getConnection()) {
+            PreparedStatement ps = conn.prepareStatement(
+                    "SELECT COALESCE(SUM(d.Valor),0) FROM Donativo d JOIN " + DOADOR_DONATIVO + " p "
+                    + "ON p.Donativo=d.NrRecibo WHERE p.NIF=? AND d.Valor>0");
+            ps.setString(1, nif);
+            ResultSet rs = ps.executeQuery();
+            return rs.next() ? rs.getFloat(1) : 0;
+        }
+        catch (Exception e) {throw new NullPointerException(e.getMessage());}
+    }
+
+    /**
+     * Montante total doado por cada doador.
+     * @return mapa NIF -> montante (só doadores com donativos monetários).
+     */
+    public Map<String,Float> totaisPorDoador() {
+        try (Connection conn = this.manager.getConnection()) {
+            ResultSet rs = conn.prepareStatement(
+                    "SELECT p.NIF, SUM(d.Valor) FROM Donativo d JOIN " + DOADOR_DONATIVO + " p "
+                    + "ON p.Donativo=d.NrRecibo WHERE d.Valor>0 GROUP BY p.NIF").executeQuery();
+            Map<String,Float> totais = new TreeMap<>();
+            while(rs.next()) totais.put(rs.getString(1), rs.getFloat(2));
+            return totais;
+        }
+        catch (Exception e) {throw new NullPointerException(e.getMessage());}
+    }
+
+    /**
+     * Montante total doado para cada projeto.
+     * @return mapa nº do projeto -> montante.
+     */
+    public Map<Integer,Float> totaisPorProjeto() {
+        try (Connection conn = this.manager.getConnection()) {
+            ResultSet rs = conn.prepareStatement(
+                    "SELECT p.Projeto, SUM(d.Valor) FROM Donativo d JOIN "
+                    + "(SELECT DISTINCT Projeto, Donativo FROM ProjetoDoadoresDonativos) p "
+                    + "ON p.Donativo=d.NrRecibo WHERE d.Valor>0 GROUP BY p.Projeto").executeQuery();
+            return this.totaisInt(rs);
+        }
+        catch (Exception e) {throw new NullPointerException(e.getMessage());}
+    }
+
+    /**
+     * Montante total angariado em cada evento.
+     * @return mapa nº do evento -> montante.
+     */
+    public Map<Integer,Float> totaisPorEvento() {
+        try (Connection conn = this.manager.getConnection()) {
+            ResultSet rs = conn.prepareStatement(
+                    "SELECT Evento, SUM(Valor) FROM Donativo WHERE Evento IS NOT NULL AND Valor>0 "
+                    + "GROUP BY Evento").executeQuery();
+            return this.totaisInt(rs);
+        }
+        catch (Exception e) {throw new NullPointerException(e.getMessage());}
+    }
+
+    /**
+     * Nº de donativos de cada tipo.
+     * @return mapa tipo (Monetario, Material, Servicos) -> nº de donativos.
+     */
+    public Map<String,Integer> nrDonativosPorTipo() {
+        try (Connection conn = this.manager.getConnection()) {
+            ResultSet rs = conn.prepareStatement(
+                    "SELECT " + TIPO + " AS Tipo, COUNT(*) FROM Donativo GROUP BY Tipo").executeQuery();
+            Map<String,Integer> nrs = new TreeMap<>();
+            while(rs.next()) nrs.put(rs.getString(1), rs.getInt(2));
+            return nrs;
+        }
+        catch (Exception e) {throw new NullPointerException(e.getMessage());}
+    }
+
+    /**
+     * Montante total doado em cada mês.
+     * @return mapa "aaaa-mm" -> montante, por ordem cronológica.
+     */
+    public Map<String,Float> totaisPorMes() {
+        try (Connection conn = this.manager.getConnection()) {
+            ResultSet rs = conn.prepareStatement(
+                    "SELECT YEAR(DataEmissao) AS Ano, MONTH(DataEmissao) AS Mes, SUM(Valor) FROM Donativo "
+                    + "WHERE Valor>0 GROUP BY Ano, Mes").executeQuery();
+            Map<String,Float> totais = new TreeMap<>();
+            while(rs.next()) totais.put(String.format("%04d-%02d", rs.getInt(1), rs.getInt(2)), rs.getFloat(3));
+            return totais;
+        }
+        catch (Exception e) {throw new NullPointerException(e.getMessage());}
+    }
+
+    /*Lê pares (inteiro, montante) de um ResultSet*/
+    private Map<Integer,Float> totaisInt(ResultSet rs) throws SQLException {
+        Map<Integer,Float> totais = new TreeMap<>();
+        while(rs.next()) totais.put(rs.getInt(1), rs.getFloat(2));
+        return totais;
+    }
+}
@@ -1,17 +1,17 @@
 package data_access;
 
+import business.Data;
+import business.colecoes.IntSet;
 import business.doacoes.DonativoFactory;
 import business.doacoes.IDonativo;
 import business.doacoes.IDonativoMonetario;
 import business.doacoes.IDonativoMaterial;
 import business.doacoes.IDonativoServicos;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.*;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
 /**
  * Implementação de um Data Acess Object para gerir instancias da classe Donativo.
@@ -20,7 +20,17 @@ import java.util.logging.Logger;
  */
 class DonativoDAO implements Map<Integer, IDonativo> {
 
-    public Connection conn;
+    /*Colunas pelas quais as páginas de donativos podem ser ordenadas (nome -> expressão SQL)*/
+    private static final Map<String,String> ORDENS = new LinkedHashMap<>();
+    static {
+        ORDENS.put("NrRecibo", "NrRecibo");
+        ORDENS.put("DataEmissao", "CAST(DataEmissao AS CHAR)");
+        ORDENS.put("Valor", "Valor");
+    }
+
+    private final MySQLManager manager;
+    private final MySQLTable table;
+    private final KeyAllocator keys;
     public MySQLParseTools parseTools;
 
     /**
@@ -28,17 +38,16 @@ class DonativoDAO implements Map<Integer, IDonativo> {
      * @throws ConnectionErrorException 
      */
     public DonativoDAO () throws ConnectionErrorException {
-        try {
-            parseTools = new MySQLParseTools();
-            this.conn = (new MySQLManager()).getConnection();
-        } catch (SQLException e) {System.out.println ("error_donativos_bd");}
+        parseTools = new MySQLParseTools();
+        this.manager = MySQLManager.getInstance();
+        this.table = new MySQLTable(this.manager, "Donativo", "NrRecibo");
+        this.keys = KeyAllocator.forTable(this.manager, "Donativo", "NrRecibo");
     }
 
     @Override
     public void clear() {
-        try {
-            Statement stm = conn.createStatement();
-            stm.executeUpdate("DELETE FROM Donativo WHERE NrRecibo >=0;");
+        try (Connection conn = this.manager.getConnection()) {
+            conn.prepareStatement("DELETE FROM Donativo WHERE NrRecibo >=0").executeUpdate();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -46,10 +55,7 @@ class DonativoDAO implements Map<Integer, IDonativo> {
     @Override
     public boolean containsKey(Object key) {
         try {
-            Statement stm = conn.createStatement();
-            String sql = "SELECT Nome FROM Donativo WHERE NrRecibo='"+(int)key+"'";
-            ResultSet rs = stm.executeQuery(sql);
-            return rs.next();
+            return this.table.containsKey((int)key);
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -60,7 +66,6 @@ class DonativoDAO implements Map<Integer, IDonativo> {
             if(value instanceof IDonativo) {
 
                 IDonativo d = (IDonativo)value;
-                Statement stm = conn.createStatement();
 
                 Set<Integer> chaves = this.keySet();
                 for(int i: chaves){
@@ -97,16 +102,7 @@ class DonativoDAO implements Map<Integer, IDonativo> {
     @Override
     public Set<Entry<Integer,IDonativo>> entrySet() {
         try {
-            Set<Entry<Integer,IDonativo>> set;
-            Set<Integer> keys = new HashSet<>(this.keySet());            
-            
-            HashMap<Integer,IDonativo> map = new HashMap<>();
-            for(Integer key : keys){
-                if(this.containsKey(key)){
-                    map.put(key,this.get(key));
-                }
-            }
-            return map.entrySet();
+            return this.loadAll().entrySet();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -114,62 +110,21 @@ class DonativoDAO implements Map<Integer, IDonativo> {
     @Override
     public IDonativo get(Object key) {
         IDonativo d = new DonativoFactory().createDonativo("");
-        try {
-            Statement stm = conn.createStatement();
-            String sql = "SELECT * FROM Donativo WHERE NrRecibo="+(int)key;
-            ResultSet rs = stm.executeQuery(sql);
+        try (Connection conn = this.manager.getConnection()) {
+            PreparedStatement ps = conn.prepareStatement("SELECT * FROM Donativo WHERE NrRecibo=?");
+            ps.setInt(1, (int)key);
+            ResultSet rs = ps.executeQuery();
             if (rs.next()){
-                if (rs.getFloat("Valor")>0)
-                {  
-                    IDonativoMonetario dm = (IDonativoMonetario) new DonativoFactory().createDonativo("DonativoMonetario");
-                    dm.setNRecibo (rs.getInt("NrRecibo"));
-                    dm.setObs(rs.getString("Obs"));
-                    dm.setData(parseTools.parseSQLDate(rs.getString("DataEmissao")));
-                    dm.setValor(rs.getFloat("Valor"));
-                    
-                    Set<Integer> projetos = new HashSet<>();
-                    sql = "Select Projeto from ProjetoDoadoresDonativos WHERE Donativo='"+dm.getNRecibo()+"'";
-                    rs = stm.executeQuery(sql);
-                    while (rs.next())
-                        projetos.add(rs.getInt("Projeto"));
-                    dm.setProjetos(projetos);
-                    
-                    return dm;
-                }
-                if (rs.getInt("Quantidade")>0)
+                IDonativo lido = this.fromRow(rs);
+                if (lido!=null)
                 {
-                    IDonativoMaterial dma = (IDonativoMaterial) new DonativoFactory().createDonativo("DonativoMaterial");
-                    dma.setNRecibo (rs.getInt("NrRecibo"));
-                    dma.setObs(rs.getString("Obs"));
-                    dma.setData(parseTools.parseSQLDate(rs.getString("DataEmissao")));
-                    dma.setNomeMaterial(rs.getString("NomeMaterial"));
-                    dma.setQuantidade(rs.getInt("Quantidade"));
-                    
-                    Set<Integer> projetos = new HashSet<>();
-                    sql = "Select Projeto from ProjetoDoadoresDonativos WHERE Donativo='"+dma.getNRecibo()+"'";
-                    rs = stm.executeQuery(sql);
+                    ps = conn.prepareStatement("Select Projeto from ProjetoDoadoresDonativos WHERE Donativo=?");
+                    ps.setInt(1, lido.getNRecibo());
+                    rs = ps.executeQuery();
                     while (rs.next())
-                        projetos.add(rs.getInt("Projeto"));
-                    dma.setProjetos(projetos);
+                        lido.getProjetos().add(rs.getInt("Projeto"));
                     
-                    return dma;
-                }
-                if (rs.getString("NomeServico")!=null)
-                {
-                    IDonativoServicos ds = (IDonativoServicos) new DonativoFactory().createDonativo("DonativoServicos");
-                    ds.setNRecibo (rs.getInt("NrRecibo"));
-                    ds.setObs(rs.getString("Obs"));
-                    ds.setData(parseTools.parseSQLDate(rs.getString("DataEmissao")));
-                    ds.setTipo(rs.getString("NomeServico"));
-                    
-                    Set<Integer> projetos = new HashSet<>();
-                    sql = "Select Projeto from ProjetoDoadoresDonativos WHERE Donativo='"+ds.getNRecibo()+"'";
-                    rs = stm.executeQuery(sql);
-                    while (rs.next())
-                        projetos.add(rs.getInt("Projeto"));
-                    ds.setProjetos(projetos);
-                    
-                    return ds;
+                    return lido;
                 }
             }
 
@@ -177,13 +132,134 @@ class DonativoDAO implements Map<Integer, IDonativo> {
         } catch (Exception e) {throw new NullPointerException(e.getMessage());}
         return d;
     }
+    
+    /*Constrói o donativo (monetário, material ou de serviços) da linha corrente de um ResultSet sobre a tabela Donativo.
+      Devolve null caso a linha não corresponda a nenhum tipo de donativo.*/
+    private IDonativo fromRow(ResultSet rs) throws SQLException {
+        DonativoFactory factory = new DonativoFactory();
+        IDonativo d;
+        
+        if (rs.getFloat("Valor")>0)
+        {  
+            IDonativoMonetario dm = (IDonativoMonetario) factory.createDonativo("DonativoMonetario");
+            dm.setValor(rs.getFloat("Valor"));
+            d = dm;
+        }
+        else if (rs.getInt("Quantidade")>0)
+        {
+            IDonativoMaterial dma = (IDonativoMaterial) factory.createDonativo("DonativoMaterial");
+            dma.setNomeMaterial(rs.getString("NomeMaterial"));
+            dma.setQuantidade(rs.getInt("Quantidade"));
+            d = dma;
+        }
+        else if (rs.getString("NomeServico")!=null)
+        {
+            IDonativoServicos ds = (IDonativoServicos) factory.createDonativo("DonativoServicos");
+            ds.setTipo(rs.getString("NomeServico"));
+            d = ds;
+        }
+        else return null;
+        
+        d.setNRecibo (rs.getInt("NrRecibo"));
+        d.setObs(rs.getString("Obs"));
+        d.setData(parseTools.getData(rs, "DataEmissao"));
+        d.setProjetos(new IntSet());
+        return d;
+    }
+    
+    /**
+     * Carrega todos os donativos com uma leitura da tabela Donativo e uma da tabela ProjetoDoadoresDonativos.
+     * @return mapa nº de recibo -> donativo.
+     */
+    private Map<Integer,IDonativo> loadAll() throws SQLException, ConnectionErrorException {
+        Map<Integer,IDonativo> donativos = new HashMap<>();
+        
+        try (Connection conn = this.manager.getConnection()) {
+            ResultSet rs = conn.prepareStatement("SELECT * FROM Donativo").executeQuery();
+            while(rs.next()){
+                IDonativo d = this.fromRow(rs);
+                if(d!=null) donativos.put(d.getNRecibo(), d);
+            }
+            
+            rs = conn.prepareStatement("SELECT Donativo, Projeto FROM ProjetoDoadoresDonativos").executeQuery();
+            while(rs.next()){
+                IDonativo d = donativos.get(rs.getInt(1));
+                if(d!=null) d.getProjetos().add(rs.getInt(2));
+            }
+        }
+        return donativos;
+    }
+
+    /**
+     * Lê uma página de donativos (com os respetivos projetos), ordenada pelo servidor.
+     * @param tamanho, nº de linhas por página (no máximo MySQLTable.MAX_PAGINA).
+     * @param ordem, coluna de ordenação: NrRecibo, DataEmissao ou Valor.
+     * @param ascendente, sentido da ordenação.
+     * @param depois, cursor da página anterior (null para a primeira página).
+     * @return página de donativos.
+     */
+    public Pagina<IDonativo> pagina(int tamanho, String ordem, boolean ascendente, Pagina.Cursor depois) {
+        String expr = ORDENS.get(ordem);
+        if(expr==null) throw new IllegalArgumentException("Ordenação desconhecida: "+ordem);
+        
+        try (Connection conn = this.manager.getConnection()) {
+            Map<Integer,IDonativo> donativos = new LinkedHashMap<>();
+            Pagina.Cursor ultimo = null;
+            boolean mais = false;
+            int lidas = 0;
+            
+            ResultSet rs = this.table.preparePage(conn, expr, ascendente, depois, tamanho).executeQuery();
+            while(rs.next()){
+                if(lidas==MySQLTable.tamanhoPagina(tamanho)){mais=true; break;}
+                lidas++;
+                ultimo = new Pagina.Cursor(rs.getObject("Ordem"), rs.getInt("NrRecibo"));
+                IDonativo d = this.fromRow(rs);
+                if(d!=null) donativos.put(d.getNRecibo(), d);
+            }
+            
+            if(!donativos.isEmpty()){
+                List<Object> nrs = parseTools.inValores(new ArrayList<Object>(donativos.keySet()));
+                PreparedStatement ps = conn.prepareStatement(
+                        "SELECT Donativo, Projeto FROM ProjetoDoadoresDonativos WHERE Donativo IN "+parseTools.inParams(nrs.size()));
+                parseTools.bind(ps, nrs);
+                rs = ps.executeQuery();
+                while(rs.next()) donativos.get(rs.getInt(1)).getProjetos().add(rs.getInt(2));
+            }
+            return new Pagina<>(new ArrayList<>(donativos.values()), ultimo, mais);
+        }
+        catch (Exception e) {throw new NullPointerException(e.getMessage());}
+    }
+    
+    /**
+     * Percorre todos os donativos, com os respetivos projetos, sem os carregar de uma só vez.
+     * Ocupa duas conexões do pool até ser fechado (ver MySQLCursor).
+     * @return cursor sobre os donativos, por ordem de nº de recibo.
+     */
+    public MySQLCursor<IDonativo> cursor() {
+        MySQLCursor.Filhos projetos = null;
+        try {
+            projetos = new MySQLCursor.Filhos(this.manager,
+                    "SELECT Donativo, Projeto FROM ProjetoDoadoresDonativos ORDER BY Donativo");
+            final MySQLCursor.Filhos p = projetos;
+            return new MySQLCursor<IDonativo>(this.manager, "SELECT * FROM Donativo ORDER BY NrRecibo", p) {
+                @Override
+                protected IDonativo hidratar(ResultSet rs) throws SQLException {
+                    IDonativo d = fromRow(rs);
+                    if(d!=null) while(p.avancar(d.getNRecibo())) d.getProjetos().add(p.getResultSet().getInt(2));
+                    return d;
+                }
+            };
+        }
+        catch (Exception e) {
+            if(projetos!=null) projetos.close();
+            throw new NullPointerException(e.getMessage());
+        }
+    }
 
     @Override
     public boolean isEmpty() {
         try {
-            Statement stm = conn.createStatement();
-            ResultSet rs = stm.executeQuery("SELECT NrRecibo FROM Donativo");
-            return !rs.next();
+            return this.table.isEmpty();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -191,14 +267,7 @@ class DonativoDAO implements Map<Integer, IDonativo> {
     @Override
     public Set<Integer> keySet() {
         try {
-            Set<Integer> set = new HashSet<>();
-            int n = this.generateDonativoKey();
-            for(int i=0; i<n; i++){
-                if(this.containsKey(i)){
-                    set.add(i);
-                }
-            }
-            return set;
+            return this.table.intKeys();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -207,15 +276,18 @@ class DonativoDAO implements Map<Integer, IDonativo> {
     public IDonativo put(Integer key, IDonativo value) 
     {
         IDonativo d = new DonativoFactory().createDonativo("");
-        try {            
-            Statement stm = conn.createStatement();
-            stm.executeUpdate("DELETE FROM Donativo WHERE NrRecibo='"+key+"'");
+        try (Connection conn = this.manager.getConnection()) {            
+            conn.setAutoCommit(false); // DELETE e INSERT numa só transação
+            PreparedStatement ps = conn.prepareStatement("DELETE FROM Donativo WHERE NrRecibo=?");
+            ps.setInt(1, key);
+            ps.executeUpdate();
             int i;
             if (value instanceof IDonativoMaterial)
             {
                 IDonativoMaterial dm = (IDonativoMaterial) new DonativoFactory().createDonativo("DonativoMaterial");
                 IDonativoMaterial valueMaterial = (IDonativoMaterial) value;
-                stm.executeUpdate(insert(key,valueMaterial));
+                insert(conn,key,valueMaterial).executeUpdate();
+                conn.commit();
                 dm.setNRecibo(valueMaterial.getNRecibo());
                 dm.setObs(valueMaterial.getObs());
                 dm.setData(valueMaterial.getData());
@@ -227,7 +299,8 @@ class DonativoDAO implements Map<Integer, IDonativo> {
             {
                 IDonativoMonetario dmo = (IDonativoMonetario) new DonativoFactory().createDonativo("DonativoMonetario");
                 IDonativoMonetario valueMonetario = (IDonativoMonetario) value;
-                stm.executeUpdate(insert(key,valueMonetario));
+                insert(conn,key,valueMonetario).executeUpdate();
+                conn.commit();
                 dmo.setNRecibo(valueMonetario.getNRecibo());
                 dmo.setObs(valueMonetario.getObs());
                 dmo.setData(valueMonetario.getData());
@@ -239,7 +312,8 @@ class DonativoDAO implements Map<Integer, IDonativo> {
                 IDonativoServicos dms = (IDonativoServicos) new DonativoFactory().createDonativo("DonativoServicos");
                 IDonativoServicos valueServicos = (IDonativoServicos) value;
                 dms.setNRecibo(valueServicos.getNRecibo());
-                stm.executeUpdate(insert(key,valueServicos));
+                insert(conn,key,valueServicos).executeUpdate();
+                conn.commit();
                 dms.setObs(valueServicos.getObs());
                 dms.setData(valueServicos.getData());
                 dms.setTipo(valueServicos.getTipo());
@@ -252,15 +326,15 @@ class DonativoDAO implements Map<Integer, IDonativo> {
     }
 
     /*Método auxiliar de inserção na base de dados*/
-    private String insert(Integer key, IDonativo value)
+    private PreparedStatement insert(Connection conn, Integer key, IDonativo value) throws SQLException
     {       
-        String dataEmissao = parseTools.parseCalendar(value.getData());
+        Data dataEmissao = value.getData();
 
         ArrayList<Object> valores = new ArrayList<>();
         valores.add(key);
         valores.add(value.getObs());
         valores.add(dataEmissao);
-        valores.add("NULL");
+        valores.add(null);
 
         if (value instanceof IDonativoMonetario)
         {
@@ -288,8 +362,9 @@ class DonativoDAO implements Map<Integer, IDonativo> {
             valores.add(0);
             valores.add(valueServicos.getTipo());
         }
-        String sql = parseTools.createInsert("Donativo", valores);
-        return sql;
+        PreparedStatement ps = conn.prepareStatement(parseTools.createInsert("Donativo", valores.size()));
+        parseTools.bind(ps, valores);
+        return ps;
     }
 
     @Override
@@ -299,25 +374,20 @@ class DonativoDAO implements Map<Integer, IDonativo> {
 
     @Override 
     public IDonativo remove(Object key) {
-        try {
-            IDonativo d = this.get(key);
-            Statement stm = conn.createStatement();
-            String sql = "DELETE FROM Donativo WHERE NrRecibo = "+(int)key;
-            int i  = stm.executeUpdate(sql);
+        IDonativo d = this.get(key); // lido antes de pedir a conexão: get pede a sua ao pool
+        try (Connection conn = this.manager.getConnection()) {
+            PreparedStatement ps = conn.prepareStatement("DELETE FROM Donativo WHERE NrRecibo = ?");
+            ps.setInt(1, (int)key);
+            int i  = ps.executeUpdate();
             return d;
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
 
     @Override
-    @SuppressWarnings("empty-statement")
     public int size() {
         try {
-            int i = 0;
-            Statement stm = conn.createStatement();
-            ResultSet rs = stm.executeQuery("SELECT NrRecibo FROM Donativo");
-            for (;rs.next();i++);
-            return i;
+            return this.table.count();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -326,11 +396,7 @@ class DonativoDAO implements Map<Integer, IDonativo> {
     @Override
     public Collection<IDonativo> values() {
         try {
-            Set<IDonativo> set = new HashSet<>();
-            Set<Integer> keys = new HashSet<>(this.keySet());
-            for(Integer key : keys)
-                set.add(this.get(key));
-            return set;
+            return new ArrayList<>(this.loadAll().values());
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -371,39 +437,20 @@ class DonativoDAO implements Map<Integer, IDonativo> {
 
     @Override
     public int hashCode() {
-        int hash = Arrays.hashCode(new Object[]{conn, parseTools});
+        int hash = Arrays.hashCode(new Object[]{manager, parseTools});
         for(IDonativo d : this.values())
             hash+=d.hashCode();
         return hash;
     }
     
     /**
-     * Procura a maior chave dum evento existente na base de dados e retorna
-     * esse valor incrementado em uma unidade
+     * Atribui uma nova chave, a partir do bloco de chaves reservado para esta tabela (ver KeyAllocator).
      * @return Chave que identificará univocamente no sistema um evento. 
      */
     public int generateDonativoKey(){
-       try {
-            if(!this.isEmpty()){
-                Statement stm = conn.createStatement();
-                ResultSet rs = stm.executeQuery("SELECT MAX(NrRecibo) FROM Donativo;");
-                if(rs.next()){
-                    return(rs.getInt(1) + 1);
-                }
-            } else return 1;
-        } catch (Exception e) {return 1;}
-        
-        return -1;
-    }
-    
-    /**
-     * Fechar a ligação à base de dados.
-     */
-    public void close(){
         try {
-            this.conn.close();
-        } catch (SQLException ex) {
-            Logger.getLogger(DonativoDAO.class.getName()).log(Level.SEVERE, null, ex);
+            return this.keys.next();
         }
+        catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
 }
@@ -0,0 +1,295 @@
+package data_access;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Cache de entidades (read-through) à frente de um DAO.
+ *
+ * As leituras (get, containsKey) são servidas pela cache sempre que possível e, em caso de falha,
+ * delegadas no DAO, guardando-se o resultado. As escritas (put, remove, clear) são feitas no DAO e
+ * invalidam as entradas afetadas antes e depois da escrita (mesmo que esta falhe). Cada invalidação avança
+ * uma versão da cache, e uma leitura do DAO só é guardada se a versão não mudou entretanto: uma leitura
+ * concorrente com uma escrita não volta a pôr na cache a entidade antiga. A cache tem um nº máximo de
+ * entradas, com remoção LRU ou LFU, e um tempo de vida opcional para cada entrada.
+ *
+ * A cache guarda a sua própria cópia de cada entidade (ver copiar) e devolve sempre uma cópia, pelo que
+ * alterar uma entidade devolvida (sem a guardar com put) não afeta as leituras seguintes nem os outros
+ * leitores. Escritas que alteram outras entidades (p.e. relações guardadas noutras tabelas) devem
+ * invalidar as caches dessas entidades.
+ * @author Jorge Caldas, José Cortez, Marcelo Gonçalves, Ricardo Silva
+ * @version 2015.01.12
+ * @param <K> tipo da chave.
+ * @param <V> tipo da entidade.
+ */
+
+public abstract class EntityCache<K,V> implements Map<K,V> {
+
+    /*Política de remoção quando a cache está cheia*/
+    public enum Politica { LRU, LFU }
+
+    // Variáveis de instância
+    private final String nome;
+    private final Map<K,V> dao;
+    private final LinkedHashMap<K,Entrada<V>> entradas; // por ordem de acesso (LRU primeiro)
+    private int maxEntradas;
+    private long ttl; // ms; 0 = sem tempo de vida
+    private Politica politica;
+    private long versao; // avança a cada invalidação
+
+    // Estatísticas
+    private long hits;
+    private long misses;
+    private long remocoes;
+
+    /**
+     * Construtor parameterizado.
+     * @param nome, nome do tipo de entidade (usado nas estatísticas).
+     * @param dao, DAO onde são feitas as leituras em falta e as escritas.
+     * @param maxEntradas, nº máximo de entidades em cache.
+     * @param ttl, tempo de vida de cada entrada em ms (0 para não expirar).
+     * @param politica, política de remoção quando a cache está cheia.
+     */
+    public EntityCache(String nome, Map<K,V> dao, int maxEntradas, long ttl, Politica politica){
+        this.nome=nome; this.dao=dao;
+        this.entradas=new LinkedHashMap<>(16, 0.75f, true);
+        this.maxEntradas=maxEntradas; this.ttl=ttl; this.politica=politica;
+    }
+
+    /**
+     * Altera a configuração da cache; as entradas em excesso são removidas de imediato.
+     * @param maxEntradas, nº máximo de entidades em cache (0 desativa a cache).
+     * @param ttl, tempo de vida de cada entrada em ms (0 para não expirar).
+     * @param politica, política de remoção quando a cache está cheia.
+     */
+    public synchronized void configure(int maxEntradas, long ttl, Politica politica){
+        this.maxEntradas=maxEntradas; this.ttl=ttl; this.politica=politica;
+        this.limitar();
+    }
+
+    /**
+     * Cópia de uma entidade (p.e. clone()), que não partilha estado mutável com o original.
+     * @param v, entidade.
+     * @return cópia da entidade.
+     */
+    protected abstract V copiar(V v);
+
+    /*Entrada válida de uma chave; uma entrada expirada é removida e devolve null*/
+    private Entrada<V> entrada(Object key){
+        Entrada<V> e = this.entradas.get(key);
+        if(e!=null && this.ttl>0 && System.currentTimeMillis()-e.criada>this.ttl){
+            this.entradas.remove(key);
+            e = null;
+        }
+        return e;
+    }
+
+    /*Leitura da cache; devolve null caso a entrada não exista ou tenha expirado*/
+    private synchronized V lerCache(Object key){
+        Entrada<V> e = this.entrada(key);
+        if(e==null){this.misses++; return null;}
+        this.hits++;
+        e.usos++;
+        return this.copiar(e.valor);
+    }
+
+    /*Guarda uma cópia de uma entidade lida do DAO (o original pertence a quem a leu), caso não tenha havido
+      invalidações desde que a leitura começou (versao)*/
+    private synchronized void guardar(K key, V valor, long versao){
+        if(valor==null || this.maxEntradas<=0 || versao!=this.versao) return;
+        this.entradas.put(key, new Entrada<>(this.copiar(valor)));
+        this.limitar();
+    }
+
+    /*Remove entradas até respeitar o nº máximo de entradas*/
+    private void limitar(){
+        while(this.entradas.size()>Math.max(this.maxEntradas, 0)){
+            K vitima = null;
+            if(this.politica==Politica.LFU){
+                long min = Long.MAX_VALUE;
+                for(Map.Entry<K,Entrada<V>> e : this.entradas.entrySet()){
+                    if(e.getValue().usos<min){min=e.getValue().usos; vitima=e.getKey();}
+                }
+            } else vitima = this.entradas.keySet().iterator().next();
+            this.entradas.remove(vitima);
+            this.remocoes++;
+        }
+    }
+
+    /**
+     * Invalida a entrada de uma chave, obrigando a próxima leitura a ir ao DAO.
+     * @param key, chave da entidade.
+     */
+    public synchronized void invalidate(Object key){
+        this.entradas.remove(key);
+        this.versao++;
+    }
+
+    /**
+     * Invalida todas as entradas da cache.
+     */
+    public synchronized void invalidateAll(){
+        this.entradas.clear();
+        this.versao++;
+    }
+
+    /*Versão atual da cache, a obter antes de uma leitura do DAO que vai ser guardada*/
+    private synchronized long versao(){return this.versao;}
+
+    /**
+     * Carrega na cache um conjunto de entidades já lidas do DAO (p.e. ao listar a tabela inteira).
+     * @param lidas, entidades indexadas pela chave.
+     */
+    public void warm(Map<? extends K,? extends V> lidas){
+        long v = this.versao();
+        for(Map.Entry<? extends K,? extends V> e : lidas.entrySet()) this.guardar(e.getKey(), e.getValue(), v);
+    }
+
+    /*Estatísticas*/
+    public String getNome(){return this.nome;}
+    public synchronized long getHits(){return this.hits;}
+    public synchronized long getMisses(){return this.misses;}
+    public synchronized long getEvictions(){return this.remocoes;}
+    public synchronized int getCachedEntries(){return this.entradas.size();}
+    public synchronized int getMaxEntries(){return this.maxEntradas;}
+    public synchronized long getTtl(){return this.ttl;}
+    public synchronized Politica getPolitica(){return this.politica;}
+
+    /**
+     * Taxa de acerto da cache.
+     * @return fração (0..1) das leituras servidas pela cache.
+     */
+    public synchronized double getHitRatio(){
+        long total = this.hits + this.misses;
+        return total==0 ? 0 : this.hits / (double)total;
+    }
+
+    /**
+     * Repõe a zero os contadores de acertos, falhas e remoções.
+     */
+    public synchronized void resetStatistics(){this.hits=0; this.misses=0; this.remocoes=0;}
+
+    @Override
+    public synchronized String toString(){
+        StringBuilder sb = new StringBuilder();
+        sb.append("EntityCache[").append(this.nome);
+        sb.append(", entradas=").append(this.entradas.size()).append("/").append(this.maxEntradas);
+        sb.append(", hits=").append(this.hits);
+        sb.append(", misses=").append(this.misses);
+        sb.append(", remocoes=").append(this.remocoes).append("]");
+        return sb.toString();
+    }
+
+
+    /*Métodos de Map*/
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        V v = this.lerCache(key);
+        if(v==null){
+            long versao = this.versao();
+            v = this.dao.get(key);
+            this.guardar((K) key, v, versao);
+        }
+        return v;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        synchronized(this){
+            if(this.entrada(key)!=null) return true;
+        }
+        return this.dao.containsKey(key);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        this.invalidate(key);
+        try {
+            return this.dao.put(key, value);
+        } finally {
+            this.invalidate(key); // uma leitura feita durante a escrita pode ter guardado a versão antiga
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        this.invalidate(key);
+        try {
+            return this.dao.remove(key);
+        } finally {
+            this.invalidate(key);
+        }
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        for(Map.Entry<? extends K, ? extends V> e : m.entrySet()) this.put(e.getKey(), e.getValue());
+    }
+
+    @Override
+    public void clear() {
+        this.invalidateAll();
+        try {
+            this.dao.clear();
+        } finally {
+            this.invalidateAll();
+        }
+    }
+
+    @Override
+    public Collection<V> values() {
+        Collection<V> col = new ArrayList<>();
+        for(Map.Entry<K,V> e : this.entrySet()) col.add(e.getValue());
+        return col;
+    }
+
+    @Override
+    public Set<Entry<K,V>> entrySet() {
+        // Uma leitura completa do DAO aproveita-se para aquecer a cache
+        long versao = this.versao();
+        Set<Entry<K,V>> set = this.dao.entrySet();
+        for(Map.Entry<K,V> e : set) this.guardar(e.getKey(), e.getValue(), versao);
+        return set;
+    }
+
+    @Override
+    public int size() {return this.dao.size();}
+
+    @Override
+    public boolean isEmpty() {return this.dao.isEmpty();}
+
+    @Override
+    public boolean containsValue(Object value) {return this.dao.containsValue(value);}
+
+    @Override
+    public Set<K> keySet() {return this.dao.keySet();}
+
+    @Override
+    public boolean equals(Object o){
+        if(this==o) return true;
+        if(o==null || this.getClass()!=o.getClass()) return false;
+        return this.dao.equals(((EntityCache<?,?>) o).dao);
+    }
+
+    @Override
+    public int hashCode() {return this.dao.hashCode();}
+
+
+    /*Entrada da cache*/
+    private static class Entrada<V> {
+        private final V valor;
+        private final long criada;
+        private long usos;
+
+        private Entrada(V valor){
+            this.valor=valor;
+            this.criada=System.currentTimeMillis();
+            this.usos=1;
+        }
+    }
+}
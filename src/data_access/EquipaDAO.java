@@ -1,11 +1,12 @@
 package data_access;
 
+import business.colecoes.IntSet;
 import business.recursoshumanos.IEquipa;
 import business.recursoshumanos.EquipaFactory;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -13,9 +14,6 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeSet;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
 /**Implementação de um Data Acess Object para gerir instancias da classe Equipa.
  * 
@@ -24,7 +22,9 @@ import java.util.logging.Logger;
  */
 public class EquipaDAO implements Map<Integer,IEquipa> {
 
-    public Connection conn;
+    private final MySQLManager manager;
+    private final MySQLTable table;
+    private final KeyAllocator keys;
     private MySQLParseTools parseTools;
     
     /**
@@ -32,20 +32,16 @@ public class EquipaDAO implements Map<Integer,IEquipa> {
      * @throws ConnectionErrorException 
      */
     public EquipaDAO() throws ConnectionErrorException{
-        try {
-            parseTools = new MySQLParseTools();
-            this.conn = (new MySQLManager()).getConnection();
-        } catch (SQLException ex) {System.out.println("error_equipa_bd");}
+        parseTools = new MySQLParseTools();
+        this.manager = MySQLManager.getInstance();
+        this.table = new MySQLTable(this.manager, "Equipa", "Id");
+        this.keys = KeyAllocator.forTable(this.manager, "Equipa", "Id");
     }    
     
     @Override
     public int size() {
         try {
-            int i = 0;
-            Statement stm = conn.createStatement();
-            ResultSet rs = stm.executeQuery("SELECT Id FROM Equipa");
-            for (;rs.next();i++);
-            return i;
+            return this.table.count();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -53,9 +49,7 @@ public class EquipaDAO implements Map<Integer,IEquipa> {
     @Override
     public boolean isEmpty() {
         try {
-            Statement stm = conn.createStatement();
-            ResultSet rs = stm.executeQuery("SELECT Id FROM Equipa");
-            return !rs.next();
+            return this.table.isEmpty();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -63,10 +57,7 @@ public class EquipaDAO implements Map<Integer,IEquipa> {
     @Override
     public boolean containsKey(Object key) {
         try {
-            Statement stm = conn.createStatement();
-            String sql = "SELECT Id FROM Equipa WHERE Id='"+(int)key+"'";
-            ResultSet rs = stm.executeQuery(sql);
-            return rs.next();
+            return this.table.containsKey((int)key);
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -77,7 +68,6 @@ public class EquipaDAO implements Map<Integer,IEquipa> {
             if(value instanceof IEquipa) {
             
                 IEquipa e = (IEquipa)value;
-                Statement stm = conn.createStatement();
                 
                 int N=this.size();
                 for(int key=1; key<N; key++){
@@ -96,24 +86,25 @@ public class EquipaDAO implements Map<Integer,IEquipa> {
     public IEquipa get(Object key) {
         IEquipa e = new EquipaFactory().createEquipa();
         
-        try {
-            Statement stm = conn.createStatement();
-            String sql = "SELECT * FROM Equipa WHERE Id='"+(int)key+"'";
-            ResultSet rs = stm.executeQuery(sql);
+        try (Connection conn = this.manager.getConnection()) {
+            PreparedStatement ps = conn.prepareStatement("SELECT * FROM Equipa WHERE Id=?");
+            ps.setInt(1, (int)key);
+            ResultSet rs = ps.executeQuery();
             EquipaFactory efactory = new EquipaFactory();
             if (rs.next()){
                 e = efactory.createEquipa();
                 e.setId(rs.getInt(1));
-                e.setDesignacao(rs.getString(1)); 
+                e.setDesignacao(rs.getString(2)); 
                 e.setpOrigem(rs.getString(3));
                 e.setObs(rs.getString(4));
                 e.setChefe(rs.getInt(5));
                 
-                Set<Integer> voluntarios = new TreeSet<>();
-                sql = "SELECT Equipa FROM Voluntarios WHERE Id='"+e.getId()+"'";
-                rs = stm.executeQuery(sql);
-                for(int i=1; rs.next(); i++)
-                    voluntarios.add(rs.getInt(i));
+                IntSet voluntarios = new IntSet();
+                ps = conn.prepareStatement("SELECT Nr FROM Voluntarios WHERE Equipa=?");
+                ps.setInt(1, e.getId());
+                rs = ps.executeQuery();
+                while(rs.next())
+                    voluntarios.add(rs.getInt(1));
                 e.setVoluntarios(voluntarios);
                     
                 
@@ -128,10 +119,13 @@ public class EquipaDAO implements Map<Integer,IEquipa> {
     public IEquipa put(Integer key, IEquipa value) {
         IEquipa e = new EquipaFactory().createEquipa();
         
-        try {            
-            Statement stm = conn.createStatement();
-            stm.executeUpdate("DELETE FROM Equipa WHERE Nr='"+key+"'");
-            int i  = stm.executeUpdate(insert(key,value));
+        try (Connection conn = this.manager.getConnection()) {            
+            conn.setAutoCommit(false); // DELETE e INSERT numa só transação
+            PreparedStatement ps = conn.prepareStatement("DELETE FROM Equipa WHERE Id=?");
+            ps.setInt(1, key);
+            ps.executeUpdate();
+            int i  = insert(conn,key,value).executeUpdate();
+            conn.commit();
             e.setId(value.getId());
             e.setDesignacao(value.getDesignacao()); // passa a e.setNome(rs.getString(1));
             e.setpOrigem(value.getpOrigem());
@@ -144,7 +138,7 @@ public class EquipaDAO implements Map<Integer,IEquipa> {
     }
     
     /*Método auxiliar de inserção na base de dados*/
-    private String insert(Integer key, IEquipa value){              
+    private PreparedStatement insert(Connection conn, Integer key, IEquipa value) throws SQLException {              
         ArrayList<Object> valores = new ArrayList<>();
         valores.add(value.getId());
         valores.add(value.getDesignacao());
@@ -152,17 +146,19 @@ public class EquipaDAO implements Map<Integer,IEquipa> {
         valores.add(value.getObs());
         valores.add(value.getChefe());
         
-        String sql = parseTools.createInsert("Equipa", valores);
-        return sql;
+        PreparedStatement ps = conn.prepareStatement(parseTools.createInsert("Equipa", valores.size()));
+        parseTools.bind(ps, valores);
+        return ps;
     }
 
     @Override
     public IEquipa remove(Object key) {
-        try {            
-            Statement stm = conn.createStatement();
-            IEquipa e = this.get(key);
+        IEquipa e = this.get(key); // lido antes de pedir a conexão: get pede a sua ao pool
+        try (Connection conn = this.manager.getConnection()) {            
             if(e!=null){
-                stm.executeUpdate("DELETE FROM Equipa WHERE Id='"+key+"'");
+                PreparedStatement ps = conn.prepareStatement("DELETE FROM Equipa WHERE Id=?");
+                ps.setInt(1, (int)key);
+                ps.executeUpdate();
             }
             return e;
         }
@@ -176,9 +172,8 @@ public class EquipaDAO implements Map<Integer,IEquipa> {
 
     @Override
     public void clear() {
-        try {
-            Statement stm = conn.createStatement();
-            stm.executeUpdate("DELETE FROM Equipa WHERE Equipa.Id>=0;");
+        try (Connection conn = this.manager.getConnection()) {
+            conn.prepareStatement("DELETE FROM Equipa WHERE Equipa.Id>=0").executeUpdate();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -186,14 +181,7 @@ public class EquipaDAO implements Map<Integer,IEquipa> {
     @Override
     public Set<Integer> keySet() {
         try {
-            Set<Integer> set = new HashSet<>();
-            int n = this.generateEquipaKey();
-            for(int i=0; i<n; i++){
-                if(this.containsKey(i)){
-                    set.add(i);
-                }
-            }
-            return set;
+            return this.table.intKeys();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -201,11 +189,10 @@ public class EquipaDAO implements Map<Integer,IEquipa> {
     @Override
     public Collection<IEquipa> values() {
         try {
-            Set<IEquipa> set = new HashSet<>();
-            Set<Integer> keys = new HashSet<>(this.keySet());
-            for(Integer key : keys)
-                set.add(this.get(key));
-            return set;
+            Collection<IEquipa> col = new ArrayList<>();
+            for(Integer key : this.keySet())
+                col.add(this.get(key));
+            return col;
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -213,15 +200,9 @@ public class EquipaDAO implements Map<Integer,IEquipa> {
     @Override
     public Set<Entry<Integer,IEquipa>> entrySet() {
         try {
-            Set<Entry<Integer,IEquipa>> set;
-            Set<Integer> keys = new HashSet<>(this.keySet());            
-            
             HashMap<Integer,IEquipa> map = new HashMap<>();
-            for(Integer key : keys){
-                if(this.containsKey(key)){
-                    map.put(key,this.get(key));
-                }
-            }
+            for(Integer key : this.keySet())
+                map.put(key,this.get(key));
             return map.entrySet();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
@@ -248,40 +229,20 @@ public class EquipaDAO implements Map<Integer,IEquipa> {
     
     @Override
     public int hashCode() {
-        int hash = Arrays.hashCode(new Object[]{conn, parseTools});
+        int hash = Arrays.hashCode(new Object[]{manager, parseTools});
         for(IEquipa e : this.values())
             hash+=e.hashCode();
         return hash;
     }
     
     /**
-     * Procura a maior chave de equipa existente na base de dados e retorna
-     * esse valor incrementado em uma unidade
+     * Atribui uma nova chave, a partir do bloco de chaves reservado para esta tabela (ver KeyAllocator).
      * @return Chave que identificará univocamente no sistema uma equipa. 
      */
     public int generateEquipaKey(){
-       try {
-            if(!this.isEmpty()){
-                Statement stm = conn.createStatement();
-                ResultSet rs = stm.executeQuery("SELECT MAX(Nr) FROM Equipas;");
-                if(rs.next()){
-                    return(rs.getInt(1) + 1);
-                }
-            } else return 1;
-        } catch (Exception e) {return 1;}
-        
-        return -1;
-    }
-    
-    /**
-     * Fechar a ligação à base de dados.
-     */
-    public void close(){
         try {
-            this.conn.close();
-        } catch (SQLException ex) {
-            Logger.getLogger(VoluntarioDAO.class.getName()).log(Level.SEVERE, null, ex);
+            return this.keys.next();
         }
+        catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
-    
 }
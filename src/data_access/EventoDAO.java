@@ -1,14 +1,14 @@
 package data_access;
 
+import business.Data;
+import business.colecoes.IntSet;
 import business.doacoes.EventoFactory;
 import  business.doacoes.IEvento;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.*;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
     /**
     * Implementação de um Data Acess Object para gerir instancias da classe Doador.
@@ -17,7 +17,9 @@ import java.util.logging.Logger;
     */
 class EventoDAO implements Map<Integer,IEvento> {
 
-        public Connection conn;
+        private final MySQLManager manager;
+        private final MySQLTable table;
+        private final KeyAllocator keys;
         public MySQLParseTools parseTools;
 
        /** 
@@ -25,17 +27,16 @@ class EventoDAO implements Map<Integer,IEvento> {
         * @throws ConnectionErrorException 
         */
         public EventoDAO () throws ConnectionErrorException {
-            try {
-                parseTools = new MySQLParseTools();
-                this.conn = (new MySQLManager()).getConnection();
-            } catch (SQLException e) {System.out.println ("error_eventos_bd");}
+            parseTools = new MySQLParseTools();
+            this.manager = MySQLManager.getInstance();
+            this.table = new MySQLTable(this.manager, "Eventos", "Nr");
+            this.keys = KeyAllocator.forTable(this.manager, "Eventos", "Nr");
         }
 
         @Override
         public void clear() {
-            try {
-                Statement stm = conn.createStatement();
-                stm.executeUpdate("DELETE FROM Eventos WHERE Nr>=0");
+            try (Connection conn = this.manager.getConnection()) {
+                conn.prepareStatement("DELETE FROM Eventos WHERE Nr>=0").executeUpdate();
             }
             catch (Exception e) {throw new NullPointerException(e.getMessage());}
         }
@@ -43,10 +44,7 @@ class EventoDAO implements Map<Integer,IEvento> {
         @Override
         public boolean containsKey(Object key) {
             try {
-                Statement stm = conn.createStatement();
-                String sql = "SELECT Nome FROM Eventos WHERE Nr='"+(int)key+"'";
-                ResultSet rs = stm.executeQuery(sql);
-                return rs.next();
+                return this.table.containsKey((int)key);
             }
             catch (Exception e) {throw new NullPointerException(e.getMessage());}
         }
@@ -57,7 +55,6 @@ class EventoDAO implements Map<Integer,IEvento> {
                 if(value instanceof IEvento) {
 
                     IEvento e = (IEvento)value;
-                    Statement stm = conn.createStatement();
 
                     Set<Integer> chaves = this.keySet();
                     for(int i: chaves){
@@ -75,15 +72,9 @@ class EventoDAO implements Map<Integer,IEvento> {
         @Override
         public Set<Entry<Integer,IEvento>> entrySet() {
         try {
-            Set<Entry<Integer,IEvento>> set;
-            Set<Integer> keys = new HashSet(this.keySet());            
-            
-            HashMap<Integer,IEvento> map = new HashMap();
-            for(Integer key : keys){
-                if(this.containsKey(key)){
-                    map.put(key,this.get(key));
-                }
-            }
+            HashMap<Integer,IEvento> map = new HashMap<>();
+            for(Integer key : this.keySet())
+                map.put(key,this.get(key));
             return map.entrySet();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
@@ -92,22 +83,23 @@ class EventoDAO implements Map<Integer,IEvento> {
         public IEvento get(Object key) {
             IEvento ev = new EventoFactory().createEvento();
 
-            try {
+            try (Connection conn = this.manager.getConnection()) {
                 float total =  0;
-                Statement stm = conn.createStatement();
-                String sql = "SELECT  FROM Eventos WHERE Nr="+(int)key;
-                ResultSet rs = stm.executeQuery(sql);
+                PreparedStatement ps = conn.prepareStatement("SELECT * FROM Eventos WHERE Nr=?");
+                ps.setInt(1, (int)key);
+                ResultSet rs = ps.executeQuery();
                 if (rs.next()){
                     ev = new EventoFactory().createEvento();
                     ev.setNr(rs.getInt("Nr"));
                     ev.setDesignacao(rs.getString("Nome"));
                     ev.setNrPessoas(rs.getInt("NrPessoas"));
-                    ev.setDataRealizacao(parseTools.parseSQLDate(rs.getString("DataRealizacao")));
+                    ev.setDataRealizacao(parseTools.getData(rs, "DataRealizacao"));
                     ev.setNotas(rs.getString("Notas"));
                     
-                    Set<Integer> donativos = new HashSet<>();
-                    sql = "Select NrRecibo, Valor from Donativos WHERE Evento='"+ev.getNr()+"'";
-                    rs = stm.executeQuery(sql);
+                    IntSet donativos = new IntSet();
+                    ps = conn.prepareStatement("Select NrRecibo, Valor from Donativo WHERE Evento=?");
+                    ps.setInt(1, ev.getNr());
+                    rs = ps.executeQuery();
                     while (rs.next())
                     {
                         donativos.add(rs.getInt("NrRecibo"));
@@ -126,9 +118,7 @@ class EventoDAO implements Map<Integer,IEvento> {
         @Override
         public boolean isEmpty() {
             try {
-                Statement stm = conn.createStatement();
-                ResultSet rs = stm.executeQuery("SELECT Nome FROM Eventos");
-                return !rs.next();
+                return this.table.isEmpty();
             }
             catch (Exception e) {throw new NullPointerException(e.getMessage());}
         }
@@ -136,14 +126,7 @@ class EventoDAO implements Map<Integer,IEvento> {
         @Override
         public Set<Integer> keySet() {
         try {
-            Set<Integer> set = new HashSet();
-            int n = this.generateEventoKey();
-            for(int i=0; i<n; i++){
-                if(this.containsKey(i)){
-                    set.add(i);
-                }
-            }
-            return set;
+            return this.table.intKeys();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -153,10 +136,13 @@ class EventoDAO implements Map<Integer,IEvento> {
         @Override
         public IEvento put(Integer key, IEvento value) 
         {
-            try {            
-                Statement stm = conn.createStatement();
-                stm.executeUpdate("DELETE FROM Eventos WHERE Nr='"+key+"'");
-                int i  = stm.executeUpdate(insert(key,value));
+            try (Connection conn = this.manager.getConnection()) {            
+                conn.setAutoCommit(false); // DELETE e INSERT numa só transação
+                PreparedStatement ps = conn.prepareStatement("DELETE FROM Eventos WHERE Nr=?");
+                ps.setInt(1, key);
+                ps.executeUpdate();
+                int i  = insert(conn,key,value).executeUpdate();
+                conn.commit();
                 IEvento e = new EventoFactory().createEvento();
                 e.setNr(value.getNr());
                 e.setDesignacao(value.getDesignacao());
@@ -169,9 +155,9 @@ class EventoDAO implements Map<Integer,IEvento> {
         }
         
         /*Método auxiliar de inserção na base de dados*/
-        private String insert(Integer key, IEvento value)
+        private PreparedStatement insert(Connection conn, Integer key, IEvento value) throws SQLException
         {       
-            String dataR = parseTools.parseCalendar(value.getDataRealizacao());
+            Data dataR = value.getDataRealizacao();
         
             ArrayList<Object> valores = new ArrayList();
             valores.add(key);
@@ -180,8 +166,9 @@ class EventoDAO implements Map<Integer,IEvento> {
             valores.add(dataR);
             valores.add(value.getNotas());
         
-            String sql = parseTools.createInsert("Eventos", valores);
-            return sql;
+            PreparedStatement ps = conn.prepareStatement(parseTools.createInsert("Eventos", valores.size()));
+            parseTools.bind(ps, valores);
+            return ps;
         }
     
 
@@ -192,11 +179,11 @@ class EventoDAO implements Map<Integer,IEvento> {
 
         @Override 
         public IEvento remove(Object key) {
-            try {
-                IEvento ev = this.get(key);
-                Statement stm = conn.createStatement();
-                String sql = "DELETE FROM Doadores WHERE Id =" +(int)key;
-                int i  = stm.executeUpdate(sql);
+            IEvento ev = this.get(key); // lido antes de pedir a conexão: get pede a sua ao pool
+            try (Connection conn = this.manager.getConnection()) {
+                PreparedStatement ps = conn.prepareStatement("DELETE FROM Eventos WHERE Nr=?");
+                ps.setInt(1, (int)key);
+                int i  = ps.executeUpdate();
                 return ev;
             }
             catch (Exception e) {throw new NullPointerException(e.getMessage());}
@@ -207,11 +194,7 @@ class EventoDAO implements Map<Integer,IEvento> {
         */
         public int size() {
             try {
-                int i = 0;
-                Statement stm = conn.createStatement();
-                ResultSet rs = stm.executeQuery("SELECT Nr FROM Eventos");
-                for (;rs.next();i++);
-                return i;
+                return this.table.count();
             }
             catch (Exception e) {throw new NullPointerException(e.getMessage());}
         }
@@ -219,11 +202,10 @@ class EventoDAO implements Map<Integer,IEvento> {
         @Override
         public Collection<IEvento> values() {
         try {
-            Set<IEvento> set = new HashSet();
-            Set<Integer> keys = new HashSet(this.keySet());
-            for(Integer key : keys)
-                set.add(this.get(key));
-            return set;
+            Collection<IEvento> col = new ArrayList<>();
+            for(Integer key : this.keySet())
+                col.add(this.get(key));
+            return col;
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -249,40 +231,20 @@ class EventoDAO implements Map<Integer,IEvento> {
 
     @Override
     public int hashCode() {
-        int hash = Arrays.hashCode(new Object[]{conn, parseTools});
+        int hash = Arrays.hashCode(new Object[]{manager, parseTools});
         for(IEvento e : this.values())
             hash+=e.hashCode();
         return hash;
     }
     
     /**
-    *  Procura a maior chave dum evento existente na base de dados e retorna
-    *  esse valor incrementado em uma unidade
+    *  Atribui uma nova chave, a partir do bloco de chaves reservado para esta tabela (ver KeyAllocator).
     *  @return Chave que identificará univocamente no sistema um evento. 
     */ 
     public int generateEventoKey(){
-       try {
-            if(!this.isEmpty()){
-                Statement stm = conn.createStatement();
-                ResultSet rs = stm.executeQuery("SELECT MAX(Nr) FROM Eventos");
-                if(rs.next()){
-                    return(rs.getInt(1) + 1);
-                }
-            } else return 1;
-        } catch (Exception e) {return 1;}
-        
-        return -1;
-    }
-    
-     /**
-     * Fechar a ligação à base de dados.
-     */
-    public void close(){
         try {
-            this.conn.close();
-        } catch (SQLException ex) {
-            Logger.getLogger(EventoDAO.class.getName()).log(Level.SEVERE, null, ex);
+            return this.keys.next();
         }
+        catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
-
 }
@@ -0,0 +1,190 @@
+package data_access;
+
+import business.recursoshumanos.IVoluntario;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Índice em memória das impressões digitais dos voluntários (IVoluntario.getImpressao), para deteção de
+ * duplicados sem acesso à base de dados.
+ *
+ * Um duplicado exato (mesma impressão) é encontrado com um só acesso a um HashMap. A pesquisa de
+ * semelhantes é aproximada: são semelhantes os voluntários com o mesmo primeiro e último nome foneticamente
+ * e os que, tendo a mesma data de nascimento, têm o nome a uma distância de edição pequena.
+ *
+ * Tal como SearchIndex, é carregado de uma só vez (load) e mantido a cada put/remove feito pelo facade.
+ * @author Jorge Caldas, José Cortez, Marcelo Gonçalves, Ricardo Silva
+ * @version 2015.01.17
+ */
+
+class FingerprintIndex {
+
+    // Variáveis de instância
+    private final Map<String,Set<Integer>> porImpressao;
+    private final Map<String,Set<Integer>> porFonetica;
+    private final Map<String,Set<Integer>> porData;
+    private final Map<Integer,Entrada> entradas;
+    private boolean carregado;
+
+    public FingerprintIndex(){
+        this.porImpressao=new HashMap<>();
+        this.porFonetica=new HashMap<>();
+        this.porData=new HashMap<>();
+        this.entradas=new HashMap<>();
+        this.carregado=false;
+    }
+
+    public synchronized boolean isLoaded(){return this.carregado;}
+
+    /**
+     * (Re)constrói o índice a partir de todos os voluntários.
+     * @param todos, voluntários registados (sem necessidade de línguas ou horas).
+     */
+    public synchronized void load(Collection<IVoluntario> todos){
+        this.porImpressao.clear(); this.porFonetica.clear(); this.porData.clear(); this.entradas.clear();
+        for(IVoluntario v : todos) this.adicionar(v);
+        this.carregado=true;
+    }
+
+    /**
+     * Indexa (ou reindexa) um voluntário guardado. Ignorado enquanto o índice não estiver carregado.
+     * @param v, voluntário guardado.
+     */
+    public synchronized void put(IVoluntario v){
+        if(!this.carregado) return;
+        this.retirar(v.getNr());
+        this.adicionar(v);
+    }
+
+    /**
+     * Retira um voluntário removido do índice.
+     * @param nr, nº do voluntário.
+     */
+    public synchronized void remove(int nr){
+        if(this.carregado) this.retirar(nr);
+    }
+
+    /**
+     * Voluntário registado com a mesma impressão digital.
+     * @param v, voluntário a verificar.
+     * @return nº do voluntário registado (o próprio, caso v já esteja guardado), ou null caso não exista.
+     */
+    public synchronized Integer duplicado(IVoluntario v){
+        Set<Integer> nrs = this.porImpressao.get(v.getImpressao());
+        if(nrs==null) return null;
+        return nrs.contains(v.getNr()) ? Integer.valueOf(v.getNr()) : nrs.iterator().next();
+    }
+
+    /**
+     * Voluntários registados com nome semelhante (fonética ou distância de edição), excluindo o próprio.
+     * @param v, voluntário a verificar.
+     * @return nºs dos voluntários semelhantes.
+     */
+    public synchronized Set<Integer> semelhantes(IVoluntario v){
+        Entrada e = new Entrada(v);
+        Set<Integer> candidatos = new HashSet<>();
+        Set<Integer> mesmaFonetica = this.porFonetica.get(e.fonetica);
+        if(mesmaFonetica!=null) candidatos.addAll(mesmaFonetica);
+        Set<Integer> mesmaData = this.porData.get(e.data);
+        if(mesmaData!=null) candidatos.addAll(mesmaData);
+
+        Set<Integer> res = new LinkedHashSet<>();
+        int limite = Math.max(2, e.nome.length()/5);
+        for(Integer nr : candidatos){
+            if(nr==v.getNr()) continue;
+            Entrada o = this.entradas.get(nr);
+            boolean mesmoNome = o.fonetica.equals(e.fonetica) && !e.fonetica.isEmpty();
+            if(mesmoNome || distancia(o.nome, e.nome)<=limite) res.add(nr);
+        }
+        return res;
+    }
+
+    private void adicionar(IVoluntario v){
+        Entrada e = new Entrada(v);
+        this.entradas.put(v.getNr(), e);
+        juntar(this.porImpressao, e.impressao, v.getNr());
+        juntar(this.porFonetica, e.fonetica, v.getNr());
+        juntar(this.porData, e.data, v.getNr());
+    }
+
+    private void retirar(int nr){
+        Entrada e = this.entradas.remove(nr);
+        if(e==null) return;
+        tirar(this.porImpressao, e.impressao, nr);
+        tirar(this.porFonetica, e.fonetica, nr);
+        tirar(this.porData, e.data, nr);
+    }
+
+    private static void juntar(Map<String,Set<Integer>> m, String k, int nr){
+        Set<Integer> nrs = m.get(k);
+        if(nrs==null){nrs=new HashSet<>(); m.put(k, nrs);}
+        nrs.add(nr);
+    }
+
+    private static void tirar(Map<String,Set<Integer>> m, String k, int nr){
+        Set<Integer> nrs = m.get(k);
+        if(nrs!=null){
+            nrs.remove(nr);
+            if(nrs.isEmpty()) m.remove(k);
+        }
+    }
+
+    /*Chave fonética (aproximada, para português) do primeiro e último nome já normalizados*/
+    static String fonetica(String nome){
+        String[] ps = nome.split(" ");
+        if(ps.length==0 || ps[0].isEmpty()) return "";
+        String k = foneticaPalavra(ps[0]);
+        if(ps.length>1) k += " " + foneticaPalavra(ps[ps.length-1]);
+        return k;
+    }
+
+    private static String foneticaPalavra(String p){
+        String s = p.replace("ph", "f").replace("ch", "x").replace("lh", "li").replace("nh", "ni")
+                    .replace("qu", "k").replace("gue", "ge").replace("gui", "gi")
+                    .replaceAll("c(?=[ei])", "s").replace("c", "k").replaceAll("g(?=[ei])", "j")
+                    .replace("z", "s").replace("y", "i").replace("w", "v").replace("h", "");
+        // Esqueleto consonântico: as vogais (exceto a inicial) e as letras dobradas não contam
+        StringBuilder sb = new StringBuilder();
+        for(int i=0; i<s.length(); i++){
+            char c = s.charAt(i);
+            if(i>0 && ("aeiou".indexOf(c)>=0 || c==s.charAt(i-1))) continue;
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    /*Distância de edição (Levenshtein) entre dois textos*/
+    static int distancia(String a, String b){
+        int[] ant = new int[b.length()+1], cur = new int[b.length()+1];
+        for(int j=0; j<=b.length(); j++) ant[j]=j;
+        for(int i=1; i<=a.length(); i++){
+            cur[0]=i;
+            for(int j=1; j<=b.length(); j++){
+                int sub = ant[j-1] + (a.charAt(i-1)==b.charAt(j-1) ? 0 : 1);
+                cur[j] = Math.min(sub, Math.min(ant[j], cur[j-1]) + 1);
+            }
+            int[] t=ant; ant=cur; cur=t;
+        }
+        return ant[b.length()];
+    }
+
+    /*Dados de um voluntário guardados no índice*/
+    private static final class Entrada {
+        private final String impressao;
+        private final String nome;
+        private final String fonetica;
+        private final String data;
+
+        private Entrada(IVoluntario v){
+            this.impressao = v.getImpressao();
+            String n = v.getNome()==null ? "" : v.getNome().replace('ç', 's').replace('Ç', 's');
+            this.nome = SearchIndex.fold(n).replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+            this.fonetica = fonetica(this.nome);
+            this.data = v.getDatanasc()==null ? "" : v.getDatanasc().toString();
+        }
+    }
+}
@@ -3,19 +3,18 @@ package data_access;
 import business.recursoshumanos.IFuncionario;
 import business.recursoshumanos.FuncionarioFactory;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
 /**Implementação de um Data Acess Object para gerir instancias da classe Funcionario.
  * 
@@ -25,28 +24,42 @@ import java.util.logging.Logger;
  */
 public class FuncionarioDAO implements Map<Integer,IFuncionario> {
 
-    public Connection conn;
+    private final MySQLManager manager;
+    private final MySQLTable table;
+    private final KeyAllocator keys;
     private MySQLParseTools parseTools;
     
+    private static final String CREDENCIAL = "Credencial"; // coluna com a password em hash (ver Credencial)
+    private static final String PASSWORD = "#5";           // coluna com a password em claro (apagada, ver Credencial)
+    
+    /**
+     * Conta de um funcionário para autenticação: funcionário (com permissões) e credencial guardada.
+     */
+    static final class Conta {
+        final IFuncionario funcionario;
+        final String credencial;    // null caso a password ainda esteja guardada em claro
+        
+        private Conta(IFuncionario funcionario, String credencial){
+            this.funcionario=funcionario;
+            this.credencial=credencial;
+        }
+    }
+    
     /**
      * Construtor que fornece conexão à tabela Funcionario na base de dados da Habitat.
      * @throws ConnectionErrorException 
      */
     public FuncionarioDAO() throws ConnectionErrorException{
-        try {
-            parseTools = new MySQLParseTools();
-            this.conn = (new MySQLManager()).getConnection();
-        } catch (SQLException ex) {System.out.println("error_funcionarios_bd");}
+        parseTools = new MySQLParseTools();
+        this.manager = MySQLManager.getInstance();
+        this.table = new MySQLTable(this.manager, "Funcionarios", "Id");
+        this.keys = KeyAllocator.forTable(this.manager, "Funcionarios", "Id");
     }    
     
     @Override
     public int size() {
         try {
-            int i = 0;
-            Statement stm = conn.createStatement();
-            ResultSet rs = stm.executeQuery("SELECT Id FROM Funcionarios");
-            for (;rs.next();i++);
-            return i;
+            return this.table.count();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -54,9 +67,7 @@ public class FuncionarioDAO implements Map<Integer,IFuncionario> {
     @Override
     public boolean isEmpty() {
         try {
-            Statement stm = conn.createStatement();
-            ResultSet rs = stm.executeQuery("SELECT Id FROM Funcionarios");
-            return !rs.next();
+            return this.table.isEmpty();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -64,10 +75,7 @@ public class FuncionarioDAO implements Map<Integer,IFuncionario> {
     @Override
     public boolean containsKey(Object key) {
         try {
-            Statement stm = conn.createStatement();
-            String sql = "SELECT Id FROM Funcionarios WHERE Id='"+(int)key+"'";
-            ResultSet rs = stm.executeQuery(sql);
-            return rs.next();
+            return this.table.containsKey((int)key);
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -78,7 +86,6 @@ public class FuncionarioDAO implements Map<Integer,IFuncionario> {
             if(value instanceof IFuncionario) {
             
                 IFuncionario f = (IFuncionario)value;
-                Statement stm = conn.createStatement();
 
                 int N=this.size();
                 for(int key=1; key<N; key++){
@@ -97,32 +104,83 @@ public class FuncionarioDAO implements Map<Integer,IFuncionario> {
     public IFuncionario get(Object key) {
         IFuncionario f = new FuncionarioFactory().createFuncionario();
         
-        try {
-            Statement stm = conn.createStatement();
-            String sql = "SELECT * FROM Funcionarios WHERE Id='"+(int)key+"'";
-            ResultSet rs = stm.executeQuery(sql);
+        try (Connection conn = this.manager.getConnection()) {
+            PreparedStatement ps = conn.prepareStatement("SELECT * FROM Funcionarios WHERE Id=?");
+            ps.setInt(1, (int)key);
+            ResultSet rs = ps.executeQuery();
             if (rs.next()){
-                f.setId(rs.getInt(1));
-                f.setNome(rs.getString(2));
-                f.setComissao(rs.getString(3));
-                f.setUsername(rs.getString(4));
-                f.setPassword(rs.getString(5));
-                
-                int fkey = f.getId();
-                List<String> permissions = new ArrayList<>();
-                sql = "SELECT Nome FROM Permissoes WHERE Funcionario='"+fkey+"'";
-                rs = stm.executeQuery(sql);
-                for(int i=1; rs.next(); i++){
-                    permissions.add(rs.getString(i));
-                }
-                f.setPermissions(permissions);                
+                f = this.fromRow(rs);
                 
+                f.setPermissions(this.loadPermissions(conn, f.getId()));
                 return f;
             }
         } catch (Exception ex) {throw new NullPointerException("Funcionario não existe");}
         
         return f;
     }
+    
+    /*Constrói um funcionário a partir da linha corrente de um ResultSet sobre a tabela Funcionarios (sem permissões)*/
+    private IFuncionario fromRow(ResultSet rs) throws SQLException {
+        IFuncionario f = new FuncionarioFactory().createFuncionario();
+        f.setId(rs.getInt(1));
+        f.setNome(rs.getString(2));
+        f.setComissao(rs.getString(3));
+        f.setUsername(rs.getString(4));
+        f.setPassword(rs.getString(5));
+        f.setPermissions(new ArrayList<String>());
+        return f;
+    }
+    
+    /**
+     * Carrega todos os funcionários com uma leitura da tabela Funcionarios e uma da tabela Permissoes.
+     * @return mapa id de funcionário -> funcionário.
+     */
+    private Map<Integer,IFuncionario> loadAll() throws SQLException, ConnectionErrorException {
+        Map<Integer,IFuncionario> funcs = new HashMap<>();
+        
+        try (Connection conn = this.manager.getConnection()) {
+            ResultSet rs = conn.prepareStatement("SELECT * FROM Funcionarios").executeQuery();
+            while(rs.next()){
+                IFuncionario f = this.fromRow(rs);
+                funcs.put(f.getId(), f);
+            }
+            
+            Map<Integer,List<String>> perms = new HashMap<>();
+            rs = conn.prepareStatement("SELECT Funcionario, Nome FROM Permissoes").executeQuery();
+            while(rs.next()){
+                List<String> l = perms.get(rs.getInt(1));
+                if(l==null){l = new ArrayList<>(); perms.put(rs.getInt(1), l);}
+                l.add(rs.getString(2));
+            }
+            for(Map.Entry<Integer,List<String>> e : perms.entrySet()){
+                IFuncionario f = funcs.get(e.getKey());
+                if(f!=null) f.setPermissions(e.getValue());
+            }
+        }
+        return funcs;
+    }
+    
+    /*Nomes das permissões de um funcionário (tabela Permissoes)*/
+    private List<String> loadPermissions(Connection conn, int id) throws SQLException {
+        List<String> perms = new ArrayList<>();
+        PreparedStatement ps = conn.prepareStatement("SELECT Nome FROM Permissoes WHERE Funcionario=?");
+        ps.setInt(1, id);
+        ResultSet rs = ps.executeQuery();
+        while(rs.next()) perms.add(rs.getString(1));
+        return perms;
+    }
+    
+    /**
+     * Lê de novo as permissões de um funcionário (p.e. depois de alteradas noutro posto).
+     * @param id, id do funcionário.
+     * @return nomes das permissões do funcionário.
+     */
+    public List<String> getPermissions(int id) {
+        try (Connection conn = this.manager.getConnection()) {
+            return this.loadPermissions(conn, id);
+        }
+        catch (Exception e) {throw new NullPointerException(e.getMessage());}
+    }
 
     /**
      * Procurar um funcionário a partir do seu username.
@@ -130,44 +188,70 @@ public class FuncionarioDAO implements Map<Integer,IFuncionario> {
      * @return funcionário correspondente ao username caso exista.
      */
     public IFuncionario getByUsername(String user) {
-        IFuncionario f = null;
-        
-        try {
-            Statement stm = conn.createStatement();
-            String sql = "SELECT * FROM Funcionarios WHERE Username='"+user+"'";
-            ResultSet rs = stm.executeQuery(sql);
-            if (rs.next()){
-                f = new FuncionarioFactory().createFuncionario();
-                f.setId(rs.getInt(1));
-                f.setNome(rs.getString(2));
-                f.setComissao(rs.getString(3));
-                f.setUsername(rs.getString(4));
-                f.setPassword(rs.getString(5));
-                
-                int fkey = f.getId();
-                List<String> permissions = new ArrayList<>();
-                sql = "SELECT Nome FROM Permissoes WHERE Funcionario='"+fkey+"'";
-                rs = stm.executeQuery(sql);
-                for(; rs.next();){
-                    permissions.add(rs.getString(1));
-                }
-                f.setPermissions(permissions);                
-                
-                return f;
-            }
+        Conta c = this.getConta(user);
+        return c==null ? null : c.funcionario;
+    }
+    
+    /**
+     * Lê a conta de um funcionário (dados, permissões e credencial) com uma única query.
+     * @param user, username do funcionário.
+     * @return conta do funcionário, ou null caso o username não exista (ou ocorra um erro).
+     */
+    Conta getConta(String user) {
+        try (Connection conn = this.manager.getConnection()) {
+            PreparedStatement ps = conn.prepareStatement("SELECT f.*, p.Nome FROM Funcionarios f"
+                    + " LEFT JOIN Permissoes p ON p.Funcionario=f.Id WHERE f.Username=?");
+            ps.setString(1, user);
+            ResultSet rs = ps.executeQuery();
+            if(!rs.next()) return null;
+            
+            IFuncionario f = this.fromRow(rs);
+            String credencial = rs.getString(CREDENCIAL);
+            int permissao = rs.getMetaData().getColumnCount();
+            List<String> perms = new ArrayList<>();
+            do {
+                if(rs.getString(permissao)!=null) perms.add(rs.getString(permissao));
+            } while(rs.next());
+            f.setPermissions(perms);
+            return new Conta(f, credencial);
         } catch (Exception ex) {return null;}
-        
-        return f;
     }
     
+    /**
+     * Guarda a credencial (hash) de um funcionário e apaga a password em claro.
+     * @param id, id do funcionário.
+     * @param credencial, credencial gerada com Credencial.criar.
+     */
+    void setCredencial(int id, String credencial) {
+        try (Connection conn = this.manager.getConnection()) {
+            PreparedStatement ps = conn.prepareStatement("UPDATE Funcionarios SET "+CREDENCIAL+"=?, "+this.colunaPassword(conn)+"='' WHERE Id=?");
+            ps.setString(1, credencial);
+            ps.setInt(2, id);
+            ps.executeUpdate();
+        }
+        catch (Exception e) {throw new NullPointerException(e.getMessage());}
+    }
+    
+    /**
+     * Verifica se a base de dados tem a coluna Credencial, criada pelo script sql/002_funcionarios_credencial.sql.
+     * @return true caso o esquema esteja atualizado, false caso falte aplicar o script.
+     */
+    public boolean esquemaAtualizado() {
+        try {
+            return this.table.hasColumns(CREDENCIAL);
+        }
+        catch (Exception e) {return false;}
+    }
+    
+    /*Nome da coluna da password em claro (5ª coluna da tabela Funcionarios)*/
+    private String colunaPassword(Connection conn) throws SQLException {return this.table.columns(conn).get(4);}
+    
     @Override
     public IFuncionario put(Integer key, IFuncionario value) {
         IFuncionario f = new FuncionarioFactory().createFuncionario();
         
-        try {            
-            Statement stm = conn.createStatement();
-            stm.executeUpdate("DELETE FROM Funcionarios WHERE Id='"+key+"'");
-            int i  = stm.executeUpdate(insert(key,value));
+        try (Connection conn = this.manager.getConnection()) {            
+            insert(conn,key,value).executeUpdate();
             f.setId(value.getId());
             f.setNome(value.getNome());
             f.setComissao(value.getComissao());
@@ -178,26 +262,33 @@ public class FuncionarioDAO implements Map<Integer,IFuncionario> {
         catch (Exception ex) {throw new NullPointerException(ex.getMessage());}
     }
     
-    /*Método auxiliar de inserção na base de dados*/
-    private String insert(Integer key, IFuncionario value){              
-        ArrayList<Object> valores = new ArrayList<>();
-        valores.add(value.getId());
-        valores.add(value.getNome());
-        valores.add(value.getComissao());
-        valores.add(value.getUsername());
-        valores.add(value.getPassword());
+    /*Método auxiliar de inserção (upsert) na base de dados. A password nunca é guardada em claro: uma password
+      nova é guardada como credencial; sem password nova, a password e a credencial atuais mantêm-se.
+      As colunas originais da tabela são designadas por #n e a coluna Credencial pelo nome.*/
+    private PreparedStatement insert(Connection conn, Integer key, IFuncionario value) throws SQLException {              
+        boolean novaPassword = value.getPassword()!=null && !value.getPassword().isEmpty();
+        Map<String,Object> valores = new LinkedHashMap<>();
+        valores.put("#1", value.getId());
+        valores.put("#2", value.getNome());
+        valores.put("#3", value.getComissao());
+        valores.put("#4", value.getUsername());
+        valores.put(PASSWORD, "");
+        valores.put(CREDENCIAL, novaPassword ? Credencial.criar(value.getPassword()) : null);
         
-        String sql = parseTools.createInsert("Funcionarios", valores);
-        return sql;
+        List<String> manter = novaPassword ? new ArrayList<String>() : Arrays.asList(PASSWORD, CREDENCIAL);
+        PreparedStatement ps = conn.prepareStatement(this.table.createUpsert(conn, valores.keySet(), manter));
+        parseTools.bind(ps, new ArrayList<>(valores.values()));
+        return ps;
     }
 
     @Override
     public IFuncionario remove(Object key) {
-        try {            
-            Statement stm = conn.createStatement();
-            IFuncionario e = this.get(key);
+        IFuncionario e = this.get(key); // lido antes de pedir a conexão: get pede a sua ao pool
+        try (Connection conn = this.manager.getConnection()) {            
             if(e!=null){
-                stm.executeUpdate("DELETE FROM Funcionarios WHERE Id='"+key+"'");
+                PreparedStatement ps = conn.prepareStatement("DELETE FROM Funcionarios WHERE Id=?");
+                ps.setInt(1, (int)key);
+                ps.executeUpdate();
             }
             return e;
         }
@@ -211,9 +302,8 @@ public class FuncionarioDAO implements Map<Integer,IFuncionario> {
 
     @Override
     public void clear() {
-        try {
-            Statement stm = conn.createStatement();
-            stm.executeUpdate("DELETE FROM Funcionarios WHERE Funcionario.Id>=0;");
+        try (Connection conn = this.manager.getConnection()) {
+            conn.prepareStatement("DELETE FROM Funcionarios WHERE Funcionarios.Id>=0").executeUpdate();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -221,14 +311,7 @@ public class FuncionarioDAO implements Map<Integer,IFuncionario> {
     @Override
     public Set<Integer> keySet() {
         try {
-            Set<Integer> set = new HashSet<>();
-            int n = this.generateFuncionarioKey();
-            for(int i=0; i<n; i++){
-                if(this.containsKey(i)){
-                    set.add(i);
-                }
-            }
-            return set;
+            return this.table.intKeys();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -236,11 +319,7 @@ public class FuncionarioDAO implements Map<Integer,IFuncionario> {
     @Override
     public Collection<IFuncionario> values() {
         try {
-            Set<IFuncionario> set = new HashSet<>();
-            Set<Integer> keys = new HashSet<>(this.keySet());
-            for(Integer key : keys)
-                set.add(this.get(key));
-            return set;
+            return new ArrayList<>(this.loadAll().values());
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -248,16 +327,7 @@ public class FuncionarioDAO implements Map<Integer,IFuncionario> {
     @Override
     public Set<Entry<Integer,IFuncionario>> entrySet() {
         try {
-            Set<Entry<Integer,IFuncionario>> set;
-            Set<Integer> keys = new HashSet<>(this.keySet());            
-            
-            HashMap<Integer,IFuncionario> map = new HashMap<>();
-            for(Integer key : keys){
-                if(this.containsKey(key)){
-                    map.put(key,this.get(key));
-                }
-            }
-            return map.entrySet();
+            return this.loadAll().entrySet();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -283,39 +353,20 @@ public class FuncionarioDAO implements Map<Integer,IFuncionario> {
     
     @Override
     public int hashCode() {
-        int hash = Arrays.hashCode(new Object[]{conn, parseTools});
+        int hash = Arrays.hashCode(new Object[]{manager, parseTools});
         for(IFuncionario f : this.values())
             hash+=f.hashCode();
         return hash;
     }
     
     /**
-     * Procura a maior chave de funcionário existente na base de dados e retorna
-     * esse valor incrementado em 1 unidade
+     * Atribui uma nova chave, a partir do bloco de chaves reservado para esta tabela (ver KeyAllocator).
      * @return Chave que identificará univocamente no sistema um funcionário. 
      */
     public int generateFuncionarioKey(){
-       try {
-            if(!this.isEmpty()){
-                Statement stm = conn.createStatement();
-                ResultSet rs = stm.executeQuery("SELECT MAX(Nr) FROM Funcionarios;");
-                if(rs.next()){
-                    return(rs.getInt(1) + 1);
-                }
-            } else return 1;
-        } catch (Exception e) {return 1;}
-        
-        return -1;
-    }
-    
-    /**
-     * Fechar a ligação à base de dados.
-     */
-    public void close(){
         try {
-            this.conn.close();
-        } catch (SQLException ex) {
-            Logger.getLogger(FuncionarioDAO.class.getName()).log(Level.SEVERE, null, ex);
+            return this.keys.next();
         }
-    }   
+        catch (Exception e) {throw new NullPointerException(e.getMessage());}
+    }
 }
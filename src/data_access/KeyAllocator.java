@@ -0,0 +1,114 @@
+package data_access;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Atribuição de chaves (hi/lo) para uma tabela.
+ *
+ * As chaves são reservadas em blocos na tabela Sequencias (uma linha por tabela, com a próxima chave livre),
+ * criada pelo script sql/005_sequencias.sql.
+ * A reserva de um bloco é um único UPDATE atómico, pelo que vários postos de trabalho nunca recebem a
+ * mesma chave; dentro de um bloco as chaves são entregues em memória, sem acesso à base de dados.
+ * Ao reservar, a sequência avança sempre para lá da maior chave da tabela, cobrindo registos inseridos
+ * por outros meios. As chaves de um bloco não usado até ao fim perdem-se (ficam buracos na numeração).
+ * @author Jorge Caldas, José Cortez, Marcelo Gonçalves, Ricardo Silva
+ * @version 2015.01.14
+ */
+
+class KeyAllocator {
+
+    public static final int BLOCO = 20; // nº de chaves reservadas de cada vez
+
+    private static final Map<String,KeyAllocator> ALOCADORES = new HashMap<>();
+
+    // Variáveis de instância
+    private final MySQLManager manager;
+    private final String table;
+    private final String key;
+    private int proxima;  // próxima chave a entregar
+    private int limite;   // primeira chave fora do bloco reservado
+
+    private KeyAllocator(MySQLManager manager, String table, String key){
+        this.manager=manager; this.table=table; this.key=key;
+        this.proxima=0; this.limite=0;
+    }
+
+    /**
+     * Alocador partilhado (dentro da aplicação) das chaves de uma tabela.
+     * @param manager, pool de conexões.
+     * @param table, nome da tabela.
+     * @param key, coluna (inteira) que é chave da tabela.
+     * @return alocador da tabela.
+     */
+    public static synchronized KeyAllocator forTable(MySQLManager manager, String table, String key){
+        KeyAllocator k = ALOCADORES.get(table);
+        if(k==null){
+            k = new KeyAllocator(manager, table, key);
+            ALOCADORES.put(table, k);
+        }
+        return k;
+    }
+
+    /**
+     * Entrega a próxima chave livre, reservando um novo bloco quando o atual se esgota.
+     * @return chave única.
+     * @throws SQLException
+     * @throws ConnectionErrorException
+     */
+    public synchronized int next() throws SQLException, ConnectionErrorException {
+        if(this.proxima>=this.limite){
+            this.proxima = this.reservar(BLOCO);
+            this.limite = this.proxima + BLOCO;
+        }
+        return this.proxima++;
+    }
+
+    /**
+     * Reserva n chaves consecutivas de uma só vez (p.e. para uma importação), sem consumir o bloco atual.
+     * @param n, nº de chaves.
+     * @return primeira chave do intervalo [primeira, primeira+n).
+     * @throws SQLException
+     * @throws ConnectionErrorException
+     */
+    public int nextBlock(int n) throws SQLException, ConnectionErrorException {
+        return this.reservar(n);
+    }
+
+    /*Avança a sequência n posições e devolve o início do intervalo reservado*/
+    private int reservar(int n) throws SQLException, ConnectionErrorException {
+        try (Connection conn = this.manager.getConnection()) {
+            PreparedStatement ps = conn.prepareStatement("INSERT IGNORE INTO Sequencias (Nome, Proxima) VALUES (?, 1)");
+            ps.setString(1, this.table);
+            ps.executeUpdate();
+
+            // LAST_INSERT_ID(expr) guarda o novo valor na própria conexão, lido a seguir sem nova corrida
+            ps = conn.prepareStatement("UPDATE Sequencias SET Proxima=LAST_INSERT_ID(GREATEST(Proxima, "
+                    + "(SELECT COALESCE(MAX("+this.key+"),0)+1 FROM "+this.table+")) + ?) WHERE Nome=?");
+            ps.setInt(1, n);
+            ps.setString(2, this.table);
+            ps.executeUpdate();
+
+            ResultSet rs = conn.prepareStatement("SELECT LAST_INSERT_ID()").executeQuery();
+            if(!rs.next()) throw new SQLException("Não foi possível reservar chaves para "+this.table);
+            return rs.getInt(1) - n;
+        }
+    }
+
+    /**
+     * Verifica se a base de dados tem a tabela Sequencias, criada pelo script sql/005_sequencias.sql.
+     * @param manager, pool de conexões.
+     * @return true caso o esquema esteja atualizado, false caso falte aplicar o script.
+     */
+    public static boolean esquemaAtualizado(MySQLManager manager) {
+        try (Connection conn = manager.getConnection()) {
+            conn.prepareStatement("SELECT 1 FROM Sequencias LIMIT 0").executeQuery();
+            return true;
+        }
+        catch (Exception e) {return false;}
+    }
+}
@@ -5,8 +5,6 @@ import business.projetos.MaterialFactory;
 import java.sql.*;
 import java.util.*;
 import java.util.Map.Entry;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
 /**
  * Implementação de um Data Acess Object para gerir instancias da classe Material.
@@ -16,43 +14,36 @@ import java.util.logging.Logger;
 
 class MaterialDAO {
     
-    public Connection conn;
+    private final MySQLManager manager;
+    private final MySQLTable table;
+    private final KeyAllocator keys;
     private MySQLParseTools parseTools;
 
 
     public MaterialDAO () throws ConnectionErrorException {
-        try {
-            this.parseTools = new MySQLParseTools();
-            this.conn = (new MySQLManager()).getConnection();
-        } catch (SQLException ex) {System.out.println("error_material_bd");}
+        this.parseTools = new MySQLParseTools();
+        this.manager = MySQLManager.getInstance();
+        this.table = new MySQLTable(this.manager, "Material", "Id");
+        this.keys = KeyAllocator.forTable(this.manager, "Material", "Id");
     }
     
     public int size() {
         try {
-            int i = 0;
-            Statement stm = conn.createStatement();
-            ResultSet rs = stm.executeQuery("SELECT nome FROM Material");
-            while(rs.next()){ i++; }
-            return i;
+            return this.table.count();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
     
     public boolean isEmpty() {
         try {
-            Statement stm = conn.createStatement();
-            ResultSet rs = stm.executeQuery("SELECT Nome FROM Material");
-            return !rs.next();
+            return this.table.isEmpty();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
     
     public boolean containsKey(Object key) throws NullPointerException {
         try {
-            Statement stm = conn.createStatement();
-            String sql = "SELECT nome FROM Material WHERE Id='"+(int)key+"'";
-            ResultSet rs = stm.executeQuery(sql);
-            return rs.next();
+            return this.table.containsKey((int)key);
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -61,7 +52,6 @@ class MaterialDAO {
         try {
             if(value instanceof IMaterial) {
                 IMaterial v = (IMaterial)value;
-                Statement stm = conn.createStatement();
                
                 int N=this.size();
                 for(int key=1; key<N; key++){
@@ -77,11 +67,11 @@ class MaterialDAO {
     }
     
     public IMaterial get(Object key) {
-        try {
+        try (Connection conn = this.manager.getConnection()) {
             IMaterial mt = null;
-            Statement stm = conn.createStatement();
-            String sql = "SELECT * FROM Material WHERE Id='"+(int)key+"'";
-            ResultSet rs = stm.executeQuery(sql);
+            PreparedStatement ps = conn.prepareStatement("SELECT * FROM Material WHERE Id=?");
+            ps.setInt(1, (int)key);
+            ResultSet rs = ps.executeQuery();
             if (rs.next()){ 
                 mt = new MaterialFactory().createMaterial();
                 mt.setId(rs.getInt(1));
@@ -95,10 +85,13 @@ class MaterialDAO {
     }
     
     public IMaterial put(Integer key, IMaterial value) {
-        try {
-            Statement stm = conn.createStatement();
-            stm.executeUpdate("DELETE FROM Material WHERE Id='"+key+"'");
-            int i  = stm.executeUpdate(insert(key,value));
+        try (Connection conn = this.manager.getConnection()) {
+            conn.setAutoCommit(false); // DELETE e INSERT numa só transação
+            PreparedStatement ps = conn.prepareStatement("DELETE FROM Material WHERE Id=?");
+            ps.setInt(1, key);
+            ps.executeUpdate();
+            int i  = insert(conn,key,value).executeUpdate();
+            conn.commit();
             IMaterial mt = new MaterialFactory().createMaterial();
             mt.setId(value.getId());
             mt.setNome(value.getNome());
@@ -109,7 +102,7 @@ class MaterialDAO {
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
 
-    private String insert(Integer key, IMaterial value){
+    private PreparedStatement insert(Connection conn, Integer key, IMaterial value) throws SQLException {
         MySQLParseTools pt = new MySQLParseTools();
 
         ArrayList<Object> valores = new ArrayList<>();
@@ -118,25 +111,26 @@ class MaterialDAO {
         valores.add(value.getDesc());
         valores.add(value.getQTD());
         
-        String sql = pt.createInsert("Material", valores);
-        return sql;
+        PreparedStatement ps = conn.prepareStatement(pt.createInsert("Material", valores.size()));
+        pt.bind(ps, valores);
+        return ps;
     }
     
     public IMaterial remove(Object key) {
-        try {
-            IMaterial mt = this.get(key);
-            Statement stm = conn.createStatement();
-            stm.executeUpdate("DELETE FROM Material WHERE Id='"+key+"'");
+        IMaterial mt = this.get(key); // lido antes de pedir a conexão: get pede a sua ao pool
+        try (Connection conn = this.manager.getConnection()) {
+            PreparedStatement ps = conn.prepareStatement("DELETE FROM Material WHERE Id=?");
+            ps.setInt(1, (int)key);
+            ps.executeUpdate();
             return mt;
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
     
     public Collection<IMaterial> values() {
-        try {
+        try (Connection conn = this.manager.getConnection()) {
             Collection<IMaterial> col = new HashSet<>();
-            Statement stm = conn.createStatement();
-            ResultSet rs = stm.executeQuery("SELECT * FROM Material");
+            ResultSet rs = conn.prepareStatement("SELECT * FROM Material").executeQuery();
             for (;rs.next();) {
                 IMaterial mt = new MaterialFactory().createMaterial();
                 mt.setId(rs.getInt(1));
@@ -151,23 +145,17 @@ class MaterialDAO {
     }
     
     public void clear () {
-        try {
-            Statement stm = conn.createStatement();
-            stm.executeUpdate("DELETE FROM Material WHERE Material.Id>=0;");
+        try (Connection conn = this.manager.getConnection()) {
+            conn.prepareStatement("DELETE FROM Material WHERE Material.Id>=0").executeUpdate();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
         
     public Set<Entry<Integer, IMaterial>> entrySet() {
         try {
-            Set<Entry<Integer,IMaterial>> set;
             HashMap<Integer,IMaterial> map = new HashMap<>();
-            int n = this.size();
-            for(int i=0; i<n; i++){
-                if(this.containsKey(i)){
-                    map.put(i,this.get(i));
-                }
-            }
+            for(IMaterial mt : this.values())
+                map.put(mt.getId(),mt);
             return map.entrySet();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
@@ -194,40 +182,20 @@ class MaterialDAO {
 
     @Override
     public int hashCode() {
-        int hash = Arrays.hashCode(new Object[]{conn, parseTools});
+        int hash = Arrays.hashCode(new Object[]{manager, parseTools});
         for(IMaterial m : this.values())
             hash+=m.hashCode();
         return hash;
     }
     
     /**
-     * Procura a maior chave de projeto existente na base de dados e retorna
-     * esse valor incrementado em uma unidade
+     * Atribui uma nova chave, a partir do bloco de chaves reservado para esta tabela (ver KeyAllocator).
      * @return Chave que identificará univocamente no sistema um material. 
      */
     public int generateMaterialKey(){
-       try {
-            if(!this.isEmpty()){
-                Statement stm = conn.createStatement();
-                ResultSet rs = stm.executeQuery("SELECT MAX(Id) FROM Material;");
-                int result = 0;
-                if (rs.next()) {      
-                    result = rs.getInt(1);  
-                } 
-                return result + 1;
-            } else return 1;
-        }
-        catch (Exception e) {throw new NullPointerException(e.getMessage());} 
-    }
-    
-    /**
-     * Fechar a ligação à base de dados.
-     */
-    public void close(){
         try {
-            this.conn.close();
-        } catch (SQLException ex) {
-            Logger.getLogger(MaterialDAO.class.getName()).log(Level.SEVERE, null, ex);
+            return this.keys.next();
         }
+        catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
 }
@@ -1,12 +1,12 @@
 package data_access;
 
+import business.Data;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.GregorianCalendar;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -15,8 +15,6 @@ import business.familias.IMembro;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
 /**
  *
@@ -25,46 +23,37 @@ import java.util.logging.Logger;
  */
 class MembroDAO implements Map<Integer,IMembro> {
 
-    public Connection conn;
+    private final MySQLManager manager;
+    private final MySQLTable table;
+    private final KeyAllocator keys;
     public MySQLParseTools parseTools;
 
     public MembroDAO() throws ConnectionErrorException{
-        try {
-            this.conn = (new MySQLManager()).getConnection();
-            this.parseTools = new MySQLParseTools();
-
-        } 
-        catch (SQLException ex) {System.out.println("error_Membros_bd");}
+        this.manager = MySQLManager.getInstance();
+        this.table = new MySQLTable(this.manager, "Membros", "Id");
+        this.keys = KeyAllocator.forTable(this.manager, "Membros", "Id");
+        this.parseTools = new MySQLParseTools();
     }
 
     @Override
     public int size() {
-     try {
-            int i = 0;
-            Statement stm = conn.createStatement();
-            ResultSet rs = stm.executeQuery("SELECT Id FROM Membros");
-            for (;rs.next();i++);
-            return i;
+        try {
+            return this.table.count();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
     @Override
     public boolean isEmpty() {
-      try {
-            Statement stm = conn.createStatement();
-            ResultSet rs = stm.executeQuery("SELECT Id FROM Membros");
-            return rs.next();
+        try {
+            return this.table.isEmpty();
         }
-        catch (Exception e) {throw new NullPointerException(e.getMessage());}    
+        catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
 
     @Override
     public boolean containsKey(Object o) {
         try {
-            Statement stm = conn.createStatement();
-            String sql = "SELECT Nome FROM Membros WHERE Id='"+(int)o+"'";
-            ResultSet rs = stm.executeQuery(sql);
-            return rs.next();
+            return this.table.containsKey((int)o);
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -75,7 +64,6 @@ class MembroDAO implements Map<Integer,IMembro> {
             if(o instanceof IMembro) {
             
                 IMembro v = (IMembro)o;
-                Statement stm = conn.createStatement();
                 
                 int N=this.size();
                 for(int key=1; key<N; key++){
@@ -91,17 +79,17 @@ class MembroDAO implements Map<Integer,IMembro> {
     @Override
     public IMembro get(Object o) {
         
-        try {
+        try (Connection conn = this.manager.getConnection()) {
             IMembro m = null;
-            Statement stm = conn.createStatement();
-            String sql = "SELECT * FROM Membros WHERE Id='"+(int)o+"'";
-            ResultSet rs = stm.executeQuery(sql);
+            PreparedStatement ps = conn.prepareStatement("SELECT * FROM Membros WHERE Id=?");
+            ps.setInt(1, (int)o);
+            ResultSet rs = ps.executeQuery();
             if (rs.next()) 
                 m = new MembroFactory().createMembro();
                 m.setId(rs.getInt(1));
                 m.setNome(rs.getString(2));
                 m.setParentesco(rs.getString(3));
-                m.setDataNasc(parseTools.parseSQLDate(rs.getString(4)));
+                m.setDataNasc(parseTools.getData(rs, 4));
                 m.setEstadoCivil(rs.getString(5));
                 m.setOcupacao(rs.getString(6));
                 m.setEscolaridade(rs.getString(7));
@@ -112,11 +100,11 @@ class MembroDAO implements Map<Integer,IMembro> {
 
     @Override
     public IMembro remove(Object o) {
-        try {
-            IMembro m = this.get(o);
-            Statement stm = conn.createStatement();
-            String sql = "DELETE '"+o+"' FROM Membros";
-            int i  = stm.executeUpdate(sql);
+        IMembro m = this.get(o); // lido antes de pedir a conexão: get pede a sua ao pool
+        try (Connection conn = this.manager.getConnection()) {
+            PreparedStatement ps = conn.prepareStatement("DELETE FROM Membros WHERE Id=?");
+            ps.setInt(1, (int)o);
+            int i  = ps.executeUpdate();
             return m;
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
@@ -124,15 +112,14 @@ class MembroDAO implements Map<Integer,IMembro> {
 
     @Override
      public void clear () {
-        try {
-            Statement stm = conn.createStatement();
-            stm.executeUpdate("DELETE FROM Membro WHERE Membros.Id>=0;");
+        try (Connection conn = this.manager.getConnection()) {
+            conn.prepareStatement("DELETE FROM Membros WHERE Membros.Id>=0").executeUpdate();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
     
     @Override
-    public int hashCode() {return Arrays.hashCode(new Object[]{conn, parseTools});}
+    public int hashCode() {return Arrays.hashCode(new Object[]{manager, parseTools});}
     
     @Override
      public boolean equals(Object o) {
@@ -156,14 +143,7 @@ class MembroDAO implements Map<Integer,IMembro> {
     @Override
     public Set<Integer> keySet() {
         try {
-            Set<Integer> set = new HashSet<>();
-            int n = this.generateMembroKey();
-            for(int i=0; i<n; i++){
-                if(this.containsKey(i)){
-                    set.add(i);
-                }
-            }
-            return set;
+            return this.table.intKeys();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -171,21 +151,23 @@ class MembroDAO implements Map<Integer,IMembro> {
     @Override
     public Collection<IMembro> values() {
         try {
-            Set<IMembro> set = new HashSet<>();
-            Set<Integer> keys = new HashSet<>(this.keySet());
-            for(Integer key : keys)
-                set.add(this.get(key));
-            return set;
+            Collection<IMembro> col = new ArrayList<>();
+            for(Integer key : this.keySet())
+                col.add(this.get(key));
+            return col;
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
 
     @Override
     public IMembro put(Integer k, IMembro v) {
-            try {
-            Statement stm = conn.createStatement();
-            stm.executeUpdate("DELETE FROM Membros WHERE Id='"+k+"'");
-            int i  = stm.executeUpdate(insert(k,v));
+            try (Connection conn = this.manager.getConnection()) {
+            conn.setAutoCommit(false); // DELETE e INSERT numa só transação
+            PreparedStatement ps = conn.prepareStatement("DELETE FROM Membros WHERE Id=?");
+            ps.setInt(1, k);
+            ps.executeUpdate();
+            int i  = insert(conn,k,v).executeUpdate();
+            conn.commit();
             IMembro mt = new MembroFactory().createMembro();
             mt.setId(v.getId());
             mt.setNome(v.getNome());
@@ -199,18 +181,20 @@ class MembroDAO implements Map<Integer,IMembro> {
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
     
-    private String insert(Integer key, IMembro value) {
+    private PreparedStatement insert(Connection conn, Integer key, IMembro value) throws SQLException {
         List<Object> obj = new ArrayList<>();
         obj.add(value.getId());
         obj.add(value.getNome());
         obj.add(value.getParentesco());
         obj.add(value.getEstadoCivil());
         obj.add(value.getEscolaridade());
-        obj.add(parseTools.parseCalendar(value.getDataNasc()));
+        obj.add(value.getDataNasc());
         obj.add(value.getOcupacao());
-        obj.add("NULL"); 
+        obj.add(null); 
         
-        return parseTools.createInsert("Membros", obj);
+        PreparedStatement ps = conn.prepareStatement(parseTools.createInsert("Membros", obj.size()));
+        parseTools.bind(ps, obj);
+        return ps;
     }
 
     @Override
@@ -219,34 +203,25 @@ class MembroDAO implements Map<Integer,IMembro> {
     }
 
     @Override
-   public Set<Entry<Integer, IMembro>> entrySet() {
+    public Set<Entry<Integer,IMembro>> entrySet() {
         try {
-            Set<Entry<Integer,IMembro>> set;
-            Set<Integer> keys = new HashSet<>(this.keySet());            
-            
             HashMap<Integer,IMembro> map = new HashMap<>();
-            for(Integer key : keys){
-                if(this.containsKey(key)){
-                    map.put(key,this.get(key));
-                }
-            }
+            for(Integer key : this.keySet())
+                map.put(key,this.get(key));
             return map.entrySet();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
     
+    /**
+     * Atribui uma nova chave, a partir do bloco de chaves reservado para esta tabela (ver KeyAllocator).
+     * @return Chave que identificará univocamente no sistema um membro.
+     */
     public int generateMembroKey(){
-       try {
-            if(!this.isEmpty()){
-                Statement stm = conn.createStatement();
-                ResultSet rs = stm.executeQuery("SELECT MAX(Id) FROM Membros;");
-                if(rs.next()){
-                    return(rs.getInt(1) + 1);
-                }
-            } else return 1;
-        } catch (Exception e) {return 1;}
-        
-        return -1;
+        try {
+            return this.keys.next();
+        }
+        catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
     
         public Collection<IMembro> getMembrosCandidatura(int id) {
@@ -254,22 +229,22 @@ class MembroDAO implements Map<Integer,IMembro> {
         MembroFactory vfactory = new MembroFactory();
         IMembro m;
         
-        try {
-            Statement stm = conn.createStatement();
-            String sql;
+        try (Connection conn = this.manager.getConnection()) {
+            PreparedStatement ps;
             if(id!=-1){
-                sql = "SELECT * FROM Membros WHERE Cancidatura='"+id+"';";
+                ps = conn.prepareStatement("SELECT * FROM Membros WHERE Candidatura=?");
+                ps.setInt(1, id);
             }else{
-                sql = "SELECT * FROM Membros WHERE Candidatura IS NULL;";
+                ps = conn.prepareStatement("SELECT * FROM Membros WHERE Candidatura IS NULL");
             }
-            ResultSet rs = stm.executeQuery(sql);            
+            ResultSet rs = ps.executeQuery();            
             while(rs.next()){
                 m = vfactory.createMembro();
                 m = new MembroFactory().createMembro();
                 m.setId(rs.getInt(1));
                 m.setNome(rs.getString(2));
                 m.setParentesco(rs.getString(3));
-                m.setDataNasc(parseTools.parseSQLDate(rs.getString(4)));
+                m.setDataNasc(parseTools.getData(rs, 4));
                 m.setEstadoCivil(rs.getString(5));
                 m.setOcupacao(rs.getString(6));
                 m.setEscolaridade(rs.getString(7));
@@ -279,14 +254,4 @@ class MembroDAO implements Map<Integer,IMembro> {
             return mem;
         } catch (Exception e) {throw new NullPointerException();}
     }
-    /**
-     * Fechar a ligação à base de dados.
-     */
-    public void close(){
-        try {
-            this.conn.close();
-        } catch (SQLException ex) {
-            Logger.getLogger(MembroDAO.class.getName()).log(Level.SEVERE, null, ex);
-        }
-    }
 }
\ No newline at end of file
@@ -0,0 +1,181 @@
+package data_access;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Cursor sobre o resultado de uma query, percorrido linha a linha sem carregar a tabela em memória.
+ *
+ * A query é executada em modo streaming do MySQL (fetch size Integer.MIN_VALUE): o servidor envia as
+ * linhas à medida que são lidas e cada entidade só é construída (hidratar) quando o cursor avança.
+ * Tabelas filhas são lidas da mesma forma, em conexões próprias e ordenadas pela chave do pai
+ * (ver Filhos), de modo que a memória usada não depende do nº de linhas.
+ *
+ * O cursor ocupa uma conexão do pool por cada query em curso até ser fechado, pelo que deve ser usado
+ * num try-with-resources:
+ * <pre>
+ * try (MySQLCursor&lt;IVoluntario&gt; c = facade.rh_cursorVoluntarios()) {
+ *     for (IVoluntario v : c) { ... }
+ * }
+ * </pre>
+ * @author Jorge Caldas, José Cortez, Marcelo Gonçalves, Ricardo Silva
+ * @version 2015.01.14
+ * @param <V> tipo da entidade.
+ */
+
+public abstract class MySQLCursor<V> implements Iterator<V>, Iterable<V>, AutoCloseable {
+
+    // Variáveis de instância
+    private final List<Filhos> filhos;
+    private final Query query;
+    private V proximo; // entidade já lida e ainda não entregue
+
+    /**
+     * Abre o cursor.
+     * @param manager, pool de conexões.
+     * @param sql, query a percorrer (se houver tabelas filhas, ordenada pela chave do pai).
+     * @param filhos, leituras das tabelas filhas, fechadas juntamente com o cursor.
+     * @throws SQLException
+     * @throws ConnectionErrorException
+     */
+    MySQLCursor(MySQLManager manager, String sql, Filhos... filhos) throws SQLException, ConnectionErrorException {
+        this.filhos = new ArrayList<>();
+        for(Filhos f : filhos) this.filhos.add(f);
+        try {
+            this.query = new Query(manager, sql);
+        } catch (SQLException | ConnectionErrorException e) {
+            for(Filhos f : this.filhos) f.close();
+            throw e;
+        }
+        this.proximo = null;
+    }
+
+    /**
+     * Constrói a entidade correspondente à linha corrente.
+     * @param rs, ResultSet posicionado na linha.
+     * @return entidade, ou null para ignorar a linha.
+     * @throws SQLException
+     */
+    protected abstract V hidratar(ResultSet rs) throws SQLException;
+
+    @Override
+    public boolean hasNext() {
+        try {
+            while(this.proximo==null && !this.query.fechada){
+                if(this.query.rs.next()) this.proximo = this.hidratar(this.query.rs);
+                else this.close(); // fim do resultado: as conexões voltam logo ao pool
+            }
+        } catch (SQLException e) {
+            this.close();
+            throw new NullPointerException(e.getMessage());
+        }
+        return this.proximo!=null;
+    }
+
+    @Override
+    public V next() {
+        if(!this.hasNext()) throw new NoSuchElementException();
+        V v = this.proximo;
+        this.proximo = null;
+        return v;
+    }
+
+    @Override
+    public void remove() {throw new UnsupportedOperationException("Cursor só de leitura.");}
+
+    /**
+     * O cursor só pode ser percorrido uma vez.
+     * @return o próprio cursor.
+     */
+    @Override
+    public Iterator<V> iterator() {return this;}
+
+    /**
+     * Fecha a query e as leituras das tabelas filhas, devolvendo as conexões ao pool.
+     */
+    @Override
+    public void close() {
+        this.query.close();
+        for(Filhos f : this.filhos) f.close();
+    }
+
+
+    /*Query em modo streaming numa conexão própria*/
+    private static class Query {
+        private final Connection conn;
+        private final ResultSet rs;
+        private boolean fechada;
+
+        private Query(MySQLManager manager, String sql) throws SQLException, ConnectionErrorException {
+            this.conn = manager.getConnection();
+            try {
+                // Statement próprio (fora da cache do pool): o streaming prende a conexão até ao fim da leitura
+                PreparedStatement ps = this.conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(Integer.MIN_VALUE);
+                this.rs = ps.executeQuery();
+            } catch (SQLException e) {
+                this.conn.close();
+                throw e;
+            }
+            this.fechada = false;
+        }
+
+        private void close(){
+            if(this.fechada) return;
+            this.fechada = true;
+            try { this.rs.close(); } catch (SQLException e) { /* resultado já inválido */ }
+            try { this.conn.close(); } catch (SQLException e) { /* conexão já devolvida */ }
+        }
+    }
+
+    /**
+     * Leitura de uma tabela filha em modo streaming, ordenada pela chave (inteira) do pai na 1ª coluna.
+     * As linhas de cada pai são consumidas com avancar(chave), por ordem crescente de chave.
+     */
+    public static class Filhos {
+        private final Query query;
+        private boolean temLinha;
+        private boolean consumida; // a linha corrente já foi entregue
+
+        /**
+         * @param manager, pool de conexões.
+         * @param sql, query ordenada pela 1ª coluna (chave do pai).
+         * @throws SQLException
+         * @throws ConnectionErrorException
+         */
+        Filhos(MySQLManager manager, String sql) throws SQLException, ConnectionErrorException {
+            this.query = new Query(manager, sql);
+            this.temLinha = false;
+            this.consumida = true;
+        }
+
+        /**
+         * Avança para a próxima linha do pai com a chave dada, ignorando linhas de chaves anteriores.
+         * @param chave, chave do pai.
+         * @return true caso exista mais uma linha desse pai (lida com getResultSet), false caso contrário.
+         * @throws SQLException
+         */
+        public boolean avancar(int chave) throws SQLException {
+            if(this.consumida){
+                this.temLinha = !this.query.fechada && this.query.rs.next();
+                this.consumida = false;
+            }
+            while(this.temLinha && this.query.rs.getInt(1)<chave) this.temLinha = this.query.rs.next();
+            if(this.temLinha && this.query.rs.getInt(1)==chave){
+                this.consumida = true;
+                return true;
+            }
+            return false;
+        }
+
+        public ResultSet getResultSet(){return this.query.rs;}
+
+        void close(){this.query.close();}
+    }
+}
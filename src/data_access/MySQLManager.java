@@ -1,47 +1,429 @@
 package data_access;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Classe que faz gestão da conexão à base de dados.
+ *
+ * Mantém um pool partilhado e limitado de conexões: os DAOs pedem uma conexão emprestada
+ * para cada operação e devolvem-na ao pool quando invocam close() sobre a mesma.
+ * As conexões são validadas quando emprestadas e as que ficam inativas demasiado tempo são recicladas.
+ * Cada conexão física guarda os PreparedStatements já preparados, indexados pelo SQL, pelo que
+ * prepareStatement(sql) com o mesmo SQL reutiliza o statement (e o plano preparado no servidor).
+ * Um statement só é reutilizado depois de ser devolvido à cache (com close(), ou quando a conexão é
+ * devolvida ao pool): enquanto está em uso, um novo prepareStatement com o mesmo SQL prepara outro
+ * statement, e a cache só fecha (por LRU) statements que não estão em uso.
  * @author jdc
  * @version 2014.12.29
  */
 
-public class MySQLManager {  
-    
-    public MySQLManager(){
-    }
-   
-    public Connection getConnection() throws ConnectionErrorException, SQLException{  
-         Connection con = null;  
-         try{  
-               Class.forName("com.mysql.jdbc.Driver");  
-               con = DriverManager.getConnection("jdbc:mysql://localhost/Habitat?useUnicode=yes&characterEncoding=UTF-8", "root", "root");
-         }catch(ClassNotFoundException e){  
-               try{
-                    throw new ConnectionErrorException(e.getMessage()+"\n"+"Driver Não Encontrado");  
-               }catch(ConnectionErrorException exe){  
-                      throw new ConnectionErrorException("Erro de conexão");  
-               }  
-          }catch(SQLException exe){  
-               throw new ConnectionErrorException("Erro ao tentar conectar");  
-          }
-         return con;
-    }
-    
-    public void CloseConexao(Connection Con)throws ConnectionErrorException, SQLException{  
-        try{  
-           Con.close();  
-        }catch(SQLException exe){  
-             throw new ConnectionErrorException("Erro ao tentar fechar a conexão");  
-        }  
-    }
-    
-    public void CloseStatement(Statement Stim)throws ConnectionErrorException, SQLException{  
-        Stim.close();  
-    }
-}    
+public class MySQLManager {
+
+    private static final String URL = "jdbc:mysql://localhost/Habitat?useUnicode=yes&characterEncoding=UTF-8"
+                                    + "&useServerPrepStmts=true&zeroDateTimeBehavior=convertToNull";
+    private static final String USER = "root";
+    private static final String PASSWORD = "root";
+
+    private static final int MAX_CONEXOES = 8;              // Nº máximo de conexões físicas abertas
+    private static final long TIMEOUT_EMPRESTIMO = 10000;   // ms que um pedido espera por uma conexão livre
+    private static final long TEMPO_VALIDACAO = 5000;       // Conexões inativas há mais tempo são validadas
+    private static final long TEMPO_MAX_INATIVA = 300000;   // Conexões inativas há mais tempo são fechadas
+    private static final int MAX_STATEMENTS = 64;           // PreparedStatements livres guardados por conexão física
+
+    private static MySQLManager instance;
+
+    // Variáveis de instância
+    private final LinkedList<ConexaoFisica> livres;
+    private int abertas;    // conexões físicas abertas (livres + emprestadas)
+    private int emprestadas;
+    private boolean fechado;
+
+    // Contadores de utilização
+    private long nrEmprestimos;
+    private long tempoEsperaTotal; // nanosegundos
+    private long tempoEsperaMax;   // nanosegundos
+    private long nrTimeouts;
+    private int maxEmprestadas;
+
+    /**
+     * Construtor para o pool de conexões; usar getInstance() para obter o pool partilhado.
+     */
+    private MySQLManager(){
+        this.livres = new LinkedList<>();
+        this.abertas = 0; this.emprestadas = 0; this.fechado = false;
+    }
+
+    /**
+     * Devolve o pool de conexões partilhado por todos os DAOs da aplicação.
+     * @return instância única de MySQLManager.
+     */
+    public static synchronized MySQLManager getInstance(){
+        if(instance==null || instance.fechado) instance = new MySQLManager();
+        return instance;
+    }
+
+    /**
+     * Empresta uma conexão do pool. A conexão devolvida deve ser fechada (close()) quando deixar
+     * de ser necessária, o que a devolve ao pool em vez de fechar a ligação física.
+     * @return conexão à base de dados da Habitat.
+     * @throws ConnectionErrorException caso não seja possível obter uma conexão dentro do tempo limite.
+     * @throws SQLException
+     */
+    public Connection getConnection() throws ConnectionErrorException, SQLException{
+        long inicio = System.nanoTime();
+        ConexaoFisica cf = null;
+        boolean criar = false;
+
+        synchronized(this){
+            long limite = System.currentTimeMillis() + TIMEOUT_EMPRESTIMO;
+            while(cf==null && !criar){
+                if(this.fechado) throw new ConnectionErrorException("Pool de conexões encerrado");
+                if(!this.livres.isEmpty()){
+                    cf = this.livres.removeFirst(); // LIFO: a conexão mais recente está "quente"
+                } else if(this.abertas<MAX_CONEXOES){
+                    this.abertas++; // reservar lugar e criar conexão fora do lock
+                    criar = true;
+                } else{
+                    long falta = limite - System.currentTimeMillis();
+                    if(falta<=0){
+                        this.nrTimeouts++;
+                        throw new ConnectionErrorException("Tempo de espera por uma conexão esgotado");
+                    }
+                    try {
+                        this.wait(falta);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        throw new ConnectionErrorException("Pedido de conexão interrompido");
+                    }
+                }
+            }
+            this.emprestadas++;
+            if(this.emprestadas>this.maxEmprestadas) this.maxEmprestadas=this.emprestadas;
+        }
+
+        try {
+            if(criar) cf = new ConexaoFisica(abrirConexao());
+            else if(!valida(cf)){
+                fecharFisica(cf.conn);
+                cf = new ConexaoFisica(abrirConexao());
+            }
+        } catch (ConnectionErrorException ex) {
+            synchronized(this){
+                this.abertas--; this.emprestadas--;
+                this.notifyAll();
+            }
+            throw ex;
+        }
+
+        long espera = System.nanoTime() - inicio;
+        synchronized(this){
+            this.nrEmprestimos++;
+            this.tempoEsperaTotal+=espera;
+            if(espera>this.tempoEsperaMax) this.tempoEsperaMax=espera;
+        }
+        return cf.emprestar(this);
+    }
+
+    /*Abre uma nova ligação física à base de dados*/
+    private Connection abrirConexao() throws ConnectionErrorException {
+        try{
+            Class.forName("com.mysql.jdbc.Driver");
+            return DriverManager.getConnection(URL, USER, PASSWORD);
+        }catch(ClassNotFoundException e){
+            throw new ConnectionErrorException(e.getMessage()+"\n"+"Driver Não Encontrado");
+        }catch(SQLException exe){
+            throw new ConnectionErrorException("Erro ao tentar conectar");
+        }
+    }
+
+    /*Validação de uma conexão no momento do empréstimo*/
+    private boolean valida(ConexaoFisica cf) {
+        try {
+            if(cf.conn.isClosed()) return false;
+            if(System.currentTimeMillis() - cf.devolvidaEm < TEMPO_VALIDACAO) return true;
+            try (Statement stm = cf.conn.createStatement(); ResultSet rs = stm.executeQuery("SELECT 1")) {
+                return rs.next();
+            }
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    /*Devolve uma conexão física ao pool (invocado pelo close() da conexão emprestada)*/
+    private void devolver(ConexaoFisica cf) {
+        boolean reutilizavel = true;
+        try {
+            if(cf.conn.isClosed()) reutilizavel=false;
+            else if(!cf.conn.getAutoCommit()){
+                cf.conn.rollback(); // Transação deixada aberta não pode passar para o próximo DAO
+                cf.conn.setAutoCommit(true);
+            }
+        } catch (SQLException ex) {
+            reutilizavel=false;
+        }
+
+        List<Connection> expiradas = new ArrayList<>();
+        synchronized(this){
+            this.emprestadas--;
+            if(reutilizavel && !this.fechado){
+                cf.devolvidaEm = System.currentTimeMillis();
+                this.livres.addFirst(cf);
+            } else{
+                this.abertas--;
+                expiradas.add(cf.conn);
+            }
+            // Reciclar conexões inativas há demasiado tempo
+            long agora = System.currentTimeMillis();
+            Iterator<ConexaoFisica> it = this.livres.descendingIterator();
+            while(it.hasNext()){
+                ConexaoFisica l = it.next();
+                if(agora - l.devolvidaEm <= TEMPO_MAX_INATIVA) break;
+                it.remove();
+                this.abertas--;
+                expiradas.add(l.conn);
+            }
+            this.notifyAll();
+        }
+        for(Connection c : expiradas) fecharFisica(c);
+    }
+
+    private void fecharFisica(Connection c) {
+        try {
+            c.close();
+        } catch (SQLException ex) {
+            Logger.getLogger(MySQLManager.class.getName()).log(Level.WARNING, null, ex);
+        }
+    }
+
+    /**
+     * Fecha todas as conexões livres e impede novos empréstimos. As conexões ainda emprestadas
+     * são fechadas quando forem devolvidas.
+     */
+    public void shutdown() {
+        List<ConexaoFisica> fechar;
+        synchronized(this){
+            this.fechado = true;
+            fechar = new ArrayList<>(this.livres);
+            this.abertas -= this.livres.size();
+            this.livres.clear();
+            this.notifyAll();
+        }
+        for(ConexaoFisica cf : fechar) fecharFisica(cf.conn);
+    }
+
+    public void CloseConexao(Connection Con)throws ConnectionErrorException, SQLException{
+        try{
+           Con.close();
+        }catch(SQLException exe){
+             throw new ConnectionErrorException("Erro ao tentar fechar a conexão");
+        }
+    }
+
+    public void CloseStatement(Statement Stim)throws ConnectionErrorException, SQLException{
+        Stim.close();
+    }
+
+    /*Contadores do pool*/
+    public synchronized long getBorrowCount(){return this.nrEmprestimos;}
+    public synchronized long getTimeoutCount(){return this.nrTimeouts;}
+    public synchronized double getAverageBorrowWaitMillis(){
+        return this.nrEmprestimos==0 ? 0 : (this.tempoEsperaTotal / (double)this.nrEmprestimos) / 1000000.0;
+    }
+    public synchronized double getMaxBorrowWaitMillis(){return this.tempoEsperaMax / 1000000.0;}
+    public synchronized int getActiveConnections(){return this.emprestadas;}
+    public synchronized int getIdleConnections(){return this.livres.size();}
+    public synchronized int getPeakActiveConnections(){return this.maxEmprestadas;}
+    public int getMaxConnections(){return MAX_CONEXOES;}
+
+    /**
+     * Utilização corrente do pool.
+     * @return fração (0..1) das conexões possíveis que se encontram emprestadas.
+     */
+    public synchronized double getUtilisation(){return this.emprestadas / (double)MAX_CONEXOES;}
+
+    @Override
+    public synchronized String toString(){
+        StringBuilder sb = new StringBuilder();
+        sb.append("MySQLManager[abertas=").append(this.abertas);
+        sb.append(", emprestadas=").append(this.emprestadas);
+        sb.append(", livres=").append(this.livres.size());
+        sb.append(", emprestimos=").append(this.nrEmprestimos);
+        sb.append(", esperaMedia=").append(String.format("%.3f", this.getAverageBorrowWaitMillis())).append("ms");
+        sb.append(", timeouts=").append(this.nrTimeouts).append("]");
+        return sb.toString();
+    }
+
+
+    /*Ligação física mantida pelo pool*/
+    private static class ConexaoFisica {
+        private final Connection conn;
+        private final Map<String,PreparedStatement> statements; // só statements livres (não emprestados)
+        private long devolvidaEm;
+
+        private ConexaoFisica(Connection conn){
+            this.conn=conn;
+            this.devolvidaEm=System.currentTimeMillis();
+            // LRU por ordem de acesso: o statement livre menos usado é fechado quando a cache enche
+            this.statements=new LinkedHashMap<String,PreparedStatement>(16, 0.75f, true){
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String,PreparedStatement> e){
+                    if(this.size()<=MAX_STATEMENTS) return false;
+                    fecharStatement(e.getValue());
+                    return true;
+                }
+            };
+        }
+
+        /*PreparedStatement para um SQL: o livre da cache, caso exista, ou um novo; fica emprestado até ser devolvido*/
+        private PreparedStatement preparar(String sql) throws SQLException {
+            PreparedStatement ps = this.statements.remove(sql);
+            if(ps==null) return this.conn.prepareStatement(sql);
+            ps.clearParameters();
+            ps.clearBatch();
+            return ps;
+        }
+
+        /*Devolve à cache um statement emprestado (fecha-o caso já haja um livre com o mesmo SQL)*/
+        private void devolver(String sql, PreparedStatement ps){
+            try {
+                ResultSet rs = ps.getResultSet();
+                if(rs!=null) rs.close();
+            } catch (SQLException ex) {
+                fecharStatement(ps);
+                return;
+            }
+            if(this.statements.containsKey(sql)) fecharStatement(ps);
+            else this.statements.put(sql, ps);
+        }
+
+        private static void fecharStatement(Statement s){
+            try { s.close(); } catch(SQLException ex) { /* statement já inválido */ }
+        }
+
+        private Connection emprestar(MySQLManager pool){
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new Emprestimo(this, pool));
+        }
+    }
+
+    /*Vista emprestada de uma ligação física: close() devolve a ligação ao pool, fecha os statements criados
+      e devolve à cache os PreparedStatements ainda emprestados*/
+    private static class Emprestimo implements InvocationHandler {
+        private final ConexaoFisica cf;
+        private final MySQLManager pool;
+        private final List<Statement> statements;
+        private final List<StatementEmprestado> emprestados;
+        private boolean devolvida;
+
+        private Emprestimo(ConexaoFisica cf, MySQLManager pool){
+            this.cf=cf; this.pool=pool;
+            this.statements=new ArrayList<>();
+            this.emprestados=new ArrayList<>();
+            this.devolvida=false;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String nome = method.getName();
+            switch(nome){
+                case "close":
+                    if(!this.devolvida){
+                        this.devolvida=true;
+                        for(Statement s : this.statements){
+                            try { s.close(); } catch(SQLException ex) { /* statement já inválido */ }
+                        }
+                        this.statements.clear();
+                        for(StatementEmprestado se : this.emprestados) se.devolver();
+                        this.emprestados.clear();
+                        this.pool.devolver(this.cf);
+                    }
+                    return null;
+                case "isClosed":
+                    return this.devolvida || this.cf.conn.isClosed();
+                case "equals":
+                    return proxy==args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Emprestimo[" + this.cf.conn + "]";
+            }
+            if(this.devolvida) throw new SQLException("Conexão já foi devolvida ao pool");
+
+            if(nome.equals("prepareStatement") && args.length==1){
+                // Statement da cache: close() devolve-o à cache em vez de fechar o statement físico
+                StatementEmprestado se = new StatementEmprestado((String) args[0], this.cf.preparar((String) args[0]));
+                this.emprestados.add(se);
+                return Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                        new Class<?>[]{PreparedStatement.class}, se);
+            }
+
+            Object res;
+            try {
+                res = method.invoke(this.cf.conn, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+            if(res instanceof Statement) this.statements.add((Statement) res);
+            return res;
+        }
+
+        /*PreparedStatement da cache emprestado a quem o pediu, até close() ou até a conexão ser devolvida*/
+        private class StatementEmprestado implements InvocationHandler {
+            private final String sql;
+            private final PreparedStatement ps;
+            private boolean devolvido;
+
+            private StatementEmprestado(String sql, PreparedStatement ps){
+                this.sql=sql; this.ps=ps;
+                this.devolvido=false;
+            }
+
+            private void devolver(){
+                if(this.devolvido) return;
+                this.devolvido=true;
+                cf.devolver(this.sql, this.ps);
+            }
+
+            @Override
+            public Object invoke(Object p, Method m, Object[] a) throws Throwable {
+                switch(m.getName()){
+                    case "close":
+                        if(!this.devolvido){
+                            this.devolver();
+                            emprestados.remove(this);
+                        }
+                        return null;
+                    case "isClosed":
+                        return this.devolvido;
+                    case "equals":
+                        return p==a[0];
+                    case "hashCode":
+                        return System.identityHashCode(p);
+                }
+                if(this.devolvido) throw new SQLException("Statement já foi fechado");
+                try {
+                    return m.invoke(this.ps, a);
+                } catch (InvocationTargetException ex) {
+                    throw ex.getCause();
+                }
+            }
+        }
+    }
+}
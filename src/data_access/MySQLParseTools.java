@@ -1,9 +1,11 @@
 package data_access;
 
+import business.Data;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.Calendar;
-import java.util.GregorianCalendar;
+import java.sql.Types;
+import java.util.ArrayList;
 import java.util.List;
 
 /**Uma série de ferramentas de parse para criação de queries em MySQL.
@@ -18,82 +20,115 @@ public class MySQLParseTools {
     }
     
     /**
-     * 
+     * Gera o SQL de um insert com parâmetros, a usar com prepareStatement e bind.
      * @param table, nome da tabela onde queremos fazer o insert.
-     * @param values, parâmetros do insert, i.e atributos/colunas da tabela.
-     * @return uma String, querie MySQL pronto a executar.
+     * @param n, número de colunas da tabela.
+     * @return uma String, querie MySQL com n parâmetros ('?').
      */
-    public String createInsert(String table, List<Object> values) {
+    public String createInsert(String table, int n) {
         StringBuilder sb = new StringBuilder();
-        
-        // Append do nome da tabela onde queremos fazer o insert
         sb.append("INSERT INTO ").append(table).append(" VALUES (");
-        
-        // Append dos diferentes parâmetros do insert
-        int i=1; // inteiro para detetar última iteração do for each
-        int N=values.size();
-        for(Object o : values){
-            if(o instanceof Integer){
-                // Caso seja int
-                sb.append(String.valueOf((int)o));
-            }
-            else if(o instanceof Float){
-                // Caso seja float
-                sb.append(String.valueOf((float)o));
-            }
-            else if(o instanceof Double){
-                // Caso seja double
-                sb.append(String.valueOf((double)o));
-            }
-            else if(o instanceof String){
-                // Caso seja uma String
-                String s = (String) o;
-                if(s.toLowerCase().contains("null")){ // Verificar se string é campo NULL
-                    sb.append("NULL");
-                }
-                else{
-                    sb.append("'");
-                    sb.append((String) o);
-                    sb.append("'");
-                }
-            }
-            // Caso seja o último parâmetro queremos colocar ");"
-            // Caso contrário queremos fazer append de "', '"
-            if(i==N){
-                sb.append(");");
-            } else{
-                sb.append(", ");
-                i++;
-            }
+        for(int i=0; i<n; i++){
+            sb.append(i==0 ? "?" : ", ?");
         }
+        sb.append(")");
         return sb.toString();
     }
     
     /**
-     * Gera uma String Date MySQL a partir de um objeto GregorianCalendar.
-     * @param date, a data que queremos converter para MySQL.
-     * @return String a data no formato MySQL.
+     * Associa uma lista de valores aos parâmetros de um PreparedStatement, pela ordem da lista.
+     * Valores null são associados como NULL de SQL e datas (Data) como DATE.
+     * @param ps, statement com tantos parâmetros quantos os valores.
+     * @param values, parâmetros do statement, i.e atributos/colunas da tabela.
+     * @throws SQLException 
      */
-    public String parseCalendar(GregorianCalendar date) {
-        StringBuilder sb = new StringBuilder();
-        sb.append(date.get(Calendar.YEAR)).append("-");
-        sb.append(date.get(Calendar.MONTH)).append("-");
-        sb.append(date.get(Calendar.DAY_OF_MONTH));
-        return sb.toString();
+    public void bind(PreparedStatement ps, List<Object> values) throws SQLException {
+        int i=1;
+        for(Object o : values){
+            if(o==null) ps.setNull(i, Types.NULL);
+            else if(o instanceof Integer) ps.setInt(i, (int)o);
+            else if(o instanceof Float) ps.setFloat(i, (float)o);
+            else if(o instanceof Double) ps.setDouble(i, (double)o);
+            else if(o instanceof Boolean) ps.setBoolean(i, (boolean)o);
+            else if(o instanceof Data) ps.setDate(i, this.toSQLDate((Data)o));
+            else ps.setString(i, o.toString());
+            i++;
+        }
+    }
+    
+    /**
+     * Gera a lista de parâmetros de uma cláusula IN para n valores, i.e "(?, ?, ..., ?)".
+     * O nº de parâmetros é arredondado para a potência de 2 seguinte (ver tamanhoIn), para que os carregamentos
+     * em bloco gerem poucos SQL diferentes (e poucos statements na cache de cada conexão); os valores devem ser
+     * associados com bind(ps, inValores(valores)).
+     * @param n, número de valores (n>0).
+     * @return String com a lista de parâmetros.
+     */
+    public String inParams(int n) {
+        int t = tamanhoIn(n);
+        StringBuilder sb = new StringBuilder("(");
+        for(int i=0; i<t; i++){
+            sb.append(i==0 ? "?" : ", ?");
+        }
+        return sb.append(")").toString();
+    }
+    
+    /**
+     * Valores de uma cláusula IN gerada por inParams, completados até tamanhoIn com o último valor
+     * (valores repetidos não alteram o resultado de IN).
+     * @param valores, valores da cláusula IN.
+     * @return lista com tamanhoIn(valores.size()) valores (a própria lista caso não falte nenhum).
+     */
+    public List<Object> inValores(List<Object> valores) {
+        int t = tamanhoIn(valores.size());
+        if(valores.isEmpty() || t==valores.size()) return valores;
+        List<Object> res = new ArrayList<>(t);
+        res.addAll(valores);
+        Object ultimo = valores.get(valores.size()-1);
+        while(res.size()<t) res.add(ultimo);
+        return res;
+    }
+    
+    /**
+     * Nº de parâmetros de uma cláusula IN com n valores: a menor potência de 2 maior ou igual a n.
+     * @param n, número de valores.
+     * @return nº de parâmetros.
+     */
+    public static int tamanhoIn(int n) {
+        int t = 1;
+        while(t<n) t<<=1;
+        return t;
     }
     
     /**
-     * Transforma um campo DATE de MySQL para uma instância de GregorianCalendar.
-     * @param date, String que representa data no format MySQL.
-     * @return GregorianCalendar criada a partir.
+     * Converte uma data para um parâmetro DATE (PreparedStatement.setDate), sem passar por String.
+     * @param data, a data que queremos guardar.
+     * @return java.sql.Date à meia-noite (fuso horário local) do dia da data, ou null caso data seja null.
+     */
+    public java.sql.Date toSQLDate(Data data) {
+        return data==null ? null : new java.sql.Date(data.toCalendar().getTimeInMillis());
+    }
+    
+    /**
+     * Lê um campo DATE de MySQL (ResultSet.getDate), sem passar por String.
+     * @param rs, result set.
+     * @param coluna, nº da coluna.
+     * @return data lida, ou null caso o campo seja NULL (ou a data zero).
+     * @throws SQLException 
+     */
+    public Data getData(ResultSet rs, int coluna) throws SQLException {
+        return Data.de(rs.getDate(coluna));
+    }
+    
+    /**
+     * Lê um campo DATE de MySQL (ResultSet.getDate), sem passar por String.
+     * @param rs, result set.
+     * @param coluna, nome da coluna.
+     * @return data lida, ou null caso o campo seja NULL (ou a data zero).
+     * @throws SQLException 
      */
-    public GregorianCalendar parseSQLDate(String date) {
-        int year, month, day;
-        String toks[] = date.split("-");
-        year = Integer.parseInt(toks[0].trim());
-        month = Integer.parseInt(toks[1].trim());
-        day = Integer.parseInt(toks[2].trim());
-        return new GregorianCalendar(year,month,day);      
+    public Data getData(ResultSet rs, String coluna) throws SQLException {
+        return Data.de(rs.getDate(coluna));
     }
     
     /**
@@ -0,0 +1,318 @@
+package data_access;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Operações genéricas sobre uma tabela da base de dados, partilhadas pelos DAOs.
+ *
+ * As verificações de cardinalidade e de existência são resolvidas pelo servidor (COUNT, EXISTS, LIMIT 1),
+ * pelo que apenas uma linha atravessa a rede independentemente do tamanho da tabela.
+ * @author Jorge Caldas, José Cortez, Marcelo Gonçalves, Ricardo Silva
+ * @version 2015.01.10
+ */
+
+class MySQLTable {
+
+    public static final int MAX_PAGINA = 500; // nº máximo de linhas por página
+
+    // Variáveis de instância
+    private final MySQLManager manager;
+    private final String table;
+    private final String key;
+    private volatile List<String> colunas; // lidas da base de dados na primeira utilização
+
+    /**
+     * Construtor parameterizado.
+     * @param manager, pool de conexões de onde são emprestadas as conexões.
+     * @param table, nome da tabela.
+     * @param key, coluna que identifica univocamente cada linha da tabela.
+     */
+    public MySQLTable(MySQLManager manager, String table, String key){
+        this.manager=manager;
+        this.table=table;
+        this.key=key;
+    }
+
+    /*gets*/
+    public String getTable(){return this.table;}
+    public String getKey(){return this.key;}
+
+    /**
+     * Número de linhas da tabela.
+     * @return resultado de COUNT(*) sobre a tabela.
+     * @throws SQLException
+     * @throws ConnectionErrorException
+     */
+    public int count() throws SQLException, ConnectionErrorException {
+        try (Connection conn = this.manager.getConnection()) {
+            PreparedStatement ps = conn.prepareStatement("SELECT COUNT(*) FROM "+this.table);
+            ResultSet rs = ps.executeQuery();
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Verifica se a tabela não tem linhas.
+     * @return true caso a tabela esteja vazia, false caso contrário.
+     * @throws SQLException
+     * @throws ConnectionErrorException
+     */
+    public boolean isEmpty() throws SQLException, ConnectionErrorException {
+        try (Connection conn = this.manager.getConnection()) {
+            PreparedStatement ps = conn.prepareStatement("SELECT 1 FROM "+this.table+" LIMIT 1");
+            ResultSet rs = ps.executeQuery();
+            return !rs.next();
+        }
+    }
+
+    /**
+     * Conjunto de todas as chaves (inteiras) da tabela, lidas com uma única query.
+     * @return set com as chaves existentes.
+     * @throws SQLException
+     * @throws ConnectionErrorException
+     */
+    public Set<Integer> intKeys() throws SQLException, ConnectionErrorException {
+        Set<Integer> keys = new HashSet<>();
+        try (Connection conn = this.manager.getConnection()) {
+            PreparedStatement ps = conn.prepareStatement("SELECT "+this.key+" FROM "+this.table);
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()) keys.add(rs.getInt(1));
+        }
+        return keys;
+    }
+
+    /**
+     * Verifica se existe uma linha com uma dada chave.
+     * @param value, valor da chave.
+     * @return true caso exista, false caso contrário.
+     * @throws SQLException
+     * @throws ConnectionErrorException
+     */
+    public boolean containsKey(Object value) throws SQLException, ConnectionErrorException {
+        return this.exists(this.key, value);
+    }
+
+    /**
+     * Verifica se existe pelo menos uma linha em que uma dada coluna tem um dado valor.
+     * @param column, coluna a testar.
+     * @param value, valor procurado.
+     * @return true caso exista, false caso contrário.
+     * @throws SQLException
+     * @throws ConnectionErrorException
+     */
+    public boolean exists(String column, Object value) throws SQLException, ConnectionErrorException {
+        try (Connection conn = this.manager.getConnection()) {
+            PreparedStatement ps = conn.prepareStatement(
+                    "SELECT EXISTS(SELECT 1 FROM "+this.table+" WHERE "+column+"=?)");
+            ps.setObject(1, value);
+            ResultSet rs = ps.executeQuery();
+            return rs.next() && rs.getBoolean(1);
+        }
+    }
+
+    /**
+     * Nomes das colunas da tabela, pela ordem da tabela.
+     * @return lista com os nomes das colunas.
+     * @throws SQLException
+     * @throws ConnectionErrorException
+     */
+    public List<String> columns() throws SQLException, ConnectionErrorException {
+        List<String> cols = this.colunas;
+        if(cols!=null) return cols;
+        try (Connection conn = this.manager.getConnection()) {
+            return this.columns(conn);
+        }
+    }
+
+    /**
+     * Nomes das colunas da tabela, pela ordem da tabela, lidos (na primeira utilização) com uma conexão já
+     * emprestada: os métodos que já têm uma conexão não pedem outra ao pool.
+     * @param conn, conexão em uso.
+     * @return lista com os nomes das colunas.
+     * @throws SQLException
+     */
+    public synchronized List<String> columns(Connection conn) throws SQLException {
+        if(this.colunas==null){
+            List<String> cols = new ArrayList<>();
+            PreparedStatement ps = conn.prepareStatement("SELECT * FROM "+this.table+" LIMIT 0");
+            ResultSetMetaData md = ps.executeQuery().getMetaData();
+            for(int i=1; i<=md.getColumnCount(); i++) cols.add(md.getColumnName(i));
+            this.colunas = Collections.unmodifiableList(cols);
+        }
+        return this.colunas;
+    }
+
+    /**
+     * Verifica se a tabela tem todas as colunas dadas (p.e. as criadas pelos scripts da pasta sql).
+     * @param nomes, nomes das colunas.
+     * @return true caso existam todas, false caso contrário.
+     * @throws SQLException
+     * @throws ConnectionErrorException
+     */
+    public boolean hasColumns(String... nomes) throws SQLException, ConnectionErrorException {
+        for(String nome : nomes){
+            boolean existe = false;
+            for(String c : this.columns()) if(c.equalsIgnoreCase(nome)) existe = true;
+            if(!existe) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Gera um insert com parâmetros que, caso a chave já exista, atualiza a linha existente em vez de falhar
+     * (INSERT ... ON DUPLICATE KEY UPDATE). As colunas são indicadas pelo nome, pelo que a ordem das colunas
+     * na tabela não importa; as colunas omitidas ficam com o valor por omissão numa linha nova e mantêm o
+     * valor atual numa linha existente.
+     * @param conn, conexão em uso.
+     * @param colunas, colunas a escrever, pela ordem dos parâmetros; #n designa a n-ésima coluna da tabela.
+     * @param manter, colunas (de entre as anteriores) cujo valor atual é mantido quando a linha já existe.
+     * @return String, querie MySQL com um parâmetro ('?') por coluna.
+     * @throws SQLException
+     */
+    public String createUpsert(Connection conn, Collection<String> colunas, Collection<String> manter) throws SQLException {
+        Set<String> fixas = new HashSet<>();
+        for(String c : manter) fixas.add(this.expandirColunas(conn, c).toLowerCase());
+        
+        StringBuilder nomes = new StringBuilder(), params = new StringBuilder(), atualizar = new StringBuilder();
+        for(String c : colunas){
+            c = this.expandirColunas(conn, c);
+            if(nomes.length()>0){nomes.append(", "); params.append(", ");}
+            nomes.append(c);
+            params.append("?");
+            if(c.equalsIgnoreCase(this.key) || fixas.contains(c.toLowerCase())) continue;
+            if(atualizar.length()>0) atualizar.append(", ");
+            atualizar.append(c).append("=VALUES(").append(c).append(")");
+        }
+        if(atualizar.length()==0) atualizar.append(this.key).append("=").append(this.key); // nada a atualizar
+        return "INSERT INTO "+this.table+" ("+nomes+") VALUES ("+params+") ON DUPLICATE KEY UPDATE "+atualizar;
+    }
+
+    /**
+     * Prepara a leitura de uma página ordenada pelo servidor, a seguir a um cursor (paginação por chave).
+     * A ordenação é desempatada pela chave da tabela e a expressão de ordenação é devolvida na coluna Ordem,
+     * de onde se lê o cursor da página seguinte. É pedida uma linha a mais para saber se há página seguinte.
+     * A expressão de ordenação pode ser NULL: como em MySQL, os NULL vêm antes de todos os valores na ordem
+     * ascendente e depois de todos na descendente, e o cursor pode ter valor NULL (ver condicaoCursor).
+     * @param conn, conexão em uso.
+     * @param ordem, expressão SQL de ordenação sobre a tabela, em que #n designa a n-ésima coluna da tabela.
+     * @param ascendente, sentido da ordenação.
+     * @param depois, cursor da última linha da página anterior (null para a primeira página).
+     * @param tamanho, nº de linhas da página (no máximo MAX_PAGINA).
+     * @return PreparedStatement pronto a executar.
+     * @throws SQLException
+     * @throws ConnectionErrorException
+     */
+    public PreparedStatement preparePage(Connection conn, String ordem, boolean ascendente, Pagina.Cursor depois, int tamanho)
+            throws SQLException, ConnectionErrorException {
+        return this.preparePage(conn, this.table+".*", ordem, ascendente, depois, tamanho);
+    }
+
+    /**
+     * Prepara a leitura de uma página ordenada pelo servidor só com algumas colunas (projeção), p.e. para
+     * as linhas de uma listagem. Igual a preparePage(conn, ordem, ...), mas a query devolve as colunas dadas
+     * (seguidas da coluna Ordem) em vez da linha inteira.
+     * @param conn, conexão em uso.
+     * @param colunas, lista de expressões SQL a devolver, em que #n designa a n-ésima coluna da tabela.
+     * @param ordem, expressão SQL de ordenação sobre a tabela, em que #n designa a n-ésima coluna da tabela.
+     * @param ascendente, sentido da ordenação.
+     * @param depois, cursor da última linha da página anterior (null para a primeira página).
+     * @param tamanho, nº de linhas da página (no máximo MAX_PAGINA).
+     * @return PreparedStatement pronto a executar.
+     * @throws SQLException
+     * @throws ConnectionErrorException
+     */
+    public PreparedStatement preparePage(Connection conn, String colunas, String ordem, boolean ascendente, Pagina.Cursor depois, int tamanho)
+            throws SQLException, ConnectionErrorException {
+        colunas = this.expandirColunas(conn, colunas);
+        ordem = this.expandirColunas(conn, ordem);
+        String dir = ascendente ? " ASC" : " DESC";
+        StringBuilder sb = new StringBuilder("SELECT ").append(colunas).append(", ").append(ordem)
+                .append(" AS Ordem FROM ").append(this.table);
+        if(depois!=null) sb.append(" WHERE ").append(this.condicaoCursor(ordem, ascendente, depois.getValor()==null));
+        sb.append(" ORDER BY Ordem").append(dir).append(", ").append(this.key).append(dir).append(" LIMIT ?");
+
+        PreparedStatement ps = conn.prepareStatement(sb.toString());
+        int i = 1;
+        if(depois!=null){
+            if(depois.getValor()!=null){
+                ps.setObject(i++, depois.getValor());
+                ps.setObject(i++, depois.getValor());
+            }
+            ps.setObject(i++, depois.getChave());
+        }
+        ps.setInt(i, tamanhoPagina(tamanho)+1);
+        return ps;
+    }
+
+    /**
+     * Cursor de uma linha dada pela sua posição na ordenação (p.e. a última linha antes de uma página para
+     * onde se salta sem ler as anteriores). Só são lidas a expressão de ordenação e a chave, com OFFSET.
+     * @param conn, conexão em uso.
+     * @param ordem, expressão SQL de ordenação sobre a tabela, em que #n designa a n-ésima coluna da tabela.
+     * @param ascendente, sentido da ordenação.
+     * @param linha, posição da linha (0 para a primeira).
+     * @return cursor da linha, a usar em preparePage, ou null caso a tabela tenha menos linhas.
+     * @throws SQLException
+     * @throws ConnectionErrorException
+     */
+    public Pagina.Cursor cursorEm(Connection conn, String ordem, boolean ascendente, int linha)
+            throws SQLException, ConnectionErrorException {
+        ordem = this.expandirColunas(conn, ordem);
+        String dir = ascendente ? " ASC" : " DESC";
+        PreparedStatement ps = conn.prepareStatement("SELECT "+ordem+" AS Ordem, "+this.key+" FROM "+this.table
+                + " ORDER BY Ordem"+dir+", "+this.key+dir+" LIMIT 1 OFFSET ?");
+        ps.setInt(1, linha);
+        ResultSet rs = ps.executeQuery();
+        return rs.next() ? new Pagina.Cursor(rs.getObject(1), rs.getObject(2)) : null;
+    }
+
+    /**
+     * Condição das linhas que vêm depois de um cursor, pela ordem (ordem, chave), com os NULL antes de todos
+     * os valores (ascendente) ou depois (descendente). Comparações com NULL nunca são verdadeiras, pelo que
+     * as linhas com ordem NULL (e um cursor com valor NULL) são tratadas com IS NULL / IS NOT NULL.
+     * @param ordem, expressão de ordenação (já expandida).
+     * @param ascendente, sentido da ordenação.
+     * @param cursorNulo, true caso o valor do cursor seja NULL.
+     * @return condição com parâmetros: valor, valor, chave (só chave caso cursorNulo).
+     */
+    private String condicaoCursor(String ordem, boolean ascendente, boolean cursorNulo) {
+        String op = ascendente ? ">" : "<";
+        String depoisNulo = "(("+ordem+") IS NULL AND "+this.key+op+"?)";
+        if(cursorNulo){
+            // ascendente: resto dos NULL e depois todos os valores; descendente: só o resto dos NULL
+            return ascendente ? "("+depoisNulo+" OR ("+ordem+") IS NOT NULL)" : depoisNulo;
+        }
+        String depoisValor = "(("+ordem+")"+op+"? OR (("+ordem+")=? AND "+this.key+op+"?))";
+        // descendente: os NULL vêm depois de todos os valores
+        return ascendente ? depoisValor : "("+depoisValor+" OR ("+ordem+") IS NULL)";
+    }
+
+    /*Substitui cada #n pelo nome da n-ésima coluna da tabela*/
+    private String expandirColunas(Connection conn, String expr) throws SQLException {
+        List<String> cols = this.columns(conn);
+        Matcher m = Pattern.compile("#(\\d+)").matcher(expr);
+        StringBuffer sb = new StringBuffer();
+        while(m.find()) m.appendReplacement(sb, Matcher.quoteReplacement(cols.get(Integer.parseInt(m.group(1))-1)));
+        m.appendTail(sb);
+        return sb.toString();
+    }
+
+    /**
+     * Nº de linhas efetivamente lidas para um pedido de página.
+     * @param tamanho, nº de linhas pedido.
+     * @return tamanho limitado a [1, MAX_PAGINA].
+     */
+    public static int tamanhoPagina(int tamanho){return Math.max(1, Math.min(tamanho, MAX_PAGINA));}
+}
@@ -0,0 +1,63 @@
+package data_access;
+
+import java.util.List;
+
+/**
+ * Página de uma listagem ordenada pelo servidor.
+ *
+ * A paginação é feita por chave (keyset): a página seguinte é pedida com o cursor da página atual e
+ * começa logo depois da última linha lida, pelo que o custo de cada página não depende da sua posição
+ * na listagem (não é usado OFFSET).
+ * @author Jorge Caldas, José Cortez, Marcelo Gonçalves, Ricardo Silva
+ * @version 2015.01.15
+ * @param <V> tipo da entidade.
+ */
+
+public class Pagina<V> {
+
+    // Variáveis de instância
+    private final List<V> itens;
+    private final Cursor seguinte;
+    private final boolean temMais;
+
+    Pagina(List<V> itens, Cursor seguinte, boolean temMais){
+        this.itens=itens;
+        this.seguinte=seguinte;
+        this.temMais=temMais;
+    }
+
+    /*gets*/
+    public List<V> getItens(){return this.itens;}
+
+    /**
+     * Indica se existem mais linhas depois desta página.
+     * @return true caso exista página seguinte, false caso contrário.
+     */
+    public boolean hasNext(){return this.temMais;}
+
+    /**
+     * Cursor a passar no pedido da página seguinte.
+     * @return posição da última linha desta página (null caso a página esteja vazia).
+     */
+    public Cursor getSeguinte(){return this.seguinte;}
+
+
+    /**
+     * Posição de uma linha na listagem: valor da coluna de ordenação e chave da linha (desempate).
+     */
+    public static final class Cursor {
+        private final Object valor;
+        private final Object chave;
+
+        Cursor(Object valor, Object chave){
+            this.valor=valor;
+            this.chave=chave;
+        }
+
+        Object getValor(){return this.valor;}
+        Object getChave(){return this.chave;}
+
+        @Override
+        public String toString(){return "Cursor[" + this.valor + ", " + this.chave + "]";}
+    }
+}
@@ -1,11 +1,15 @@
 package data_access;
 
+import business.Data;
+import business.colecoes.IntList;
+import business.colecoes.IntSet;
+import business.familias.CandidaturaFactory;
+import business.familias.ICandidatura;
 import business.projetos.IProjeto;
 import business.projetos.ProjetoFactory;
+import business.projetos.ResumoProjeto;
 import java.sql.*;
 import java.util.*;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
 /**
  * Implementação de um Data Acess Object para gerir instancias da classe Projeto.
@@ -15,25 +19,41 @@ import java.util.logging.Logger;
 
 class ProjetoDAO implements Map<Integer,IProjeto>{
 
-    public Connection conn;
+    /*Colunas pelas quais as páginas de projetos podem ser ordenadas (nome -> expressão SQL)*/
+    private static final Map<String,String> ORDENS = new LinkedHashMap<>();
+    static {
+        ORDENS.put("Nr", "Nr");
+        ORDENS.put("DataInicial", "CAST(#5 AS CHAR)");
+        ORDENS.put("Estado", "COALESCE(#8,'')");
+        ORDENS.put("Orcamento", "#2");
+    }
+    /*Colunas lidas para as linhas da listagem de projetos (ResumoProjeto)*/
+    private static final String RESUMO = "Nr, #8, #2, #5, #6, #11";
+
+    private final MySQLManager manager;
+    private final MySQLTable table;
+    private final KeyAllocator keys;
+    private final CandidaturaDAO candidaturas;
     private MySQLParseTools parseTools;
 
 
-    public ProjetoDAO () throws ConnectionErrorException {
-        try {
-            this.parseTools = new MySQLParseTools();
-            this.conn = (new MySQLManager()).getConnection();
-        } catch (SQLException ex) {System.out.println("error_Projeto_bd");}
+    /**
+     * Construtor que fornece conexão à tabela Projetos na base de dados da Habitat.
+     * @param candidaturas, DAO (partilhado) de onde são lidas as candidaturas dos projetos.
+     * @throws ConnectionErrorException 
+     */
+    public ProjetoDAO (CandidaturaDAO candidaturas) throws ConnectionErrorException {
+        this.candidaturas = candidaturas;
+        this.parseTools = new MySQLParseTools();
+        this.manager = MySQLManager.getInstance();
+        this.table = new MySQLTable(this.manager, "Projetos", "Nr");
+        this.keys = KeyAllocator.forTable(this.manager, "Projetos", "Nr");
     }
     
     @Override
     public int size() {
         try {
-            int i = 0;
-            Statement stm = conn.createStatement();
-            ResultSet rs = stm.executeQuery("SELECT Nr FROM Projetos");
-            while(rs.next()){ i++; }
-            return i;
+            return this.table.count();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -41,9 +61,7 @@ class ProjetoDAO implements Map<Integer,IProjeto>{
     @Override
     public boolean isEmpty() {
         try {
-            Statement stm = conn.createStatement();
-            ResultSet rs = stm.executeQuery("SELECT Nr FROM Projetos");
-            return !rs.next();
+            return this.table.isEmpty();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -51,10 +69,7 @@ class ProjetoDAO implements Map<Integer,IProjeto>{
     @Override
     public boolean containsKey(Object key) throws NullPointerException {
         try {
-            Statement stm = conn.createStatement();
-            String sql = "SELECT Nr FROM Projetos WHERE Nr='"+(int)key+"'";
-            ResultSet rs = stm.executeQuery(sql);
-            return rs.next();
+            return this.table.containsKey((int)key);
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -77,57 +92,215 @@ class ProjetoDAO implements Map<Integer,IProjeto>{
     @Override
     public IProjeto get(Object key) {
         try {
-            IProjeto mt = null;
-            Statement stm = conn.createStatement();
-            String sql = "SELECT * FROM Projetos WHERE Nr='"+(int)key+"'";
-            ResultSet rs = stm.executeQuery(sql);
-            if (rs.next()){ 
-                mt = new ProjetoFactory().createProjeto();
-                mt.setNr(rs.getInt(1));
-                mt.setOrcamento(rs.getInt(2));
-                mt.setCustoFinal(rs.getInt(3));
-                mt.setPrestacao(rs.getInt(4));
-                mt.setDataInicial(parseTools.parseSQLDate(rs.getString(5)));
-                mt.setDataFinal(parseTools.parseSQLDate(rs.getString(6)));
-                mt.setObs(rs.getString(7));
-                mt.setEstado(rs.getString(8));
-                mt.setFuncionarioEnc(rs.getInt(9));
-                mt.setFuncionarioReg(rs.getInt(10));
-                int candidatura = rs.getInt(11);
-                mt.setCandidatura(new CandidaturaDAO().get(candidatura));
-                
-                Set<Integer> tarefa = new HashSet<>();
-                sql = "Select Tarefa From TarefasFuncionariosProjetos AS TFP Where TFP.Projeto=key'"+mt.getNr()+"'";
-                rs = stm.executeQuery(sql);
-                for(int i=1; rs.next(); i++)
-                    tarefa.add(rs.getInt(i));
-                mt.setTarefa(tarefa);
-                
-                Set<Integer> voluntarios = new HashSet<>();
-                sql = "Select Voluntario From ProjetosVoluntarios AS PV Where PV.Projeto='"+mt.getNr()+"'";
-                rs = stm.executeQuery(sql);
-                for(int i=1; rs.next(); i++)
-                    voluntarios.add(rs.getInt(i));
-                mt.setVoluntarios(voluntarios);
-                
-                List<Integer> nrecibos = new ArrayList<>();
-                sql = "Select Donativo From ProjetoDoadoresDonativos AS PDD Where PDD.Projeto='"+mt.getNr()+"'";
-                rs = stm.executeQuery(sql);
-                for(int i=1; rs.next(); i++)
-                    nrecibos.add(rs.getInt(i));
-                mt.setNRecibo(nrecibos);               
+            return this.load("WHERE Nr=?", Arrays.<Object>asList((int)key), EnumSet.allOf(RelacaoProjeto.class)).get((int)key);
+        }
+        catch (Exception e) {throw new NullPointerException(e.getMessage());}
+    }
+    
+    /**
+     * Carrega um lote de projetos, com as relações pedidas. É feita uma query sobre Projetos e uma query
+     * por relação pedida para todo o lote (a candidatura custa duas: Candidaturas e Membros).
+     * @param nrs, nºs dos projetos a carregar.
+     * @param prefetch, relações a carregar; as restantes ficam vazias (candidatura a null).
+     * @return mapa nº de projeto -> projeto, pela ordem de nrs (só os projetos existentes).
+     */
+    public Map<Integer,IProjeto> getAll(Collection<Integer> nrs, Set<RelacaoProjeto> prefetch) {
+        if(nrs.isEmpty()) return new LinkedHashMap<>();
+        try {
+            Map<Integer,IProjeto> lidos = this.load("WHERE Nr IN "+parseTools.inParams(nrs.size()), parseTools.inValores(new ArrayList<Object>(nrs)), prefetch);
+            Map<Integer,IProjeto> projs = new LinkedHashMap<>();
+            for(Integer nr : nrs){
+                IProjeto p = lidos.get(nr);
+                if(p!=null) projs.put(nr, p);
             }
-            return mt;
+            return projs;
+        }
+        catch (Exception e) {throw new NullPointerException(e.getMessage());}
+    }
+    
+    /*Constrói um projeto a partir da linha corrente de um ResultSet sobre a tabela Projetos (sem candidatura nem tabelas filhas)*/
+    private IProjeto fromRow(ResultSet rs) throws SQLException {
+        IProjeto mt = new ProjetoFactory().createProjeto();
+        mt.setNr(rs.getInt(1));
+        mt.setOrcamento(rs.getInt(2));
+        mt.setCustoFinal(rs.getInt(3));
+        mt.setPrestacao(rs.getInt(4));
+        mt.setDataInicial(parseTools.getData(rs, 5));
+        mt.setDataFinal(parseTools.getData(rs, 6));
+        mt.setObs(rs.getString(7));
+        mt.setEstado(rs.getString(8));
+        mt.setFuncionarioEnc(rs.getInt(9));
+        mt.setFuncionarioReg(rs.getInt(10));
+        mt.setTarefa(new IntSet());
+        mt.setVoluntarios(new IntSet());
+        mt.setNRecibo(new IntList());
+        return mt;
+    }
+    
+    /**
+     * Carrega todos os projetos, com todas as relações (uma leitura da tabela Projetos e uma por relação).
+     * @return mapa nº de projeto -> projeto.
+     */
+    private Map<Integer,IProjeto> loadAll() throws SQLException, ConnectionErrorException {
+        return this.load("", new ArrayList<>(), EnumSet.allOf(RelacaoProjeto.class));
+    }
+    
+    /**
+     * Carrega os projetos que satisfazem uma condição e as relações pedidas.
+     * @param where, cláusula WHERE a aplicar à tabela Projetos ("" para todos), com parâmetros '?'.
+     * @param params, valores dos parâmetros da cláusula WHERE.
+     * @param prefetch, relações a carregar.
+     * @return mapa nº de projeto -> projeto.
+     */
+    private Map<Integer,IProjeto> load(String where, List<Object> params, Set<RelacaoProjeto> prefetch)
+            throws SQLException, ConnectionErrorException {
+        Map<Integer,IProjeto> projs = new LinkedHashMap<>();
+        Map<Integer,Integer> candidaturas = new HashMap<>();
+        
+        try (Connection conn = this.manager.getConnection()) {
+            PreparedStatement ps = conn.prepareStatement("SELECT * FROM Projetos "+where);
+            parseTools.bind(ps, params);
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()){
+                IProjeto p = this.fromRow(rs);
+                projs.put(p.getNr(), p);
+                candidaturas.put(p.getNr(), rs.getInt(11));
+            }
+            if(!projs.isEmpty()) this.loadChildren(conn, projs, where.isEmpty(), prefetch);
+        }
+        if(prefetch.contains(RelacaoProjeto.CANDIDATURA)) this.loadCandidaturas(projs, candidaturas);
+        return projs;
+    }
+    
+    /**
+     * Preenche as tarefas, voluntários e/ou donativos de projetos já carregados, com uma query por relação
+     * pedida (IN (...) sobre os números dos projetos).
+     * @param conn, conexão em uso.
+     * @param projs, projetos a completar, indexados pelo número.
+     * @param todos, true se projs contém todos os projetos (dispensa o filtro IN).
+     * @param prefetch, relações a carregar.
+     */
+    private void loadChildren(Connection conn, Map<Integer,IProjeto> projs, boolean todos, Set<RelacaoProjeto> prefetch) throws SQLException {
+        List<Object> nrs = todos ? new ArrayList<>() : parseTools.inValores(new ArrayList<Object>(projs.keySet()));
+        String filtro = todos ? "" : " WHERE Projeto IN "+parseTools.inParams(nrs.size());
+        
+        if(prefetch.contains(RelacaoProjeto.TAREFAS)){
+            PreparedStatement ps = conn.prepareStatement("SELECT Projeto, Tarefa FROM TarefasFuncionariosProjetos"+filtro);
+            parseTools.bind(ps, nrs);
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()){
+                IProjeto p = projs.get(rs.getInt(1));
+                if(p!=null) p.getTarefa().add(rs.getInt(2));
+            }
+        }
+        
+        if(prefetch.contains(RelacaoProjeto.VOLUNTARIOS)){
+            PreparedStatement ps = conn.prepareStatement("SELECT Projeto, Voluntario FROM ProjetosVoluntarios"+filtro);
+            parseTools.bind(ps, nrs);
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()){
+                IProjeto p = projs.get(rs.getInt(1));
+                if(p!=null) p.getVoluntarios().add(rs.getInt(2));
+            }
+        }
+        
+        if(prefetch.contains(RelacaoProjeto.DONATIVOS)){
+            PreparedStatement ps = conn.prepareStatement("SELECT Projeto, Donativo FROM ProjetoDoadoresDonativos"+filtro);
+            parseTools.bind(ps, nrs);
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()){
+                IProjeto p = projs.get(rs.getInt(1));
+                if(p!=null) p.getNRecibo().add(rs.getInt(2));
+            }
+        }
+    }
+    
+    /*Associa a cada projeto a sua candidatura, lendo as candidaturas distintas do lote de uma só vez*/
+    private void loadCandidaturas(Map<Integer,IProjeto> projs, Map<Integer,Integer> candidaturas) {
+        Map<Integer,ICandidatura> lidas = this.candidaturas.getAll(new HashSet<>(candidaturas.values()));
+        for(Map.Entry<Integer,Integer> e : candidaturas.entrySet()){
+            ICandidatura c = lidas.get(e.getValue());
+            if(c==null) c = new CandidaturaFactory().createCandidatura(); // tal como CandidaturaDAO.get
+            projs.get(e.getKey()).setCandidatura(c);
+        }
+    }
+    
+    /**
+     * Lê uma página de projetos (com candidatura e tabelas filhas), ordenada pelo servidor.
+     * @param tamanho, nº de projetos por página (no máximo MySQLTable.MAX_PAGINA).
+     * @param ordem, coluna de ordenação: Nr, DataInicial, Estado ou Orcamento.
+     * @param ascendente, sentido da ordenação.
+     * @param depois, cursor da página anterior (null para a primeira página).
+     * @return página de projetos.
+     */
+    public Pagina<IProjeto> pagina(int tamanho, String ordem, boolean ascendente, Pagina.Cursor depois) {
+        String expr = ORDENS.get(ordem);
+        if(expr==null) throw new IllegalArgumentException("Ordenação desconhecida: "+ordem);
+        
+        try {
+            Map<Integer,IProjeto> projs = new LinkedHashMap<>();
+            Map<Integer,Integer> candidaturas = new HashMap<>();
+            Pagina.Cursor ultimo = null;
+            boolean mais = false;
+            
+            try (Connection conn = this.manager.getConnection()) {
+                ResultSet rs = this.table.preparePage(conn, expr, ascendente, depois, tamanho).executeQuery();
+                while(rs.next()){
+                    if(projs.size()==MySQLTable.tamanhoPagina(tamanho)){mais=true; break;}
+                    IProjeto p = this.fromRow(rs);
+                    projs.put(p.getNr(), p);
+                    candidaturas.put(p.getNr(), rs.getInt(11));
+                    ultimo = new Pagina.Cursor(rs.getObject("Ordem"), p.getNr());
+                }
+                if(!projs.isEmpty()) this.loadChildren(conn, projs, false, EnumSet.allOf(RelacaoProjeto.class));
+            }
+            this.loadCandidaturas(projs, candidaturas);
+            return new Pagina<>(new ArrayList<>(projs.values()), ultimo, mais);
+        }
+        catch (Exception e) {throw new NullPointerException(e.getMessage());}
+    }
+    
+    /**
+     * Lê uma página de resumos de projetos (nº, estado, orçamento, datas e nº da candidatura), ordenada pelo
+     * servidor. Ao contrário de pagina(...), é feita uma única query: não são lidas a candidatura nem as
+     * tabelas filhas.
+     * @param tamanho, nº de projetos por página (no máximo MySQLTable.MAX_PAGINA).
+     * @param ordem, coluna de ordenação: Nr, DataInicial, Estado ou Orcamento.
+     * @param ascendente, sentido da ordenação.
+     * @param depois, cursor da página anterior (null para a primeira página).
+     * @return página de resumos.
+     */
+    public Pagina<ResumoProjeto> paginaResumos(int tamanho, String ordem, boolean ascendente, Pagina.Cursor depois) {
+        String expr = ORDENS.get(ordem);
+        if(expr==null) throw new IllegalArgumentException("Ordenação desconhecida: "+ordem);
+        
+        try (Connection conn = this.manager.getConnection()) {
+            List<ResumoProjeto> resumos = new ArrayList<>();
+            Pagina.Cursor ultimo = null;
+            boolean mais = false;
+            
+            ResultSet rs = this.table.preparePage(conn, RESUMO, expr, ascendente, depois, tamanho).executeQuery();
+            while(rs.next()){
+                if(resumos.size()==MySQLTable.tamanhoPagina(tamanho)){mais=true; break;}
+                ResumoProjeto r = new ResumoProjeto(rs.getInt(1), rs.getString(2), rs.getFloat(3),
+                        parseTools.getData(rs, 4), parseTools.getData(rs, 5), rs.getInt(6));
+                resumos.add(r);
+                ultimo = new Pagina.Cursor(rs.getObject("Ordem"), r.getNr());
+            }
+            return new Pagina<>(resumos, ultimo, mais);
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
     
     @Override
     public IProjeto put(Integer key, IProjeto value) {
-        try {
-            Statement stm = conn.createStatement();
-            stm.executeUpdate("DELETE FROM Projetos WHERE Nr='"+key+"'");
-            int i  = stm.executeUpdate(insert(key,value));
+        try (Connection conn = this.manager.getConnection()) {
+            conn.setAutoCommit(false); // DELETE e INSERT numa só transação
+            PreparedStatement ps = conn.prepareStatement("DELETE FROM Projetos WHERE Nr=?");
+            ps.setInt(1, key);
+            ps.executeUpdate();
+            int i  = insert(conn,key,value).executeUpdate();
+            conn.commit();
             IProjeto mt = new ProjetoFactory().createProjeto();
             mt.setNr(value.getNr());
             mt.setOrcamento(value.getOrcamento());
@@ -144,9 +317,9 @@ class ProjetoDAO implements Map<Integer,IProjeto>{
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
 
-    private String insert(Integer key, IProjeto value){
-        String dataI = parseTools.parseCalendar(value.getDataInicial());
-        String dataF = parseTools.parseCalendar(value.getDataFinal());
+    private PreparedStatement insert(Connection conn, Integer key, IProjeto value) throws SQLException {
+        Data dataI = value.getDataInicial();
+        Data dataF = value.getDataFinal();
         
         ArrayList<Object> valores = new ArrayList<>();
         valores.add(key);
@@ -159,17 +332,19 @@ class ProjetoDAO implements Map<Integer,IProjeto>{
         valores.add(value.getEstado());
         valores.add(value.getFuncionarioEnc());
         valores.add(value.getFuncionarioReg());
-        valores.add("NULL");
-        String sql = this.parseTools.createInsert("Projetos", valores);
-        return sql;
+        valores.add(null);
+        PreparedStatement ps = conn.prepareStatement(this.parseTools.createInsert("Projetos", valores.size()));
+        this.parseTools.bind(ps, valores);
+        return ps;
     }
     
     @Override
     public IProjeto remove(Object key) {
-        try {
-            IProjeto mt = this.get((int)key);
-            Statement stm = conn.createStatement();
-            stm.executeUpdate("DELETE FROM Projetos WHERE Nr='"+key+"'");
+        IProjeto mt = this.get((int)key); // lido antes de pedir a conexão: get pede a sua ao pool
+        try (Connection conn = this.manager.getConnection()) {
+            PreparedStatement ps = conn.prepareStatement("DELETE FROM Projetos WHERE Nr=?");
+            ps.setInt(1, (int)key);
+            ps.executeUpdate();
             return mt;
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
@@ -178,14 +353,7 @@ class ProjetoDAO implements Map<Integer,IProjeto>{
     @Override
     public Set<Integer> keySet() {
         try {
-            Set<Integer> set = new HashSet<>();
-            int n = this.generateProjetoKey();
-            for(int i=0; i<n; i++){
-                if(this.containsKey(i)){
-                    set.add(i);
-                }
-            }
-            return set;
+            return this.table.intKeys();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -193,19 +361,14 @@ class ProjetoDAO implements Map<Integer,IProjeto>{
     @Override
     public Collection<IProjeto> values() {
         try {
-            Set<IProjeto> set = new HashSet<>();
-            Set<Integer> keys = new HashSet<>(this.keySet());
-            for(Integer key : keys)
-                set.add(this.get(key));
-            return set;
+            return new ArrayList<>(this.loadAll().values());
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
     
     public void clear() {
-        try {
-            Statement stm = conn.createStatement();
-            stm.executeUpdate("DELETE FROM Projetos WHERE Projetos.Nr >= 0;");
+        try (Connection conn = this.manager.getConnection()) {
+            conn.prepareStatement("DELETE FROM Projetos WHERE Projetos.Nr >= 0").executeUpdate();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -213,16 +376,7 @@ class ProjetoDAO implements Map<Integer,IProjeto>{
     @Override
     public Set<Entry<Integer,IProjeto>> entrySet() {
         try {
-            Set<Entry<Integer,IProjeto>> set;
-            Set<Integer> keys = new HashSet<>(this.keySet());            
-            
-            HashMap<Integer,IProjeto> map = new HashMap<>();
-            for(Integer key : keys){
-                if(this.containsKey(key)){
-                    map.put(key,this.get(key));
-                }
-            }
-            return map.entrySet();
+            return this.loadAll().entrySet();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -253,40 +407,20 @@ class ProjetoDAO implements Map<Integer,IProjeto>{
     
     @Override
     public int hashCode() {
-        int hash = Arrays.hashCode(new Object[]{conn, parseTools});
+        int hash = Arrays.hashCode(new Object[]{manager, parseTools});
         for(IProjeto p : this.values())
             hash+=p.hashCode();
         return hash;
     }
     
     /**
-     * Procura a maior chave de projeto existente na base de dados e retorna
-     * esse valor incrementado em uma unidade
+     * Atribui uma nova chave, a partir do bloco de chaves reservado para esta tabela (ver KeyAllocator).
      * @return Chave que identificará univocamente no sistema um projeto. 
      */
     public int generateProjetoKey(){
-       try {
-            if(!this.isEmpty()){
-                Statement stm = conn.createStatement();
-                ResultSet rs = stm.executeQuery("SELECT MAX(Nr) FROM Projetos;");
-                int result = 0;
-                if (rs.next()) {      
-                    result = rs.getInt(1);  
-                } 
-                return result + 1;
-            } else return 1;
-        }
-        catch (Exception e) { throw new NullPointerException(e.getMessage()); } 
-    } 
-    
-    /**
-     * Fechar a ligação à base de dados.
-     */
-    public void close(){
         try {
-            this.conn.close();
-        } catch (SQLException ex) {
-            Logger.getLogger(ProjetoDAO.class.getName()).log(Level.SEVERE, null, ex);
+            return this.keys.next();
         }
+        catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
 }
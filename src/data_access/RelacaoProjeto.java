@@ -0,0 +1,21 @@
+package data_access;
+
+/**
+ * Relações de um projeto que podem ser carregadas antecipadamente (prefetch) juntamente com os projetos.
+ *
+ * Cada relação pedida custa uma query para todo o lote de projetos lidos, e não uma por projeto; as
+ * relações não pedidas ficam por carregar (coleções vazias e candidatura a null).
+ * @author Jorge Caldas, José Cortez, Marcelo Gonçalves, Ricardo Silva
+ * @version 2015.01.17
+ */
+
+public enum RelacaoProjeto {
+    /** Candidatura do projeto (IProjeto.getCandidatura), com os seus membros. */
+    CANDIDATURA,
+    /** Tarefas do projeto (IProjeto.getTarefa). */
+    TAREFAS,
+    /** Voluntários que trabalharam no projeto (IProjeto.getVoluntarios). */
+    VOLUNTARIOS,
+    /** Recibos dos donativos atribuídos ao projeto (IProjeto.getNRecibo). */
+    DONATIVOS
+}
@@ -1,21 +1,19 @@
 package data_access;
+import business.Data;
 import business.familias.IRepresentante;
 import business.familias.RepresentanteFactory;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.GregorianCalendar;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
 /**
  *
@@ -24,30 +22,25 @@ import java.util.logging.Logger;
  */
 class RepresentanteDAO implements Map<Integer,IRepresentante> {
 
-    public Connection conn;
+    private final MySQLManager manager;
+    private final MySQLTable table;
+    private final KeyAllocator keys;
     public MySQLParseTools parseTools;    
 
     public RepresentanteDAO() throws ConnectionErrorException{
-        try {
-            this.conn = (new MySQLManager()).getConnection();
-            this.parseTools = new MySQLParseTools();
-            } 
-        catch (SQLException ex) {System.out.println("error_IRepresentante_bd");
-            }
+        this.manager = MySQLManager.getInstance();
+        this.table = new MySQLTable(this.manager, "Representante", "Nr");
+        this.keys = KeyAllocator.forTable(this.manager, "Representante", "Nr");
+        this.parseTools = new MySQLParseTools();
      
     
     }
     
 
     @Override
-    @SuppressWarnings("empty-statement")
     public int size() {
         try {
-            int i = 0;
-            Statement stm = conn.createStatement();
-            ResultSet rs = stm.executeQuery("SELECT Nr FROM IRepresentante");
-            for (;rs.next();i++);
-            return i;
+            return this.table.count();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -55,20 +48,15 @@ class RepresentanteDAO implements Map<Integer,IRepresentante> {
     @Override
     public boolean isEmpty() {
         try {
-            Statement stm = conn.createStatement();
-            ResultSet rs = stm.executeQuery("SELECT Nr FROM IRepresentante");
-            return rs.next();
+            return this.table.isEmpty();
         }
-        catch (Exception e) {throw new NullPointerException(e.getMessage());}    
+        catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
 
     @Override
     public boolean containsKey(Object o) {
-         try {
-            Statement stm = conn.createStatement();
-            String sql = "SELECT Nome FROM IRepresentante WHERE Nr='"+(int)o+"'";
-            ResultSet rs = stm.executeQuery(sql);
-            return rs.next();
+        try {
+            return this.table.containsKey((int)o);
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -80,7 +68,6 @@ class RepresentanteDAO implements Map<Integer,IRepresentante> {
             if(o instanceof IRepresentante) {
             
                 IRepresentante v = (IRepresentante)o;
-                Statement stm = conn.createStatement();
                 
                 int N=this.size();
                 for(int key=1; key<N; key++){
@@ -98,14 +85,14 @@ class RepresentanteDAO implements Map<Integer,IRepresentante> {
     @Override
     public IRepresentante get(Object o) {
         IRepresentante cand = new RepresentanteFactory().createRepresentante();
-        try {
-            Statement stm = conn.createStatement();
-            String sql = "SELECT * FROM Representante WHERE nr='"+(int)o+"'";
-            ResultSet rs = stm.executeQuery(sql);
+        try (Connection conn = this.manager.getConnection()) {
+            PreparedStatement ps = conn.prepareStatement("SELECT * FROM Representante WHERE Nr=?");
+            ps.setInt(1, (int)o);
+            ResultSet rs = ps.executeQuery();
             if (rs.next()){
                 cand.setNr(rs.getInt(1));
                 cand.setNome(rs.getString(2));
-                cand.setDataNasc(parseTools.parseSQLDate(rs.getString(3)));
+                cand.setDataNasc(parseTools.getData(rs, 3));
                 cand.setEstadoCivil(rs.getString(4));
                 cand.setProfissao(rs.getString(5));
                 cand.setLocalidade(rs.getString(6));
@@ -127,10 +114,13 @@ class RepresentanteDAO implements Map<Integer,IRepresentante> {
 
     @Override
     public IRepresentante put(Integer k, IRepresentante v) {
-        try {
-            Statement stm = conn.createStatement();
-            stm.executeUpdate("DELETE FROM Representante WHERE Nr='"+k+"'");
-            int i  = stm.executeUpdate(insert(k,v));
+        try (Connection conn = this.manager.getConnection()) {
+            conn.setAutoCommit(false); // DELETE e INSERT numa só transação
+            PreparedStatement ps = conn.prepareStatement("DELETE FROM Representante WHERE Nr=?");
+            ps.setInt(1, k);
+            ps.executeUpdate();
+            int i  = insert(conn,k,v).executeUpdate();
+            conn.commit();
             IRepresentante c = new RepresentanteFactory().createRepresentante();
             c.setNr(c.getNr());
             c.setNome(c.getNome());
@@ -151,11 +141,11 @@ class RepresentanteDAO implements Map<Integer,IRepresentante> {
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
     
-    private String insert(Integer key, IRepresentante value) {
+    private PreparedStatement insert(Connection conn, Integer key, IRepresentante value) throws SQLException {
         List<Object> obj = new ArrayList<>();
         obj.add(value.getNr());
         obj.add(value.getNome());
-        obj.add(parseTools.parseCalendar(value.getDataNasc()));
+        obj.add(value.getDataNasc());
         obj.add(value.getEstadoCivil());
         obj.add(value.getProfissao());
         obj.add(value.getLocalidade());
@@ -168,17 +158,19 @@ class RepresentanteDAO implements Map<Integer,IRepresentante> {
         obj.add(value.getTelemovel());
         obj.add(value.getRendimentoAgregado());
           
-        return parseTools.createInsert("Representante", obj);
+        PreparedStatement ps = conn.prepareStatement(parseTools.createInsert("Representante", obj.size()));
+        parseTools.bind(ps, obj);
+        return ps;
     }
 
 
     @Override
     public IRepresentante remove(Object o) {
-       try {
-            IRepresentante al = this.get(o);
-            Statement stm = conn.createStatement();
-            String sql = "DELETE '"+o+"' FROM IRepresentante";
-            int i  = stm.executeUpdate(sql);
+        IRepresentante al = this.get(o); // lido antes de pedir a conexão: get pede a sua ao pool
+       try (Connection conn = this.manager.getConnection()) {
+            PreparedStatement ps = conn.prepareStatement("DELETE FROM Representante WHERE Nr=?");
+            ps.setInt(1, (int)o);
+            int i  = ps.executeUpdate();
             return al;
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
@@ -192,73 +184,55 @@ class RepresentanteDAO implements Map<Integer,IRepresentante> {
 
     @Override
      public void clear () {
-        try {
-            Statement stm = conn.createStatement();
-            stm.executeUpdate("DELETE FROM Representante WHERE Representante.Nr>=0;");
+        try (Connection conn = this.manager.getConnection()) {
+            conn.prepareStatement("DELETE FROM Representante WHERE Representante.Nr>=0").executeUpdate();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
     
     @Override
-    public int hashCode() {return Arrays.hashCode(new Object[]{conn, parseTools});}
+    public int hashCode() {return Arrays.hashCode(new Object[]{manager, parseTools});}
 
 
     @Override
     public Set<Integer> keySet() {
         try {
-            Set<Integer> set = new HashSet<>();
-            int n = this.generateRepresentanteKey();
-            for(int i=0; i<n; i++){
-                if(this.containsKey(i)){
-                    set.add(i);
-                }
-            }
-            return set;
+            return this.table.intKeys();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
 
     @Override
     public Collection<IRepresentante> values() {
-       try {
-            Set<IRepresentante> set = new HashSet<>();
-            Set<Integer> keys = new HashSet<>(this.keySet());
-            for(Integer key : keys)
-                set.add(this.get(key));
-            return set;
+        try {
+            Collection<IRepresentante> col = new ArrayList<>();
+            for(Integer key : this.keySet())
+                col.add(this.get(key));
+            return col;
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     } 
 
     @Override
-    public Set<Entry<Integer, IRepresentante>> entrySet() {
-     try {
-            Set<Entry<Integer,IRepresentante>> set;
-            Set<Integer> keys = new HashSet<>(this.keySet());            
-            
+    public Set<Entry<Integer,IRepresentante>> entrySet() {
+        try {
             HashMap<Integer,IRepresentante> map = new HashMap<>();
-            for(Integer key : keys){
-                if(this.containsKey(key)){
-                    map.put(key,this.get(key));
-                }
-            }
+            for(Integer key : this.keySet())
+                map.put(key,this.get(key));
             return map.entrySet();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }   
     
+    /**
+     * Atribui uma nova chave, a partir do bloco de chaves reservado para esta tabela (ver KeyAllocator).
+     * @return Chave que identificará univocamente no sistema um representante.
+     */
     public int generateRepresentanteKey(){
-       try {
-            if(!this.isEmpty()){
-                Statement stm = conn.createStatement();
-                ResultSet rs = stm.executeQuery("SELECT MAX(Nr) FROM Representante;");
-                if(rs.next()){
-                    return(rs.getInt(1) + 1);
-                }
-            } else return 1;
-        } catch (Exception e) {return 1;}
-        
-        return -1;
+        try {
+            return this.keys.next();
+        }
+        catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
     
     @Override
@@ -279,14 +253,4 @@ class RepresentanteDAO implements Map<Integer,IRepresentante> {
             return true;
         }
     }
-    /**
-     * Fechar a ligação à base de dados.
-     */
-        public void close(){
-        try {
-            this.conn.close();
-        } catch (SQLException ex) {
-            Logger.getLogger(RepresentanteDAO.class.getName()).log(Level.SEVERE, null, ex);
-        }
-     }
 }
\ No newline at end of file
@@ -2,7 +2,6 @@ package data_access;
 
 import business.doacoes.IDoador;
 import business.doacoes.IDonativo;
-import business.doacoes.IDonativoMonetario;
 import business.doacoes.IEvento;
 import business.familias.ICandidatura;
 import business.familias.IMembro;
@@ -10,9 +9,11 @@ import business.familias.IRepresentante;
 import business.projetos.IMaterial;
 import business.projetos.IProjeto;
 import business.projetos.ITarefa;
+import business.projetos.ResumoProjeto;
 import business.recursoshumanos.IEquipa;
 import business.recursoshumanos.IFuncionario;
 import business.recursoshumanos.IVoluntario;
+import business.recursoshumanos.ResumoVoluntario;
 import exceptions.CandidaturaNaoExisteException;
 import exceptions.DoadorNaoExisteException;
 import exceptions.DonativoNaoExisteException;
@@ -21,13 +22,22 @@ import exceptions.EventoNaoExisteException;
 import exceptions.FuncionarioNaoExisteException;
 import exceptions.MaterialNaoExisteException;
 import exceptions.MembroNaoExisteException;
+import exceptions.PasswordIncorretaException;
 import exceptions.ProjetoNaoExisteException;
 import exceptions.RepresentanteNaoExisteException;
 import exceptions.TarefaNaoExisteException;
 import exceptions.VoluntarioNaoExisteException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**Curta descrição:
@@ -50,6 +60,8 @@ public class SGHabitat {
     
     // Variáveis de instância
     private IFuncionario funcionario;
+    private Sessao sessao;
+    private volatile boolean permissoesInvalidas;   // permissões do funcionário a reler na próxima verificação
     
     /*Relativo a doacoes*/
     private final DoadorDAO doadores;
@@ -70,6 +82,32 @@ public class SGHabitat {
     private final EquipaDAO equipas;
     private final FuncionarioDAO funcionarios;
     private final VoluntarioDAO voluntarios;
+    private final DonativoAnalyticsDAO analiseDonativos;
+    private final Autenticador autenticador;
+    
+    /*Caches de entidades (read-through) à frente dos DAOs; as escritas invalidam as entradas*/
+    private static final int CACHE_MAX_ENTRADAS = 500;
+    private static final long CACHE_TTL = 5 * 60 * 1000; // ms
+    private final EntityCache<String,IDoador> cacheDoadores;
+    private final EntityCache<Integer,IDonativo> cacheDonativos;
+    private final EntityCache<Integer,IEvento> cacheEventos;
+    private final EntityCache<Integer,ICandidatura> cacheCandidaturas;
+    private final EntityCache<Integer,IMembro> cacheMembros;
+    private final EntityCache<Integer,IRepresentante> cacheRepresentantes;
+    private final EntityCache<Integer,IProjeto> cacheProjetos;
+    private final EntityCache<Integer,ITarefa> cacheTarefas;
+    private final EntityCache<Integer,IEquipa> cacheEquipas;
+    private final EntityCache<Integer,IVoluntario> cacheVoluntarios;
+    
+    /*Índices de pesquisa em memória, carregados na primeira pesquisa e mantidos a cada escrita*/
+    private final SearchIndex<Integer,IMaterial> indiceMateriais;
+    private final SearchIndex<Integer,ITarefa> indiceTarefas;
+    private final SearchIndex<Integer,ICandidatura> indiceCandidaturas;
+    private final SearchIndex<Integer,IMembro> indiceMembros;
+    private final SearchIndex<Integer,IRepresentante> indiceRepresentantes;
+    private final SearchIndex<Integer,IVoluntario> indiceVoluntarios;
+    private final SearchIndex<Integer,IEquipa> indiceEquipas;
+    private final FingerprintIndex impressoesVoluntarios;
     
     
     /**
@@ -77,42 +115,174 @@ public class SGHabitat {
      * @throws ConnectionErrorException 
      */
     public SGHabitat() throws ConnectionErrorException {
+        this.testConnection();
         this.funcionarios = new FuncionarioDAO();
         this.doadores = new DoadorDAO(); this.donativos = new DonativoDAO(); this.eventos = new EventoDAO();
         this.candidaturas = new CandidaturaDAO(); this.membros = new MembroDAO(); this.representantes = new RepresentanteDAO();
-        this.materiais = new MaterialDAO(); this.projetos = new ProjetoDAO(); this.tarefas = new TarefaDAO();
+        this.materiais = new MaterialDAO(); this.projetos = new ProjetoDAO(this.candidaturas); this.tarefas = new TarefaDAO();
         this.equipas = new EquipaDAO(); this.voluntarios = new VoluntarioDAO();
+        this.analiseDonativos = new DonativoAnalyticsDAO();
+        this.verificarEsquema();
+        this.autenticador = new Autenticador(this.funcionarios);
+        
+        // Cada cache guarda e devolve cópias (clone) das entidades
+        this.cacheDoadores = new EntityCache<String,IDoador>("Doadores", this.doadores, CACHE_MAX_ENTRADAS, CACHE_TTL, EntityCache.Politica.LRU) {
+            @Override protected IDoador copiar(IDoador d){return d.clone();}
+        };
+        this.cacheDonativos = new EntityCache<Integer,IDonativo>("Donativos", this.donativos, CACHE_MAX_ENTRADAS, CACHE_TTL, EntityCache.Politica.LRU) {
+            @Override protected IDonativo copiar(IDonativo d){return d.clone();}
+        };
+        this.cacheEventos = new EntityCache<Integer,IEvento>("Eventos", this.eventos, CACHE_MAX_ENTRADAS, CACHE_TTL, EntityCache.Politica.LRU) {
+            @Override protected IEvento copiar(IEvento e){return e.clone();}
+        };
+        this.cacheCandidaturas = new EntityCache<Integer,ICandidatura>("Candidaturas", this.candidaturas, CACHE_MAX_ENTRADAS, CACHE_TTL, EntityCache.Politica.LRU) {
+            @Override protected ICandidatura copiar(ICandidatura c){return c.clone();}
+        };
+        this.cacheMembros = new EntityCache<Integer,IMembro>("Membros", this.membros, CACHE_MAX_ENTRADAS, CACHE_TTL, EntityCache.Politica.LRU) {
+            @Override protected IMembro copiar(IMembro m){return m.clone();}
+        };
+        this.cacheRepresentantes = new EntityCache<Integer,IRepresentante>("Representantes", this.representantes, CACHE_MAX_ENTRADAS, CACHE_TTL, EntityCache.Politica.LRU) {
+            @Override protected IRepresentante copiar(IRepresentante r){return r.clone();}
+        };
+        this.cacheProjetos = new EntityCache<Integer,IProjeto>("Projetos", this.projetos, CACHE_MAX_ENTRADAS, CACHE_TTL, EntityCache.Politica.LRU) {
+            @Override protected IProjeto copiar(IProjeto p){return p.clone();}
+        };
+        this.cacheTarefas = new EntityCache<Integer,ITarefa>("Tarefas", this.tarefas, CACHE_MAX_ENTRADAS, CACHE_TTL, EntityCache.Politica.LRU) {
+            @Override protected ITarefa copiar(ITarefa t){return t.clone();}
+        };
+        this.cacheEquipas = new EntityCache<Integer,IEquipa>("Equipas", this.equipas, CACHE_MAX_ENTRADAS, CACHE_TTL, EntityCache.Politica.LRU) {
+            @Override protected IEquipa copiar(IEquipa e){return e.clone();}
+        };
+        this.cacheVoluntarios = new EntityCache<Integer,IVoluntario>("Voluntarios", this.voluntarios, CACHE_MAX_ENTRADAS, CACHE_TTL, EntityCache.Politica.LRU) {
+            @Override protected IVoluntario copiar(IVoluntario v){return v.clone();}
+        };
+        
+        // Cada índice de pesquisa guarda e devolve cópias (clone) das entidades
+        this.indiceMateriais = new SearchIndex<Integer,IMaterial>() {
+            @Override protected String texto(IMaterial m){return m.getNome();}
+            @Override protected IMaterial copiar(IMaterial m){return m.clone();}
+        };
+        this.indiceTarefas = new SearchIndex<Integer,ITarefa>() {
+            @Override protected String texto(ITarefa t){return t.getDesig();}
+            @Override protected ITarefa copiar(ITarefa t){return t.clone();}
+        };
+        this.indiceCandidaturas = new SearchIndex<Integer,ICandidatura>() {
+            @Override protected String texto(ICandidatura c){return c.getDescricao();}
+            @Override protected ICandidatura copiar(ICandidatura c){return c.clone();}
+        };
+        this.indiceMembros = new SearchIndex<Integer,IMembro>() {
+            @Override protected String texto(IMembro m){return m.getNome();}
+            @Override protected IMembro copiar(IMembro m){return m.clone();}
+        };
+        this.indiceRepresentantes = new SearchIndex<Integer,IRepresentante>() {
+            @Override protected String texto(IRepresentante r){return r.getNome();}
+            @Override protected IRepresentante copiar(IRepresentante r){return r.clone();}
+        };
+        this.indiceVoluntarios = new SearchIndex<Integer,IVoluntario>() {
+            @Override protected String texto(IVoluntario v){return v.getNome();}
+            @Override protected IVoluntario copiar(IVoluntario v){return v.clone();}
+        };
+        this.indiceEquipas = new SearchIndex<Integer,IEquipa>() {
+            @Override protected String texto(IEquipa e){return e.getpOrigem();}
+            @Override protected IEquipa copiar(IEquipa e){return e.clone();}
+        };
+        this.impressoesVoluntarios = new FingerprintIndex();
     }
     
+
+    
     /**
-     * Efetua autenticação de um funcionário no sistema.
+     * Efetua autenticação de um funcionário no sistema e abre uma sessão (ver Autenticador).
+     * A password é verificada contra um hash lento: chamar fora da EDT. Um funcionário que se autenticou
+     * recentemente neste posto é verificado sem acesso à base de dados.
      * @param username
      * @param password
      * @return 0 - funcionário não encontrado, erro; 1 - username incorreto; 2 - password incorreta; 3 - Log in bem sucedido.
      * @throws data_access.ConnectionErrorException
      */
     public int logIn(String username, String password) throws ConnectionErrorException {
-        IFuncionario f = this.funcionarios.getByUsername(username);
-        if(f==null){
+        try {
+            Sessao s = this.autenticador.autenticar(username, password);
+            IFuncionario f = this.autenticador.getFuncionario(s);
+            if(f==null) return 0;
+            this.funcionario=f;
+            this.sessao=s;
+            this.permissoesInvalidas=false;
+            return 3; // campos válidos! (3)
+        } catch (FuncionarioNaoExisteException e) {
             return 1; // username incorreto (1)
-        } else{
-            if(!f.getPassword().equals(password)){
-                return 2; // pass incorreta (2)
-            } else{
-                this.funcionario=f;
-                return 3; // campos válidos! (3)
-            }
+        } catch (PasswordIncorretaException e) {
+            return 2; // pass incorreta (2)
         }
     }
     
+    /**
+     * Termina a sessão do funcionário autenticado. A conta fica em cache para um novo log in neste posto.
+     */
+    public void logOut() {
+        if(this.sessao!=null) this.autenticador.terminar(this.sessao);
+        this.sessao=null;
+        this.funcionario=null;
+    }
+    
+    /**
+     * Desbloqueia o ecrã da sessão atual, sem acesso à base de dados (chamar fora da EDT).
+     * @param password, password introduzida.
+     * @return true caso a password seja a do funcionário com sessão iniciada.
+     */
+    public boolean desbloquear(String password) {
+        return this.sessao!=null && this.autenticador.desbloquear(this.sessao, password);
+    }
+    
+    /**
+     * Fornece a sessão do funcionário autenticado.
+     * @return sessão atual, ou null caso não exista sessão iniciada.
+     */
+    public Sessao rh_getSessao(){return this.sessao;}
+    
     /**
      * Método que permite fechar todas as ligações abertas à base de dados da aplicação
      */
     public void closeDataBaseConnections() {
-        this.doadores.close(); this.donativos.close(); this.eventos.close();
-        this.candidaturas.close(); this.membros.close(); this.representantes.close();
-        this.materiais.close(); this.tarefas.close(); this.projetos.close();
-        this.voluntarios.close(); this.equipas.close(); this.funcionarios.close();
+        MySQLManager.getInstance().shutdown();
+    }
+    
+    /*Pede e devolve uma conexão ao pool, de forma a detetar logo no arranque uma base de dados inacessível*/
+    private void testConnection() throws ConnectionErrorException {
+        try (Connection conn = MySQLManager.getInstance().getConnection()) {
+            if(conn.isClosed()) throw new ConnectionErrorException("Erro ao tentar conectar");
+        } catch (SQLException ex) {
+            throw new ConnectionErrorException("Erro ao tentar conectar");
+        }
+    }
+    
+    /*Deteta no arranque uma base de dados a que falta aplicar algum script da pasta sql (o esquema não é
+      alterado pela aplicação)*/
+    private void verificarEsquema() throws ConnectionErrorException {
+        if(!this.funcionarios.esquemaAtualizado() || !this.voluntarios.esquemaAtualizado()
+                || !KeyAllocator.esquemaAtualizado(MySQLManager.getInstance()))
+            throw new ConnectionErrorException("Base de dados desatualizada: aplique os scripts da pasta sql");
+    }
+    
+    /**
+     * Fornece o pool de conexões partilhado, permitindo consultar os seus contadores de utilização.
+     * @return pool de conexões da aplicação.
+     */
+    public MySQLManager db_getConnectionPool(){return MySQLManager.getInstance();}
+    
+    /**
+     * Fornece as caches de entidades do facade, permitindo consultar as suas estatísticas
+     * e alterar a sua configuração (nº máximo de entradas, tempo de vida, política de remoção).
+     * @return caches indexadas pelo nome do tipo de entidade.
+     */
+    public Map<String,EntityCache<?,?>> db_getCaches(){
+        Map<String,EntityCache<?,?>> caches = new LinkedHashMap<>();
+        for(EntityCache<?,?> c : Arrays.<EntityCache<?,?>>asList(this.cacheDoadores, this.cacheDonativos, this.cacheEventos,
+                this.cacheCandidaturas, this.cacheMembros, this.cacheRepresentantes,
+                this.cacheProjetos, this.cacheTarefas, this.cacheEquipas, this.cacheVoluntarios)){
+            caches.put(c.getNome(), c);
+        }
+        return caches;
     }
     
     
@@ -128,6 +298,18 @@ public class SGHabitat {
      */
     public int do_totalDoadores () { return this.doadores.size();}
     
+    /**
+     * Lê uma página de doadores, ordenada pela base de dados (só são carregadas as linhas pedidas).
+     * @param tamanho, nº de linhas por página.
+     * @param ordem, coluna de ordenação: NIF, Nome, Localidade ou Tipo.
+     * @param ascendente, sentido da ordenação.
+     * @param depois, cursor devolvido pela página anterior (Pagina.getSeguinte), ou null para a primeira página.
+     * @return página de doadores.
+     */
+    public Pagina<IDoador> do_paginaDoadores(int tamanho, String ordem, boolean ascendente, Pagina.Cursor depois) {
+        return this.doadores.pagina(tamanho, ordem, ascendente, depois);
+    }
+    
     /**
      * Retorna um doador, dado um NIF.
      * @param nif, NIF do doador.
@@ -136,8 +318,8 @@ public class SGHabitat {
      */
     public IDoador do_getDoador (String nif) throws DoadorNaoExisteException
     {
-        if(this.doadores.containsKey(nif)){
-            return this.doadores.get(nif);
+        if(this.cacheDoadores.containsKey(nif)){
+            return this.cacheDoadores.get(nif);
         } else throw new DoadorNaoExisteException(nif);        
     }
     
@@ -146,7 +328,7 @@ public class SGHabitat {
      * @param nif, NIF do doador.
      * @return Verdadeiro se existir, caso contrário falso.
      */
-    public boolean do_doadorExiste(String nif){return this.doadores.containsKey(nif);}
+    public boolean do_doadorExiste(String nif){return this.cacheDoadores.containsKey(nif);}
     
     
     /**
@@ -155,9 +337,9 @@ public class SGHabitat {
      * @return Verdadeiro, caso seja removido com sucesso e falso, caso contrário.
      */
     public boolean do_remDoador(String nif) {
-        if(this.doadores.containsKey(nif))
+        if(this.cacheDoadores.containsKey(nif))
         {
-            this.doadores.remove(nif);
+            this.cacheDoadores.remove(nif);
             return true;
         } 
         else return false;
@@ -169,9 +351,9 @@ public class SGHabitat {
      * @return Verdadeiro, caso seja removido com sucesso ou falso, caso contrário.
      */
     public boolean do_saveDoador(IDoador d){
-         if(!this.doadores.containsKey(d.getNIF()))
+         if(!this.cacheDoadores.containsKey(d.getNIF()))
          {
-            this.doadores.put(d.getNIF(), d);
+            this.cacheDoadores.put(d.getNIF(), d);
             return true;
          } 
          else return false;
@@ -183,9 +365,9 @@ public class SGHabitat {
      * @return Verdadeiro, caso a edição seja efectuada com sucesso ou falso, caso contrário.
      */
     public boolean do_editDoador(IDoador d) {
-        if(this.doadores.containsKey(d.getNIF()))
+        if(this.cacheDoadores.containsKey(d.getNIF()))
         {
-            this.doadores.put(d.getNIF(), d);
+            this.cacheDoadores.put(d.getNIF(), d);
             return true;
         } 
         return false;
@@ -197,27 +379,39 @@ public class SGHabitat {
      * @return O montante total.
      */
     public float do_totalDoadoPorUmDoador(String nif) {
-        if (this.doadores.containsKey(nif))
-        {
-            float total = 0;
-            IDoador d = this.doadores.get(nif);
-            Set<Integer> don = d.getDonativos();
-            for (Integer i: don)
-            {
-                IDonativo id = this.donativos.get(i);
-                if (id instanceof IDonativoMonetario)
-                {
-                    IDonativoMonetario idm = (IDonativoMonetario) id;
-                    total += idm.getValor();
-                }
-                
-            }
-            return total;
-        }
-        
-        return 0;
+        return this.analiseDonativos.totalPorDoador(nif);
     }
     
+    /**
+     * Calcula o dinheiro total doado por cada doador.
+     * @return mapa NIF -> montante total.
+     */
+    public Map<String,Float> do_totaisPorDoador() {return this.analiseDonativos.totaisPorDoador();}
+    
+    /**
+     * Calcula o dinheiro total doado para cada projeto.
+     * @return mapa nº do projeto -> montante total.
+     */
+    public Map<Integer,Float> do_totaisPorProjeto() {return this.analiseDonativos.totaisPorProjeto();}
+    
+    /**
+     * Calcula o dinheiro total angariado em cada evento.
+     * @return mapa nº do evento -> montante total.
+     */
+    public Map<Integer,Float> do_totaisPorEvento() {return this.analiseDonativos.totaisPorEvento();}
+    
+    /**
+     * Conta os donativos de cada tipo.
+     * @return mapa tipo (Monetario, Material, Servicos) -> nº de donativos.
+     */
+    public Map<String,Integer> do_nrDonativosPorTipo() {return this.analiseDonativos.nrDonativosPorTipo();}
+    
+    /**
+     * Calcula o dinheiro total doado em cada mês.
+     * @return mapa "aaaa-mm" -> montante total, por ordem cronológica.
+     */
+    public Map<String,Float> do_totaisPorMes() {return this.analiseDonativos.totaisPorMes();}
+    
     
                                             /*Métodos de DonativoDAO*/
     
@@ -227,9 +421,27 @@ public class SGHabitat {
      */
     public int do_totalDonativos () { return this.donativos.size();}
     
+    /**
+     * Percorre todos os donativos sem os carregar de uma só vez (p.e. para exportações e relatórios).
+     * @return cursor sobre os donativos, a fechar no fim (try-with-resources).
+     */
+    public MySQLCursor<IDonativo> do_cursorDonativos() {return this.donativos.cursor();}
+    
+    /**
+     * Lê uma página de donativos, ordenada pela base de dados (só são carregadas as linhas pedidas).
+     * @param tamanho, nº de linhas por página.
+     * @param ordem, coluna de ordenação: NrRecibo, DataEmissao ou Valor.
+     * @param ascendente, sentido da ordenação.
+     * @param depois, cursor devolvido pela página anterior (Pagina.getSeguinte), ou null para a primeira página.
+     * @return página de donativos.
+     */
+    public Pagina<IDonativo> do_paginaDonativos(int tamanho, String ordem, boolean ascendente, Pagina.Cursor depois) {
+        return this.donativos.pagina(tamanho, ordem, ascendente, depois);
+    }
+    
     public IDonativo do_getDonativo (int nr) throws DonativoNaoExisteException{
-        if (this.donativos.containsKey(nr))
-            return this.donativos.get(nr);
+        if (this.cacheDonativos.containsKey(nr))
+            return this.cacheDonativos.get(nr);
         else throw new DonativoNaoExisteException(nr);
         
     }
@@ -240,7 +452,7 @@ public class SGHabitat {
      * @param nr Número de recibo dum donativo.
      * @return Verdadeiro, caso o donativo exista ou falso, caso contrário.
      */
-    public boolean do_donativoExiste (int nr) {return this.donativos.containsKey(nr);}
+    public boolean do_donativoExiste (int nr) {return this.cacheDonativos.containsKey(nr);}
     
     
     /**
@@ -249,9 +461,9 @@ public class SGHabitat {
      * @return Verdadeiro, caso a remoção seja efectuada com sucesso ou falso, caso contrário.
      */
     public boolean do_remDonativo (int nr){
-        if (this.donativos.containsKey(nr))
+        if (this.cacheDonativos.containsKey(nr))
         {
-            this.donativos.remove(nr);
+            this.cacheDonativos.remove(nr);
             return true;
         }
         else return false;
@@ -263,9 +475,9 @@ public class SGHabitat {
      * @return Verdadeiro, caso a operação seja feita com sucesso ou falso, caso contrário.
      */
     public boolean do_saveDonativo (IDonativo d){
-        if(!this.donativos.containsKey(d.getNRecibo()))
+        if(!this.cacheDonativos.containsKey(d.getNRecibo()))
         {
-            this.donativos.put(d.getNRecibo(), d);
+            this.cacheDonativos.put(d.getNRecibo(), d);
             return true;
         } 
         else return false;
@@ -278,9 +490,9 @@ public class SGHabitat {
      * @return Verdadeiro, caso a operação seja efectuada com sucesso ou falso, caso contrário.
      */
     public boolean do_editDonativo (IDonativo d){
-        if (this.donativos.containsKey(d.getNRecibo()))
+        if (this.cacheDonativos.containsKey(d.getNRecibo()))
         {
-            this.donativos.put(d.getNRecibo(),d);
+            this.cacheDonativos.put(d.getNRecibo(),d);
             return true;
         }
         return false;
@@ -305,8 +517,8 @@ public class SGHabitat {
      */
     public IEvento do_getEvento (int nr) throws EventoNaoExisteException
     {
-        if (this.eventos.containsKey(nr))
-            return this.eventos.get(nr);
+        if (this.cacheEventos.containsKey(nr))
+            return this.cacheEventos.get(nr);
         else throw new EventoNaoExisteException(nr);
     }
     
@@ -315,7 +527,7 @@ public class SGHabitat {
      * @param nr Número dum evento.
      * @return Verdadeiro, caso o evento exista ou falso, caso contrário.
      */
-    public boolean do_eventoExiste (int nr) { return this.eventos.containsKey(nr);}
+    public boolean do_eventoExiste (int nr) { return this.cacheEventos.containsKey(nr);}
     
     
     /**
@@ -324,9 +536,9 @@ public class SGHabitat {
      * @return Verdadeiro, caso a remoção seja efectuada com sucesso ou  falso, caso contrário.
      */
     public boolean do_remEvento (int nr){
-        if (this.eventos.containsKey(nr))
+        if (this.cacheEventos.containsKey(nr))
         {
-            this.eventos.remove(nr);
+            this.cacheEventos.remove(nr);
             return true;
         }
         return false;
@@ -339,9 +551,9 @@ public class SGHabitat {
      * @return Verdadeiro, caso a operação seja feita com sucesso ou falso, caso contrário.
      */
     public boolean do_saveEvento (IEvento e){
-        if(!this.eventos.containsKey(e.getNr()))
+        if(!this.cacheEventos.containsKey(e.getNr()))
         {
-            this.eventos.put(e.getNr(), e);
+            this.cacheEventos.put(e.getNr(), e);
             return true;
         } 
         else return false;
@@ -354,9 +566,9 @@ public class SGHabitat {
      * @return Verdadeiro, caso a operação seja feita com sucesso ou falso, caso contrário.
      */
     public boolean do_editEvento (IEvento e){
-        if (this.eventos.containsKey(e.getNr()))
+        if (this.cacheEventos.containsKey(e.getNr()))
         {
-            this.eventos.put(e.getNr(),e);
+            this.cacheEventos.put(e.getNr(),e);
             return true;
         }
         return false;
@@ -375,6 +587,45 @@ public class SGHabitat {
      */
     public int pr_totalProjetos(){return this.projetos.size();}
     
+    /**
+     * Lê uma página de projetos, ordenada pela base de dados (só são carregadas as linhas pedidas).
+     * @param tamanho, nº de linhas por página.
+     * @param ordem, coluna de ordenação: Nr, DataInicial, Estado ou Orcamento.
+     * @param ascendente, sentido da ordenação.
+     * @param depois, cursor devolvido pela página anterior (Pagina.getSeguinte), ou null para a primeira página.
+     * @return página de projetos.
+     */
+    public Pagina<IProjeto> pr_paginaProjetos(int tamanho, String ordem, boolean ascendente, Pagina.Cursor depois) {
+        return this.projetos.pagina(tamanho, ordem, ascendente, depois);
+    }
+    
+    /**
+     * Lê uma página de resumos de projetos para uma listagem, com uma única query e sem candidatura nem
+     * tabelas filhas. O projeto completo é lido com pr_getProjeto quando a linha é aberta.
+     * @param tamanho, nº de linhas por página.
+     * @param ordem, coluna de ordenação: Nr, DataInicial, Estado ou Orcamento.
+     * @param ascendente, sentido da ordenação.
+     * @param depois, cursor devolvido pela página anterior (Pagina.getSeguinte), ou null para a primeira página.
+     * @return página de resumos de projetos.
+     */
+    public Pagina<ResumoProjeto> pr_paginaResumosProjetos(int tamanho, String ordem, boolean ascendente, Pagina.Cursor depois) {
+        return this.projetos.paginaResumos(tamanho, ordem, ascendente, depois);
+    }
+    
+    /**
+     * Carrega vários projetos de uma só vez, com as relações indicadas (p.e. candidaturas, tarefas e
+     * donativos). Cada relação custa uma query para todo o lote, em vez de uma por projeto; as relações
+     * não indicadas ficam por carregar.
+     * @param nrs, nºs dos projetos.
+     * @param prefetch, relações a carregar.
+     * @return lista com os projetos existentes, pela ordem de nrs.
+     */
+    public List<IProjeto> pr_getProjetos(Collection<Integer> nrs, RelacaoProjeto... prefetch) {
+        Set<RelacaoProjeto> rels = EnumSet.noneOf(RelacaoProjeto.class);
+        rels.addAll(Arrays.asList(prefetch));
+        return new ArrayList<>(this.projetos.getAll(nrs, rels).values());
+    }
+    
     /**
      * Retorna um projeto pelo seu nº.
      * @param nr, nº de projeto.
@@ -382,8 +633,8 @@ public class SGHabitat {
      * @throws exceptions.ProjetoNaoExisteException
      */
     public IProjeto pr_getProjeto(int nr) throws ProjetoNaoExisteException {
-        if(this.projetos.containsKey(nr)){
-            return this.projetos.get(nr);
+        if(this.cacheProjetos.containsKey(nr)){
+            return this.cacheProjetos.get(nr);
         } else throw new ProjetoNaoExisteException(nr);
     }
     
@@ -392,7 +643,7 @@ public class SGHabitat {
      * @param nr, chave de projeto que queremos verificar se tem projeto associado.
      * @return true caso projeto com a chave exista, false caso contrário.
      */
-    public boolean pr_projetoExiste(int nr){return this.projetos.containsKey(nr);}
+    public boolean pr_projetoExiste(int nr){return this.cacheProjetos.containsKey(nr);}
     
     /**
      * Elimina um dado projeto.
@@ -400,8 +651,8 @@ public class SGHabitat {
      * @return true caso remoção seja bem sucedida, false caso contrário.
      */
     public boolean pr_remProjeto(int nr) {
-        if(this.projetos.containsKey(nr)){
-            this.projetos.remove(nr);
+        if(this.cacheProjetos.containsKey(nr)){
+            this.cacheProjetos.remove(nr);
             return true;
         } else return false;
     }
@@ -412,8 +663,8 @@ public class SGHabitat {
      * @return true caso seja guardado com sucesso false em caso contrário.
      */
     public boolean saveProjeto(IProjeto p){
-         if(!this.projetos.containsKey(p.getNr())){
-            this.projetos.put(p.getNr(), p);
+         if(!this.cacheProjetos.containsKey(p.getNr())){
+            this.cacheProjetos.put(p.getNr(), p);
             return true;
         } else return false;
     }
@@ -424,8 +675,8 @@ public class SGHabitat {
      * @return true caso projeto seja atualizado, false caso contrário. 
      */
     public boolean pr_editProjeto(IProjeto p) {
-        if(this.projetos.containsKey(p.getNr())){
-            this.projetos.put(p.getNr(), p);
+        if(this.cacheProjetos.containsKey(p.getNr())){
+            this.cacheProjetos.put(p.getNr(), p);
             return true;
         } return false;
     }
@@ -437,8 +688,8 @@ public class SGHabitat {
      * @return true caso se verifiquem alterações no registo do projeto, false caso contrário.
      */
     public boolean updateProjeto(int nr, IProjeto p) {
-        if(this.projetos.containsKey(nr)){
-            this.projetos.put(p.getNr(), p);
+        if(this.cacheProjetos.containsKey(nr)){
+            this.cacheProjetos.put(p.getNr(), p);
             return true;
         } return false;
     }
@@ -477,6 +728,7 @@ public class SGHabitat {
     public boolean pr_remMaterial(int nr) {
         if(this.materiais.containsKey(nr)){
             this.materiais.remove(nr);
+            this.indiceMateriais.remove(nr);
             return true;
         } else return false;
     }
@@ -489,6 +741,7 @@ public class SGHabitat {
     public boolean pr_saveProjeto(IMaterial m){
          if(!this.materiais.containsKey(m.getId())){
             this.materiais.put(m.getId(), m);
+            this.indiceMateriais.put(m.getId(), m);
             return true;
         } else return false;
     }
@@ -501,6 +754,7 @@ public class SGHabitat {
     public boolean pr_editMaterial(IMaterial m) {
         if(this.materiais.containsKey(m.getId())){
             this.materiais.put(m.getId(), m);
+            this.indiceMateriais.put(m.getId(), m);
             return true;
         } return false;
     }
@@ -512,14 +766,8 @@ public class SGHabitat {
      * @throws exceptions.MaterialNaoExisteException
      */
     public Set<IMaterial> pr_searchEquipa(String searchinput) throws MaterialNaoExisteException {
-        Set<IMaterial> set = new HashSet<>();
-        String lowersearch = searchinput.trim().toLowerCase();
-        for(IMaterial e : this.materiais.values()){
-            if(e.getNome().toLowerCase().contains(lowersearch)){
-                 set.add(e);
-            }
-        }
-        return set;
+        if(!this.indiceMateriais.isLoaded()) this.indiceMateriais.load(this.materiais.entrySet());
+        return new LinkedHashSet<>(this.indiceMateriais.searchValues(searchinput));
     }
     
     /* Método de TarefaDAO */    
@@ -536,8 +784,8 @@ public class SGHabitat {
      * @throws exceptions.TarefaNaoExisteException
      */
     public ITarefa pr_getTarefa(int nr) throws TarefaNaoExisteException {
-        if(this.tarefas.containsKey(nr)){
-            return this.tarefas.get(nr);
+        if(this.cacheTarefas.containsKey(nr)){
+            return this.cacheTarefas.get(nr);
         } else throw new TarefaNaoExisteException(nr);
     }
     
@@ -546,7 +794,7 @@ public class SGHabitat {
      * @param nr, chave de tarefa que queremos verificar se tem tarefa associado.
      * @return true caso tarefa com a chave exista, false caso contrário.
      */
-    public boolean pr_tarefaExiste(int nr){return this.tarefas.containsKey(nr);}
+    public boolean pr_tarefaExiste(int nr){return this.cacheTarefas.containsKey(nr);}
     
     /**
      * Elimina uma dada tarefa.
@@ -554,8 +802,9 @@ public class SGHabitat {
      * @return true caso remoção seja bem sucedida, false caso contrário.
      */
     public boolean pr_remTarefa(int nr) {
-        if(this.tarefas.containsKey(nr)){
-            this.tarefas.remove(nr);
+        if(this.cacheTarefas.containsKey(nr)){
+            this.cacheTarefas.remove(nr);
+            this.indiceTarefas.remove(nr);
             return true;
         } else return false;
     }
@@ -566,8 +815,9 @@ public class SGHabitat {
      * @return true caso seja guardado com sucesso false em caso contrário.
      */
     public boolean pr_saveTarefa(ITarefa t){
-         if(!this.tarefas.containsKey(t.getId())){
-            this.tarefas.put(t.getId(), t);
+         if(!this.cacheTarefas.containsKey(t.getId())){
+            this.cacheTarefas.put(t.getId(), t);
+            this.indiceTarefas.put(t.getId(), t);
             return true;
         } else return false;
     }
@@ -578,8 +828,9 @@ public class SGHabitat {
      * @return true caso tarefa seja atualizada, false caso contrário. 
      */
     public boolean pr_editTarefa(ITarefa t) {
-        if(this.tarefas.containsKey(t.getId())){
-            this.tarefas.put(t.getId(), t);
+        if(this.cacheTarefas.containsKey(t.getId())){
+            this.cacheTarefas.put(t.getId(), t);
+            this.indiceTarefas.put(t.getId(), t);
             return true;
         } return false;
     }
@@ -591,14 +842,8 @@ public class SGHabitat {
      * @throws exceptions.TarefaNaoExisteException
      */
     public Set<ITarefa> pr_searchTarefa(String searchinput) throws TarefaNaoExisteException {
-        Set<ITarefa> set = new HashSet<>();
-        String lowersearch = searchinput.trim().toLowerCase();
-        for(ITarefa t : this.tarefas.values()){
-            if(t.getDesig().toLowerCase().contains(lowersearch)){
-                 set.add(t);
-            }
-        }
-        return set;
+        if(!this.indiceTarefas.isLoaded()) this.indiceTarefas.load(this.cacheTarefas.entrySet());
+        return new LinkedHashSet<>(this.indiceTarefas.searchValues(searchinput));
     }
     
     
@@ -624,8 +869,8 @@ public class SGHabitat {
      * @throws exceptions.CandidaturaNaoExisteException
      */
     public ICandidatura fm_getCandidatura(int nr) throws CandidaturaNaoExisteException {
-        if(this.candidaturas.containsKey(nr)){
-            return this.candidaturas.get(nr);
+        if(this.cacheCandidaturas.containsKey(nr)){
+            return this.cacheCandidaturas.get(nr);
         } else throw new CandidaturaNaoExisteException(nr);
     }
     
@@ -634,7 +879,7 @@ public class SGHabitat {
      * @param nr, queremos verificar se candidatura existe.
      * @return true caso candidatura com a chave exista, false caso contrário.
      */
-    public boolean fm_CandidaturaExiste(int nr){return this.candidaturas.containsKey(nr);}
+    public boolean fm_CandidaturaExiste(int nr){return this.cacheCandidaturas.containsKey(nr);}
     
     /**
      * Elimina uma dada Candidatura.
@@ -642,8 +887,10 @@ public class SGHabitat {
      * @return true caso remoção seja bem sucedida, false caso contrário.
      */
     public boolean fm_remCandidatura(int nr) {
-        if(this.candidaturas.containsKey(nr)){
-            this.candidaturas.remove(nr);
+        if(this.cacheCandidaturas.containsKey(nr)){
+            this.cacheCandidaturas.remove(nr);
+            this.indiceCandidaturas.remove(nr);
+            this.cacheProjetos.invalidateAll(); // os projetos incluem a sua candidatura
             return true;
         } else return false;
     }
@@ -654,8 +901,10 @@ public class SGHabitat {
      * @return true caso o registo seja guardado, false caso contrário.
      */
     public boolean fm_saveCandidatura(ICandidatura c){
-        if(!this.candidaturas.containsKey(c.getNr())){
-            this.candidaturas.put(c.getNr(), c);
+        if(!this.cacheCandidaturas.containsKey(c.getNr())){
+            this.cacheCandidaturas.put(c.getNr(), c);
+            this.indiceCandidaturas.put(c.getNr(), c);
+            this.cacheProjetos.invalidateAll(); // os projetos incluem a sua candidatura
             return true;
         } else return false;
     }
@@ -666,8 +915,10 @@ public class SGHabitat {
      * @return true caso voluntário seja atualizado, false caso contrário. 
      */
     public boolean fm_editCandidatura(ICandidatura c) {
-        if(this.candidaturas.containsKey(c.getNr())){
-            this.candidaturas.put(c.getNr(), c);
+        if(this.cacheCandidaturas.containsKey(c.getNr())){
+            this.cacheCandidaturas.put(c.getNr(), c);
+            this.indiceCandidaturas.put(c.getNr(), c);
+            this.cacheProjetos.invalidateAll(); // os projetos incluem a sua candidatura
             return true;
         } return false;
     }
@@ -678,14 +929,8 @@ public class SGHabitat {
     * @throws CandidaturaNaoExisteException 
     */
     public Set<ICandidatura> fm_searchCandidatura(String searchinput) throws CandidaturaNaoExisteException {
-        Set<ICandidatura> set = new HashSet<>();
-        String lowersearch = searchinput.trim().toLowerCase();
-        for(ICandidatura e : this.candidaturas.values()){
-            if(e.getDescricao().toLowerCase().contains(lowersearch)){
-                 set.add(e);
-            }
-        }
-        return set;
+        if(!this.indiceCandidaturas.isLoaded()) this.indiceCandidaturas.load(this.cacheCandidaturas.entrySet());
+        return new LinkedHashSet<>(this.indiceCandidaturas.searchValues(searchinput));
     }
     
     /*Método de MembroDAO*/    
@@ -702,8 +947,8 @@ public class SGHabitat {
      * @throws exceptions.MembroNaoExisteException
      */
     public IMembro rh_getMembro(int id) throws MembroNaoExisteException {
-        if(this.membros.containsKey(id)){
-            return this.membros.get(id);
+        if(this.cacheMembros.containsKey(id)){
+            return this.cacheMembros.get(id);
         } else throw new MembroNaoExisteException(id);
     }
     
@@ -712,7 +957,7 @@ public class SGHabitat {
      * @param id, verifica se Membro existe.
      * @return true caso Membro com a chave exista, false caso contrário.
      */
-    public boolean fm_MembroExiste(int id){return this.membros.containsKey(id);}
+    public boolean fm_MembroExiste(int id){return this.cacheMembros.containsKey(id);}
 
     /**
      * Retorna um set de equipas criados com base num campo de pesquisa.
@@ -721,14 +966,8 @@ public class SGHabitat {
      * @throws exceptions.MembroNaoExisteException
      */
     public Set<IMembro> fm_searchMembro(String searchinput) throws MembroNaoExisteException {
-        Set<IMembro> set = new HashSet<>();
-        String lowersearch = searchinput.trim().toLowerCase();
-        for(IMembro e : this.membros.values()){
-            if(e.getNome().toLowerCase().contains(lowersearch)){
-                 set.add(e);
-            }
-        }
-        return set;
+        if(!this.indiceMembros.isLoaded()) this.indiceMembros.load(this.cacheMembros.entrySet());
+        return new LinkedHashSet<>(this.indiceMembros.searchValues(searchinput));
     }
     
     /**
@@ -737,8 +976,9 @@ public class SGHabitat {
      * @return true caso remoção seja bem sucedida, false caso contrário.
      */
     public boolean fm_remMembro(int id) {
-        if(this.membros.containsKey(id)){
-            this.membros.remove(id);
+        if(this.cacheMembros.containsKey(id)){
+            this.cacheMembros.remove(id);
+            this.indiceMembros.remove(id);
             return true;
         } else return false;
     }
@@ -749,8 +989,9 @@ public class SGHabitat {
      * @return true caso o registo seja guardado, false caso contrário.
      */
     public boolean fm_saveMembro(IMembro m){
-        if(!this.membros.containsKey(m.getId())){
-            this.membros.put(m.getId(), m);
+        if(!this.cacheMembros.containsKey(m.getId())){
+            this.cacheMembros.put(m.getId(), m);
+            this.indiceMembros.put(m.getId(), m);
             return true;
         } else return false;
     }
@@ -761,8 +1002,9 @@ public class SGHabitat {
      * @return true caso equipa seja atualizada, false caso contrário. 
      */
     public boolean fm_editMembro(IMembro m ) {
-        if(this.membros.containsKey(m.getId())){
-            this.membros.put(m.getId(), m);
+        if(this.cacheMembros.containsKey(m.getId())){
+            this.cacheMembros.put(m.getId(), m);
+            this.indiceMembros.put(m.getId(), m);
             return true;
         } return false;
     }
@@ -793,8 +1035,8 @@ public class SGHabitat {
      * @throws exceptions.RepresentanteNaoExisteException
      */
     public IRepresentante fm_getRepresentante(int nr) throws RepresentanteNaoExisteException {
-        if(this.representantes.containsKey(nr)){
-            return this.representantes.get(nr);
+        if(this.cacheRepresentantes.containsKey(nr)){
+            return this.cacheRepresentantes.get(nr);
         } else throw new RepresentanteNaoExisteException(nr);
     }
     
@@ -803,7 +1045,7 @@ public class SGHabitat {
      * @param nr, queremos verificar se Representante existe.
      * @return true caso Representante com a chave exista, false caso contrário.
      */
-    public boolean fm_RepresentanteExiste(int nr){return this.representantes.containsKey(nr);}
+    public boolean fm_RepresentanteExiste(int nr){return this.cacheRepresentantes.containsKey(nr);}
     
     /**
      * Elimina um dado Representante.
@@ -811,8 +1053,9 @@ public class SGHabitat {
      * @return true caso remoção seja bem sucedida, false caso contrário.
      */
     public boolean fm_remRepresentante(int nr) {
-        if(this.representantes.containsKey(nr)){
-            this.representantes.remove(nr);
+        if(this.cacheRepresentantes.containsKey(nr)){
+            this.cacheRepresentantes.remove(nr);
+            this.indiceRepresentantes.remove(nr);
             return true;
         } else return false;
     }
@@ -823,8 +1066,9 @@ public class SGHabitat {
      * @return true caso o registo seja guardado, false caso contrário.
      */
     public boolean fm_saveRepresentante(IRepresentante c){
-        if(!this.representantes.containsKey(c.getNr())){
-            this.representantes.put(c.getNr(), c);
+        if(!this.cacheRepresentantes.containsKey(c.getNr())){
+            this.cacheRepresentantes.put(c.getNr(), c);
+            this.indiceRepresentantes.put(c.getNr(), c);
             return true;
         } else return false;
     }
@@ -835,8 +1079,9 @@ public class SGHabitat {
      * @return true caso voluntário seja atualizado, false caso contrário. 
      */
     public boolean fm_editRepresentante(IRepresentante c) {
-        if(this.representantes.containsKey(c.getNr())){
-            this.representantes.put(c.getNr(), c);
+        if(this.cacheRepresentantes.containsKey(c.getNr())){
+            this.cacheRepresentantes.put(c.getNr(), c);
+            this.indiceRepresentantes.put(c.getNr(), c);
             return true;
         } return false;
     }
@@ -848,14 +1093,8 @@ public class SGHabitat {
      * @throws RepresentanteNaoExisteException 
      */
     public Set<IRepresentante> fm_searchRepresentante(String searchinput) throws RepresentanteNaoExisteException {
-        Set<IRepresentante> set = new HashSet<>();
-        String lowersearch = searchinput.trim().toLowerCase();
-        for(IRepresentante e : this.representantes.values()){
-            if(e.getNome().toLowerCase().contains(lowersearch)){
-                 set.add(e);
-            }
-        }
-        return set;
+        if(!this.indiceRepresentantes.isLoaded()) this.indiceRepresentantes.load(this.cacheRepresentantes.entrySet());
+        return new LinkedHashSet<>(this.indiceRepresentantes.searchValues(searchinput));
     }
     
     
@@ -885,8 +1124,8 @@ public class SGHabitat {
      * @throws exceptions.VoluntarioNaoExisteException
      */
     public IVoluntario rh_getVoluntario(int nr) throws VoluntarioNaoExisteException {
-        if(this.voluntarios.containsKey(nr)){
-            return this.voluntarios.get(nr);
+        if(this.cacheVoluntarios.containsKey(nr)){
+            return this.cacheVoluntarios.get(nr);
         } else throw new VoluntarioNaoExisteException(nr);
     }
     
@@ -895,7 +1134,7 @@ public class SGHabitat {
      * @param nr, chave de voluntário que queremos verificar se tem voluntário associado.
      * @return true caso voluntário com a chave exista, false caso contrário.
      */
-    public boolean rh_voluntarioExiste(int nr){return this.voluntarios.containsKey(nr);}
+    public boolean rh_voluntarioExiste(int nr){return this.cacheVoluntarios.containsKey(nr);}
 
     /**
      * Retorna um set de voluntários criados com base num campo de pesquisa.
@@ -904,14 +1143,28 @@ public class SGHabitat {
      * @throws exceptions.VoluntarioNaoExisteException
      */
     public Set<IVoluntario> rh_searchVoluntario(String searchinput) throws VoluntarioNaoExisteException {
-        Set<IVoluntario> set = new HashSet<>();
-        String lowersearch = searchinput.trim().toLowerCase();
-        for(IVoluntario v : this.voluntarios.values()){
-            if(v.getNome().toLowerCase().contains(lowersearch)){
-                 set.add(v);
-            }
-        }
-        return set;
+        this.rh_warmSearchVoluntario();
+        return new LinkedHashSet<>(this.indiceVoluntarios.searchValues(searchinput));
+    }
+    
+    /**
+     * Refina os resultados de uma pesquisa de voluntários para uma pesquisa mais longa que contém a anterior
+     * (pesquisa à medida que se escreve), filtrando-os em memória.
+     * @param anteriores, resultados da pesquisa anterior.
+     * @param searchinput, nova pesquisa, que contém o texto da anterior.
+     * @return set ordenado por relevância com os voluntários encontrados.
+     */
+    public Set<IVoluntario> rh_refineSearchVoluntario(Collection<IVoluntario> anteriores, String searchinput){
+        List<Integer> nrs = new ArrayList<>(anteriores.size());
+        for(IVoluntario v : anteriores) nrs.add(v.getNr());
+        return new LinkedHashSet<>(this.indiceVoluntarios.refine(nrs, searchinput));
+    }
+    
+    /**
+     * Carrega antecipadamente o índice de pesquisa de voluntários, para que a primeira pesquisa seja imediata.
+     */
+    public void rh_warmSearchVoluntario(){
+        if(!this.indiceVoluntarios.isLoaded()) this.indiceVoluntarios.load(this.cacheVoluntarios.entrySet());
     }
     
     /**
@@ -920,7 +1173,11 @@ public class SGHabitat {
      * @return true caso remoção seja bem sucedida, false caso contrário.
      */
     public boolean rh_remVoluntario(int nr) {
-        return (this.voluntarios.remove(nr)!=null);
+        boolean removido = (this.cacheVoluntarios.remove(nr)!=null);
+        this.indiceVoluntarios.remove(nr);
+        this.impressoesVoluntarios.remove(nr);
+        this.invalidarDependentesVoluntarios();
+        return removido;
     }
     
     /**
@@ -929,7 +1186,110 @@ public class SGHabitat {
      * @return true caso o registo seja guardado, false caso contrário.
      */
     public boolean rh_saveVoluntario(IVoluntario v){
-        return (this.voluntarios.put(v.getNr(),v)!=null);
+        boolean guardado = (this.cacheVoluntarios.put(v.getNr(),v)!=null);
+        // Índices só depois de o voluntário estar guardado (uma gravação falhada não deixa rasto)
+        this.indiceVoluntarios.put(v.getNr(), v);
+        this.impressoesVoluntarios.put(v);
+        this.invalidarDependentesVoluntarios();
+        return guardado;
+    }
+    
+    /**
+     * Guarda vários voluntários na base de dados numa só transação (p.e. importação de fichas).
+     * @param vols, voluntários a guardar (com nº já atribuído).
+     */
+    public void rh_saveVoluntarios(Collection<IVoluntario> vols){
+        Map<Integer,IVoluntario> m = new LinkedHashMap<>();
+        for(IVoluntario v : vols) m.put(v.getNr(), v);
+        this.voluntarios.putAll(m);
+        for(IVoluntario v : vols){
+            this.cacheVoluntarios.invalidate(v.getNr());
+            this.indiceVoluntarios.put(v.getNr(), v);
+            this.impressoesVoluntarios.put(v);
+        }
+        this.invalidarDependentesVoluntarios();
+    }
+    
+    /*Guardar ou remover voluntários reescreve ProjetosVoluntarios (voluntários de cada projeto) e a remoção
+      altera as equipas (voluntários e chefe): os projetos e equipas em cache deixam de estar atualizados*/
+    private void invalidarDependentesVoluntarios(){
+        this.cacheProjetos.invalidateAll();
+        this.cacheEquipas.invalidateAll();
+    }
+    
+    /**
+     * Procura um voluntário já registado com os mesmos dados de identificação (nome, data de nascimento
+     * e contacto), p.e. uma ficha carregada duas vezes. A verificação é feita em memória.
+     * @param v, voluntário a verificar.
+     * @return nº do voluntário registado (o próprio, caso v já esteja guardado), ou null caso não exista.
+     */
+    public Integer rh_findDuplicadoVoluntario(IVoluntario v){
+        this.warmImpressoesVoluntarios();
+        return this.impressoesVoluntarios.duplicado(v);
+    }
+    
+    /**
+     * Procura voluntários registados com nome semelhante (fonética ou pequenas diferenças de escrita),
+     * candidatos a duplicados a confirmar pelo utilizador.
+     * @param v, voluntário a verificar.
+     * @return set de voluntários semelhantes, sem o próprio.
+     */
+    public Set<IVoluntario> rh_findSemelhantesVoluntario(IVoluntario v){
+        this.warmImpressoesVoluntarios();
+        Set<IVoluntario> res = new LinkedHashSet<>();
+        for(int nr : this.impressoesVoluntarios.semelhantes(v)){
+            IVoluntario s = this.cacheVoluntarios.get(nr);
+            if(s!=null) res.add(s);
+        }
+        return res;
+    }
+    
+    /*Carrega o índice de impressões digitais na primeira utilização*/
+    private void warmImpressoesVoluntarios(){
+        if(!this.impressoesVoluntarios.isLoaded()) this.impressoesVoluntarios.load(this.voluntarios.loadFingerprints());
+    }
+    
+    /**
+     * Percorre todos os voluntários sem os carregar de uma só vez (p.e. para exportações e relatórios).
+     * @return cursor sobre os voluntários, a fechar no fim (try-with-resources).
+     */
+    public MySQLCursor<IVoluntario> rh_cursorVoluntarios() {return this.voluntarios.cursor();}
+    
+    /**
+     * Lê uma página de voluntários, ordenada pela base de dados (só são carregadas as linhas pedidas).
+     * @param tamanho, nº de linhas por página.
+     * @param ordem, coluna de ordenação: Nr, Nome, Localidade, DataInicioVol ou Horas.
+     * @param ascendente, sentido da ordenação.
+     * @param depois, cursor devolvido pela página anterior (Pagina.getSeguinte), ou null para a primeira página.
+     * @return página de voluntários.
+     */
+    public Pagina<IVoluntario> rh_paginaVoluntarios(int tamanho, String ordem, boolean ascendente, Pagina.Cursor depois) {
+        return this.voluntarios.pagina(tamanho, ordem, ascendente, depois);
+    }
+    
+    /**
+     * Lê uma página de resumos de voluntários para uma listagem, com uma única query e sem línguas nem horas
+     * por projeto. O voluntário completo é lido com rh_getVoluntario quando a linha é aberta.
+     * @param tamanho, nº de linhas por página.
+     * @param ordem, coluna de ordenação: Nr, Nome, Localidade, DataInicioVol ou Horas.
+     * @param ascendente, sentido da ordenação.
+     * @param depois, cursor devolvido pela página anterior (Pagina.getSeguinte), ou null para a primeira página.
+     * @return página de resumos de voluntários.
+     */
+    public Pagina<ResumoVoluntario> rh_paginaResumosVoluntarios(int tamanho, String ordem, boolean ascendente, Pagina.Cursor depois) {
+        return this.voluntarios.paginaResumos(tamanho, ordem, ascendente, depois);
+    }
+    
+    /**
+     * Cursor de uma posição na listagem de voluntários: rh_paginaResumosVoluntarios(tamanho, ordem, ascendente, c)
+     * com este cursor lê as linhas seguintes a essa posição, sem ler as páginas anteriores.
+     * @param ordem, coluna de ordenação: Nr, Nome, Localidade, DataInicioVol ou Horas.
+     * @param ascendente, sentido da ordenação.
+     * @param linha, posição (0 para o primeiro voluntário).
+     * @return cursor, ou null caso não exista essa posição.
+     */
+    public Pagina.Cursor rh_cursorEmVoluntarios(String ordem, boolean ascendente, int linha) {
+        return this.voluntarios.cursorEm(ordem, ascendente, linha);
     }
     
     /**
@@ -937,6 +1297,13 @@ public class SGHabitat {
      * @return chave única gerada automaticamente pelo DAO destinada a um novo voluntário 
      */
     public int rh_generateVoluntarioKey(){return this.voluntarios.generateVoluntarioKey();}
+    
+    /**
+     * Reserva um intervalo de nºs de voluntário consecutivos, únicos mesmo com vários postos a registar ao mesmo tempo.
+     * @param n, nº de chaves a reservar.
+     * @return primeiro nº do intervalo; os restantes são os n-1 seguintes.
+     */
+    public int rh_reserveVoluntarioKeys(int n){return this.voluntarios.reserveVoluntarioKeys(n);}
 
     /**
      * 
@@ -947,15 +1314,36 @@ public class SGHabitat {
      * @return true caso id de projeto exista e sejam inseridas as horas, false caso contrário
      */
     public boolean rh_addHorasVoluntariado(int nrproj, int vid, int horas){
-        if(this.projetos.containsKey(nrproj)){
+        if(this.cacheProjetos.containsKey(nrproj)){
             this.voluntarios.addHorasVoluntariado(nrproj,vid,horas);
+            this.cacheVoluntarios.invalidate(vid);
+            if(this.indiceVoluntarios.isLoaded()) this.indiceVoluntarios.put(vid, this.cacheVoluntarios.get(vid));
+            this.cacheProjetos.invalidate(nrproj);
             return true;
         } else return false;
     }
     
-    public boolean rh_containsVoluntario(IVoluntario v){return this.voluntarios.containsValue(v);}
+    /**
+     * Total de horas de voluntariado de cada projeto (p.e. para o relatório anual), sem carregar voluntários.
+     * @return mapa nº do projeto -> horas.
+     */
+    public Map<Integer,Integer> rh_horasPorProjeto(){return this.voluntarios.horasPorProjeto();}
+
+    /**
+     * Total de horas de voluntariado de cada equipa, sem carregar voluntários.
+     * @return mapa id da equipa (-1 para os voluntários sem equipa) -> horas.
+     */
+    public Map<Integer,Integer> rh_horasPorEquipa(){return this.voluntarios.horasPorEquipa();}
+
+    /**
+     * Total de horas de voluntariado de todos os voluntários, sem carregar voluntários.
+     * @return nº total de horas.
+     */
+    public int rh_totalHorasVoluntariado(){return this.voluntarios.totalHoras();}
+
+    public boolean rh_containsVoluntario(IVoluntario v){return this.cacheVoluntarios.containsValue(v);}
     
-    public Collection<IVoluntario> rh_voluntariosValues(){return this.voluntarios.values();}
+    public Collection<IVoluntario> rh_voluntariosValues(){return this.cacheVoluntarios.values();}
     
     /*Método de EquipaDAO*/    
     /**
@@ -971,8 +1359,8 @@ public class SGHabitat {
      * @throws exceptions.EquipaNaoExisteException
      */
     public IEquipa rh_getEquipa(int id) throws EquipaNaoExisteException {
-        if(this.equipas.containsKey(id)){
-            return this.equipas.get(id);
+        if(this.cacheEquipas.containsKey(id)){
+            return this.cacheEquipas.get(id);
         } else throw new EquipaNaoExisteException(id);
     }
     
@@ -981,7 +1369,7 @@ public class SGHabitat {
      * @param id, chave de equipa que queremos eerificar se tem equipa associado.
      * @return true caso equipa com a chave exista, false caso contrário.
      */
-    public boolean rh_equipaExiste(int id){return this.equipas.containsKey(id);}
+    public boolean rh_equipaExiste(int id){return this.cacheEquipas.containsKey(id);}
 
     /**
      * Retorna um set de equipas criados com base num campo de pesquisa.
@@ -990,14 +1378,8 @@ public class SGHabitat {
      * @throws exceptions.EquipaNaoExisteException
      */
     public Set<IEquipa> rh_searchEquipa(String searchinput) throws EquipaNaoExisteException {
-        Set<IEquipa> set = new HashSet<>();
-        String lowersearch = searchinput.trim().toLowerCase();
-        for(IEquipa e : this.equipas.values()){
-            if(e.getpOrigem().toLowerCase().contains(lowersearch)){
-                 set.add(e);
-            }
-        }
-        return set;
+        if(!this.indiceEquipas.isLoaded()) this.indiceEquipas.load(this.cacheEquipas.entrySet());
+        return new LinkedHashSet<>(this.indiceEquipas.searchValues(searchinput));
     }
     
     /**
@@ -1006,8 +1388,9 @@ public class SGHabitat {
      * @return true caso remoção seja bem sucedida, false caso contrário.
      */
     public boolean rh_remEquipa(int id) {
-        if(this.equipas.containsKey(id)){
-            this.equipas.remove(id);
+        if(this.cacheEquipas.containsKey(id)){
+            this.cacheEquipas.remove(id);
+            this.indiceEquipas.remove(id);
             return true;
         } else return false;
     }
@@ -1018,8 +1401,9 @@ public class SGHabitat {
      * @return true caso o registo seja guardado, false caso contrário.
      */
     public boolean rh_saveEquipa(IEquipa e){
-        if(!this.equipas.containsKey(e.getId())){
-            this.equipas.put(e.getId(), e);
+        if(!this.cacheEquipas.containsKey(e.getId())){
+            this.cacheEquipas.put(e.getId(), e);
+            this.indiceEquipas.put(e.getId(), e);
             return true;
         } else return false;
     }
@@ -1030,8 +1414,9 @@ public class SGHabitat {
      * @return true caso equipa seja atualizada, false caso contrário. 
      */
     public boolean rh_editEquipa(IEquipa e) {
-        if(this.equipas.containsKey(e.getId())){
-            this.equipas.put(e.getId(), e);
+        if(this.cacheEquipas.containsKey(e.getId())){
+            this.cacheEquipas.put(e.getId(), e);
+            this.indiceEquipas.put(e.getId(), e);
             return true;
         } return false;
     }
@@ -1059,7 +1444,7 @@ public class SGHabitat {
      * @return String que é nome do chefe da equipa.
      */
     public String rh_getNomeChefeEq(int id){
-        return this.voluntarios.get(this.equipas.get(id).getChefe()).getFirstAndLastName();
+        return this.cacheVoluntarios.get(this.cacheEquipas.get(id).getChefe()).getFirstAndLastName();
     }
     
     
@@ -1099,7 +1484,39 @@ public class SGHabitat {
      * @param perms, permissões que queremos averiguar.
      * @return true caso o funcionário possua as permissões false caso contrário.
      */
-    public boolean rh_funHasPermissions(List<String> perms){return this.funcionario.hasPermissions(perms);}
+    public boolean rh_funHasPermissions(List<String> perms){
+        this.validarPermissoes();
+        return this.funcionario.hasPermissions(perms);
+    }
+    
+    /**
+     * Verificar determinadas permissões para um funcionário, com uma só operação sobre a máscara das suas
+     * permissões (compilada uma vez por sessão).
+     * @param mascara, máscara das permissões que queremos averiguar (Permissao.mascara).
+     * @return true caso o funcionário possua todas as permissões, false caso contrário.
+     */
+    public boolean rh_funHasPermissions(int mascara){
+        this.validarPermissoes();
+        return this.sessao.hasPermissions(mascara);
+    }
+    
+    /**
+     * Invalida as permissões do funcionário com sessão iniciada (p.e. depois de alterado o seu papel):
+     * são lidas de novo da base de dados na próxima verificação.
+     */
+    public void rh_invalidatePermissions(){
+        this.permissoesInvalidas=true;
+        this.autenticador.invalidar(this.funcionario.getUsername());
+    }
+    
+    /*Relê as permissões caso tenham sido invalidadas; caso contrário não há acesso à base de dados*/
+    private void validarPermissoes(){
+        if(this.permissoesInvalidas){
+            this.permissoesInvalidas=false;
+            this.funcionario.setPermissions(this.funcionarios.getPermissions(this.funcionario.getId()));
+            this.sessao = this.sessao.comPermissoes(this.funcionario.getPermissionsMask());
+        }
+    }
     
     /**
      * Criar conjunto de chaves de todos os voluntários.
@@ -0,0 +1,268 @@
+package data_access;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Índice de pesquisa em memória sobre um campo de texto de um tipo de entidade.
+ *
+ * O texto de cada entidade é normalizado (minúsculas, sem acentos, espaços colapsados) e decomposto
+ * em n-gramas de 1 a 3 caracteres, guardados num índice invertido (n-grama -> chaves). Uma pesquisa
+ * de até 3 caracteres é respondida diretamente pelo índice; as mais longas intersetam as listas dos
+ * seus trigramas e confirmam os candidatos sobre o texto normalizado.
+ *
+ * O índice é carregado de uma só vez na primeira pesquisa (load) e mantido depois de forma incremental
+ * a cada put/remove feito pelo facade.
+ *
+ * Como EntityCache, o índice guarda a sua própria cópia de cada entidade indexada com put (ver copiar) e
+ * devolve sempre cópias: alterar um resultado de uma pesquisa (p.e. num formulário cuja gravação é
+ * cancelada ou falha) não altera o índice.
+ * @author Jorge Caldas, José Cortez, Marcelo Gonçalves, Ricardo Silva
+ * @version 2015.01.13
+ * @param <K> tipo da chave.
+ * @param <V> tipo da entidade.
+ */
+
+public abstract class SearchIndex<K,V> {
+
+    private static final int N = 3; // tamanho máximo dos n-gramas
+
+    // Variáveis de instância
+    private final Map<K,V> entidades;
+    private final Map<K,String> textos; // texto normalizado de cada entidade
+    private final Map<String,Set<K>> ngramas;
+    private boolean carregado;
+
+    /**
+     * Construtor vazio; o índice só fica utilizável depois de load.
+     */
+    public SearchIndex(){
+        this.entidades=new HashMap<>();
+        this.textos=new HashMap<>();
+        this.ngramas=new HashMap<>();
+        this.carregado=false;
+    }
+
+    /**
+     * Texto indexado de uma entidade (p.e. o nome).
+     * @param valor, entidade.
+     * @return texto a indexar.
+     */
+    protected abstract String texto(V valor);
+
+    /**
+     * Cópia de uma entidade (p.e. clone()), que não partilha estado mutável com o original.
+     * @param valor, entidade.
+     * @return cópia da entidade.
+     */
+    protected abstract V copiar(V valor);
+
+    /**
+     * Normaliza um texto para indexação/pesquisa: minúsculas, sem acentos e com os espaços colapsados.
+     * @param s, texto original.
+     * @return texto normalizado.
+     */
+    public static String fold(String s){
+        if(s==null) return "";
+        String semAcentos = Normalizer.normalize(s, Normalizer.Form.NFD).replaceAll("\\p{M}+", "");
+        return semAcentos.toLowerCase().trim().replaceAll("\\s+", " ");
+    }
+
+    public synchronized boolean isLoaded(){return this.carregado;}
+
+    /**
+     * (Re)constrói o índice a partir de todas as entidades. As entidades passam a pertencer ao índice (devem
+     * ser acabadas de ler, p.e. o entrySet do DAO, e não partilhadas com outros).
+     * @param todas, pares chave/entidade (p.e. entrySet do DAO).
+     */
+    public synchronized void load(Collection<? extends Map.Entry<? extends K,? extends V>> todas){
+        this.entidades.clear(); this.textos.clear(); this.ngramas.clear();
+        for(Map.Entry<? extends K,? extends V> e : todas) this.adicionar(e.getKey(), e.getValue());
+        this.carregado=true;
+    }
+
+    /**
+     * Descarta o índice; a próxima pesquisa volta a carregá-lo.
+     */
+    public synchronized void invalidate(){
+        this.entidades.clear(); this.textos.clear(); this.ngramas.clear();
+        this.carregado=false;
+    }
+
+    /**
+     * Indexa (ou reindexa) uma cópia de uma entidade guardada. Ignorado enquanto o índice não estiver carregado.
+     * @param key, chave da entidade.
+     * @param valor, entidade guardada (continua a pertencer a quem a passa).
+     */
+    public synchronized void put(K key, V valor){
+        if(!this.carregado) return;
+        this.retirar(key);
+        if(valor!=null) this.adicionar(key, this.copiar(valor));
+    }
+
+    /**
+     * Retira uma entidade removida do índice.
+     * @param key, chave da entidade.
+     */
+    public synchronized void remove(Object key){
+        if(this.carregado) this.retirar(key);
+    }
+
+    public synchronized V get(Object key){
+        V v = this.entidades.get(key);
+        return v==null ? null : this.copiar(v);
+    }
+
+    private void adicionar(K key, V valor){
+        if(valor==null) return;
+        String t = fold(this.texto(valor));
+        this.entidades.put(key, valor);
+        this.textos.put(key, t);
+        for(String g : gramas(t)){
+            Set<K> chaves = this.ngramas.get(g);
+            if(chaves==null){chaves=new HashSet<>(); this.ngramas.put(g, chaves);}
+            chaves.add(key);
+        }
+    }
+
+    private void retirar(Object key){
+        this.entidades.remove(key);
+        String t = this.textos.remove(key);
+        if(t==null) return;
+        for(String g : gramas(t)){
+            Set<K> chaves = this.ngramas.get(g);
+            if(chaves!=null){
+                chaves.remove(key);
+                if(chaves.isEmpty()) this.ngramas.remove(g);
+            }
+        }
+    }
+
+    /*Todos os n-gramas distintos (1..N) de um texto*/
+    private static Set<String> gramas(String t){
+        Set<String> gs = new HashSet<>();
+        for(int i=0; i<t.length(); i++){
+            for(int n=1; n<=N && i+n<=t.length(); n++) gs.add(t.substring(i, i+n));
+        }
+        return gs;
+    }
+
+    /**
+     * Pesquisa por prefixo/substring sobre o texto indexado.
+     * Ordenação: texto começado pela pesquisa, depois palavra começada pela pesquisa, depois
+     * restantes ocorrências (pela posição); em caso de empate, por ordem alfabética.
+     * @param pesquisa, texto a procurar (vazio devolve todas as entidades).
+     * @return chaves das entidades encontradas, ordenadas por relevância.
+     */
+    public synchronized List<K> search(String pesquisa){
+        final String q = fold(pesquisa);
+        List<K> res = new ArrayList<>();
+        if(q.isEmpty()){
+            res.addAll(this.textos.keySet());
+        } else if(q.length()<=N){
+            Set<K> chaves = this.ngramas.get(q);
+            if(chaves!=null) res.addAll(chaves);
+        } else {
+            // Interseção começando pela lista mais curta
+            List<Set<K>> listas = new ArrayList<>();
+            for(String g : trigramas(q)){
+                Set<K> chaves = this.ngramas.get(g);
+                if(chaves==null) return res;
+                listas.add(chaves);
+            }
+            Set<K> menor = listas.get(0);
+            for(Set<K> l : listas) if(l.size()<menor.size()) menor = l;
+            for(K k : menor){
+                boolean emTodas = true;
+                for(Set<K> l : listas) if(l!=menor && !l.contains(k)){emTodas=false; break;}
+                if(emTodas && this.textos.get(k).contains(q)) res.add(k);
+            }
+        }
+
+        return this.ordenar(res, q);
+    }
+
+    /**
+     * Refina os resultados de uma pesquisa anterior para uma pesquisa que contém o texto dessa
+     * (p.e. mais uma letra escrita pelo utilizador). Os resultados da nova pesquisa estão todos entre os
+     * anteriores, pelo que basta filtrá-los sobre o texto já normalizado, sem consultar as listas do índice.
+     * @param anteriores, chaves dos resultados da pesquisa anterior.
+     * @param pesquisa, nova pesquisa.
+     * @return entidades encontradas, ordenadas por relevância (como em searchValues).
+     */
+    public synchronized List<V> refine(Collection<? extends K> anteriores, String pesquisa){
+        final String q = fold(pesquisa);
+        List<K> res = new ArrayList<>();
+        for(K k : anteriores){
+            String t = this.textos.get(k);
+            if(t!=null && t.contains(q)) res.add(k); // entidades entretanto removidas são ignoradas
+        }
+        List<V> valores = new ArrayList<>(res.size());
+        for(K k : this.ordenar(res, q)) valores.add(this.copiar(this.entidades.get(k)));
+        return valores;
+    }
+
+    /*Ordena chaves por relevância para uma pesquisa; a posição de cada chave é calculada uma só vez*/
+    private List<K> ordenar(List<K> chaves, String q){
+        List<Relevancia<K>> rs = new ArrayList<>(chaves.size());
+        for(K k : chaves){
+            String t = this.textos.get(k);
+            rs.add(new Relevancia<>(k, t, rank(t, q), t.indexOf(q)));
+        }
+        Collections.sort(rs);
+        List<K> res = new ArrayList<>(rs.size());
+        for(Relevancia<K> r : rs) res.add(r.chave);
+        return res;
+    }
+
+    /*Chave com a sua relevância para uma pesquisa: rank, depois posição da ocorrência, depois texto*/
+    private static final class Relevancia<K> implements Comparable<Relevancia<K>> {
+        private final K chave;
+        private final String texto;
+        private final int rank;
+        private final int posicao;
+
+        private Relevancia(K chave, String texto, int rank, int posicao){
+            this.chave=chave; this.texto=texto; this.rank=rank; this.posicao=posicao;
+        }
+
+        @Override
+        public int compareTo(Relevancia<K> o){
+            int c = Integer.compare(this.rank, o.rank);
+            if(c==0) c = Integer.compare(this.posicao, o.posicao);
+            if(c==0) c = this.texto.compareTo(o.texto);
+            return c;
+        }
+    }
+
+    /**
+     * Pesquisa, devolvendo diretamente as entidades.
+     * @param pesquisa, texto a procurar.
+     * @return entidades encontradas, ordenadas por relevância.
+     */
+    public synchronized List<V> searchValues(String pesquisa){
+        List<V> res = new ArrayList<>();
+        for(K k : this.search(pesquisa)) res.add(this.copiar(this.entidades.get(k)));
+        return res;
+    }
+
+    private static Set<String> trigramas(String q){
+        Set<String> gs = new HashSet<>();
+        for(int i=0; i+N<=q.length(); i++) gs.add(q.substring(i, i+N));
+        return gs;
+    }
+
+    /*0: o texto começa pela pesquisa; 1: uma palavra começa pela pesquisa; 2: restantes*/
+    private static int rank(String texto, String q){
+        if(q.isEmpty() || texto.startsWith(q)) return 0;
+        if(texto.contains(" "+q)) return 1;
+        return 2;
+    }
+}
@@ -0,0 +1,51 @@
+package data_access;
+
+/**
+ * Sessão de um funcionário autenticado, identificada por um token aleatório.
+ *
+ * A sessão guarda as permissões do funcionário já compiladas numa máscara (ver Permissao), pelo que
+ * verificar permissões não precisa do funcionário nem da base de dados. É imutável: quando as permissões
+ * são relidas é criada uma sessão nova com o mesmo token (comPermissoes).
+ * @author Jorge Caldas, José Cortez, Marcelo Gonçalves, Ricardo Silva
+ * @version 2015.01.17
+ */
+
+public final class Sessao {
+
+    // Variáveis de instância
+    private final String token;
+    private final int funcionario;
+    private final String username;
+    private final int permissoes;
+    private final long inicio;
+
+    Sessao(String token, int funcionario, String username, int permissoes, long inicio){
+        this.token=token;
+        this.funcionario=funcionario;
+        this.username=username;
+        this.permissoes=permissoes;
+        this.inicio=inicio;
+    }
+
+    /*gets*/
+    public String getToken(){return this.token;}
+    public int getFuncionario(){return this.funcionario;}
+    public String getUsername(){return this.username;}
+    public int getPermissoes(){return this.permissoes;}
+    public long getInicio(){return this.inicio;}
+
+    /**
+     * Verifica permissões com uma só operação sobre a máscara da sessão.
+     * @param pedidas, máscara das permissões a verificar (Permissao.mascara).
+     * @return true caso a sessão tenha todas as permissões pedidas.
+     */
+    public boolean hasPermissions(int pedidas){return (this.permissoes & pedidas)==pedidas;}
+
+    /*Mesma sessão com outra máscara de permissões*/
+    Sessao comPermissoes(int permissoes){
+        return new Sessao(this.token, this.funcionario, this.username, permissoes, this.inicio);
+    }
+
+    @Override
+    public String toString(){return "Sessao[" + this.username + "]";}
+}
@@ -1,11 +1,11 @@
 package data_access;
 
+import business.Data;
+import business.colecoes.IntIntMap;
 import business.projetos.ITarefa;
 import business.projetos.TarefaFactory;
 import java.sql.*;
 import java.util.*;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
 /**
  * Implementação de um Data Acess Object para gerir instancias da classe Tarefa.
@@ -13,25 +13,23 @@ import java.util.logging.Logger;
  * @version 29.12.2014
  */
 public class TarefaDAO implements Map<Integer,ITarefa>{
-    public Connection conn;
+    private final MySQLManager manager;
+    private final MySQLTable table;
+    private final KeyAllocator keys;
     private MySQLParseTools parseTools;
 
 
     public TarefaDAO () throws ConnectionErrorException {
-        try {
-            this.parseTools = new MySQLParseTools();
-            this.conn = (new MySQLManager()).getConnection();
-        } catch (SQLException ex) {System.out.println("error_Tarefas_bd");}
+        this.parseTools = new MySQLParseTools();
+        this.manager = MySQLManager.getInstance();
+        this.table = new MySQLTable(this.manager, "Tarefas", "Id");
+        this.keys = KeyAllocator.forTable(this.manager, "Tarefas", "Id");
     }
     
     @Override
     public int size() {
         try {
-            int i = 0;
-            Statement stm = conn.createStatement();
-            ResultSet rs = stm.executeQuery("SELECT Id FROM Tarefas");
-            while(rs.next()){ i++; }
-            return i;
+            return this.table.count();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -39,9 +37,7 @@ public class TarefaDAO implements Map<Integer,ITarefa>{
     @Override
     public boolean isEmpty() {
         try {
-            Statement stm = conn.createStatement();
-            ResultSet rs = stm.executeQuery("SELECT Id FROM Tarefas");
-            return !rs.next();
+            return this.table.isEmpty();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -49,10 +45,7 @@ public class TarefaDAO implements Map<Integer,ITarefa>{
     @Override
     public boolean containsKey(Object key) throws NullPointerException {
         try {
-            Statement stm = conn.createStatement();
-            String sql = "SELECT Designacao FROM Tarefas WHERE Id='"+(int)key+"'";
-            ResultSet rs = stm.executeQuery(sql);
-            return rs.next();
+            return this.table.containsKey((int)key);
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -74,37 +67,69 @@ public class TarefaDAO implements Map<Integer,ITarefa>{
     
     @Override
     public ITarefa get(Object key) {
-        try {
+        try (Connection conn = this.manager.getConnection()) {
             ITarefa mt = null;
-            Statement stm = conn.createStatement();
-            String sql = "SELECT * FROM Tarefas WHERE Id='"+(int)key+"'";
-            ResultSet rs = stm.executeQuery(sql);
+            PreparedStatement ps = conn.prepareStatement("SELECT * FROM Tarefas WHERE Id=?");
+            ps.setInt(1, (int)key);
+            ResultSet rs = ps.executeQuery();
             if (rs.next()){ 
-                mt = new TarefaFactory().createTarefa();
-                mt.setId(rs.getInt(1));
-                mt.setDesig(rs.getString(2));
-                mt.setDesc(rs.getString(3));
-                mt.setDataInicioT(parseTools.parseSQLDate(rs.getString(4)));
-                mt.setDataFinalT(parseTools.parseSQLDate(rs.getString(5)));
+                mt = this.fromRow(rs);
                 
-                HashMap<Integer, Integer> mgasto = new HashMap<>();
-                sql = "Select Material, QuantidadeGasta From TarefasMaterial AS TM Where TM.Tarefa='"+mt.getId()+"'";
-                rs = stm.executeQuery(sql);
+                ps = conn.prepareStatement("Select Material, QuantidadeGasta From TarefasMaterial AS TM Where TM.Tarefa=?");
+                ps.setInt(1, mt.getId());
+                rs = ps.executeQuery();
                 while(rs.next())
-                    mgasto.put(rs.getInt(1),rs.getInt(2));
-                mt.setMaterial(mgasto);
+                    mt.getMaterial().put(rs.getInt(1),rs.getInt(2));
             }
             return mt;
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
     
+    /*Constrói uma tarefa a partir da linha corrente de um ResultSet sobre a tabela Tarefas (sem material gasto)*/
+    private ITarefa fromRow(ResultSet rs) throws SQLException {
+        ITarefa mt = new TarefaFactory().createTarefa();
+        mt.setId(rs.getInt(1));
+        mt.setDesig(rs.getString(2));
+        mt.setDesc(rs.getString(3));
+        mt.setDataInicioT(parseTools.getData(rs, 4));
+        mt.setDataFinalT(parseTools.getData(rs, 5));
+        mt.setMaterial(new IntIntMap());
+        return mt;
+    }
+    
+    /**
+     * Carrega todas as tarefas com uma leitura da tabela Tarefas e uma da tabela TarefasMaterial.
+     * @return mapa id de tarefa -> tarefa.
+     */
+    private Map<Integer,ITarefa> loadAll() throws SQLException, ConnectionErrorException {
+        Map<Integer,ITarefa> tarefas = new HashMap<>();
+        
+        try (Connection conn = this.manager.getConnection()) {
+            ResultSet rs = conn.prepareStatement("SELECT * FROM Tarefas").executeQuery();
+            while(rs.next()){
+                ITarefa t = this.fromRow(rs);
+                tarefas.put(t.getId(), t);
+            }
+            
+            rs = conn.prepareStatement("SELECT Tarefa, Material, QuantidadeGasta FROM TarefasMaterial").executeQuery();
+            while(rs.next()){
+                ITarefa t = tarefas.get(rs.getInt(1));
+                if(t!=null) t.getMaterial().put(rs.getInt(2), rs.getInt(3));
+            }
+        }
+        return tarefas;
+    }
+    
     @Override
     public ITarefa put(Integer key, ITarefa value) {
-        try {
-            Statement stm = conn.createStatement();
-            stm.executeUpdate("DELETE FROM Tarefas WHERE Id='"+key+"'");
-            int i  = stm.executeUpdate(insert(key,value));
+        try (Connection conn = this.manager.getConnection()) {
+            conn.setAutoCommit(false); // DELETE e INSERT numa só transação
+            PreparedStatement ps = conn.prepareStatement("DELETE FROM Tarefas WHERE Id=?");
+            ps.setInt(1, key);
+            ps.executeUpdate();
+            int i  = insert(conn,key,value).executeUpdate();
+            conn.commit();
             ITarefa mt = new TarefaFactory().createTarefa();
             mt.setId(value.getId());
             mt.setDesig(value.getDesig());
@@ -116,9 +141,9 @@ public class TarefaDAO implements Map<Integer,ITarefa>{
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
 
-    private String insert(Integer key, ITarefa value){
-        String dataI = parseTools.parseCalendar(value.getDataInicioT());
-        String dataF = parseTools.parseCalendar(value.getDataFinalT());
+    private PreparedStatement insert(Connection conn, Integer key, ITarefa value) throws SQLException {
+        Data dataI = value.getDataInicioT();
+        Data dataF = value.getDataFinalT();
         
         ArrayList<Object> valores = new ArrayList<>();
         valores.add(key);
@@ -127,16 +152,18 @@ public class TarefaDAO implements Map<Integer,ITarefa>{
         valores.add(dataI);
         valores.add(dataF);
               
-        String sql = this.parseTools.createInsert("Tarefas", valores);
-        return sql;
+        PreparedStatement ps = conn.prepareStatement(this.parseTools.createInsert("Tarefas", valores.size()));
+        this.parseTools.bind(ps, valores);
+        return ps;
     }
     
     @Override
     public ITarefa remove(Object key) {
-        try {
-            ITarefa mt = this.get(key);
-            Statement stm = conn.createStatement();
-            stm.executeUpdate("DELETE FROM Tarefas WHERE Id='"+key+"'");
+        ITarefa mt = this.get(key); // lido antes de pedir a conexão: get pede a sua ao pool
+        try (Connection conn = this.manager.getConnection()) {
+            PreparedStatement ps = conn.prepareStatement("DELETE FROM Tarefas WHERE Id=?");
+            ps.setInt(1, (int)key);
+            ps.executeUpdate();
             return mt;
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
@@ -145,14 +172,7 @@ public class TarefaDAO implements Map<Integer,ITarefa>{
     @Override
     public Set<Integer> keySet() {
         try {
-            Set<Integer> set = new HashSet<>();
-            int n = this.generateTarefaKey();
-            for(int i=0; i<n; i++){
-                if(this.containsKey(i)){
-                    set.add(i);
-                }
-            }
-            return set;
+            return this.table.intKeys();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -160,20 +180,15 @@ public class TarefaDAO implements Map<Integer,ITarefa>{
     @Override
     public Collection<ITarefa> values() {
         try {
-            Set<ITarefa> set = new HashSet<>();
-            Set<Integer> keys = new HashSet<>(this.keySet());
-            for(Integer key : keys)
-                set.add(this.get(key));
-            return set;
+            return new ArrayList<>(this.loadAll().values());
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
    
     @Override
     public void clear () {
-        try {
-            Statement stm = conn.createStatement();
-            stm.executeUpdate("DELETE FROM Tarefas WHERE Tarefas.Id>=0;");
+        try (Connection conn = this.manager.getConnection()) {
+            conn.prepareStatement("DELETE FROM Tarefas WHERE Tarefas.Id>=0").executeUpdate();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -181,16 +196,7 @@ public class TarefaDAO implements Map<Integer,ITarefa>{
     @Override
     public Set<Entry<Integer,ITarefa>> entrySet() {
         try {
-            Set<Entry<Integer,ITarefa>> set;
-            Set<Integer> keys = new HashSet<>(this.keySet());            
-            
-            HashMap<Integer,ITarefa> map = new HashMap<>();
-            for(Integer key : keys){
-                if(this.containsKey(key)){
-                    map.put(key,this.get(key));
-                }
-            }
-            return map.entrySet();
+            return this.loadAll().entrySet();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -221,41 +227,21 @@ public class TarefaDAO implements Map<Integer,ITarefa>{
 
     @Override
     public int hashCode() {
-        int hash = Arrays.hashCode(new Object[]{conn, parseTools});
+        int hash = Arrays.hashCode(new Object[]{manager, parseTools});
         for(ITarefa t : this.values())
             hash+=t.hashCode();
         return hash;
     }
     
     /**
-     * Procura a maior chave de projeto existente na base de dados e retorna
-     * esse valor incrementado em uma unidade
+     * Atribui uma nova chave, a partir do bloco de chaves reservado para esta tabela (ver KeyAllocator).
      * @return Chave que identificará univocamente no sistema um tarefa. 
      */
     public int generateTarefaKey(){
-       try {
-            if(!this.isEmpty()){
-                Statement stm = conn.createStatement();
-                ResultSet rs = stm.executeQuery("SELECT MAX(Id) FROM Tarefas;");
-                int result = 0;
-                if (rs.next()) {      
-                    result = rs.getInt(1);  
-                } 
-                return result + 1;
-            } else return 1;
-        }
-        catch (Exception e) {throw new NullPointerException(e.getMessage());} 
-    }
-    
-    /**
-     * Fechar a ligação à base de dados.
-     */
-    public void close(){
         try {
-            this.conn.close();
-        } catch (SQLException ex) {
-            Logger.getLogger(VoluntarioDAO.class.getName()).log(Level.SEVERE, null, ex);
+            return this.keys.next();
         }
+        catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
     
     public static void main(String[] args) throws ConnectionErrorException, Exception {
@@ -267,8 +253,8 @@ public class TarefaDAO implements Map<Integer,ITarefa>{
         for(int i=0; i<10; i++){
             ITarefa mt = new TarefaFactory().createTarefa();
             mt.setId(tDAO.generateTarefaKey());
-            mt.setDataInicioT(new GregorianCalendar(2012,05,i+2));
-            mt.setDataFinalT(new GregorianCalendar(2014,05,i+2));
+            mt.setDataInicioT(Data.de(2012,6,i+2));
+            mt.setDataFinalT(Data.de(2014,6,i+2));
             mt.setDesig("Projectar colunas da casa");
             mt.setDesc("Criar as colunas que irão servir de suporte à casa");
             tDAO.put(mt.getId(), mt);
@@ -1,20 +1,24 @@
 package data_access;
 
+import business.Data;
+import business.colecoes.IntIntMap;
 import business.recursoshumanos.IVoluntario;
+import business.recursoshumanos.ResumoVoluntario;
 import business.recursoshumanos.VoluntarioFactory;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.GregorianCalendar;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -26,29 +30,43 @@ import java.util.logging.Logger;
 
 class VoluntarioDAO implements Map<Integer,IVoluntario> {
 
-    public Connection conn;
+    private final MySQLManager manager;
+    private final MySQLTable table;
+    private final KeyAllocator keys;
     private MySQLParseTools parseTools;
     
+    private static final int MAX_IN = 500; // Nº máximo de chaves por cláusula IN (...)
+    private static final String IMPRESSAO = "Impressao"; // coluna com a impressão digital (IVoluntario.getImpressao)
+    private static final String HORAS = "Horas";         // coluna com o total de horas (IVoluntario.getHorasVoluntariado)
+    private static final String HORAS_PROJETOS = "HorasProjetos"; // tabela-resumo: total de horas de cada projeto
+    
+    /*Colunas pelas quais as páginas de voluntários podem ser ordenadas (nome -> expressão SQL)*/
+    private static final Map<String,String> ORDENS = new LinkedHashMap<>();
+    static {
+        ORDENS.put("Nr", "Nr");
+        ORDENS.put("Nome", "COALESCE(#2,'')");
+        ORDENS.put("Localidade", "COALESCE(#4,'')");
+        ORDENS.put("DataInicioVol", "CAST(#13 AS CHAR)");
+        ORDENS.put("Horas", HORAS);
+    }
+    /*Colunas lidas para as linhas da listagem de voluntários (ResumoVoluntario)*/
+    private static final String RESUMO = "Nr, #2, #4, "+HORAS;
+    
     /**
      * Construtor que fornece conexão à tabela Voluntários na base de dados da Habitat.
      * @throws ConnectionErrorException 
      */
     public VoluntarioDAO() throws ConnectionErrorException{
-        try {
-            parseTools = new MySQLParseTools();
-            this.conn = (new MySQLManager()).getConnection();
-        } catch (SQLException ex) {System.out.println("error_voluntarios_bd");}
+        parseTools = new MySQLParseTools();
+        this.manager = MySQLManager.getInstance();
+        this.table = new MySQLTable(this.manager, "Voluntarios", "Nr");
+        this.keys = KeyAllocator.forTable(this.manager, "Voluntarios", "Nr");
     }
     
     @Override
-    @SuppressWarnings("empty-statement")
     public int size() {
         try {
-            int i = 0;
-            Statement stm = conn.createStatement();
-            ResultSet rs = stm.executeQuery("SELECT Nr FROM Voluntarios");
-            for (;rs.next();i++);
-            return i;
+            return this.table.count();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -56,19 +74,15 @@ class VoluntarioDAO implements Map<Integer,IVoluntario> {
     @Override
     public boolean isEmpty() {
         try {
-            Statement stm = conn.createStatement();
-            ResultSet rs = stm.executeQuery("SELECT Nome FROM Voluntarios");
-            return !rs.next();
-        } catch (Exception e) {throw new NullPointerException(e.getMessage());}
+            return this.table.isEmpty();
+        }
+        catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
 
     @Override
     public boolean containsKey(Object key) {
         try {
-            Statement stm = conn.createStatement();
-            String sql = "SELECT Nome FROM Voluntarios WHERE Nr="+(int)key+";";
-            ResultSet rs = stm.executeQuery(sql);
-            return rs.next();
+            return this.table.containsKey((int)key);
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -79,229 +93,528 @@ class VoluntarioDAO implements Map<Integer,IVoluntario> {
             if(value instanceof IVoluntario) {
             
                 IVoluntario v = (IVoluntario)value;
-                Statement stm = conn.createStatement();
                 
-                for(Integer key : this.keySet()){
-                     if(v.equals(this.get(key))) return true;
+                // Só os voluntários com a mesma impressão digital podem ser iguais
+                for(int nr : this.findByImpressao(v.getImpressao())){
+                    IVoluntario isv = this.get(nr);
+                    if(v.equals(isv)) return true;
                 }
                 return false;
             } else return false;
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
-
-    @Override
-    public IVoluntario get(Object key) {
-        VoluntarioFactory vfactory = new VoluntarioFactory();
-        IVoluntario v = vfactory.createVoluntario();
-        
+    
+    /**
+     * Nºs dos voluntários com uma dada impressão digital (pesquisa pelo índice da coluna Impressao).
+     * @param impressao, impressão digital (IVoluntario.getImpressao).
+     * @return nºs dos voluntários encontrados.
+     */
+    public List<Integer> findByImpressao(String impressao) {
+        List<Integer> nrs = new ArrayList<>();
         try {
-            Statement stm = conn.createStatement();
-            String sql = "SELECT * FROM Voluntarios WHERE Nr="+(int)key+";";
-            ResultSet rs = stm.executeQuery(sql);
-            if (rs.next()){
-                String r=null;
-                v = vfactory.createVoluntario();
-                
-                v.setNr(parseTools.getInteger(rs,"Nr"));
-                
-                r=rs.getString(2);
-                if(r!=null) v.setNome(r);
-                else v.setNome("");
-                                
-                r=rs.getString(3);
-                if(r!=null) v.setDatanasc(parseTools.parseSQLDate(r));
-                else v.setDatanasc(new GregorianCalendar());                
-                
-                v.setLocalidade(rs.getString(4));
-                v.setRua(rs.getString(5));
-                v.setCodPostal(rs.getString(6));
-                v.setHabilitacoes(rs.getString(7));
-                v.setTelem(rs.getString(8));
-                v.setTelef(rs.getString(9));
-                v.setProfissao(rs.getString(10));
-                v.setEmail(rs.getString(11));
-                v.setObs(rs.getString(12));
-                v.setDataInicioVol(parseTools.parseSQLDate(rs.getString(13)));
-
-                List<String> linguas = new ArrayList<>();
-                sql = "SELECT * FROM Linguas WHERE Voluntario="+(int)key+";";
-                rs = stm.executeQuery(sql);
-                for(;rs.next();){
-                    linguas.add(rs.getString(2));
-                }
-                v.setLinguas(linguas);
-
-                Map<Integer,Integer> horas = new HashMap<>();
-                sql = "SELECT Projeto, HorasVoluntariado FROM ProjetosVoluntarios Where Voluntario="+(int)key+";";
-                rs = stm.executeQuery(sql);
-                for(;rs.next();){
-                    horas.put(parseTools.getInteger(rs,"Projeto"),parseTools.getInteger(rs,"HorasVoluntariado"));
+            try (Connection conn = this.manager.getConnection()) {
+                PreparedStatement ps = conn.prepareStatement("SELECT Nr FROM Voluntarios WHERE "+IMPRESSAO+"=?");
+                ps.setString(1, impressao);
+                ResultSet rs = ps.executeQuery();
+                while(rs.next()) nrs.add(rs.getInt(1));
+            }
+            return nrs;
+        }
+        catch (Exception e) {throw new NullPointerException(e.getMessage());}
+    }
+    
+    /**
+     * Lê todos os voluntários (sem línguas nem horas) para construir o índice de impressões digitais.
+     * Os voluntários guardados antes de existir a coluna Impressao ficam com ela preenchida.
+     * @return voluntários registados.
+     */
+    public Collection<IVoluntario> loadFingerprints() {
+        try {
+            List<IVoluntario> vols = new ArrayList<>();
+            List<IVoluntario> semImpressao = new ArrayList<>();
+            try (Connection conn = this.manager.getConnection()) {
+                ResultSet rs = conn.prepareStatement("SELECT * FROM Voluntarios").executeQuery();
+                int col = rs.findColumn(IMPRESSAO);
+                while(rs.next()){
+                    IVoluntario v = this.fromRow(rs);
+                    vols.add(v);
+                    if(rs.getString(col)==null) semImpressao.add(v);
                 }
-                v.setHorasProjetos(horas);
                 
-                return v;
+                if(!semImpressao.isEmpty()){
+                    conn.setAutoCommit(false);
+                    PreparedStatement ps = conn.prepareStatement("UPDATE Voluntarios SET "+IMPRESSAO+"=? WHERE Nr=?");
+                    for(IVoluntario v : semImpressao){
+                        ps.setString(1, v.getImpressao());
+                        ps.setInt(2, v.getNr());
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                    conn.commit();
+                }
             }
+            return vols;
+        }
+        catch (Exception e) {throw new NullPointerException(e.getMessage());}
+    }
+    
+    /**
+     * Verifica se a base de dados tem as colunas Impressao e Horas e a tabela HorasProjetos, criadas pelos
+     * scripts sql/001_voluntarios_impressao.sql e sql/003_voluntarios_horas.sql. Horas (por voluntário) e
+     * HorasProjetos (por projeto) são totais das horas em ProjetosVoluntarios, mantidos por put, putAll,
+     * remove e addHorasVoluntariado na mesma transação que altera ProjetosVoluntarios.
+     * @return true caso o esquema esteja atualizado, false caso falte aplicar algum script.
+     */
+    public boolean esquemaAtualizado() {
+        try {
+            if(!this.table.hasColumns(IMPRESSAO, HORAS)) return false;
+            try (Connection conn = this.manager.getConnection()) {
+                conn.prepareStatement("SELECT 1 FROM "+HORAS_PROJETOS+" LIMIT 0").executeQuery();
+            }
+            return true;
+        }
+        catch (Exception e) {return false;}
+    }
+    
+    /**
+     * Soma (ou subtrai) a HorasProjetos as horas por projeto que um bloco de voluntários tem em
+     * ProjetosVoluntarios: -1 antes de as apagar, +1 depois de as inserir.
+     * @param conn, conexão em uso (na transação que altera ProjetosVoluntarios).
+     * @param nrs, nºs dos voluntários (no máximo MAX_IN).
+     * @param sinal, 1 para somar, -1 para subtrair.
+     */
+    private void somarHorasProjetos(Connection conn, List<Object> nrs, int sinal) throws SQLException {
+        PreparedStatement ps = conn.prepareStatement("INSERT INTO "+HORAS_PROJETOS+" (Projeto, Horas)"
+                + " SELECT Projeto, "+sinal+"*SUM(HorasVoluntariado) FROM ProjetosVoluntarios"
+                + " WHERE Voluntario IN "+parseTools.inParams(nrs.size())+" GROUP BY Projeto"
+                + " ON DUPLICATE KEY UPDATE Horas=Horas+VALUES(Horas)");
+        parseTools.bind(ps, parseTools.inValores(nrs));
+        ps.executeUpdate();
+    }
+    
+    /*Divide nºs de voluntários em blocos de no máximo MAX_IN (para cláusulas IN (...))*/
+    private static List<List<Object>> blocos(Collection<? extends Integer> nrs) {
+        List<List<Object>> blocos = new ArrayList<>();
+        List<Object> bloco = new ArrayList<>();
+        for(Integer nr : nrs){
+            bloco.add(nr);
+            if(bloco.size()==MAX_IN){
+                blocos.add(bloco);
+                bloco = new ArrayList<>();
+            }
+        }
+        if(!bloco.isEmpty()) blocos.add(bloco);
+        return blocos;
+    }
+
+    @Override
+    public IVoluntario get(Object key) {
+        try {
+            IVoluntario v = this.load("WHERE Nr=?", (int)key).get((int)key);
+            if(v!=null) return v;
         } catch (Exception e) {throw new NullPointerException("cenas");}
         
+        return new VoluntarioFactory().createVoluntario();
+    }
+    
+    /*Constrói um voluntário a partir da linha corrente de um ResultSet sobre a tabela Voluntarios (sem tabelas filhas)*/
+    private IVoluntario fromRow(ResultSet rs) throws SQLException {
+        IVoluntario v = new VoluntarioFactory().createVoluntario();
+        String r;
+        
+        v.setNr(rs.getInt(1));
+        
+        r=rs.getString(2);
+        if(r!=null) v.setNome(r);
+        else v.setNome("");
+        
+        Data d=parseTools.getData(rs, 3);
+        v.setDatanasc(d!=null ? d : Data.hoje());
+        
+        v.setLocalidade(rs.getString(4));
+        v.setRua(rs.getString(5));
+        v.setCodPostal(rs.getString(6));
+        v.setHabilitacoes(rs.getString(7));
+        v.setTelem(rs.getString(8));
+        v.setTelef(rs.getString(9));
+        v.setProfissao(rs.getString(10));
+        v.setEmail(rs.getString(11));
+        v.setObs(rs.getString(12));
+        v.setDataInicioVol(parseTools.getData(rs, 13));
+        v.setLinguas(new ArrayList<String>());
+        v.setHorasProjetos(new IntIntMap());
         return v;
     }
+    
+    /**
+     * Carrega todos os voluntários com uma única leitura da tabela Voluntarios e uma leitura por tabela filha
+     * (Linguas e ProjetosVoluntarios), em vez de uma query por voluntário.
+     * @return mapa nº de voluntário -> voluntário.
+     */
+    private Map<Integer,IVoluntario> loadAll() throws SQLException, ConnectionErrorException {
+        return this.load("");
+    }
+    
+    /**
+     * Carrega os voluntários que satisfazem uma condição, com as respetivas línguas e horas por projeto.
+     * É feita uma query sobre Voluntarios e duas por cada bloco de MAX_IN voluntários carregados
+     * (apenas duas, sem filtro, quando a condição abrange a tabela inteira).
+     * @param where, cláusula WHERE a aplicar à tabela Voluntarios ("" para todos), com parâmetros '?'.
+     * @param params, valores dos parâmetros da cláusula WHERE.
+     * @return mapa nº de voluntário -> voluntário.
+     */
+    private Map<Integer,IVoluntario> load(String where, Object... params) throws SQLException, ConnectionErrorException {
+        Map<Integer,IVoluntario> vols = new HashMap<>();
+        
+        try (Connection conn = this.manager.getConnection()) {
+            PreparedStatement ps = conn.prepareStatement("SELECT * FROM Voluntarios "+where);
+            parseTools.bind(ps, Arrays.asList(params));
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()){
+                IVoluntario v = this.fromRow(rs);
+                vols.put(v.getNr(), v);
+            }
+            if(!vols.isEmpty()) this.loadChildren(conn, vols, where.isEmpty());
+        }
+        return vols;
+    }
+    
+    /**
+     * Preenche as línguas e as horas por projeto de um conjunto de voluntários já carregados,
+     * com uma query por tabela filha (IN (...) sobre os números dos voluntários).
+     * @param conn, conexão em uso.
+     * @param vols, voluntários a completar, indexados pelo número.
+     * @param todos, true se vols contém todos os voluntários (dispensa o filtro IN).
+     */
+    private void loadChildren(Connection conn, Map<Integer,IVoluntario> vols, boolean todos) throws SQLException {
+        List<List<Object>> blocos;
+        if(todos){
+            blocos = new ArrayList<>();
+            blocos.add(new ArrayList<>());
+        }
+        else blocos = blocos(vols.keySet());
+        
+        for(List<Object> bloco : blocos){
+            String filtro = bloco.isEmpty() ? "" : " WHERE Voluntario IN "+parseTools.inParams(bloco.size());
+            bloco = parseTools.inValores(bloco);
+            
+            PreparedStatement ps = conn.prepareStatement("SELECT Voluntario, Nome FROM Linguas"+filtro);
+            parseTools.bind(ps, bloco);
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()){
+                IVoluntario v = vols.get(rs.getInt(1));
+                if(v!=null) v.getLinguas().add(rs.getString(2));
+            }
+            
+            ps = conn.prepareStatement("SELECT Voluntario, Projeto, HorasVoluntariado FROM ProjetosVoluntarios"+filtro);
+            parseTools.bind(ps, bloco);
+            rs = ps.executeQuery();
+            while(rs.next()){
+                IVoluntario v = vols.get(rs.getInt(1));
+                if(v!=null) v.getHorasProjetos().put(rs.getInt(2), rs.getInt(3));
+            }
+        }
+    }
+
+    /**
+     * Lê uma página de voluntários (com línguas e horas por projeto), ordenada pelo servidor.
+     * @param tamanho, nº de voluntários por página (no máximo MySQLTable.MAX_PAGINA).
+     * @param ordem, coluna de ordenação: Nr, Nome, Localidade, DataInicioVol ou Horas.
+     * @param ascendente, sentido da ordenação.
+     * @param depois, cursor da página anterior (null para a primeira página).
+     * @return página de voluntários.
+     */
+    public Pagina<IVoluntario> pagina(int tamanho, String ordem, boolean ascendente, Pagina.Cursor depois) {
+        String expr = ORDENS.get(ordem);
+        if(expr==null) throw new IllegalArgumentException("Ordenação desconhecida: "+ordem);
+        
+        try (Connection conn = this.manager.getConnection()) {
+            Map<Integer,IVoluntario> vols = new LinkedHashMap<>();
+            Pagina.Cursor ultimo = null;
+            boolean mais = false;
+            
+            ResultSet rs = this.table.preparePage(conn, expr, ascendente, depois, tamanho).executeQuery();
+            while(rs.next()){
+                if(vols.size()==MySQLTable.tamanhoPagina(tamanho)){mais=true; break;}
+                IVoluntario v = this.fromRow(rs);
+                vols.put(v.getNr(), v);
+                ultimo = new Pagina.Cursor(rs.getObject("Ordem"), v.getNr());
+            }
+            if(!vols.isEmpty()) this.loadChildren(conn, vols, false);
+            return new Pagina<>(new ArrayList<>(vols.values()), ultimo, mais);
+        }
+        catch (Exception e) {throw new NullPointerException(e.getMessage());}
+    }
+    
+    /**
+     * Lê uma página de resumos de voluntários (nº, nome, localidade e total de horas), ordenada pelo servidor.
+     * Ao contrário de pagina(...), é feita uma única query e não são lidas as línguas nem as horas por projeto
+     * (o total de horas é o da coluna Horas).
+     * @param tamanho, nº de voluntários por página (no máximo MySQLTable.MAX_PAGINA).
+     * @param ordem, coluna de ordenação: Nr, Nome, Localidade, DataInicioVol ou Horas.
+     * @param ascendente, sentido da ordenação.
+     * @param depois, cursor da página anterior (null para a primeira página).
+     * @return página de resumos.
+     */
+    public Pagina<ResumoVoluntario> paginaResumos(int tamanho, String ordem, boolean ascendente, Pagina.Cursor depois) {
+        String expr = ORDENS.get(ordem);
+        if(expr==null) throw new IllegalArgumentException("Ordenação desconhecida: "+ordem);
+        
+        try (Connection conn = this.manager.getConnection()) {
+            List<ResumoVoluntario> resumos = new ArrayList<>();
+            Pagina.Cursor ultimo = null;
+            boolean mais = false;
+            
+            ResultSet rs = this.table.preparePage(conn, RESUMO, expr, ascendente, depois, tamanho).executeQuery();
+            while(rs.next()){
+                if(resumos.size()==MySQLTable.tamanhoPagina(tamanho)){mais=true; break;}
+                ResumoVoluntario r = new ResumoVoluntario(rs.getInt(1), rs.getString(2), rs.getString(3), rs.getInt(4));
+                resumos.add(r);
+                ultimo = new Pagina.Cursor(rs.getObject("Ordem"), r.getNr());
+            }
+            return new Pagina<>(resumos, ultimo, mais);
+        }
+        catch (Exception e) {throw new NullPointerException(e.getMessage());}
+    }
+    
+    /**
+     * Cursor de uma posição na listagem de voluntários, para ler a página seguinte sem ler as anteriores
+     * (p.e. quando a barra de deslocamento salta para o meio da tabela).
+     * @param ordem, coluna de ordenação: Nr, Nome, Localidade, DataInicioVol ou Horas.
+     * @param ascendente, sentido da ordenação.
+     * @param linha, posição (0 para o primeiro voluntário).
+     * @return cursor do voluntário nessa posição, ou null caso não exista.
+     */
+    public Pagina.Cursor cursorEm(String ordem, boolean ascendente, int linha) {
+        String expr = ORDENS.get(ordem);
+        if(expr==null) throw new IllegalArgumentException("Ordenação desconhecida: "+ordem);
+        
+        try (Connection conn = this.manager.getConnection()) {
+            return this.table.cursorEm(conn, expr, ascendente, linha);
+        }
+        catch (Exception e) {throw new NullPointerException(e.getMessage());}
+    }
+    
+    /**
+     * Percorre todos os voluntários, com línguas e horas por projeto, sem os carregar de uma só vez.
+     * Ocupa três conexões do pool até ser fechado (ver MySQLCursor).
+     * @return cursor sobre os voluntários, por ordem de nº.
+     */
+    public MySQLCursor<IVoluntario> cursor() {
+        MySQLCursor.Filhos linguas = null, projetos = null;
+        try {
+            linguas = new MySQLCursor.Filhos(this.manager, "SELECT Voluntario, Nome FROM Linguas ORDER BY Voluntario");
+            projetos = new MySQLCursor.Filhos(this.manager,
+                    "SELECT Voluntario, Projeto, HorasVoluntariado FROM ProjetosVoluntarios ORDER BY Voluntario");
+            final MySQLCursor.Filhos l = linguas, p = projetos;
+            return new MySQLCursor<IVoluntario>(this.manager, "SELECT * FROM Voluntarios ORDER BY Nr", l, p) {
+                @Override
+                protected IVoluntario hidratar(ResultSet rs) throws SQLException {
+                    IVoluntario v = fromRow(rs);
+                    while(l.avancar(v.getNr())) v.getLinguas().add(l.getResultSet().getString(2));
+                    while(p.avancar(v.getNr())) v.getHorasProjetos().put(p.getResultSet().getInt(2), p.getResultSet().getInt(3));
+                    return v;
+                }
+            };
+        }
+        catch (Exception e) {
+            if(linguas!=null) linguas.close();
+            if(projetos!=null) projetos.close();
+            throw new NullPointerException(e.getMessage());
+        }
+    }
 
     @Override
     public IVoluntario put(Integer key, IVoluntario value) {
-        try {            
-            Statement stm = conn.createStatement();
-            this.remove(key);
-            int i  = stm.executeUpdate(insert(key,value));
+        try (Connection conn = this.manager.getConnection()) {            
+            // Unidade de trabalho: linha do voluntário e tabelas filhas numa só transação.
+            // Caso falhe antes do commit, a conexão é revertida ao ser devolvida ao pool.
+            conn.setAutoCommit(false);
             
+            // Upsert da linha do voluntário; a equipa não faz parte de IVoluntario e mantém-se
+            Map<String,Object> linha = valores(key, value);
+            PreparedStatement ps = this.prepareUpsert(conn, linha);
+            parseTools.bind(ps, new ArrayList<>(linha.values()));
+            ps.executeUpdate();
+            
+            ps = conn.prepareStatement("DELETE FROM Linguas WHERE Voluntario=?");
+            ps.setInt(1, key);
+            ps.executeUpdate();
+            ps = conn.prepareStatement("INSERT INTO Linguas (Nome, Voluntario) values (?, ?)");
             for(String l : value.getLinguas()){
                 if(l.equals("")) break;
-                String sql = ("INSERT INTO Linguas (Nome, Voluntario) values ('"+l+"', "+key+");");
-                stm.executeUpdate(sql);
+                ps.setString(1, l);
+                ps.setInt(2, key);
+                ps.addBatch();
             }
+            ps.executeBatch();
             
+            List<Object> nr = Arrays.<Object>asList(key);
+            this.somarHorasProjetos(conn, nr, -1);
+            ps = conn.prepareStatement("DELETE FROM ProjetosVoluntarios WHERE Voluntario=?");
+            ps.setInt(1, key);
+            ps.executeUpdate();
             if(value.getHorasVoluntariado()>0){
+                ps = conn.prepareStatement("INSERT INTO ProjetosVoluntarios (Projeto, Voluntario, HorasVoluntariado) values (?, ?, ?)");
                 for(Map.Entry<Integer,Integer> entry : value.getHorasProjetos().entrySet()){
-                    String sql = ("INSERT INTO ProjetosVoluntarios (Projeto, Voluntario, HorasVoluntariado)"
-                            + " values ("+entry.getKey()+", "+key+", "+entry.getValue()+");");
-                    stm.executeUpdate(sql);
+                    ps.setInt(1, entry.getKey());
+                    ps.setInt(2, key);
+                    ps.setInt(3, entry.getValue());
+                    ps.addBatch();
                 }
+                ps.executeBatch();
+                this.somarHorasProjetos(conn, nr, 1);
             }
-                
+            
+            conn.commit();
             return value;
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
     
-    /*Método auxiliar de inserção na base de dados*/
-    private String insert(Integer key, IVoluntario value) throws SQLException{       
-        String datanasc;
-        if(value.getDatanasc()!=null){
-            datanasc = parseTools.parseCalendar(value.getDatanasc());
-        } else datanasc="NULL";
-        
-        String datainic;
-        if(value.getDataInicioVol()!=null){
-            datainic = parseTools.parseCalendar(value.getDataInicioVol());
-        } else datainic="NULL";
-        
-        ArrayList<Object> valores = new ArrayList<>();
-        valores.add(key);
-        
-        if(value.getNome()!=null) valores.add(value.getNome());
-        else valores.add("NULL");        
-        
-        valores.add(datanasc);
-        
-        if(value.getLocalidade()!=null) valores.add(value.getLocalidade());
-        else valores.add("NULL");
-        
-        if(value.getRua()!=null) valores.add(value.getRua());
-        else valores.add("NULL");
-        
-        if(value.getCodPostal()!=null) valores.add(value.getCodPostal());
-        else valores.add("NULL");
-        
-        if(value.getHabilitacoes()!=null) valores.add(value.getHabilitacoes());
-        else valores.add("NULL");
-        
-        if(value.getTelem()!=null) valores.add(value.getTelem());
-        else valores.add("NULL");
-        
-        if(value.getTelef()!=null) valores.add(value.getTelef());
-        else valores.add("NULL");
-        
-        if(value.getProfissao()!=null) valores.add(value.getProfissao());
-        else valores.add("NULL");
-        
-        if(value.getEmail()!=null) valores.add(value.getEmail());
-        else valores.add("NULL");
-        
-        if(value.getObs()!=null) valores.add(value.getObs());
-        else valores.add("NULL");
-        
-        valores.add(datainic);
-        
-        Statement stm = conn.createStatement();
-        String sql = ("SELECT Equipa FROM Voluntarios WHERE Nr="+key+";");
-        ResultSet rs = stm.executeQuery(sql);
-        if(rs.next()) valores.add(rs.getInt(1));
-        else valores.add("NULL");
-        
-        return parseTools.createInsert("Voluntarios", valores);
+    /**
+     * Método auxiliar: valores a escrever na tabela Voluntarios para um voluntário, por coluna. As colunas
+     * originais da tabela são designadas por #n (como em fromRow e ORDENS) e as acrescentadas pelos scripts da
+     * pasta sql pelo nome. A equipa não faz parte de IVoluntario e não é escrita: um voluntário novo fica sem
+     * equipa e um existente mantém a sua.
+     */
+    private static Map<String,Object> valores(Integer key, IVoluntario value) {
+        Map<String,Object> valores = new LinkedHashMap<>();
+        valores.put("#1", key);
+        valores.put("#2", value.getNome());
+        valores.put("#3", value.getDatanasc());
+        valores.put("#4", value.getLocalidade());
+        valores.put("#5", value.getRua());
+        valores.put("#6", value.getCodPostal());
+        valores.put("#7", value.getHabilitacoes());
+        valores.put("#8", value.getTelem());
+        valores.put("#9", value.getTelef());
+        valores.put("#10", value.getProfissao());
+        valores.put("#11", value.getEmail());
+        valores.put("#12", value.getObs());
+        valores.put("#13", value.getDataInicioVol());
+        valores.put(IMPRESSAO, value.getImpressao());
+        valores.put(HORAS, value.getHorasVoluntariado());
+        return valores;
+    }
+    
+    /*Método auxiliar: upsert de linhas de voluntários, com as colunas (chaves) de valores(...)*/
+    private PreparedStatement prepareUpsert(Connection conn, Map<String,Object> linha) throws SQLException {
+        return conn.prepareStatement(this.table.createUpsert(conn, linha.keySet(), new ArrayList<String>()));
     }
 
     @Override
     public IVoluntario remove(Object key) {
-        try {            
-            Statement stm = conn.createStatement();
-            IVoluntario v = this.get((int)key);
-            stm.executeUpdate("DELETE FROM Linguas WHERE Voluntario="+(int)key+";");
-            stm.executeUpdate("update equipa set chefe=null where chefe="+(int)key+";");
-            stm.executeUpdate("delete from projetosvoluntarios where voluntario="+(int)key+";");
-            stm.executeUpdate("DELETE FROM Voluntarios WHERE Nr="+key+";");
+        try (Connection conn = this.manager.getConnection()) {            
+            conn.setAutoCommit(false);
+            this.somarHorasProjetos(conn, Arrays.<Object>asList(key), -1);
+            String[] sqls = {"DELETE FROM Linguas WHERE Voluntario=?",
+                             "update equipa set chefe=null where chefe=?",
+                             "delete from projetosvoluntarios where voluntario=?",
+                             "DELETE FROM Voluntarios WHERE Nr=?"};
+            for(String sql : sqls){
+                PreparedStatement ps = conn.prepareStatement(sql);
+                ps.setInt(1, (int)key);
+                ps.executeUpdate();
+            }
+            conn.commit();
             return new VoluntarioFactory().createVoluntario();
         }
         catch (Exception e) {throw new NullPointerException();}
     }
 
+    /**
+     * Guarda vários voluntários numa só transação (p.e. importação de fichas): as linhas de cada tabela
+     * são enviadas em batch e as tabelas filhas são limpas com DELETE ... IN (...), em blocos de MAX_IN.
+     * Caso algum voluntário falhe, nenhum é guardado.
+     * @param m, mapa nº de voluntário -> voluntário.
+     */
     @Override
     public void putAll(Map<? extends Integer, ? extends IVoluntario> m) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        if(m.isEmpty()) return;
+        try (Connection conn = this.manager.getConnection()) {
+            conn.setAutoCommit(false);
+            
+            PreparedStatement ps = null;
+            for(Map.Entry<? extends Integer, ? extends IVoluntario> e : m.entrySet()){
+                Map<String,Object> linha = valores(e.getKey(), e.getValue());
+                if(ps==null) ps = this.prepareUpsert(conn, linha);
+                parseTools.bind(ps, new ArrayList<>(linha.values()));
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            
+            List<List<Object>> blocos = blocos(m.keySet());
+            for(List<Object> bloco : blocos) this.deleteChildren(conn, bloco);
+            
+            PreparedStatement psl = conn.prepareStatement("INSERT INTO Linguas (Nome, Voluntario) values (?, ?)");
+            PreparedStatement psh = conn.prepareStatement("INSERT INTO ProjetosVoluntarios (Projeto, Voluntario, HorasVoluntariado) values (?, ?, ?)");
+            for(Map.Entry<? extends Integer, ? extends IVoluntario> e : m.entrySet()){
+                for(String l : e.getValue().getLinguas()){
+                    if(l.equals("")) break;
+                    psl.setString(1, l);
+                    psl.setInt(2, e.getKey());
+                    psl.addBatch();
+                }
+                if(e.getValue().getHorasVoluntariado()>0){
+                    for(Map.Entry<Integer,Integer> entry : e.getValue().getHorasProjetos().entrySet()){
+                        psh.setInt(1, entry.getKey());
+                        psh.setInt(2, e.getKey());
+                        psh.setInt(3, entry.getValue());
+                        psh.addBatch();
+                    }
+                }
+            }
+            psl.executeBatch();
+            psh.executeBatch();
+            for(List<Object> bloco : blocos) this.somarHorasProjetos(conn, bloco, 1);
+            
+            conn.commit();
+        }
+        catch (Exception e) {throw new NullPointerException(e.getMessage());}
+    }
+    
+    /*Método auxiliar: apaga as línguas e horas de um bloco de voluntários (descontando-as em HorasProjetos)*/
+    private void deleteChildren(Connection conn, List<Object> nrs) throws SQLException {
+        String filtro = " WHERE Voluntario IN "+parseTools.inParams(nrs.size());
+        PreparedStatement ps = conn.prepareStatement("DELETE FROM Linguas"+filtro);
+        parseTools.bind(ps, parseTools.inValores(nrs));
+        ps.executeUpdate();
+        this.somarHorasProjetos(conn, nrs, -1);
+        ps = conn.prepareStatement("DELETE FROM ProjetosVoluntarios"+filtro);
+        parseTools.bind(ps, parseTools.inValores(nrs));
+        ps.executeUpdate();
     }
 
     @Override
     public void clear() {
-        try {
-            Statement stm = conn.createStatement();
-            stm.executeUpdate("DELETE FROM Voluntarios WHERE Voluntarios.Nr>=0;");
+        try (Connection conn = this.manager.getConnection()) {
+            conn.prepareStatement("DELETE FROM Voluntarios WHERE Voluntarios.Nr>=0").executeUpdate();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
 
-    /*ALTERAR*/
     @Override
     public Set<Integer> keySet() {
         try {
-            Set<Integer> set = new HashSet<>();
-            int n = this.generateVoluntarioKey();
-            for(int i=0; i<n; i++){
-                if(this.containsKey(i)){
-                    set.add(i);
-                }
-            }
-            return set;
+            return this.table.intKeys();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
 
-    /*ALTERAR*/
     @Override
     public Collection<IVoluntario> values() {
         try {
-            Set<IVoluntario> set = new HashSet<>();
-            Set<Integer> keys = new HashSet<>(this.keySet());
-            for(Integer key : keys)
-                set.add(this.get(key));
-            return set;
+            return new ArrayList<>(this.loadAll().values());
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
 
-    /*ALTERAR*/
     @Override
     public Set<Entry<Integer,IVoluntario>> entrySet() {
         try {
-            Set<Entry<Integer,IVoluntario>> set;
-            Set<Integer> keys = new HashSet<>(this.keySet());            
-            
-            HashMap<Integer,IVoluntario> map = new HashMap<>();
-            for(Integer key : keys){
-                if(this.containsKey(key)){
-                    map.put(key,this.get(key));
-                }
-            }
-            return map.entrySet();
+            return this.loadAll().entrySet();
         }
         catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
@@ -327,30 +640,33 @@ class VoluntarioDAO implements Map<Integer,IVoluntario> {
 
     @Override
     public int hashCode() {
-        int hash = Arrays.hashCode(new Object[]{conn, parseTools});
+        int hash = Arrays.hashCode(new Object[]{manager, parseTools});
         for(IVoluntario v : this.values())
             hash+=v.hashCode();
         return hash;
     }
     
-    /*ALTERAR*/
     /**
-     * Procura a maior chave de voluntário existente na base de dados e retorna
-     * esse valor incrementado em uma unidade
+     * Atribui uma nova chave, a partir do bloco de chaves reservado para esta tabela (ver KeyAllocator).
      * @return Chave que identificará univocamente no sistema um voluntário. 
      */
     public int generateVoluntarioKey(){
-       try {
-            if(!this.isEmpty()){
-                Statement stm = conn.createStatement();
-                ResultSet rs = stm.executeQuery("SELECT MAX(Nr) FROM Voluntarios;");
-                if(rs.next()){
-                    return(rs.getInt(1) + 1);
-                }
-            } else return 1;
-        } catch (Exception e) {return 1;}
-        
-        return -1;
+        try {
+            return this.keys.next();
+        }
+        catch (Exception e) {throw new NullPointerException(e.getMessage());}
+    }
+    
+    /**
+     * Reserva de uma só vez um intervalo de chaves consecutivas (p.e. para importar várias fichas).
+     * @param n, nº de chaves a reservar.
+     * @return primeira chave do intervalo; as restantes são as n-1 seguintes.
+     */
+    public int reserveVoluntarioKeys(int n){
+        try {
+            return this.keys.nextBlock(n);
+        }
+        catch (Exception e) {throw new NullPointerException(e.getMessage());}
     }
     
     /**
@@ -359,93 +675,101 @@ class VoluntarioDAO implements Map<Integer,IVoluntario> {
      * @return se id==-1 retorna voluntarios sem equipa, caso contrário retorna voluntarios da equipa 'id'
      */
     public Collection<IVoluntario> getVoluntariosDeEquipa(int id) {
-        Collection<IVoluntario> vols = new HashSet<>();
-        VoluntarioFactory vfactory = new VoluntarioFactory();
-        IVoluntario v;
-        
         try {
-            Statement stm = conn.createStatement();
-            String sql;
+            Map<Integer,IVoluntario> vols;
             if(id!=-1){
-                sql = "SELECT * FROM Voluntarios WHERE Equipa="+id+";";
+                vols = this.load("WHERE Equipa=?", id);
             }else{
-                sql = "SELECT * FROM Voluntarios WHERE Equipa IS NULL;";
-            }
-            ResultSet rs = stm.executeQuery(sql);            
-            while(rs.next()){
-                v = vfactory.createVoluntario();
-                v.setNr(rs.getInt(1));
-                v.setNome(rs.getString(2));
-                v.setDatanasc(parseTools.parseSQLDate(rs.getString(3)));
-                v.setLocalidade(rs.getString(4));
-                v.setRua(rs.getString(5));
-                v.setCodPostal(rs.getString(6));
-                v.setHabilitacoes(rs.getString(7));
-                v.setTelem(rs.getString(8));
-                v.setTelef(rs.getString(9));
-                v.setProfissao(rs.getString(10));
-                v.setEmail(rs.getString(11));
-                v.setObs(rs.getString(12));
-                v.setDataInicioVol(parseTools.parseSQLDate(rs.getString(13)));
-                
-                List<String> linguas = new ArrayList<>();
-                sql = "SELECT * FROM Linguas WHERE Voluntario="+(int)v.getNr()+";";
-                rs = stm.executeQuery(sql);
-                for(;rs.next();){
-                    linguas.add(rs.getString(2));
-                }
-                v.setLinguas(linguas);
-                
-                Map<Integer,Integer> horas = new HashMap<>();
-                sql = "SELECT Projeto, HorasVoluntariado FROM HorasVoluntariado Where Voluntario="+v.getNr()+";";
-                rs = stm.executeQuery(sql);
-                for(;rs.next();){
-                    horas.put(rs.getInt(1),rs.getInt(2));
-                }
-                v.setHorasProjetos(horas);
-                
-                vols.add(v);
+                vols = this.load("WHERE Equipa IS NULL");
             }
-            return vols;
+            return new HashSet<>(vols.values());
         } catch (Exception e) {throw new NullPointerException();}
     }
     
     /**
      * Inserir horas de voluntariado num dado voluntário;
+     * os totais do voluntário (coluna Horas) e do projeto (HorasProjetos) são atualizados na mesma transação.
      * @param nrproj id do proejto em que o voluntário trabalhou
      * @param vid id do voluntário
      * @param h nº de horas de trabalho
      */
     public void addHorasVoluntariado(int nrproj, int vid, int h) {
-        try {            
-            Statement stm = conn.createStatement();
-            String sql=("SELECT HorasVoluntariado FROM ProjetosVoluntarios"
-                    + " WHERE Voluntario="+vid+" AND Projeto="+nrproj+";");
-            
-            ResultSet rs = stm.executeQuery(sql);
+        try (Connection conn = this.manager.getConnection()) {            
+            conn.setAutoCommit(false);
+            PreparedStatement ps = conn.prepareStatement("UPDATE ProjetosVoluntarios SET HorasVoluntariado=HorasVoluntariado+?"
+                    + " WHERE Voluntario=? AND Projeto=?");
+            ps.setInt(1, h);
+            ps.setInt(2, vid);
+            ps.setInt(3, nrproj);
             
-            if(!rs.next()){
-                sql = ("INSERT ProjetosVoluntarios (Projeto,Voluntario,HorasVoluntariado)"
-                        + " values("+nrproj+","+vid+","+h+");");          
-            } else{
-                h+=rs.getInt(1); 
-                sql = ("UPDATE ProjetosVoluntarios SET HorasVoluntariado="+h
-                        + " WHERE Voluntario="+vid+" AND Projeto="+nrproj+";");
+            if(ps.executeUpdate()==0){
+                ps = conn.prepareStatement("INSERT ProjetosVoluntarios (Projeto,Voluntario,HorasVoluntariado)"
+                        + " values(?,?,?)");
+                ps.setInt(1, nrproj);
+                ps.setInt(2, vid);
+                ps.setInt(3, h);
+                ps.executeUpdate();
             }
-            stm.executeUpdate(sql);
-        } catch (SQLException ex) {
+            
+            ps = conn.prepareStatement("UPDATE Voluntarios SET "+HORAS+"="+HORAS+"+? WHERE Nr=?");
+            ps.setInt(1, h);
+            ps.setInt(2, vid);
+            ps.executeUpdate();
+            ps = conn.prepareStatement("INSERT INTO "+HORAS_PROJETOS+" (Projeto, Horas) VALUES (?, ?)"
+                    + " ON DUPLICATE KEY UPDATE Horas=Horas+VALUES(Horas)");
+            ps.setInt(1, nrproj);
+            ps.setInt(2, h);
+            ps.executeUpdate();
+            conn.commit();
+        } catch (SQLException | ConnectionErrorException ex) {
             Logger.getLogger(VoluntarioDAO.class.getName()).log(Level.SEVERE, null, ex);
         }
     }
     
     /**
-     * Fechar a ligação à base de dados.
+     * Total de horas de voluntariado de cada projeto, lido da tabela-resumo HorasProjetos (sem somar
+     * ProjetosVoluntarios nem carregar voluntários).
+     * @return mapa nº do projeto -> horas (só projetos com horas).
      */
-    public void close(){
-        try {
-            this.conn.close();
-        } catch (SQLException ex) {
-            Logger.getLogger(VoluntarioDAO.class.getName()).log(Level.SEVERE, null, ex);
+    public Map<Integer,Integer> horasPorProjeto() {
+        try (Connection conn = this.manager.getConnection()) {
+            ResultSet rs = conn.prepareStatement("SELECT Projeto, Horas FROM "+HORAS_PROJETOS
+                    + " WHERE Horas<>0").executeQuery();
+            return totais(rs);
         }
+        catch (Exception e) {throw new NullPointerException(e.getMessage());}
+    }
+    
+    /**
+     * Total de horas de voluntariado de cada equipa: soma da coluna Horas dos voluntários de cada equipa,
+     * calculada pelo servidor (sem carregar voluntários).
+     * @return mapa id da equipa (-1 para os voluntários sem equipa) -> horas (só equipas com horas).
+     */
+    public Map<Integer,Integer> horasPorEquipa() {
+        try (Connection conn = this.manager.getConnection()) {
+            ResultSet rs = conn.prepareStatement("SELECT COALESCE(Equipa,-1), SUM("+HORAS+") FROM Voluntarios"
+                    + " WHERE "+HORAS+"<>0 GROUP BY Equipa").executeQuery();
+            return totais(rs);
+        }
+        catch (Exception e) {throw new NullPointerException(e.getMessage());}
+    }
+    
+    /**
+     * Total de horas de voluntariado de todos os voluntários (soma da coluna Horas).
+     * @return nº total de horas.
+     */
+    public int totalHoras() {
+        try (Connection conn = this.manager.getConnection()) {
+            ResultSet rs = conn.prepareStatement("SELECT COALESCE(SUM("+HORAS+"),0) FROM Voluntarios").executeQuery();
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+        catch (Exception e) {throw new NullPointerException(e.getMessage());}
+    }
+    
+    /*Método auxiliar: lê pares (id, horas) de um ResultSet, por ordem de id*/
+    private static Map<Integer,Integer> totais(ResultSet rs) throws SQLException {
+        Map<Integer,Integer> totais = new TreeMap<>();
+        while(rs.next()) totais.put(rs.getInt(1), rs.getInt(2));
+        return totais;
     }
 }
@@ -0,0 +1,13 @@
+package exceptions;
+
+/**Excepção para tratar casos em que a password introduzida não corresponde à do funcionário.
+ * 
+ * @author Jorge Caldas, José Cortez, Marcelo Gonçalves, Ricardo Silva
+ * @version 2015.01.17
+ */
+
+public class PasswordIncorretaException extends Exception {
+    public PasswordIncorretaException(String user){
+        super("Password incorreta para o funcionario com username: "+user);
+    }
+}
@@ -0,0 +1,13 @@
+package exceptions;
+
+/**Excepção para tratar casos em que um voluntário já se encontra registado (p.e. ficha carregada duas vezes).
+ * 
+ * @author Jorge Caldas, José Cortez, Marcelo Gonçalves, Ricardo Silva
+ * @version 2015.01.17
+ */
+
+public class VoluntarioDuplicadoException extends Exception{
+    public VoluntarioDuplicadoException(int id){
+        super("Voluntário já registado com id: "+id);
+    }
+}
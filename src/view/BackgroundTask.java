@@ -0,0 +1,150 @@
+package view;
+
+import java.awt.Component;
+import java.awt.Cursor;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.swing.JProgressBar;
+import javax.swing.SwingWorker;
+
+/** Operação da camada de negócio executada fora da Event Dispatch Thread.
+ *
+ * executar() corre numa thread do TaskRunner; os resultados parciais enviados com publish(...) chegam à EDT
+ * agrupados em lotes (parcial) e o resultado final é entregue em concluir, ou o erro em falhar. Uma tarefa
+ * cancelada (p.e. uma pesquisa substituída por outra mais recente) não entrega mais nada à EDT.
+ * Enquanto corre, o componente indicado em ocupar mostra o cursor de espera; com várias tarefas sobre o mesmo
+ * componente, o cursor original só é reposto quando terminar a última.
+ * @author Jorge Caldas, José Cortez, Marcelo Gonçalves, Ricardo Silva
+ * @version 2015.01.16
+ * @param <T> tipo do resultado final.
+ * @param <P> tipo dos resultados parciais.
+ */
+
+public abstract class BackgroundTask<T,P> extends SwingWorker<T,P> {
+
+    // Variáveis de instância
+    private Component ocupado;
+
+    /*Nº de tarefas que ocupam cada componente e o cursor a repor quando a última terminar (só usado na EDT)*/
+    private static final Map<Component,Ocupacao> OCUPADOS = new WeakHashMap<>();
+
+    /**
+     * Trabalho a fazer em segundo plano (chamadas à facade). Não deve tocar em componentes Swing.
+     * @return resultado, entregue a concluir na EDT.
+     * @throws Exception
+     */
+    protected abstract T executar() throws Exception;
+
+    /**
+     * Recebe o resultado na EDT.
+     * @param resultado, valor devolvido por executar.
+     */
+    protected void concluir(T resultado) {}
+
+    /**
+     * Recebe na EDT um lote de resultados parciais enviados com publish(...).
+     * @param lote, resultados parciais pela ordem em que foram publicados.
+     */
+    protected void parcial(List<P> lote) {}
+
+    /**
+     * Recebe na EDT o erro lançado por executar. Por omissão o erro é registado no log.
+     * @param erro, exceção lançada.
+     */
+    protected void falhar(Throwable erro) {
+        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, erro);
+    }
+
+    /**
+     * Indica o progresso da tarefa (a chamar em executar).
+     * @param feitos, nº de passos concluídos.
+     * @param total, nº total de passos.
+     */
+    protected final void progresso(int feitos, int total) {
+        this.setProgress(total<=0 ? 100 : Math.max(0, Math.min(100, feitos*100/total)));
+    }
+
+    /**
+     * Mostra o progresso da tarefa numa barra de progresso (chamar antes de a submeter).
+     * @param barra, barra a atualizar.
+     * @return a própria tarefa.
+     */
+    public BackgroundTask<T,P> comProgresso(final JProgressBar barra) {
+        barra.setValue(0);
+        this.addPropertyChangeListener(new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent e){
+                if("progress".equals(e.getPropertyName())) barra.setValue((Integer)e.getNewValue());
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Mostra o cursor de espera num componente enquanto a tarefa corre (chamar na EDT, antes de a submeter).
+     * @param componente, componente (normalmente a frame) que fica ocupado.
+     * @return a própria tarefa.
+     */
+    public BackgroundTask<T,P> ocupar(Component componente) {
+        if(this.ocupado!=null) return this;
+        this.ocupado = componente;
+        // Várias tarefas podem ocupar o mesmo componente: só a primeira guarda o cursor a repor
+        Ocupacao o = OCUPADOS.get(componente);
+        if(o==null){
+            o = new Ocupacao(componente.getCursor());
+            OCUPADOS.put(componente, o);
+            componente.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        }
+        o.tarefas++;
+        return this;
+    }
+
+    @Override
+    protected final T doInBackground() throws Exception {
+        return this.executar();
+    }
+
+    @Override
+    protected final void process(List<P> lote) {
+        if(!this.isCancelled()) this.parcial(lote);
+    }
+
+    @Override
+    protected final void done() {
+        this.libertar();
+        if(this.isCancelled()) return;
+        try {
+            this.concluir(this.get());
+        } catch (ExecutionException e) {
+            this.falhar(e.getCause());
+        } catch (InterruptedException | CancellationException e) {
+            // Tarefa cancelada entretanto: resultado descartado
+        }
+    }
+
+    /*Liberta o componente ocupado; o cursor só é reposto quando não há mais tarefas a ocupá-lo*/
+    private void libertar() {
+        if(this.ocupado==null) return;
+        Ocupacao o = OCUPADOS.get(this.ocupado);
+        if(o!=null && --o.tarefas==0){
+            OCUPADOS.remove(this.ocupado);
+            this.ocupado.setCursor(o.cursorAnterior);
+        }
+        this.ocupado = null;
+    }
+
+    /*Ocupação de um componente por uma ou mais tarefas*/
+    private static final class Ocupacao {
+        private final Cursor cursorAnterior;
+        private int tarefas;
+
+        private Ocupacao(Cursor cursorAnterior){this.cursorAnterior=cursorAnterior;}
+    }
+}
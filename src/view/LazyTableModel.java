@@ -0,0 +1,269 @@
+package view;
+
+import data_access.Pagina;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.swing.JTable;
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+
+/** Modelo de tabela que carrega as linhas por blocos, à medida que são mostradas.
+ *
+ * As linhas são pedidas à base de dados em blocos de BLOCO linhas (páginas ordenadas pelo servidor), numa
+ * thread própria: enquanto um bloco não chega as suas células aparecem vazias. Quando se mostra o fim ou o
+ * início de um bloco o bloco vizinho é pedido antecipadamente, e só são mantidos em memória os MAX_BLOCOS
+ * blocos usados mais recentemente. O cursor do fim de cada bloco lido é guardado: um bloco cujo anterior
+ * já foi lido custa uma query (a página a seguir a esse cursor) e qualquer outro, p.e. ao arrastar a barra
+ * de deslocamento para o meio da tabela, custa duas (o cursor da linha anterior, lido pela posição, e a
+ * página), sem ler os blocos intermédios. Os pedidos são atendidos por ordem, mas um bloco que já esteja
+ * longe do último bloco mostrado quando chega a sua vez é descartado sem ir à base de dados: ao arrastar a
+ * barra não se espera pelos blocos por onde ela passou antes de se ler aquele onde parou.
+ *
+ * Pode também mostrar uma lista já carregada (p.e. resultados de uma pesquisa), com mostrar(List).
+ * Todos os métodos devem ser chamados na Event Dispatch Thread.
+ * @author Jorge Caldas, José Cortez, Marcelo Gonçalves, Ricardo Silva
+ * @version 2015.01.15
+ * @param <V> tipo da entidade mostrada em cada linha.
+ */
+
+public abstract class LazyTableModel<V> extends AbstractTableModel {
+
+    public static final int BLOCO = 100;        // nº de linhas por bloco
+    private static final int MAX_BLOCOS = 8;    // nº de blocos mantidos em memória
+
+    /**
+     * Origem das linhas: nº total de linhas e páginas ordenadas (ver SGHabitat, métodos *_pagina*).
+     * @param <V> tipo da entidade.
+     */
+    public interface Fonte<V> {
+        int total();
+        Pagina<V> pagina(int tamanho, String ordem, boolean ascendente, Pagina.Cursor depois);
+        /** Cursor da linha numa posição (0 para a primeira), ou null caso não exista. */
+        Pagina.Cursor cursor(String ordem, boolean ascendente, int linha);
+    }
+
+    // Variáveis de instância
+    private final String[] colunas;
+    private final String[] ordens;      // ordenação no servidor de cada coluna (null: coluna não ordenável)
+    private final Fonte<V> fonte;
+    private String ordem;
+    private boolean ascendente;
+
+    private List<V> lista;              // linhas fixas (mostrar); null quando as linhas vêm da fonte
+    private int total;
+    private final LinkedHashMap<Integer,List<V>> blocos;
+    private final Map<Integer,Pagina.Cursor> cursores; // bloco -> cursor da sua última linha
+    private final Set<Integer> pedidos;
+    private volatile int geracao;       // incrementada a cada recarregamento; respostas antigas são ignoradas
+    private volatile int ultimo;        // último bloco mostrado (lido pela thread dos pedidos)
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Construtor parameterizado.
+     * @param colunas, nomes das colunas da tabela.
+     * @param ordens, para cada coluna, a ordenação a pedir à fonte quando se clica no cabeçalho (null se não ordenável).
+     * @param fonte, origem das linhas.
+     * @param ordem, ordenação inicial.
+     */
+    public LazyTableModel(String[] colunas, String[] ordens, Fonte<V> fonte, String ordem){
+        this.colunas=colunas; this.ordens=ordens; this.fonte=fonte;
+        this.ordem=ordem; this.ascendente=true;
+        this.blocos = new LinkedHashMap<Integer,List<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer,List<V>> e){return this.size()>MAX_BLOCOS;}
+        };
+        this.cursores = new HashMap<>();
+        this.pedidos = new HashSet<>();
+        this.executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r){
+                Thread t = new Thread(r, "LazyTableModel");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Valor de uma coluna para uma linha.
+     * @param linha, entidade da linha.
+     * @param coluna, índice da coluna.
+     * @return valor a mostrar.
+     */
+    protected abstract Object valor(V linha, int coluna);
+
+    /**
+     * Associa o modelo a uma tabela: um clique num cabeçalho ordena por essa coluna (no servidor)
+     * e um segundo clique inverte o sentido.
+     * @param tabela, tabela onde o modelo é mostrado.
+     */
+    public void instalar(final JTable tabela){
+        tabela.setRowSorter(null);
+        tabela.setAutoCreateRowSorter(false);
+        tabela.setModel(this);
+        tabela.getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent me){
+                int col = tabela.convertColumnIndexToModel(tabela.columnAtPoint(me.getPoint()));
+                if(col>=0 && col<ordens.length && ordens[col]!=null && lista==null){
+                    if(ordens[col].equals(ordem)) ascendente = !ascendente;
+                    else {ordem = ordens[col]; ascendente = true;}
+                    recarregar();
+                }
+            }
+        });
+        this.recarregar();
+    }
+
+    /**
+     * Descarta as linhas em memória e volta a ler a fonte (p.e. depois de uma alteração).
+     */
+    public void recarregar(){
+        this.lista = null;
+        this.limpar();
+        final int g = this.geracao;
+        this.executor.execute(new Runnable() {
+            @Override
+            public void run(){
+                try {
+                    final int n = fonte.total();
+                    SwingUtilities.invokeLater(new Runnable() {
+                        @Override
+                        public void run(){
+                            if(g!=geracao) return;
+                            total = n;
+                            fireTableDataChanged();
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    Logger.getLogger(LazyTableModel.class.getName()).log(Level.SEVERE, null, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Mostra uma lista de linhas já carregada, pela ordem dada (sem ordenação no servidor).
+     * @param linhas, linhas a mostrar.
+     */
+    public void mostrar(List<V> linhas){
+        this.limpar();
+        this.lista = new ArrayList<>(linhas);
+        this.total = this.lista.size();
+        this.fireTableDataChanged();
+    }
+
+    private void limpar(){
+        this.geracao++;
+        this.total = 0;
+        this.blocos.clear();
+        this.cursores.clear();
+        this.pedidos.clear();
+        this.fireTableDataChanged();
+    }
+
+    /**
+     * Entidade mostrada numa linha.
+     * @param row, índice da linha no modelo.
+     * @return entidade, ou null caso a linha ainda não tenha sido carregada.
+     */
+    public V getLinha(int row){
+        if(this.lista!=null) return row<this.lista.size() ? this.lista.get(row) : null;
+
+        int b = row / BLOCO;
+        this.ultimo = b;
+        List<V> bloco = this.blocos.get(b);
+        if(bloco==null){
+            this.pedir(b);
+            return null;
+        }
+        // Pedido antecipado do bloco vizinho
+        int i = row % BLOCO;
+        if(i >= BLOCO*3/4 && (b+1)*BLOCO < this.total) this.pedir(b+1);
+        else if(i < BLOCO/4 && b>0) this.pedir(b-1);
+        return i<bloco.size() ? bloco.get(i) : null;
+    }
+
+    /*Pede o bloco b: a partir do cursor do bloco anterior, caso seja conhecido, ou do cursor lido pela posição*/
+    private void pedir(final int b){
+        if(this.blocos.containsKey(b) || this.pedidos.contains(b)) return;
+
+        final int g = this.geracao;
+        final boolean conhecido = b==0 || this.cursores.containsKey(b-1);
+        final Pagina.Cursor anterior = b==0 ? null : this.cursores.get(b-1);
+        final String o = this.ordem;
+        final boolean asc = this.ascendente;
+        this.pedidos.add(b);
+
+        this.executor.execute(new Runnable() {
+            @Override
+            public void run(){
+                boolean lido = false;
+                try {
+                    // Bloco já fora de vista (a barra passou por ele) ou de um carregamento anterior
+                    if(g!=geracao || Math.abs(b-ultimo) > MAX_BLOCOS/2) return;
+                    final Pagina.Cursor depois = conhecido ? anterior : fonte.cursor(o, asc, b*BLOCO-1);
+                    if(!conhecido && depois==null) return; // a fonte tem menos linhas
+                    final Pagina<V> p = fonte.pagina(BLOCO, o, asc, depois);
+                    SwingUtilities.invokeLater(new Runnable() {
+                        @Override
+                        public void run(){receber(g, b, depois, p);}
+                    });
+                    lido = true;
+                } catch (RuntimeException e) {
+                    Logger.getLogger(LazyTableModel.class.getName()).log(Level.SEVERE, null, e);
+                } finally {
+                    // Um bloco não lido (erro ou fim da fonte) pode voltar a ser pedido
+                    if(!lido){
+                        SwingUtilities.invokeLater(new Runnable() {
+                            @Override
+                            public void run(){if(g==geracao) pedidos.remove(b);}
+                        });
+                    }
+                }
+            }
+        });
+    }
+
+    private void receber(int g, int b, Pagina.Cursor depois, Pagina<V> p){
+        if(g!=this.geracao) return;
+        this.pedidos.remove(b);
+        this.blocos.put(b, p.getItens());
+        if(b>0 && depois!=null) this.cursores.put(b-1, depois);
+        if(p.getSeguinte()!=null) this.cursores.put(b, p.getSeguinte());
+        int de = b*BLOCO, ate = Math.min(this.total, de+BLOCO)-1;
+        if(ate>=de) this.fireTableRowsUpdated(de, ate);
+    }
+
+    @Override
+    public int getRowCount(){return this.total;}
+
+    @Override
+    public int getColumnCount(){return this.colunas.length;}
+
+    @Override
+    public String getColumnName(int col){return this.colunas[col];}
+
+    @Override
+    public boolean isCellEditable(int row, int col){return false;}
+
+    @Override
+    public Object getValueAt(int row, int col){
+        V v = this.getLinha(row);
+        return v==null ? null : this.valor(v, col);
+    }
+}
@@ -104,36 +104,50 @@ public class LogIn extends javax.swing.JFrame {
     }// </editor-fold>//GEN-END:initComponents
 
     private void onClickLogInButton(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_onClickLogInButton
-        try {
-            this.username = usernameTextField.getText();
-            this.password = new String(passwordField.getPassword());         
-            
-            if(!this.username.equals("") && this.username!=null){
-                int r = hfacade.logIn(username, password);
-                
-                switch (r) {
-                    case 1:
-                        usernameTextField.setText("Username incorreto");
-                        passwordField.setText("");
-                        break;
-                    case 2:
-                        usernameTextField.setText("Password incorreta");
-                        passwordField.setText("");
-                        break;
-                    case 3:
-                        // Log in bem sucedido
-                        MainMenu mm = new MainMenu(hfacade);
-                        mm.setVisible(true);
-                        this.dispose();
-                        break;
-                    default:
-                        usernameTextField.setText("Ocorreu um erro");
-                        passwordField.setText("");
-                        break;
+        this.username = usernameTextField.getText();
+        this.password = new String(passwordField.getPassword());         
+
+        if(this.username!=null && !this.username.equals("")){
+            // Autenticação fora da EDT; o botão fica desativado até haver resposta
+            final LogIn aux = this;
+            this.loginButton.setEnabled(false);
+            TaskRunner.executar(new BackgroundTask<Integer,Void>() {
+                @Override
+                protected Integer executar() throws ConnectionErrorException {return hfacade.logIn(username, password);}
+                @Override
+                protected void concluir(Integer r) {
+                    loginButton.setEnabled(true);
+                    switch (r) {
+                        case 1:
+                            usernameTextField.setText("Username incorreto");
+                            passwordField.setText("");
+                            break;
+                        case 2:
+                            usernameTextField.setText("Password incorreta");
+                            passwordField.setText("");
+                            break;
+                        case 3:
+                            // Log in bem sucedido
+                            try {
+                                MainMenu mm = new MainMenu(hfacade);
+                                mm.setVisible(true);
+                                aux.dispose();
+                            } catch (IOException ex) {
+                                Logger.getLogger(LogIn.class.getName()).log(Level.SEVERE, null, ex);
+                            }
+                            break;
+                        default:
+                            usernameTextField.setText("Ocorreu um erro");
+                            passwordField.setText("");
+                            break;
+                    }
                 }
-            }
-        } catch (ConnectionErrorException | IOException ex) {
-            Logger.getLogger(LogIn.class.getName()).log(Level.SEVERE, null, ex);
+                @Override
+                protected void falhar(Throwable erro) {
+                    loginButton.setEnabled(true);
+                    Logger.getLogger(LogIn.class.getName()).log(Level.SEVERE, null, erro);
+                }
+            }.ocupar(this));
         }
     }//GEN-LAST:event_onClickLogInButton
 
@@ -1,7 +1,6 @@
 package view;
 
-import business.recursoshumanos.IPermissions;
-import business.recursoshumanos.PermissionsFactory;
+import business.recursoshumanos.Permissao;
 import data_access.SGHabitat;
 import view.recursoshumanos.Voluntarios;
 import java.beans.PropertyVetoException;
@@ -33,6 +32,8 @@ public final class MainMenu extends javax.swing.JFrame {
     private SGHabitat hfacade;
     private List<String> openedFrames;    
     
+    private static final int PERM_VOLUNTARIOS = Permissao.mascara(Permissao.CONSULT_VOLUNTARIOS);
+    
     public MainMenu(){
         initComponents();
     }
@@ -250,10 +251,7 @@ public final class MainMenu extends javax.swing.JFrame {
     }// </editor-fold>//GEN-END:initComponents
 
     private void onClickVoluntarios(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_onClickVoluntarios
-        IPermissions p = new PermissionsFactory().createPermissions();
-        List<String> perms = new ArrayList<>();
-        perms.add(p.getVconsult());
-        if(this.hfacade.rh_funHasPermissions(perms)){
+        if(this.hfacade.rh_funHasPermissions(PERM_VOLUNTARIOS)){
             JInternalFrame v = new Voluntarios(this,hfacade);
             if(!this.openedFrames.contains(v.getClass().getSimpleName())){ // Verificar se já não está aberta
                 this.openedFrames.add(v.getClass().getSimpleName());
@@ -274,12 +272,23 @@ public final class MainMenu extends javax.swing.JFrame {
     private void onClickLogoutButton(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_onClickLogoutButton
         int option = JOptionPane.showConfirmDialog(null, "Tem a certeza que pretende saír da GestHabitat?", "Saír", JOptionPane.YES_NO_OPTION);
         if (option == JOptionPane.YES_OPTION){
-            try {
-                this.hfacade.closeDataBaseConnections();
-                this.dispose();
-            } catch (Exception ex) {
-                Logger.getLogger(JCloseIFrameListener.class.getName()).log(Level.SEVERE, null, ex);
-            }
+            // As conexões são fechadas fora da EDT; a janela só fecha depois (as threads do pool são daemon)
+            this.setEnabled(false);
+            TaskRunner.executar(new BackgroundTask<Void,Void>() {
+                @Override
+                protected Void executar() {
+                    hfacade.logOut();
+                    hfacade.closeDataBaseConnections();
+                    return null;
+                }
+                @Override
+                protected void concluir(Void r) {dispose();}
+                @Override
+                protected void falhar(Throwable erro) {
+                    Logger.getLogger(JCloseIFrameListener.class.getName()).log(Level.SEVERE, null, erro);
+                    dispose();
+                }
+            }.ocupar(this));
         }
     }//GEN-LAST:event_onClickLogoutButton
 
@@ -0,0 +1,84 @@
+package view;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.swing.SwingWorker;
+
+/** Pool de threads onde correm as tarefas da interface (BackgroundTask).
+ *
+ * O pool tem menos threads do que o pool de conexões da base de dados, pelo que as tarefas da interface
+ * nunca esgotam as conexões. Tarefas submetidas num canal substituem a tarefa anterior do mesmo canal,
+ * que é cancelada: o seu resultado deixa de ser entregue à EDT (a query em curso termina normalmente,
+ * para não deixar a conexão num estado inválido).
+ * Todos os métodos devem ser chamados na Event Dispatch Thread.
+ * @author Jorge Caldas, José Cortez, Marcelo Gonçalves, Ricardo Silva
+ * @version 2015.01.16
+ */
+
+public final class TaskRunner {
+
+    private static final int THREADS = 4;
+
+    private static final ThreadPoolExecutor EXECUTOR;
+    static {
+        final AtomicInteger n = new AtomicInteger();
+        EXECUTOR = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r){
+                Thread t = new Thread(r, "TaskRunner-"+n.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    // Tarefa em curso em cada canal (removida quando termina)
+    private static final Map<Object,BackgroundTask<?,?>> CANAIS = new HashMap<>();
+
+    private TaskRunner(){}
+
+    /**
+     * Submete uma tarefa.
+     * @param tarefa, tarefa a executar.
+     * @return a tarefa submetida.
+     */
+    public static <T,P> BackgroundTask<T,P> executar(BackgroundTask<T,P> tarefa){
+        EXECUTOR.execute(tarefa);
+        return tarefa;
+    }
+
+    /**
+     * Submete uma tarefa num canal, cancelando a tarefa anterior desse canal caso ainda não tenha terminado.
+     * @param canal, objeto que identifica o canal (p.e. o campo de pesquisa de uma frame).
+     * @param tarefa, tarefa a executar.
+     * @return a tarefa submetida.
+     */
+    public static <T,P> BackgroundTask<T,P> executar(final Object canal, final BackgroundTask<T,P> tarefa){
+        BackgroundTask<?,?> anterior = CANAIS.put(canal, tarefa);
+        if(anterior!=null) anterior.cancel(false);
+        tarefa.addPropertyChangeListener(new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent e){
+                if(e.getNewValue()==SwingWorker.StateValue.DONE && CANAIS.get(canal)==tarefa) CANAIS.remove(canal);
+            }
+        });
+        return executar(tarefa);
+    }
+
+    /**
+     * Cancela a tarefa em curso num canal.
+     * @param canal, objeto que identifica o canal.
+     */
+    public static void cancelar(Object canal){
+        BackgroundTask<?,?> anterior = CANAIS.remove(canal);
+        if(anterior!=null) anterior.cancel(false);
+    }
+}
@@ -1,10 +1,9 @@
 package view.recursoshumanos;
 
-import exceptions.VoluntarioNaoExisteException;
 import data_access.SGHabitat;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import view.BackgroundTask;
 import view.OkDialog;
+import view.TaskRunner;
 
 /**Janela para vista de registo de horas de voluntariado.
  *
@@ -104,20 +103,29 @@ public class AddHorasVoluntariado extends javax.swing.JInternalFrame {
     }// </editor-fold>//GEN-END:initComponents
 
     private void onClickOkButton(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_onClickOkButton
-        int nrproj = Integer.parseInt(this.projetoTextField.getText().trim());
-        int horas = Integer.parseInt(this.horasTextField.getText().trim());
-        if(hfacade.rh_addHorasVoluntariado(nrproj,vid,horas)){
-            try {
-                this.parent.printRowHorasTable();
-                new OkDialog(this).show("Horas adicionadas");
-                this.dispose();
-            } catch (VoluntarioNaoExisteException ex) {
-                Logger.getLogger(AddHorasVoluntariado.class.getName()).log(Level.SEVERE, null, ex);
+        final int nrproj = Integer.parseInt(this.projetoTextField.getText().trim());
+        final int horas = Integer.parseInt(this.horasTextField.getText().trim());
+        final AddHorasVoluntariado aux = this;
+        this.okButton.setEnabled(false);
+        TaskRunner.executar(new BackgroundTask<Boolean,Void>() {
+            @Override
+            protected Boolean executar() {return hfacade.rh_addHorasVoluntariado(nrproj,vid,horas);}
+            @Override
+            protected void concluir(Boolean adicionadas) {
+                if(adicionadas){
+                    parent.printRowHorasTable();
+                    new OkDialog(aux).show("Horas adicionadas");
+                } else{
+                    new OkDialog(aux).show("Nrº de projeto inválido. Introduza um Nrº válido.");
+                }
+                dispose();
             }
-        } else{
-            new OkDialog(this).show("Nrº de projeto inválido. Introduza um Nrº válido.");
-            this.dispose();
-        }
+            @Override
+            protected void falhar(Throwable erro) {
+                okButton.setEnabled(true);
+                super.falhar(erro);
+            }
+        }.ocupar(this));
     }//GEN-LAST:event_onClickOkButton
 
 
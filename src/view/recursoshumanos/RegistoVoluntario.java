@@ -1,24 +1,25 @@
 package view.recursoshumanos;
 
-import business.recursoshumanos.IPermissions;
+import business.Data;
 import business.recursoshumanos.IVoluntario;
-import business.recursoshumanos.PermissionsFactory;
+import business.recursoshumanos.Permissao;
 import business.recursoshumanos.VoluntarioFactory;
 import exceptions.VoluntarioNaoExisteException;
 import data_access.SGHabitat;
 import java.util.ArrayList;
-import java.util.GregorianCalendar;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 import javax.swing.JOptionPane;
 import javax.swing.table.DefaultTableModel;
 import view.AreYouSureDeleteDialog;
+import view.BackgroundTask;
 import view.JCloseIFrameListener;
 import view.NoPermissionsDialog;
 import view.OkDialog;
+import view.TaskRunner;
 
 /**Janela para vista de registo ou consulta de dados individuais de um voluntário.
  *
@@ -35,6 +36,10 @@ public class RegistoVoluntario extends javax.swing.JInternalFrame {
     private SGHabitat hfacade;
     private boolean parseFlag;
     
+    private static final int PERM_CRIAR = Permissao.mascara(Permissao.CREATE_VOLUNTARIOS);
+    private static final int PERM_EDITAR = Permissao.mascara(Permissao.EDIT_VOLUNTARIOS);
+    private static final int PERM_APAGAR = Permissao.mascara(Permissao.DELETE_VOLUNTARIOS);
+    
     public RegistoVoluntario() {
         initComponents();
         this.addInternalFrameListener(new JCloseIFrameListener(this));
@@ -47,8 +52,18 @@ public class RegistoVoluntario extends javax.swing.JInternalFrame {
         this.parent=vols;
         this.editFlag=false;
         this.parseFlag=false;
-        this.numberTextField.setText(String.valueOf(this.hfacade.rh_generateVoluntarioKey()));
         this.hoursTextField.setText("0 h");
+        // Nº atribuído fora da EDT; só se pode guardar depois de conhecido
+        this.saveButton.setEnabled(false);
+        TaskRunner.executar(new BackgroundTask<Integer,Void>() {
+            @Override
+            protected Integer executar() {return RegistoVoluntario.this.hfacade.rh_generateVoluntarioKey();}
+            @Override
+            protected void concluir(Integer nr) {
+                numberTextField.setText(String.valueOf(nr));
+                saveButton.setEnabled(true);
+            }
+        });
         this.setTitle("Novo Voluntário");
         this.addHorasButton.setEnabled(false);
     }
@@ -82,8 +97,8 @@ public class RegistoVoluntario extends javax.swing.JInternalFrame {
             this.addHorasButton.setEnabled(false);
             this.setTitle("Novo voluntário");
         }
-        this.bornDateChooser.setCalendar(volAtual.getDatanasc());
-        this.beginDateChooser.setCalendar(volAtual.getDataInicioVol());
+        this.bornDateChooser.setCalendar(volAtual.getDatanasc()==null ? null : volAtual.getDatanasc().toCalendar());
+        this.beginDateChooser.setCalendar(volAtual.getDataInicioVol()==null ? null : volAtual.getDataInicioVol().toCalendar());
         this.nameTextField.setText(volAtual.getNome());
         this.localTextField.setText(volAtual.getLocalidade()); this.ruaTextField.setText(volAtual.getRua());
         this.codPostTextField.setText(volAtual.getCodPostal()); this.telfTextField.setText(volAtual.getTelef());
@@ -104,49 +119,62 @@ public class RegistoVoluntario extends javax.swing.JInternalFrame {
 
     /**
      * Método invocado pela classe RegistoVoluntário com indicação para guardar o voluntário registado na base de dados.
+     * A escrita é feita em segundo plano; enquanto decorre o botão de guardar fica desativado.
      * @param v, Voluntário que eventualmente ficará registado no sistema
-     * @return true se voluntário foi editado ou reistado na base de dados, false caso contrário.
      */
-    private boolean saveVolRegist(IVoluntario v){
-        boolean r=false;
-        
-        if(this.editFlag){
-            this.hfacade.rh_saveVoluntario(v);
-            StringBuilder sb = new StringBuilder();
-            sb.append("Voluntário editado: ").append(v.getFirstAndLastName()).append(" Nº: ").append(v.getNr()).append("\n");
-            sb.append("Funcionário: ").append(hfacade.rh_getUsername()).append("\n");
-            sb.append("Data: ").append(this.parent.getCurrentDateTime()).append("\n");
-            this.parent.report(sb.toString());
-            this.parent.rewriteTable();
-            this.volAtual=v;
-            r=true;
-            new OkDialog(this).show("Alterações guardadas. Pressione ok para voltar a Voluntários.");
-            this.dispose();
-        } else{           
-            boolean ig = false;
-            try {
-                ig = !this.hfacade.rh_getVoluntario(v.getNr()).equalsParse(v);
-            } catch (VoluntarioNaoExisteException ex) {ig=true;}
-            // Testar possibilidade de novo voluntário
-            if(ig){
-                // Novo voluntário
-                this.hfacade.rh_saveVoluntario(v);
+    private void saveVolRegist(final IVoluntario v){
+        final RegistoVoluntario aux = this;
+        this.saveButton.setEnabled(false);
+        TaskRunner.executar(new BackgroundTask<Boolean,Void>() {
+            private Set<IVoluntario> semelhantes = new HashSet<>();
+
+            @Override
+            protected Boolean executar() {
+                if(editFlag){
+                    hfacade.rh_saveVoluntario(v);
+                    return true;
+                }
+                // Testar possibilidade de novo voluntário: mesma impressão digital (nome, data de nascimento, contacto)
+                if(hfacade.rh_findDuplicadoVoluntario(v)!=null) return false;
+                this.semelhantes = hfacade.rh_findSemelhantesVoluntario(v);
+                hfacade.rh_saveVoluntario(v); // Novo voluntário
+                return true;
+            }
+            @Override
+            protected void concluir(Boolean guardado) {
+                saveButton.setEnabled(true);
+                if(!guardado){
+                    new OkDialog(aux).show("Este voluntário já se encontra registado");
+                    return;
+                }
                 StringBuilder sb = new StringBuilder();
-                sb.append("Novo voluntário: ").append(v.getFirstAndLastName()).append(" Nº: ").append(v.getNr()).append("\n");
+                sb.append(editFlag ? "Voluntário editado: " : "Novo voluntário: ").append(v.getFirstAndLastName())
+                  .append(" Nº: ").append(v.getNr()).append("\n");
                 sb.append("Funcionário: ").append(hfacade.rh_getUsername()).append("\n");
-                sb.append("Data: ").append(this.parent.getCurrentDateTime()).append("\n");
-                this.parent.report(sb.toString());
-                // Temos uma nova instância de voluntário, preenchemos nova linha da tabela
-                this.parent.rewriteTable();
-                this.volAtual=v;
-                r=true;
-                new OkDialog(this).show("Voluntário registado com sucesso");
-            } else{
-                new OkDialog(this).show("Este voluntário já se encontra registado");
-                r=false;
+                sb.append("Data: ").append(parent.getCurrentDateTime()).append("\n");
+                parent.report(sb.toString());
+                // Temos uma nova instância de voluntário, ou uma instância editada: atualizar tabela
+                parent.rewriteTable();
+                volAtual=v;
+                setTitle("Voluntário: "+v.getFirstAndLastName());
+                if(editFlag){
+                    new OkDialog(aux).show("Alterações guardadas. Pressione ok para voltar a Voluntários.");
+                    dispose();
+                } else if(this.semelhantes.isEmpty()){
+                    new OkDialog(aux).show("Voluntário registado com sucesso");
+                } else{
+                    // Possíveis duplicados com pequenas diferenças, a confirmar pelo utilizador
+                    StringBuilder nrs = new StringBuilder();
+                    for(IVoluntario s : this.semelhantes) nrs.append(" ").append(s.getNr());
+                    new OkDialog(aux).show("Voluntário registado com sucesso. Voluntários semelhantes já registados, Nº:"+nrs);
+                }
             }
-        }        
-        return r;
+            @Override
+            protected void falhar(Throwable erro) {
+                saveButton.setEnabled(true);
+                super.falhar(erro);
+            }
+        }.ocupar(this));
     }
     
     /**
@@ -451,16 +479,12 @@ public class RegistoVoluntario extends javax.swing.JInternalFrame {
      * @param evt, um evento.
      */
     private void onClickSaveButton(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_onClickSaveButton
-        ArrayList<String> perms = new ArrayList<>();
-        
-        // Verificar se utilizador tem permissões para editar e criar
-        if(this.hfacade.rh_funHasPermissions(perms)){
+        // Verificar se utilizador tem permissões para editar ou criar
+        if(this.hfacade.rh_funHasPermissions(this.editFlag ? PERM_EDITAR : PERM_CRIAR)){
         
             if(this.volAtual!=null && this.parseFlag==true){
                 // Foi feito parse à ficha ou registado manualmente voluntário
-                if(this.saveVolRegist(this.volAtual)){
-                    this.setTitle("Voluntário: "+this.volAtual.getFirstAndLastName());
-                }
+                this.saveVolRegist(this.volAtual);
             } else{
                 ArrayList<String> linguas = new ArrayList<>();
 
@@ -490,7 +514,7 @@ public class RegistoVoluntario extends javax.swing.JInternalFrame {
                 if(!s.equals("")) v.setNome(s);
                 else v.setNome(null);
                 
-                v.setDatanasc((GregorianCalendar)this.bornDateChooser.getCalendar());
+                v.setDatanasc(Data.de(this.bornDateChooser.getCalendar()));
                 
                 s=this.academicTextField.getText().trim();
                 if(!s.equals("")) v.setHabilitacoes(s);
@@ -512,9 +536,9 @@ public class RegistoVoluntario extends javax.swing.JInternalFrame {
                 if(!s.equals("")) v.setEmail(s);
                 else v.setEmail(null);
                 
-                v.setDataInicioVol((GregorianCalendar)this.beginDateChooser.getCalendar());
+                v.setDataInicioVol(Data.de(this.beginDateChooser.getCalendar()));
                 if(v.getDataInicioVol()==null)
-                    v.setDataInicioVol(new GregorianCalendar());
+                    v.setDataInicioVol(Data.hoje());
                 
                 s=this.localTextField.getText().trim();
                 if(!s.equals("")) v.setLocalidade(s);
@@ -539,9 +563,7 @@ public class RegistoVoluntario extends javax.swing.JInternalFrame {
                 if(!s.equals("")) v.setObs(s);
                 else v.setObs(null);          
                 
-                if(saveVolRegist(v)){
-                    this.setTitle("Voluntário: "+v.getFirstAndLastName());
-                }
+                this.saveVolRegist(v);
             }
         } else{ new NoPermissionsDialog(this).show(); }
     }//GEN-LAST:event_onClickSaveButton
@@ -551,29 +573,40 @@ public class RegistoVoluntario extends javax.swing.JInternalFrame {
      * @param evt , um evento.
      */
     private void onClickDeleteButton(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_onClickDeleteButton
-        List<String> perms = new ArrayList<>();
-        IPermissions p = new PermissionsFactory().createPermissions();
-        perms.add(p.getVdelete());
-        
-        if(hfacade.rh_funHasPermissions(perms)){           
+        if(hfacade.rh_funHasPermissions(PERM_APAGAR)){           
             if (this.volAtual!=null){
                     // Lançar diálogo
                     int option = new AreYouSureDeleteDialog(" o voluntário "+this.volAtual.getFirstAndLastName()).show();
                     if(option == JOptionPane.YES_OPTION){ // Verificar se voluntário está na base de dados
-                        int nr = this.volAtual.getNr();
-                        hfacade.rh_remVoluntario(nr);
-                        
-                        // Criar relatório
-                        StringBuilder sb = new StringBuilder();
-                        sb.append("Voluntário eliminado: ").append(this.volAtual.getFirstAndLastName()).append(" Nº:")
-                          .append(this.volAtual.getNr()).append("\n");
-                        sb.append("Funcionário: ").append(this.hfacade.rh_getUsername()).append("\n");
-                        sb.append("Data: ").append(this.parent.getVoluntariosParent().getCurrentDateTime()).append("\n");
-                        this.parent.report(sb.toString());
-                        
-                        // Editar linha da tabela que corresponde ao voluntário editado
-                        this.parent.rewriteTable();
-                        this.dispose(); // Fechar janela se operação é concluída com sucesso
+                        final int nr = this.volAtual.getNr();
+                        final RegistoVoluntario aux = this;
+                        this.deleteButton.setEnabled(false);
+                        TaskRunner.executar(new BackgroundTask<Void,Void>() {
+                            @Override
+                            protected Void executar() {
+                                hfacade.rh_remVoluntario(nr);
+                                return null;
+                            }
+                            @Override
+                            protected void concluir(Void r) {
+                                // Criar relatório
+                                StringBuilder sb = new StringBuilder();
+                                sb.append("Voluntário eliminado: ").append(volAtual.getFirstAndLastName()).append(" Nº:")
+                                  .append(volAtual.getNr()).append("\n");
+                                sb.append("Funcionário: ").append(hfacade.rh_getUsername()).append("\n");
+                                sb.append("Data: ").append(parent.getVoluntariosParent().getCurrentDateTime()).append("\n");
+                                parent.report(sb.toString());
+
+                                // Editar linha da tabela que corresponde ao voluntário editado
+                                parent.rewriteTable();
+                                aux.dispose(); // Fechar janela se operação é concluída com sucesso
+                            }
+                            @Override
+                            protected void falhar(Throwable erro) {
+                                deleteButton.setEnabled(true);
+                                super.falhar(erro);
+                            }
+                        }.ocupar(this));
                     }                   
             }
         } else{ new NoPermissionsDialog(this).show(); }
@@ -586,24 +619,35 @@ public class RegistoVoluntario extends javax.swing.JInternalFrame {
         add.setClosable(false);
     }//GEN-LAST:event_addHorasButtonActionPerformed
 
-    public void printRowHorasTable() throws VoluntarioNaoExisteException{
-        this.volAtual = this.hfacade.rh_getVoluntario(volAtual.getNr());
-        this.hoursTextField.setText(String.valueOf(this.volAtual.getHorasVoluntariado())+" h");
-        
-        DefaultTableModel model = (DefaultTableModel) horasTable.getModel();
-        
-        // Apagar linhas da tabela
-        int n = model.getRowCount();
-        for (int i=n-1; i>=0; i--) {
-            model.removeRow(i);
-        }        
-                
-        TreeMap<Integer,Integer> horas = new TreeMap<>(volAtual.getHorasProjetos());
-        for(Map.Entry<Integer,Integer> entry : horas.entrySet()){
-            model.addRow(new Object[]{entry.getKey(), entry.getValue()});
-        }
-        
-        this.parent.rewriteTable(); // Atualiza tabela geral
+    /**
+     * Volta a ler o voluntário (em segundo plano) e reescreve a tabela de horas e o total de horas.
+     */
+    public void printRowHorasTable(){
+        final int nr = this.volAtual.getNr();
+        TaskRunner.executar(this.horasTable, new BackgroundTask<IVoluntario,Void>() {
+            @Override
+            protected IVoluntario executar() throws VoluntarioNaoExisteException {return hfacade.rh_getVoluntario(nr);}
+            @Override
+            protected void concluir(IVoluntario v) {
+                volAtual = v;
+                hoursTextField.setText(String.valueOf(volAtual.getHorasVoluntariado())+" h");
+
+                DefaultTableModel model = (DefaultTableModel) horasTable.getModel();
+
+                // Apagar linhas da tabela
+                int n = model.getRowCount();
+                for (int i=n-1; i>=0; i--) {
+                    model.removeRow(i);
+                }        
+
+                TreeMap<Integer,Integer> horas = new TreeMap<>(volAtual.getHorasProjetos());
+                for(Map.Entry<Integer,Integer> entry : horas.entrySet()){
+                    model.addRow(new Object[]{entry.getKey(), entry.getValue()});
+                }
+
+                parent.rewriteTable(); // Atualiza tabela geral
+            }
+        });
     }
     
     // Variables declaration - do not modify//GEN-BEGIN:variables
@@ -0,0 +1,105 @@
+package view.recursoshumanos;
+
+import business.recursoshumanos.IVoluntario;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.swing.JOptionPane;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Diálogo de revisão de uma importação de várias fichas: lista os voluntários lidos (ainda não guardados)
+ * para que o utilizador escolha os que devem ser guardados, ou os reveja um a um no registo individual.
+ * @author Jorge Caldas, José Cortez, Marcelo Gonçalves, Ricardo Silva
+ * @version 2015.01.17
+ */
+
+public class RevisaoImportacao {
+
+    public static final int GUARDAR = 0;
+    public static final int REVER = 1;
+    public static final int CANCELAR = 2;
+    private static final String[] OPCOES = {"Guardar selecionados", "Rever um a um", "Cancelar"};
+    private static final String[] COLUNAS = {"Importar", "Nome", "Data Nasc.", "Localidade", "Telemóvel", "Ficha"};
+
+    // Variáveis de instância
+    private final Component pai;
+    private final List<File> fichas;
+    private final List<IVoluntario> voluntarios;
+    private final boolean[] selecionados;
+
+    /**
+     * Construtor que torna método de display do diálogo acessível.
+     * @param pai, componente sobre o qual o diálogo é mostrado.
+     * @param lidos, voluntários lidos, por ficha.
+     */
+    public RevisaoImportacao(Component pai, Map<File,IVoluntario> lidos){
+        this.pai=pai;
+        this.fichas=new ArrayList<>(lidos.keySet());
+        this.voluntarios=new ArrayList<>(lidos.values());
+        this.selecionados=new boolean[lidos.size()];
+        for(int i=0; i<this.selecionados.length; i++) this.selecionados[i]=true;
+    }
+
+    /**
+     * Método que faz display do diálogo de revisão.
+     * @return GUARDAR, REVER ou CANCELAR (também quando o diálogo é fechado).
+     */
+    public int show(){
+        JTable tabela = new JTable(new Modelo());
+        tabela.getColumnModel().getColumn(0).setMaxWidth(70);
+        JScrollPane scroll = new JScrollPane(tabela);
+        scroll.setPreferredSize(new Dimension(700, Math.min(400, 40+tabela.getRowHeight()*this.fichas.size())));
+        int r = JOptionPane.showOptionDialog(this.pai, new Object[]{"Fichas lidas (ainda não guardadas): "+this.fichas.size(), scroll},
+                "Rever importação", JOptionPane.DEFAULT_OPTION, JOptionPane.PLAIN_MESSAGE, null, OPCOES, OPCOES[0]);
+        return r==GUARDAR || r==REVER ? r : CANCELAR;
+    }
+
+    /**
+     * Voluntários selecionados no diálogo.
+     * @return voluntários selecionados, por ficha.
+     */
+    public Map<File,IVoluntario> getSelecionados(){
+        Map<File,IVoluntario> res = new LinkedHashMap<>();
+        for(int i=0; i<this.selecionados.length; i++){
+            if(this.selecionados[i]) res.put(this.fichas.get(i), this.voluntarios.get(i));
+        }
+        return res;
+    }
+
+    /*Modelo da tabela de revisão: só a coluna Importar é editável*/
+    private class Modelo extends AbstractTableModel {
+        @Override
+        public int getRowCount(){return fichas.size();}
+        @Override
+        public int getColumnCount(){return COLUNAS.length;}
+        @Override
+        public String getColumnName(int c){return COLUNAS[c];}
+        @Override
+        public Class<?> getColumnClass(int c){return c==0 ? Boolean.class : String.class;}
+        @Override
+        public boolean isCellEditable(int l, int c){return c==0;}
+        @Override
+        public void setValueAt(Object valor, int l, int c){
+            if(c==0) selecionados[l]=Boolean.TRUE.equals(valor);
+        }
+        @Override
+        public Object getValueAt(int l, int c){
+            IVoluntario v = voluntarios.get(l);
+            switch(c){
+                case 0: return selecionados[l];
+                case 1: return v.getNome();
+                case 2: return v.getDatanasc()==null ? "" : v.getDatanasc().toString();
+                case 3: return v.getLocalidade();
+                case 4: return v.getTelem();
+                default: return fichas.get(l).getName();
+            }
+        }
+    }
+}
@@ -2,27 +2,38 @@ package view.recursoshumanos;
 
 import business.recursoshumanos.IVoluntario;
 import business.recursoshumanos.ParseVoluntarioDocx;
+import business.recursoshumanos.ResumoVoluntario;
+import data_access.Pagina;
+import data_access.SearchIndex;
 import data_access.SGHabitat;
 import exceptions.VoluntarioNaoExisteException;
 import java.awt.Point;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.io.File;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.JInternalFrame;
 import javax.swing.JTable;
-import javax.swing.table.DefaultTableModel;
-import javax.swing.table.TableRowSorter;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import view.BackgroundTask;
 import view.JCloseMainIFrameListener;
+import view.LazyTableModel;
 import view.MainMenu;
 import view.OkDialog;
-import view.RowComparator;
+import view.TaskRunner;
 
 /** Classe para vista geral e de gestão de voluntários e equipas de voluntários.
  *
@@ -35,6 +46,12 @@ public class Voluntarios extends javax.swing.JInternalFrame {
     // Variáveis de instancia
     private MainMenu parent;
     private SGHabitat hfacade;
+    private LazyTableModel<ResumoVoluntario> modelo;
+    private Timer pesquisaTimer;                    // pesquisa à medida que se escreve (debounce)
+    private String ultimaPesquisa;                  // texto normalizado da pesquisa por nome mostrada na tabela
+    private Set<IVoluntario> ultimosResultados;     // resultados dessa pesquisa
+
+    private static final int DEBOUNCE = 250;        // ms sem teclas até se pesquisar
     
     
     public Voluntarios(MainMenu parent, SGHabitat facade) {
@@ -72,18 +89,56 @@ public class Voluntarios extends javax.swing.JInternalFrame {
     * @param parent, parent frame, referência do menu principal. 
     */
     private void initVoluntariosComponents(MainMenu parent) {
-        this.voluntariosTable.setAutoCreateRowSorter(false);
-        TableRowSorter trsv = new TableRowSorter(this.voluntariosTable.getModel());
-        
-        // Sorter de linhas da tabela
-        for(int i=0; i<3; i++){
-            trsv.setComparator(i, new RowComparator());
-        }
-        voluntariosTable.setRowSorter(trsv);
-        this.voluntariosTable.setAutoCreateRowSorter(false);     
+        // Linhas carregadas por blocos à medida que são mostradas, ordenadas pela base de dados.
+        // Cada linha é um resumo (uma query por bloco); o voluntário completo só é lido ao abrir a linha.
+        this.modelo = new LazyTableModel<ResumoVoluntario>(new String[]{"Nr", "Nome", "Horas"}, new String[]{"Nr", "Nome", "Horas"},
+                new LazyTableModel.Fonte<ResumoVoluntario>() {
+                    @Override
+                    public int total(){return hfacade.rh_totalVoluntarios();}
+                    @Override
+                    public Pagina<ResumoVoluntario> pagina(int tamanho, String ordem, boolean ascendente, Pagina.Cursor depois){
+                        return hfacade.rh_paginaResumosVoluntarios(tamanho, ordem, ascendente, depois);
+                    }
+                    @Override
+                    public Pagina.Cursor cursor(String ordem, boolean ascendente, int linha){
+                        return hfacade.rh_cursorEmVoluntarios(ordem, ascendente, linha);
+                    }
+                }, "Nr") {
+            @Override
+            protected Object valor(ResumoVoluntario v, int coluna){
+                switch(coluna){
+                    case 0: return v.getNr();
+                    case 1: return v.getFirstAndLastName();
+                    default: return v.getHorasVoluntariado();
+                }
+            }
+        };
         
         this.parent=parent;
-        fillTableCells();
+        this.modelo.instalar(this.voluntariosTable);
+        
+        // Pesquisa à medida que se escreve: só se pesquisa quando o utilizador pára de escrever
+        this.pesquisaTimer = new Timer(DEBOUNCE, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e){pesquisarNome(false);}
+        });
+        this.pesquisaTimer.setRepeats(false);
+        this.searchbarTextField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e){pesquisaTimer.restart();}
+            @Override
+            public void removeUpdate(DocumentEvent e){pesquisaTimer.restart();}
+            @Override
+            public void changedUpdate(DocumentEvent e){}
+        });
+        // O índice de pesquisa é carregado em segundo plano, para que a primeira pesquisa seja imediata
+        TaskRunner.executar(new BackgroundTask<Void,Void>() {
+            @Override
+            protected Void executar() {
+                hfacade.rh_warmSearchVoluntario();
+                return null;
+            }
+        });
         
         final Voluntarios aux=this;
         /*Para operações de consulta em tabelas*/
@@ -93,24 +148,88 @@ public class Voluntarios extends javax.swing.JInternalFrame {
                 JTable table =(JTable) me.getSource();
                 Point p = me.getPoint();
                 int row = table.rowAtPoint(p);
-                if (me.getClickCount() == 2) {
-                    int nr = (Integer)table.getValueAt(row,0); // Buscar o nº do vol da linha em que se fez doubleClick
-                    // Exibir dados num registo individual
-                    JInternalFrame rv=null;
-                    try {
-                        IVoluntario v = aux.hfacade.rh_getVoluntario(nr);
-                        rv = new RegistoVoluntario(aux.hfacade, v, aux, true, false);
-                    } catch (VoluntarioNaoExisteException ex) {
-                        Logger.getLogger(Voluntarios.class.getName()).log(Level.SEVERE, null, ex);
-                    }
-                    aux.getDesktopPane().add(rv);
-                    rv.show();
-                    rv.setClosable(true);
+                if (me.getClickCount() == 2 && table.getValueAt(row,0)!=null) { // Linha já carregada
+                    final int nr = (Integer)table.getValueAt(row,0); // Buscar o nº do vol da linha em que se fez doubleClick
+                    // Exibir dados num registo individual, lidos fora da EDT
+                    TaskRunner.executar(table, new BackgroundTask<IVoluntario,Void>() {
+                        @Override
+                        protected IVoluntario executar() throws VoluntarioNaoExisteException {return aux.hfacade.rh_getVoluntario(nr);}
+                        @Override
+                        protected void concluir(IVoluntario v) {aux.abrirRegisto(v, true, false);}
+                    }.ocupar(aux));
                 }
             }
         }); 
     }
     
+    /*Abre o registo individual de um voluntário*/
+    private void abrirRegisto(IVoluntario v, boolean editFlag, boolean parseFlag){
+        JInternalFrame rv = new RegistoVoluntario(this.hfacade, v, this, editFlag, parseFlag);
+        this.getDesktopPane().add(rv);
+        rv.show();
+        rv.setClosable(true);
+    }
+    
+    /**
+     * Pesquisa voluntários por nome. Uma pesquisa que acrescenta texto à anterior é resolvida filtrando os
+     * resultados anteriores; as restantes correm em segundo plano e substituem a pesquisa em curso.
+     * @param dialogo, true se foi pedida com o botão de pesquisa (mostra o nº de resultados).
+     */
+    private void pesquisarNome(final boolean dialogo){
+        this.pesquisaTimer.stop();
+        final String input = this.searchbarTextField.getText().trim();
+        final String q = SearchIndex.fold(input);
+        if(!dialogo){
+            if(q.isEmpty() || q.matches("\\d+")){ // Pesquisa por nº só com o botão
+                TaskRunner.cancelar(this.searchbarTextField);
+                if(q.isEmpty() && this.ultimaPesquisa!=null){
+                    this.ultimaPesquisa=null; this.ultimosResultados=null;
+                    this.modelo.recarregar(); // Voltar à lista completa
+                }
+                return;
+            }
+            if(q.equals(this.ultimaPesquisa)) return; // Texto igual ao mostrado
+        }
+
+        if(this.ultimaPesquisa!=null && !this.ultimaPesquisa.isEmpty() && q.contains(this.ultimaPesquisa)){
+            TaskRunner.cancelar(this.searchbarTextField);
+            this.mostrarResultados(input, q, this.hfacade.rh_refineSearchVoluntario(this.ultimosResultados, input), dialogo);
+            return;
+        }
+
+        TaskRunner.executar(this.searchbarTextField, new BackgroundTask<Set<IVoluntario>,Void>() {
+            @Override
+            protected Set<IVoluntario> executar() {
+                try {
+                    return hfacade.rh_searchVoluntario(input);
+                } catch (VoluntarioNaoExisteException ex) {
+                    return new HashSet<>();
+                }
+            }
+            @Override
+            protected void concluir(Set<IVoluntario> set) {mostrarResultados(input, q, set, dialogo);}
+        });
+    }
+
+    /*Mostra na tabela os resultados de uma pesquisa por nome*/
+    private void mostrarResultados(String input, String q, Set<IVoluntario> set, boolean dialogo){
+        this.ultimaPesquisa=q;
+        this.ultimosResultados=set;
+        int resultsfound=set.size();
+
+        // Preencher tabela
+        List<ResumoVoluntario> linhas = new ArrayList<>(set.size());
+        for(IVoluntario v : set) linhas.add(ResumoVoluntario.de(v));
+        this.modelo.mostrar(linhas);
+
+        if(!dialogo) return;
+        if(resultsfound!=0 && !input.equals("")){
+            new OkDialog(this).show("Número de resultados encontrados para "+input+": "+resultsfound);
+        }else{
+            new OkDialog(this).show("Nenhum resultado encontrado para "+input);
+        }
+    }
+    
     /**
      * Permite frames filhas desta a aceder à parent frame da mesma.
      * @return frame parent MainMenu
@@ -121,22 +240,14 @@ public class Voluntarios extends javax.swing.JInternalFrame {
      * Método que percorre conjunto de voluntários e preenche a tabela em conformidade com os dados a mostar.
      */
     public void fillTableCells(){
-        DefaultTableModel model = (DefaultTableModel) voluntariosTable.getModel();
-        for(IVoluntario v : hfacade.rh_voluntariosValues()){ // Preencher tabela com dados de voluntários
-            model.addRow(new Object[]{v.getNr(), v.getFirstAndLastName(), v.getHorasVoluntariado(), "desc"});
-        }        
+        this.ultimaPesquisa=null; this.ultimosResultados=null; // Dados alterados: próxima pesquisa volta ao índice
+        this.modelo.recarregar(); // Só os blocos visíveis são lidos
     }
     
     /**
      * Reescreve a tabela de voluntários.
      */
     public void rewriteTable(){
-        DefaultTableModel model = (DefaultTableModel) voluntariosTable.getModel();
-        // Apagar linhas da tabela
-        int n = model.getRowCount();
-        for (int i=n-1; i>=0; i--) {
-            model.removeRow(i);
-        }
         this.fillTableCells();
     }
     
@@ -293,6 +404,7 @@ public class Voluntarios extends javax.swing.JInternalFrame {
      */
     private void onClickSearchButton(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_onClickSearchButton
         // Pesquisar voluntário por nome ou por número
+        this.pesquisaTimer.stop();
         String searchinput = this.searchbarTextField.getText().trim();
         if(this.voluntariosTable.getRowCount()==0 && (searchinput==null || searchinput.equals(""))){
             this.fillTableCells();
@@ -300,73 +412,159 @@ public class Voluntarios extends javax.swing.JInternalFrame {
         }
         
         if(this.panels.getSelectedIndex()==0){ // Voluntários
+            // Uma nova pesquisa substitui a anterior, caso esta ainda não tenha terminado
+            final String input = searchinput;
             try{
-                int nr = Integer.parseInt(searchinput); // Pesquisar voluntário por nº caso string seja um número inteiro
-                if(hfacade.rh_voluntarioExiste(nr)){
-                    // Exibir dados num registo individual
-                    JInternalFrame rv = new RegistoVoluntario(hfacade, hfacade.rh_getVoluntario(nr), this, true, false);
-                    this.getDesktopPane().add(rv);
-                    rv.show();
-                    rv.setClosable(true);
-                }
-            } catch(NumberFormatException e){ // Supomos que input seja um nome próprio ou apelido
-                    DefaultTableModel model = (DefaultTableModel) voluntariosTable.getModel();
-                    
-                    // Apagar linhas da tabela
-                    int n = model.getRowCount();
-                    for (int i=n-1; i>=0; i--) {
-                        model.removeRow(i);
+                final int nr = Integer.parseInt(input); // Pesquisar voluntário por nº caso string seja um número inteiro
+                TaskRunner.executar(this.searchbarTextField, new BackgroundTask<IVoluntario,Void>() {
+                    @Override
+                    protected IVoluntario executar() throws VoluntarioNaoExisteException {
+                        return hfacade.rh_voluntarioExiste(nr) ? hfacade.rh_getVoluntario(nr) : null;
                     }
-                    
-                    Set<IVoluntario> set;
-                    try {
-                        set = this.hfacade.rh_searchVoluntario(searchinput);
-                    } catch (VoluntarioNaoExisteException ex) {
-                        set=new HashSet<>();
+                    @Override
+                    protected void concluir(IVoluntario v) {
+                        if(v!=null) abrirRegisto(v, true, false); // Exibir dados num registo individual
                     }
-                    int resultsfound=set.size();
-                    
-                    // Preencher tabela
-                    for(IVoluntario v : set){
-                        model.addRow(new Object[]{v.getNr(), v.getFirstAndLastName(), v.getHorasVoluntariado(), "desc", "desc"});
-                    }
-                    
-                    if(resultsfound!=0 && !searchinput.equals("")){
-                        new OkDialog(this).show("Número de resultados encontrados para "+searchinput+": "+resultsfound);
-                    }else{
-                        new OkDialog(this).show("Nenhum resultado encontrado para "+searchinput);
-                    }                   
-            } catch (VoluntarioNaoExisteException ex) {
-                Logger.getLogger(Voluntarios.class.getName()).log(Level.SEVERE, null, ex);
+                }.ocupar(this));
+            } catch(NumberFormatException e){ // Supomos que input seja um nome próprio ou apelido
+                this.pesquisarNome(true);
             }
         }
     }//GEN-LAST:event_onClickSearchButton
 
     /**
-     * O clique no botão loadButton permite ao utilizador carregar uma ficha voluntário (.docx) para o sistema.
+     * O clique no botão loadButton permite ao utilizador carregar fichas de voluntário (.doc/.docx) para o
+     * sistema. Nada é guardado sem revisão: uma só ficha abre no registo individual; várias fichas são listadas
+     * num diálogo de revisão (RevisaoImportacao) onde se escolhem as que são guardadas.
      * @param evt
      */
     private void onClickLoadButton(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_onClickLoadButton
-        ArrayList<IVoluntario> voluntarios = new ArrayList<>();
-        try {
-            voluntarios = (ArrayList<IVoluntario>) ParseVoluntarioDocx.parse(this.hfacade);
-        } catch (Exception ex) {
-            Logger.getLogger(Voluntarios.class.getName()).log(Level.SEVERE, null, ex);
+        // A escolha dos ficheiros é feita na EDT; a leitura das fichas corre em segundo plano
+        final File[] files = ParseVoluntarioDocx.escolherFicheiros();
+        if(files.length==0) return; // Diálogo cancelado
+        if(files.length==1){
+            // Uma só ficha: aberta num registo individual para revisão antes de ser guardada
+            TaskRunner.executar(new BackgroundTask<IVoluntario,Void>() {
+                @Override
+                protected IVoluntario executar() throws Exception {
+                    return ParseVoluntarioDocx.parse(hfacade, files[0], hfacade.rh_reserveVoluntarioKeys(1));
+                }
+                @Override
+                protected void concluir(IVoluntario v) {abrirRegisto(v, false, true);}
+            }.ocupar(this));
+            return;
         }
 
-        // Parse não teve efeito por ser cancelado, ou porque ocorreu um erro
-        if (voluntarios.isEmpty()) return;
-        else if(voluntarios.get(0).getNome().equals("null")) return;
-
-        for(IVoluntario v : voluntarios){
-            // Exibir dados num registo individual
-            RegistoVoluntario rv = new RegistoVoluntario(hfacade,v, this, false, true);
-            this.getDesktopPane().add(rv);
-            rv.show();
-            rv.setClosable(true);
-        }
+        // Várias fichas: lidas em segundo plano (com o progresso no título da frame) e revistas antes de guardar
+        final String titulo = this.getTitle();
+        TaskRunner.executar(new Importacao<Map<File,IVoluntario>>(new ArrayList<String>()) {
+            @Override
+            protected Map<File,IVoluntario> executar() throws InterruptedException {
+                return ParseVoluntarioDocx.ler(hfacade, files, this);
+            }
+            @Override
+            protected void parcial(List<Integer> lote) {
+                setTitle(titulo+" (fichas lidas: "+lote.get(lote.size()-1)+"/"+files.length+")");
+            }
+            @Override
+            protected void concluir(Map<File,IVoluntario> lidos) {
+                setTitle(titulo);
+                rever(lidos, falhas, files.length);
+            }
+            @Override
+            protected void falhar(Throwable erro) {
+                setTitle(titulo);
+                super.falhar(erro);
+            }
+        }.ocupar(this));
     }//GEN-LAST:event_onClickLoadButton
 
+    /**
+     * Revisão das fichas lidas numa importação de várias fichas (na EDT). Só os voluntários confirmados pelo
+     * utilizador são guardados; em "Rever um a um" cada voluntário selecionado abre no registo individual,
+     * como uma ficha isolada. Cancelar não guarda nada.
+     * @param lidos, voluntários lidos, por ficha.
+     * @param falhas, fichas que não puderam ser lidas.
+     * @param total, nº de fichas escolhidas.
+     */
+    private void rever(Map<File,IVoluntario> lidos, List<String> falhas, final int total){
+        if(lidos.isEmpty()){
+            this.relatorioImportacao(new ArrayList<IVoluntario>(), falhas, total);
+            return;
+        }
+        RevisaoImportacao revisao = new RevisaoImportacao(this, lidos);
+        switch(revisao.show()){
+            case RevisaoImportacao.REVER:
+                for(IVoluntario v : revisao.getSelecionados().values()) abrirRegisto(v, false, true);
+                return;
+            case RevisaoImportacao.CANCELAR:
+                return;
+        }
+        
+        final Map<File,IVoluntario> selecionados = revisao.getSelecionados();
+        final String titulo = this.getTitle();
+        TaskRunner.executar(new Importacao<List<IVoluntario>>(falhas) {
+            @Override
+            protected List<IVoluntario> executar() {
+                return ParseVoluntarioDocx.guardar(hfacade, selecionados, this);
+            }
+            @Override
+            protected void parcial(List<Integer> lote) {
+                setTitle(titulo+" (fichas guardadas: "+lote.get(lote.size()-1)+"/"+selecionados.size()+")");
+            }
+            @Override
+            protected void concluir(List<IVoluntario> importados) {
+                setTitle(titulo);
+                rewriteTable();
+                relatorioImportacao(importados, falhas, total);
+            }
+            @Override
+            protected void falhar(Throwable erro) {
+                setTitle(titulo);
+                super.falhar(erro);
+            }
+        }.ocupar(this));
+    }
+    
+    /**
+     * Fase de uma importação de várias fichas (leitura ou gravação) em segundo plano: regista as fichas
+     * falhadas e publica o nº de fichas tratadas.
+     * @param <T> tipo do resultado da fase.
+     */
+    private abstract static class Importacao<T> extends BackgroundTask<T,Integer> implements ParseVoluntarioDocx.Progresso {
+        protected final List<String> falhas;
+        
+        Importacao(List<String> falhas){this.falhas=falhas;}
+        
+        @Override
+        public void tratado(File ficheiro, IVoluntario v, int feitos, int total) {
+            this.progresso(feitos, total);
+            this.publish(feitos);
+        }
+        @Override
+        public void falhou(File ficheiro, Exception erro, int feitos, int total) {
+            Logger.getLogger(Voluntarios.class.getName()).log(Level.WARNING, ficheiro.getName(), erro);
+            synchronized(this.falhas){this.falhas.add(ficheiro.getName());}
+            this.progresso(feitos, total);
+            this.publish(feitos);
+        }
+        @Override
+        public boolean cancelado() {return this.isCancelled();}
+    }
+    
+    /*Relatório e diálogo final de uma importação de várias fichas*/
+    private void relatorioImportacao(List<IVoluntario> importados, List<String> falhas, int total){
+        StringBuilder sb = new StringBuilder();
+        sb.append("Fichas importadas: ").append(importados.size()).append("/").append(total).append("\n");
+        synchronized(falhas){
+            for(String f : falhas) sb.append("Ficha não importada: ").append(f).append("\n");
+        }
+        sb.append("Funcionário: ").append(hfacade.rh_getUsername()).append("\n");
+        sb.append("Data: ").append(getCurrentDateTime()).append("\n");
+        report(sb.toString());
+        new OkDialog(this).show("Fichas importadas: "+importados.size()+" de "+total);
+    }
+    
     /**
      * O clique no botão addVoluntario abre frame para registo manual.
      * @param evt
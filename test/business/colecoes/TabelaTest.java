@@ -0,0 +1,196 @@
+package business.colecoes;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tabela de dispersão partilhada por IntSet e IntIntMap: chave 0 (guardada fora da dispersão), colisões com
+ * volta ao início do array e remoção por deslocamento, remoção durante a iteração, redimensionamento e a
+ * soma dos valores mantida a cada alteração. As operações aleatórias são comparadas com um HashMap.
+ * @author Jorge Caldas, José Cortez, Marcelo Gonçalves, Ricardo Silva
+ * @version 2015.01.17
+ */
+
+public class TabelaTest {
+
+    /*Tabela de 4 posições (até 3 chaves sem redimensionar)*/
+    private static final int ESPERADOS = 3;
+
+    @Test
+    public void chaveZero(){
+        IntSet s = new IntSet();
+        assertFalse(s.contains(0));
+        assertTrue(s.add(0));
+        assertFalse(s.add(0));
+        assertTrue(s.add(7));
+        assertTrue(s.contains(0));
+        assertEquals(2, s.size());
+        int[] chaves = s.toIntArray();
+        Arrays.sort(chaves);
+        assertArrayEquals(new int[]{0, 7}, chaves);
+        assertTrue(s.remove(0));
+        assertFalse(s.contains(0));
+        assertFalse(s.remove(0));
+        assertEquals(1, s.size());
+
+        IntIntMap m = new IntIntMap();
+        m.put(0, 5);
+        assertEquals(5, m.get(0, -1));
+        assertEquals(8, m.somar(0, 3));
+        assertEquals(8, m.somaValores());
+        assertTrue(m.remove(0));
+        assertEquals(-1, m.get(0, -1));
+        assertEquals(0, m.somaValores());
+        assertEquals(0, m.size());
+    }
+
+    @Test
+    public void colisoesComVoltaNaRemocao(){
+        // Três chaves com a mesma posição de origem, a última do array: a segunda e a terceira dão a volta
+        int ultima = new Tabela(false, ESPERADOS).inserir(0) - 1; // a chave 0 fica a seguir à última posição
+        int[] ks = chavesComOrigem(ultima, 3);
+        Tabela t = new Tabela(true, ESPERADOS);
+        for(int j=0; j<ks.length; j++) t.setValor(t.inserir(ks[j]), j+1);
+        assertEquals(ultima, t.posicao(ks[0]));
+        assertEquals(0, t.posicao(ks[1]));
+        assertEquals(1, t.posicao(ks[2]));
+
+        // Remover a primeira desloca as outras duas para trás, atravessando o fim do array
+        t.remover(t.posicao(ks[0]));
+        assertEquals(-1, t.posicao(ks[0]));
+        assertEquals(ultima, t.posicao(ks[1]));
+        assertEquals(0, t.posicao(ks[2]));
+        assertEquals(2, t.valor(t.posicao(ks[1])));
+        assertEquals(3, t.valor(t.posicao(ks[2])));
+        assertEquals(2, t.tamanho());
+        assertEquals(5, t.soma());
+
+        // Uma chave de outra origem não é deslocada para antes da sua origem
+        Tabela u = new Tabela(false, ESPERADOS);
+        int outra = chavesComOrigem(1, 1)[0];
+        u.inserir(ks[0]);
+        u.inserir(ks[1]);
+        u.inserir(outra);
+        assertEquals(1, u.posicao(outra));
+        u.remover(u.posicao(ks[0]));
+        assertEquals(ultima, u.posicao(ks[1]));
+        assertEquals(1, u.posicao(outra));
+        assertEquals(1, u.seguinte(0)); // a posição 0 ficou livre
+    }
+
+    @Test
+    public void remocaoDuranteIteracao(){
+        IntSet s = new IntSet();
+        Set<Integer> esperado = new HashSet<>();
+        for(int k=-500; k<=500; k++){
+            s.add(k*37);
+            if(k%2!=0) esperado.add(k*37);
+        }
+        Set<Integer> visitados = new HashSet<>();
+        for(Iterator<Integer> it = s.iterator(); it.hasNext(); ){
+            int k = it.next();
+            assertTrue("visitado duas vezes: "+k, visitados.add(k));
+            if((k/37)%2==0) it.remove();
+        }
+        assertEquals(1001, visitados.size());
+        assertEquals(esperado, s);
+
+        IntIntMap m = new IntIntMap();
+        for(int k=0; k<1000; k++) m.put(k, k);
+        int vistos = 0;
+        for(Iterator<Map.Entry<Integer,Integer>> it = m.entrySet().iterator(); it.hasNext(); ){
+            Map.Entry<Integer,Integer> e = it.next();
+            vistos++;
+            if(e.getKey()%3!=0) it.remove();
+        }
+        assertEquals(1000, vistos);
+        assertEquals(334, m.size());
+        int soma = 0;
+        for(int k=0; k<1000; k+=3){
+            assertEquals(k, m.get(k, -1));
+            soma += k;
+        }
+        assertEquals(soma, m.somaValores());
+    }
+
+    @Test
+    public void redimensionamento(){
+        IntSet s = new IntSet();
+        for(int k=-5000; k<5000; k++) assertTrue(s.add(k));
+        assertEquals(10000, s.size());
+        for(int k=-5000; k<5000; k++) assertTrue(s.contains(k));
+        assertFalse(s.contains(5000));
+        assertFalse(s.contains(-5001));
+
+        IntIntMap m = new IntIntMap(2);
+        for(int k=0; k<10000; k++) m.put(k*1024, k);
+        assertEquals(10000, m.size());
+        for(int k=0; k<10000; k++) assertEquals(k, m.get(k*1024, -1));
+        assertEquals(10000*9999/2, m.somaValores());
+    }
+
+    @Test
+    public void somaValoresAcompanhaAlteracoes(){
+        Random r = new Random(20150117);
+        IntIntMap m = new IntIntMap();
+        Map<Integer,Integer> ref = new HashMap<>();
+        for(int op=0; op<20000; op++){
+            int k = r.nextInt(200)-100, v = r.nextInt(1000)-500;
+            switch(r.nextInt(5)){
+                case 0:
+                    m.put(k, v);
+                    ref.put(k, v);
+                    break;
+                case 1:
+                    Integer antigo = ref.get(k);
+                    ref.put(k, (antigo==null ? 0 : antigo)+v);
+                    assertEquals(ref.get(k).intValue(), m.somar(k, v));
+                    break;
+                case 2:
+                    assertEquals(ref.remove(k)!=null, m.remove(k));
+                    break;
+                case 3:
+                    for(Map.Entry<Integer,Integer> e : m.entrySet()){
+                        if(e.getKey()==k){
+                            e.setValue(v);
+                            ref.put(k, v);
+                        }
+                    }
+                    break;
+                default:
+                    if(r.nextInt(100)==0){
+                        m.clear();
+                        ref.clear();
+                    }
+            }
+            assertEquals(ref.size(), m.size());
+            assertEquals(soma(ref), m.somaValores());
+        }
+        assertEquals(ref, m);
+    }
+
+    /*Primeiras n chaves (não nulas) cuja posição de origem numa tabela de ESPERADOS chaves é a indicada*/
+    private static int[] chavesComOrigem(int origem, int n){
+        int[] res = new int[n];
+        for(int k=1, r=0; r<n; k++){
+            if(new Tabela(false, ESPERADOS).inserir(k)==origem) res[r++]=k;
+        }
+        return res;
+    }
+
+    private static int soma(Map<Integer,Integer> m){
+        int s = 0;
+        for(int v : m.values()) s += v;
+        return s;
+    }
+}
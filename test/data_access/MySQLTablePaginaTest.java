@@ -0,0 +1,101 @@
+package data_access;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Paginação por chave (MySQLTable.preparePage) sobre uma coluna com NULL, com páginas que atravessam as
+ * fronteiras entre os NULL e os valores. Precisa da base de dados Habitat (a tabela de teste é criada e
+ * apagada pelo próprio teste); é ignorado caso não haja ligação.
+ * @author Jorge Caldas, José Cortez, Marcelo Gonçalves, Ricardo Silva
+ * @version 2015.01.17
+ */
+
+public class MySQLTablePaginaTest {
+
+    private static final String TABELA = "TestePaginacao";
+    /*Id -> data (null = NULL), desordenados e com NULL no início, no meio e no fim das chaves*/
+    private static final Object[][] LINHAS = {
+        {1, null}, {2, "2014-03-01"}, {3, null}, {4, "2013-12-31"}, {5, null}, {6, "2014-03-01"},
+        {7, "2015-01-17"}, {8, null}, {9, "2012-06-02"}, {10, null}, {11, "2014-03-01"}
+    };
+
+    private MySQLManager manager;
+    private MySQLTable table;
+
+    @Before
+    public void criarTabela() throws SQLException {
+        try {
+            this.manager = MySQLManager.getInstance();
+            try (Connection conn = this.manager.getConnection()) {
+                conn.prepareStatement("DROP TABLE IF EXISTS "+TABELA).executeUpdate();
+                conn.prepareStatement("CREATE TABLE "+TABELA+" (Id INT NOT NULL PRIMARY KEY, Data DATE NULL)").executeUpdate();
+                PreparedStatement ps = conn.prepareStatement("INSERT INTO "+TABELA+" VALUES (?, ?)");
+                for(Object[] l : LINHAS){
+                    ps.setObject(1, l[0]);
+                    ps.setObject(2, l[1]);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        } catch (ConnectionErrorException e) {
+            Assume.assumeNoException(e); // sem base de dados
+        }
+        this.table = new MySQLTable(this.manager, TABELA, "Id");
+    }
+
+    @After
+    public void apagarTabela() throws Exception {
+        if(this.table==null) return;
+        try (Connection conn = this.manager.getConnection()) {
+            conn.prepareStatement("DROP TABLE IF EXISTS "+TABELA).executeUpdate();
+        }
+    }
+
+    @Test
+    public void ascendenteComNulosEmVariasPaginas() throws Exception {
+        // NULL primeiro (por Id), depois as datas (desempate por Id)
+        List<Integer> esperado = Arrays.asList(1, 3, 5, 8, 10, 9, 4, 2, 6, 11, 7);
+        for(int tamanho=1; tamanho<=LINHAS.length; tamanho++)
+            assertEquals("páginas de "+tamanho, esperado, this.percorrer("CAST(#2 AS CHAR)", true, tamanho));
+    }
+
+    @Test
+    public void descendenteComNulosEmVariasPaginas() throws Exception {
+        // datas primeiro, depois os NULL (por Id descendente)
+        List<Integer> esperado = Arrays.asList(7, 11, 6, 2, 4, 9, 10, 8, 5, 3, 1);
+        for(int tamanho=1; tamanho<=LINHAS.length; tamanho++)
+            assertEquals("páginas de "+tamanho, esperado, this.percorrer("CAST(#2 AS CHAR)", false, tamanho));
+    }
+
+    /*Lê todas as páginas, seguindo o cursor de cada uma, e devolve os Ids pela ordem lida*/
+    private List<Integer> percorrer(String ordem, boolean ascendente, int tamanho) throws Exception {
+        List<Integer> ids = new ArrayList<>();
+        Pagina.Cursor depois = null;
+        boolean mais = true;
+        try (Connection conn = this.manager.getConnection()) {
+            while(mais){
+                ResultSet rs = this.table.preparePage(conn, ordem, ascendente, depois, tamanho).executeQuery();
+                int lidas = 0;
+                mais = false;
+                while(rs.next()){
+                    if(lidas==tamanho){mais=true; break;}
+                    ids.add(rs.getInt("Id"));
+                    depois = new Pagina.Cursor(rs.getObject("Ordem"), rs.getInt("Id"));
+                    lidas++;
+                }
+            }
+        }
+        return ids;
+    }
+}